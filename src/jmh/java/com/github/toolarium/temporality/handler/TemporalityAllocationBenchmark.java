@@ -0,0 +1,116 @@
+/*
+ * TemporalityAllocationBenchmark.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pins the allocation budget of a write with the gc profiler. A write which inserts a record into the timeline (Case F)
+ * must not allocate beyond the two clones which are passed to the dao service, e.g. no plan, no operations and no log
+ * messages if the debug log is disabled. The check is run with: gradlew jmhAllocationCheck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemporalityAllocationBenchmark {
+    /** The allocation budget of a write which inserts a record into the timeline (Case F): two clones of the record */
+    public static final double MAX_BYTES_PER_WRITE = 128;
+    private static final Logger log = LoggerFactory.getLogger(TemporalityAllocationBenchmark.class);
+    private static final String ALLOCATION_RATE = "gc.alloc.rate.norm";
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private ITemporalityHandler temporalityHandler;
+    private MyFixedRecordDAO daoService;
+    private MyRecord record;
+
+
+    /**
+     * Create the timeline and the record
+     */
+    @Setup
+    public void setup() {
+        Instant referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+        List<MyRecord> timeline = new ArrayList<MyRecord>();
+        for (int i = 0; i < 100; i++) {
+            MyRecord existingRecord = new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), referenceTimestamp.plus(i + 1, ChronoUnit.DAYS));
+            existingRecord.setPrimaryKey(Long.valueOf(i));
+            timeline.add(existingRecord);
+        }
+
+        daoService = new MyFixedRecordDAO(timeline);
+        record = new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(50, ChronoUnit.DAYS).plus(6, ChronoUnit.HOURS), referenceTimestamp.plus(50, ChronoUnit.DAYS).plus(18, ChronoUnit.HOURS));
+        temporalityHandler = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+    }
+
+
+    /**
+     * Insert the record into the timeline (Case F)
+     *
+     * @return the number of updated records
+     */
+    @Benchmark
+    public int writeTemporalityRecord() {
+        return temporalityHandler.writeTemporlityRecord(record, daoService);
+    }
+
+
+    /**
+     * Run the benchmark with the gc profiler and check the allocated bytes per write
+     *
+     * @param args the arguments
+     * @throws RunnerException in case the benchmark could not be run
+     * @throws IllegalStateException in case the allocation budget is exceeded
+     */
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> runResultList = new Runner(new OptionsBuilder().include(TemporalityAllocationBenchmark.class.getName()).addProfiler(GCProfiler.class).build()).run();
+        for (RunResult runResult : runResultList) {
+            Result<?> allocationRate = null;
+            for (String name : runResult.getSecondaryResults().keySet()) {
+                if (name.endsWith(ALLOCATION_RATE)) {
+                    allocationRate = runResult.getSecondaryResults().get(name);
+                }
+            }
+
+            if (allocationRate == null) {
+                throw new IllegalStateException("The allocation rate is not measured by the gc profiler!");
+            }
+
+            if (allocationRate.getScore() > MAX_BYTES_PER_WRITE) {
+                throw new IllegalStateException("Allocated " + allocationRate.getScore() + " bytes per write, the budget is " + MAX_BYTES_PER_WRITE + " bytes.");
+            }
+
+            log.info("Allocated " + allocationRate.getScore() + " bytes per write, the budget is " + MAX_BYTES_PER_WRITE + " bytes.");
+        }
+    }
+}
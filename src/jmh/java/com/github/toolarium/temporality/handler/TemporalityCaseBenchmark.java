@@ -0,0 +1,145 @@
+/*
+ * TemporalityCaseBenchmark.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks a write of each temporality case into a timeline of the given length. The timeline consists of one record per
+ * day and is not modified by the writes (see {@link MyFixedRecordDAO}), so every invocation runs through the same case. The
+ * throughput, the latency percentiles (sample time) and with the gc profiler the allocation rate are reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemporalityCaseBenchmark {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    @Param({"A", "B", "C", "D", "E", "E1", "F", "G", "H"})
+    public String temporalityCase;
+
+    @Param({"1", "10", "100", "1000", "10000", "100000"})
+    public int timelineSize;
+
+    @Param({"true", "false"})
+    public boolean sorted;
+
+    private ITemporalityHandler temporalityHandler;
+    private IDAOService<MyRecord> daoService;
+    private MyRecord record;
+
+
+    /**
+     * Create the timeline and the record of the temporality case
+     */
+    @Setup
+    public void setup() {
+        Instant referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+        List<MyRecord> timeline = new ArrayList<MyRecord>(timelineSize);
+        for (int i = 0; i < timelineSize; i++) {
+            MyRecord existingRecord = new MyRecord(KEY, VALUE, day(referenceTimestamp, i), day(referenceTimestamp, i + 1));
+            existingRecord.setPrimaryKey(Long.valueOf(i));
+            timeline.add(existingRecord);
+        }
+
+        // the record in the middle of the timeline
+        int middle = timelineSize / 2;
+        Instant validFrom = day(referenceTimestamp, middle);
+        Instant validTill = day(referenceTimestamp, middle + 1);
+
+        switch (TemporalityCase.valueOf(temporalityCase)) {
+            case A: // identical record
+                record = new MyRecord(KEY, VALUE, validFrom, validTill);
+                break;
+            case B: // after the last record
+                record = new MyRecord(KEY, VALUE + "new", day(referenceTimestamp, timelineSize + 1), day(referenceTimestamp, timelineSize + 2));
+                break;
+            case C: // before the first record
+                record = new MyRecord(KEY, VALUE + "new", day(referenceTimestamp, -2), day(referenceTimestamp, -1));
+                break;
+            case D: // terminate the last record
+                record = new MyRecord(KEY, VALUE + "new", day(referenceTimestamp, timelineSize - 1).plus(12, ChronoUnit.HOURS), day(referenceTimestamp, timelineSize + 1));
+                break;
+            case E: // start before the first record
+                record = new MyRecord(KEY, VALUE + "new", day(referenceTimestamp, -1).plus(12, ChronoUnit.HOURS), day(referenceTimestamp, 0).plus(12, ChronoUnit.HOURS));
+                break;
+            case E1: // start before and end with the first record
+                record = new MyRecord(KEY, VALUE + "new", day(referenceTimestamp, -1).plus(12, ChronoUnit.HOURS), day(referenceTimestamp, 1));
+                break;
+            case F: // insert into the record in the middle
+                record = new MyRecord(KEY, VALUE + "new", validFrom.plus(6, ChronoUnit.HOURS), validFrom.plus(18, ChronoUnit.HOURS));
+                break;
+            case G: // replace the records in the middle
+                record = new MyRecord(KEY, VALUE + "new", validFrom, day(referenceTimestamp, middle + 2).plus(12, ChronoUnit.HOURS));
+                break;
+            case H: // update the record in the middle
+                record = new MyRecord(KEY, VALUE + "new", validFrom, validTill);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported temporality case: " + temporalityCase);
+        }
+
+        if (sorted) {
+            daoService = new MyFixedRecordDAO(timeline);
+        } else {
+            daoService = new MyFixedRecordDAO(timeline) {
+                /**
+                 * @see com.github.toolarium.temporality.handler.MyFixedRecordDAO#isSortedByValidFrom()
+                 */
+                @Override
+                public boolean isSortedByValidFrom() {
+                    return false;
+                }
+            };
+        }
+
+        temporalityHandler = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+    }
+
+
+    /**
+     * Write the record of the temporality case
+     *
+     * @return the number of updated records
+     */
+    @Benchmark
+    public int writeTemporalityRecord() {
+        return temporalityHandler.writeTemporlityRecord(record, daoService);
+    }
+
+
+    /**
+     * Get the instant of a day
+     *
+     * @param referenceTimestamp the reference timestamp
+     * @param day the day
+     * @return the instant
+     */
+    private static Instant day(Instant referenceTimestamp, int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * TemporalityContentionBenchmark.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Benchmarks random writes into the {@link InMemoryDAOService} with one and with several threads. The threads either write
+ * their own data key or all the same data key, the writes of the same data key are serialized by the
+ * {@link IParallelTemporalityWriter}. The throughput, the latency percentiles (sample time) and with the gc profiler the
+ * allocation rate are reported.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemporalityContentionBenchmark {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+
+    @Param({"1", "100", "10000", "100000"})
+    public int timelineSize;
+
+    private Instant referenceTimestamp;
+    private InMemoryDAOService<MyRecord, Long, String> daoService;
+    private IParallelTemporalityWriter parallelTemporalityWriter;
+    private AtomicInteger threadCounter;
+
+
+    /**
+     * Create the timelines of the data keys
+     */
+    @Setup
+    public void setup() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+        AtomicLong sequence = new AtomicLong();
+        daoService = new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+        parallelTemporalityWriter = TemporalityHandlerFactory.getInstance().getParallelTemporalityWriter();
+        threadCounter = new AtomicInteger();
+    }
+
+
+    /**
+     * The state of a benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private SplittableRandom random;
+        private String dataKey;
+
+
+        /**
+         * Create the timeline of the data key of the thread
+         *
+         * @param benchmark the benchmark
+         */
+        @Setup
+        public void setup(TemporalityContentionBenchmark benchmark) {
+            int thread = benchmark.threadCounter.getAndIncrement();
+            random = new SplittableRandom(thread);
+            dataKey = KEY + thread;
+            benchmark.fill(dataKey);
+            benchmark.fill(KEY);
+        }
+    }
+
+
+    /**
+     * Write a random record into the data key of the thread, single thread
+     *
+     * @param threadState the thread state
+     * @return the number of updated records
+     */
+    @Benchmark
+    @Threads(1)
+    public int writeSingleThread(ThreadState threadState) {
+        return TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(createRecord(threadState.random, threadState.dataKey), daoService);
+    }
+
+
+    /**
+     * Write a random record into the data key of the thread, all threads write in parallel
+     *
+     * @param threadState the thread state
+     * @return the number of updated records
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int writeOwnDataKey(ThreadState threadState) {
+        return parallelTemporalityWriter.writeTemporalityRecord(createRecord(threadState.random, threadState.dataKey), daoService);
+    }
+
+
+    /**
+     * Write a random record into the same data key, all threads contend for the same data key
+     *
+     * @param threadState the thread state
+     * @return the number of updated records
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int writeSameDataKey(ThreadState threadState) {
+        return parallelTemporalityWriter.writeTemporalityRecord(createRecord(threadState.random, KEY), daoService);
+    }
+
+
+    /**
+     * Fill the timeline of a data key with one record per day
+     *
+     * @param dataKey the data key
+     */
+    void fill(String dataKey) {
+        synchronized (daoService) {
+            if (daoService.getNumberOfRecords(dataKey) > 0) {
+                return;
+            }
+
+            for (int i = 0; i < timelineSize; i++) {
+                daoService.write(TemporalityActionType.CREATE, new MyRecord(dataKey, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), referenceTimestamp.plus(i + 1, ChronoUnit.DAYS)));
+            }
+        }
+    }
+
+
+    /**
+     * Create a random record within the timeline, a record is one to three days long
+     *
+     * @param random the random
+     * @param dataKey the data key
+     * @return the record
+     */
+    private MyRecord createRecord(SplittableRandom random, String dataKey) {
+        long from = random.nextLong(timelineSize * 24L);
+        long duration = 1 + random.nextLong(72);
+        return new MyRecord(dataKey, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.HOURS), referenceTimestamp.plus(from + duration, ChronoUnit.HOURS));
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * IAppendOnlyDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.List;
+
+
+/**
+ * Defines the backend of an append-only store, e.g. a log or a log-structured table. The existing versions are never
+ * updated or deleted, every change is appended as new {@link TemporalityVersion}. The AppendOnlyDAOService adapts
+ * it to an {@link IDAOService}.
+ *
+ * @param <R> the generic record type.
+ */
+public interface IAppendOnlyDAOService<R> {
+    /**
+     * Append the versions of a logical write in the given order
+     *
+     * @param versionList the versions to append
+     */
+    void append(List<TemporalityVersion<R>> versionList);
+
+
+    /**
+     * Search all versions
+     *
+     * @param recordFilter the record for filtering, e.g. with the data key
+     * @return the versions in the order they were appended
+     */
+    List<TemporalityVersion<R>> searchVersions(R recordFilter);
+}
@@ -0,0 +1,70 @@
+/*
+ * IAsyncDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Defines an abstraction of an asynchronous DAO service, see {@link IDAOService}.
+ *
+ * @param <R> the generic record type.
+ */
+public interface IAsyncDAOService<R> {
+    /**
+     * Write the record
+     *
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     * @return the future which is completed after the write
+     */
+    CompletableFuture<Void> write(TemporalityActionType temporalityActionType, R record);
+
+
+    /**
+     * Delete record
+     *
+     * @param record the record
+     * @return the future which is completed after the delete
+     */
+    CompletableFuture<Void> delete(R record);
+
+
+    /**
+     * Search
+     *
+     * @param recordFilter the record for filtering
+     * @return the future of the record list
+     */
+    CompletableFuture<List<R>> search(R recordFilter);
+
+
+    /**
+     * Search the records which overlap or touch the given period, see {@link IDAOService#searchOverlapping(Object, Instant, Instant)}.
+     * The default implementation returns the result of {@link #search(Object)}.
+     *
+     * @param recordFilter the record for filtering
+     * @param validFrom the valid from of the period or null
+     * @param validTill the valid till of the period or null
+     * @return the future of the record list
+     */
+    default CompletableFuture<List<R>> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        return search(recordFilter);
+    }
+
+
+    /**
+     * Defines if the search results are ordered, see {@link IDAOService#isSortedByValidFrom()}.
+     * The default implementation returns false.
+     *
+     * @return true if the search results are ordered
+     */
+    default boolean isSortedByValidFrom() {
+        return false;
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * IAsyncTemporalityHandler.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.concurrent.CompletableFuture;
+
+
+/**
+ * Defines the asynchronous temporality handler interface. The writes of the same data key are executed in the order
+ * of the calls, the writes of different data keys are executed concurrently.
+ */
+public interface IAsyncTemporalityHandler {
+
+    /**
+     * Writes a temporality record and handling behavior asynchronously.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param daoService the asynchronous data access service.
+     * @return the future of the number of updated records.
+     */
+    <R extends ITemporalityRecord<R, K, D>, K, D> CompletableFuture<Integer> writeTemporalityRecordAsync(R record, IAsyncDAOService<R> daoService);
+}
@@ -0,0 +1,51 @@
+/*
+ * IBatchDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.List;
+
+
+/**
+ * Defines an optional extension of the {@link IDAOService} which supports to write and delete a list of records
+ * in one call. In case the dao service implements this interface, the temporality handler collects all operations
+ * of a logical write (or a batch) and passes them together to the dao service. The records to delete are always
+ * passed before the records to write. In case a flush contains records to delete and records to write, they are passed in
+ * one call of {@link #apply(List, List)}. Its default implementation calls {@link #deleteAll(List)} and
+ * {@link #writeAll(List)} one after the other and is not atomic: a dao service which needs both to be applied or none,
+ * e.g. in one database transaction, overrides it.
+ *
+ * @param <R> the generic record type.
+ */
+public interface IBatchDAOService<R> extends IDAOService<R> {
+    /**
+     * Write the records in the given order
+     *
+     * @param operationList the operations to write
+     */
+    void writeAll(List<TemporalityOperation<R>> operationList);
+
+
+    /**
+     * Delete the records
+     *
+     * @param recordList the records to delete
+     */
+    void deleteAll(List<R> recordList);
+
+
+    /**
+     * Delete and write the records of a flush. The default implementation deletes the records with {@link #deleteAll(List)}
+     * and writes the records with {@link #writeAll(List)}, in case the write fails the records are deleted nevertheless.
+     * A dao service which supports transactions overrides it to apply both or none.
+     *
+     * @param deleteRecordList the records to delete, they are deleted before the records are written
+     * @param operationList the operations to write
+     */
+    default void apply(List<R> deleteRecordList, List<TemporalityOperation<R>> operationList) {
+        deleteAll(deleteRecordList);
+        writeAll(operationList);
+    }
+}
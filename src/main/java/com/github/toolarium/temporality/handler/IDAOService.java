@@ -5,6 +5,7 @@
  */
 package com.github.toolarium.temporality.handler;
 
+import java.time.Instant;
 import java.util.List;
 
 
@@ -38,4 +39,50 @@ public interface IDAOService<R> {
      * @return the record list
      */
     List<R> search(R recordFilter);
+
+
+    /**
+     * Search the records of the data key of the record filter which overlap or touch the given period, which means
+     * the valid from is not after the given valid till and the valid till is not before the given valid from.
+     * The result must contain at least all these records, additional records are allowed. In case the result is
+     * empty, the temporality handler writes the new record with the action type {@link TemporalityActionType#CREATE}.
+     * The default implementation returns the result of {@link #search(Object)}.
+     *
+     * @param recordFilter the record for filtering
+     * @param validFrom the valid from of the period or null
+     * @param validTill the valid till of the period or null
+     * @return the record list
+     */
+    default List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        return search(recordFilter);
+    }
+
+
+    /**
+     * Search the records of the data key of the record filter which are valid at the given instant, which means the
+     * valid from is not after the instant and the valid till is after the instant. The result must contain at least
+     * this record, additional records are allowed. The default implementation returns the result of
+     * {@link #searchOverlapping(Object, Instant, Instant)} with the period of the instant.
+     *
+     * @param recordFilter the record for filtering
+     * @param validAt the instant
+     * @return the record list
+     */
+    default List<R> searchValidAt(R recordFilter, Instant validAt) {
+        return searchOverlapping(recordFilter, validAt, validAt);
+    }
+
+
+    /**
+     * Defines if the results of {@link #search(Object)} and {@link #searchOverlapping(Object, Instant, Instant)} are
+     * ordered by the valid from and the valid till, which means both are not decreasing. This is the case for every
+     * timeline without overlapping records which is ordered by the valid from. The valid from and valid till of the
+     * records must not be null. In this case the temporality handler only checks the records which overlap or touch
+     * the new record. The default implementation returns false.
+     *
+     * @return true if the search results are ordered
+     */
+    default boolean isSortedByValidFrom() {
+        return false;
+    }
 }
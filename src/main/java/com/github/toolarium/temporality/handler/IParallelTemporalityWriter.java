@@ -0,0 +1,44 @@
+/*
+ * IParallelTemporalityWriter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.Collection;
+import java.util.Map;
+
+
+/**
+ * Defines the parallel temporality writer. The records are partitioned by the data key and the partitions are written
+ * in parallel. A data key is written by only one thread at a time, also across concurrent calls of the same writer.
+ * The dao service has to support concurrent calls with different data keys.
+ */
+public interface IParallelTemporalityWriter {
+
+    /**
+     * Writes a temporality record, the write waits for the running writes of the same data key.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     */
+    <R extends ITemporalityRecord<R, K, D>, K, D> int writeTemporalityRecord(R record, IDAOService<R> daoService);
+
+
+    /**
+     * Writes a collection of temporality records. The records of a data key are written in the order of the collection,
+     * the data keys are written in parallel.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordList the records to write.
+     * @param daoService the data access service.
+     * @return the number of updated records per data key.
+     */
+    <R extends ITemporalityRecord<R, K, D>, K, D> Map<D, Integer> writeTemporalityRecords(Collection<R> recordList, IDAOService<R> daoService);
+}
@@ -0,0 +1,30 @@
+/*
+ * ITemporalityChangeListener.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the change listener of the temporality handler, e.g. to update derived stores like caches or search indexes
+ * incrementally. The listener is called synchronously on the writing thread after the dao service has accepted a change,
+ * in case of an {@link IBatchDAOService} after the flush. A failed write or delete is not passed. An implementation has to
+ * be thread safe and cheap.
+ *
+ * @see com.github.toolarium.temporality.handler.event.TemporalityChangePublisher
+ */
+public interface ITemporalityChangeListener {
+    /** The listener which ignores all changes */
+    ITemporalityChangeListener NO_OP = event -> {
+        // NOP
+    };
+
+
+    /**
+     * Called for each change which was accepted by the dao service.
+     *
+     * @param event the change event
+     */
+    void onTemporalityChange(TemporalityChangeEvent<?> event);
+}
@@ -5,6 +5,15 @@
  */
 package com.github.toolarium.temporality.handler;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Defines the temporality handler interface.
@@ -12,7 +21,9 @@ package com.github.toolarium.temporality.handler;
 public interface ITemporalityHandler {
 
     /**
-     * Writes a temporality record and handling behavior.
+     * Writes a temporality record and handling behavior. In case of an {@link IVersionedDAOService} the write is conditional
+     * on the version of the timeline and is retried on a conflict, a {@link TemporalityConflictException} is thrown if the
+     * retries are exhausted.
      *
      * @param <R> the generic record type.
      * @param <K> the generic primary type.
@@ -22,4 +33,311 @@ public interface ITemporalityHandler {
      * @return the number of updated records.
      */
     <R extends ITemporalityRecord<R, K, D>, K, D> int writeTemporlityRecord(R record, IDAOService<R> daoService);
+
+
+    /**
+     * Writes a collection of temporality records. The records are grouped by their data key and the timeline of
+     * each data key is read only once. The records of a data key are applied in the given order. The default implementation
+     * writes the records one after the other.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordList the records to write.
+     * @param daoService the data access service.
+     * @return the number of updated records per data key.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> Map<D, Integer> writeTemporalityRecords(Collection<R> recordList, IDAOService<R> daoService) {
+        Map<D, Integer> result = new LinkedHashMap<D, Integer>();
+        if (recordList == null) {
+            return result;
+        }
+
+        for (R record : recordList) {
+            result.merge(record.getDataKey(), writeTemporlityRecord(record, daoService), Integer::sum);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Plans the write of a temporality record without any access to a dao service. The default implementation can not plan
+     * and throws an {@link UnsupportedOperationException}, the planning is implemented by the temporality handler.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param existingRecordList the existing records of the data key, at least the records which overlap or touch the record.
+     * @return the plan
+     * @throws UnsupportedOperationException in case the temporality handler does not implement the planning.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> TemporalityPlan<R> planTemporalityRecord(R record, List<R> existingRecordList) {
+        throw new UnsupportedOperationException("The temporality handler " + getClass().getName() + " does not implement planTemporalityRecord!");
+    }
+
+
+    /**
+     * Executes a plan: the operations are applied in the given order to the dao service. In case the dao service
+     * is a {@link IBatchDAOService}, all operations are passed at once. The default implementation passes the operations one
+     * after the other.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param plan the plan to execute.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> int executeTemporalityPlan(TemporalityPlan<R> plan, IDAOService<R> daoService) {
+        if (plan == null || plan.isEmpty()) {
+            return 0;
+        }
+
+        for (TemporalityOperation<R> operation : plan.getOperationList()) {
+            if (operation.isDelete()) {
+                daoService.delete(operation.getRecord());
+            } else {
+                daoService.write(operation.getTemporalityActionType(), operation.getRecord());
+            }
+        }
+
+        return plan.size();
+    }
+
+
+    /**
+     * Executes a plan conditionally on the version of the timeline it was planned on: all operations are passed at once
+     * to {@link IVersionedDAOService#writeAll(List, Object)}. The plan is not planned again in case of a conflict.
+     * The default implementation only passes the operations to the dao service.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param plan the plan to execute.
+     * @param daoService the versioned data access service.
+     * @param expectedVersion the version of the timeline the plan is based on.
+     * @return the number of updated records.
+     * @throws TemporalityConflictException in case the version of the timeline has changed
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> int executeTemporalityPlan(TemporalityPlan<R> plan, IVersionedDAOService<R> daoService, Object expectedVersion) {
+        if (plan == null || plan.isEmpty()) {
+            return 0;
+        }
+
+        daoService.writeAll(plan.getOperationList(), expectedVersion);
+        return plan.size();
+    }
+
+
+    /**
+     * Finds the record of the data key of the record filter which is valid at the given instant, which means the valid from
+     * is not after the instant and the valid till is after the instant. The records are read by
+     * {@link IDAOService#searchValidAt(Object, Instant)}, an exception of the dao service is passed to the caller. The default
+     * implementation returns the first valid record of the search result.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordFilter the record for filtering, e.g. with the data key.
+     * @param validAt the instant.
+     * @param daoService the data access service.
+     * @return the valid record or null.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> R findValidAt(R recordFilter, Instant validAt, IDAOService<R> daoService) {
+        if (validAt == null) {
+            throw new IllegalArgumentException("Invalid instant!");
+        }
+
+        List<R> recordList = daoService.searchValidAt(recordFilter, validAt);
+        if (recordList == null) {
+            return null;
+        }
+
+        for (R record : recordList) {
+            if ((record.getValidFrom() == null || !record.getValidFrom().isAfter(validAt)) && (record.getValidTill() == null || record.getValidTill().isAfter(validAt))) {
+                return record;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Finds the records of the data key of the record filter which are valid within the given period, which means the valid
+     * from is before the valid till of the period and the valid till is after the valid from of the period. A record which only
+     * touches the period is not part of the result. The records are read by {@link IDAOService#searchOverlapping(Object, Instant, Instant)},
+     * an exception of the dao service is passed to the caller. The default implementation filters and sorts the search result.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordFilter the record for filtering, e.g. with the data key.
+     * @param validFrom the valid from of the period.
+     * @param validTill the valid till of the period.
+     * @param clip true to clip the validity of the records to the period, the clipped records are copies and must not be written.
+     * @param daoService the data access service.
+     * @return the records ordered by the valid from.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> List<R> findOverlapping(R recordFilter, Instant validFrom, Instant validTill, boolean clip, IDAOService<R> daoService) {
+        if (validFrom == null || validTill == null || !validFrom.isBefore(validTill)) {
+            throw new IllegalArgumentException("Invalid period: " + validFrom + " - " + validTill);
+        }
+
+        List<R> result = new ArrayList<R>();
+        List<R> recordList = daoService.searchOverlapping(recordFilter, validFrom, validTill);
+        if (recordList == null) {
+            return result;
+        }
+
+        for (R record : recordList) {
+            if ((record.getValidFrom() == null || record.getValidFrom().isBefore(validTill)) && (record.getValidTill() == null || record.getValidTill().isAfter(validFrom))) {
+                R resultRecord = record;
+                if (clip) {
+                    resultRecord = record.clone();
+                    if (resultRecord.getValidFrom() == null || resultRecord.getValidFrom().isBefore(validFrom)) {
+                        resultRecord.setValidFrom(validFrom);
+                    }
+
+                    if (resultRecord.getValidTill() == null || resultRecord.getValidTill().isAfter(validTill)) {
+                        resultRecord.setValidTill(validTill);
+                    }
+                }
+
+                result.add(resultRecord);
+            }
+        }
+
+        result.sort(Comparator.comparing((R r) -> r.getValidFrom(), Comparator.nullsFirst(Comparator.<Instant>naturalOrder())));
+        return result;
+    }
+
+
+    /**
+     * Compacts the timeline of the data key of the record filter: contiguous records which are equal apart from the primary key
+     * and the validity are merged into one record. The first record of each run is extended and the others are deleted.
+     * A later write handles a merged record as one record, e.g. a record with the same valid from replaces it (Case H).
+     * The records are read by {@link IDAOService#search(Object)}, an exception of the dao service is passed to the caller.
+     * The default implementation executes the plan of {@link #planTemporalityCompaction(List)}.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordFilter the record for filtering, e.g. with the data key.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> int compactTemporalityRecords(R recordFilter, IDAOService<R> daoService) {
+        return executeTemporalityPlan(planTemporalityCompaction(daoService.search(recordFilter)), daoService);
+    }
+
+
+    /**
+     * Plans the compaction of a timeline without any access to a dao service, see {@link #compactTemporalityRecords(ITemporalityRecord, IDAOService)}.
+     * The default implementation can not plan and throws an {@link UnsupportedOperationException}.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param existingRecordList the existing records of the data key.
+     * @return the plan
+     * @throws UnsupportedOperationException in case the temporality handler does not implement the planning.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> TemporalityPlan<R> planTemporalityCompaction(List<R> existingRecordList) {
+        throw new UnsupportedOperationException("The temporality handler " + getClass().getName() + " does not implement planTemporalityCompaction!");
+    }
+
+
+    /**
+     * Reconciles the timeline of the data key of the record filter with the complete target timeline, e.g. a snapshot of a
+     * source system. The stored timeline is read once by {@link IDAOService#search(Object)} and only the difference is written:
+     * an existing record which is equal to a target record apart from the primary key is kept untouched, a changed existing
+     * record is updated in place and only the remaining records are deleted or created. A reconciliation of an unchanged
+     * timeline reads once and writes nothing. The target records are not changed and their primary keys are ignored.
+     * In case of an {@link IVersionedDAOService} the operations are written conditionally on the version of the timeline.
+     * The default implementation executes the plan of {@link #planTemporalityReconciliation(List, List)}.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordFilter the record for filtering, e.g. with the data key.
+     * @param targetRecordList the complete target timeline of the data key, the records must not overlap.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     * @throws IllegalArgumentException in case a target record has no validity, an other data key or overlaps an other target record.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> int reconcileTemporalityRecords(R recordFilter, List<R> targetRecordList, IDAOService<R> daoService) {
+        if (daoService instanceof IVersionedDAOService) {
+            IVersionedDAOService<R> versionedDAOService = (IVersionedDAOService<R>) daoService;
+            TemporalitySnapshot<R> snapshot = versionedDAOService.searchSnapshot(recordFilter, null, null);
+            return executeTemporalityPlan(planTemporalityReconciliation(targetRecordList, snapshot.getRecordList()), versionedDAOService, snapshot.getVersion());
+        }
+
+        return executeTemporalityPlan(planTemporalityReconciliation(targetRecordList, daoService.search(recordFilter)), daoService);
+    }
+
+
+    /**
+     * Plans the reconciliation of a timeline with a target timeline without any access to a dao service, see
+     * {@link #reconcileTemporalityRecords(ITemporalityRecord, List, IDAOService)}. The deletes are planned first, then the
+     * updates and the creates. The default implementation can not plan and throws an {@link UnsupportedOperationException}.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param targetRecordList the complete target timeline, the records must not overlap.
+     * @param existingRecordList the existing records of the data key.
+     * @return the plan
+     * @throws IllegalArgumentException in case a target record has no validity or overlaps an other target record.
+     * @throws UnsupportedOperationException in case the temporality handler does not implement the planning.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> TemporalityPlan<R> planTemporalityReconciliation(List<R> targetRecordList, List<R> existingRecordList) {
+        throw new UnsupportedOperationException("The temporality handler " + getClass().getName() + " does not implement planTemporalityReconciliation!");
+    }
+
+
+    /**
+     * Imports a stream of temporality records which is ordered by the data key and the valid from in a single pass. The timeline
+     * of each data key is read once by {@link IDAOService#search(Object)} and the records are merged into it with the same result
+     * as writing them one after the other. The operations are passed to the dao service incrementally, only the existing timeline
+     * of the current data key and the records which can still be affected are kept in memory. The records need a valid from
+     * and a valid till. The dao service has to set the primary key of a created record, otherwise the affected records are
+     * read again. The data keys must not be written concurrently during the import. The default implementation writes the
+     * records one after the other.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordIterator the records ordered by the data key and the valid from.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     * @throws IllegalArgumentException in case a record has no validity or the records of a data key are not ordered by
+     *         the valid from, the records before are already imported.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> long importTemporalityRecords(Iterator<R> recordIterator, IDAOService<R> daoService) {
+        long result = 0;
+        while (recordIterator.hasNext()) {
+            result += writeTemporlityRecord(recordIterator.next(), daoService);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Imports a stream of temporality records which is ordered by the data key and the valid from in a single pass, see
+     * {@link #importTemporalityRecords(Iterator, IDAOService)}. The stream is consumed sequentially and not closed.
+     *
+     * @param <R> the generic record type.
+     * @param <K> the generic primary type.
+     * @param <D> the generic data key type.
+     * @param recordStream the records ordered by the data key and the valid from.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     */
+    default <R extends ITemporalityRecord<R, K, D>, K, D> long importTemporalityRecords(Stream<R> recordStream, IDAOService<R> daoService) {
+        return importTemporalityRecords(recordStream.iterator(), daoService);
+    }
 }
@@ -0,0 +1,63 @@
+/*
+ * ITemporalityMetricsListener.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the metrics listener of the temporality handler. The methods are called synchronously on the writing thread,
+ * an implementation has to be thread safe and cheap. All methods have an empty default implementation.
+ *
+ * @see com.github.toolarium.temporality.handler.metrics.TemporalityMetrics
+ */
+public interface ITemporalityMetricsListener {
+    /** The listener which ignores all events */
+    ITemporalityMetricsListener NO_OP = new ITemporalityMetricsListener() {
+    };
+
+
+    /**
+     * Called for each existing record which is checked and for the new record (Case NEW) when the planned operations are
+     * executed. A plan which is not executed, e.g. after a conflict of an {@link IVersionedDAOService}, is not counted.
+     *
+     * @param temporalityCase the temporality case
+     */
+    default void onTemporalityCase(TemporalityCase temporalityCase) {
+        // NOP
+    }
+
+
+    /**
+     * Called after a call of the dao service.
+     *
+     * @param operation the operation
+     * @param durationNanos the duration in nanoseconds
+     */
+    default void onDAOCall(TemporalityDAOOperation operation, long durationNanos) {
+        // NOP
+    }
+
+
+    /**
+     * Called if a call of the dao service failed. The handler ignores the exception, the record is not counted as written.
+     *
+     * @param operation the operation
+     * @param e the exception
+     */
+    default void onDAOException(TemporalityDAOOperation operation, RuntimeException e) {
+        // NOP
+    }
+
+
+    /**
+     * Called after a write of one or more temporality records.
+     *
+     * @param numberOfRecords the number of records to write
+     * @param numberOfDAOCalls the number of calls of the dao service (round trips)
+     */
+    default void onTemporalityWrite(int numberOfRecords, int numberOfDAOCalls) {
+        // NOP
+    }
+}
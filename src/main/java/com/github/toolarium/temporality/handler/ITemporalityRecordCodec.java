@@ -0,0 +1,35 @@
+/*
+ * ITemporalityRecordCodec.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * Defines the codec of a record which is stored in a binary format, e.g. by the MappedFileDAOService. The primary key,
+ * the data key and the validity must be part of the encoded record.
+ *
+ * @param <R> the generic record type.
+ */
+public interface ITemporalityRecordCodec<R> {
+    /**
+     * Encode a record
+     *
+     * @param record the record
+     * @return the encoded record
+     */
+    byte[] encode(R record);
+
+
+    /**
+     * Decode a record. The buffer is a read-only view of the stored bytes, it contains exactly the encoded record and
+     * must not be kept after the call.
+     *
+     * @param buffer the buffer
+     * @return the decoded record
+     */
+    R decode(ByteBuffer buffer);
+}
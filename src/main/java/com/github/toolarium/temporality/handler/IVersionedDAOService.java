@@ -0,0 +1,42 @@
+/*
+ * IVersionedDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.util.List;
+
+
+/**
+ * Defines an optional extension of the {@link IDAOService} for optimistic concurrency control. The timeline of a data key
+ * has a version which changes on each change. The temporality handler reads the timeline together with its version and
+ * writes all operations of a record only if the version is still the same. In case of a conflict the write is planned
+ * again on the current timeline. Writers of the same data key on different nodes need no lock.
+ *
+ * @param <R> the generic record type.
+ */
+public interface IVersionedDAOService<R> extends IDAOService<R> {
+    /**
+     * Search the records of a data key together with the version of the timeline
+     *
+     * @param recordFilter the record filter, the data key defines the timeline
+     * @param validFrom the valid from of the period or null to read all records
+     * @param validTill the valid till of the period or null to read all records
+     * @return the snapshot of the records which overlap or touch the period
+     */
+    TemporalitySnapshot<R> searchSnapshot(R recordFilter, Instant validFrom, Instant validTill);
+
+
+    /**
+     * Apply the operations of one data key in the given order, a {@link TemporalityActionType#DELETE} deletes the record.
+     * The operations are applied atomically and only if the timeline still has the expected version, otherwise nothing
+     * is changed.
+     *
+     * @param operationList the operations of one data key
+     * @param expectedVersion the version of the snapshot the operations are planned on
+     * @throws TemporalityConflictException in case the version of the timeline has changed
+     */
+    void writeAll(List<TemporalityOperation<R>> operationList, Object expectedVersion) throws TemporalityConflictException;
+}
@@ -0,0 +1,57 @@
+/*
+ * IWriteBehindTemporalityWriter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the write-behind temporality writer of a dao service. The written records are buffered per data key and flushed
+ * asynchronously after a flush window or as soon as the buffer of a data key is full. The buffered records of a data key
+ * are folded into one net plan, a version which is superseded by a later record of the same flush is never written.
+ * The result is the same as writing the records one after the other. A buffered record is not visible to the dao service
+ * until it is flushed.
+ *
+ * @param <R> the generic record type.
+ */
+public interface IWriteBehindTemporalityWriter<R> extends AutoCloseable {
+
+    /**
+     * Buffers a temporality record. The record is copied, a later change of the record has no effect.
+     *
+     * @param record the record to write, it needs a valid from before the valid till.
+     * @throws IllegalArgumentException in case the record has no valid period
+     * @throws IllegalStateException in case the writer is closed
+     */
+    void writeTemporalityRecord(R record);
+
+
+    /**
+     * Flushes the buffered records of all data keys and waits until they are written. The records of a data key which can
+     * not be written stay buffered, the other data keys are flushed anyway.
+     *
+     * @return the number of updated records.
+     * @throws RuntimeException the failure of the first data key which could not be written.
+     */
+    int flush();
+
+
+    /**
+     * Get the number of buffered records which are not written yet.
+     *
+     * @return the number of buffered records.
+     */
+    int getNumberOfPendingRecords();
+
+
+    /**
+     * Flushes the buffered records and stops the writer, a later write is rejected. The records which can not be written
+     * are lost unless there is a write-ahead log, which keeps them for the next start.
+     *
+     * @throws RuntimeException the failure of the first data key which could not be written.
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    void close();
+}
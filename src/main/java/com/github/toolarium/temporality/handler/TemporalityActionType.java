@@ -17,5 +17,8 @@ public enum TemporalityActionType {
     UPDATE,
 
     /** TERMINATE */
-    TERMINATE;
+    TERMINATE,
+
+    /** DELETE: only used by planned operations, the record is passed to {@link IDAOService#delete(Object)} */
+    DELETE;
 }
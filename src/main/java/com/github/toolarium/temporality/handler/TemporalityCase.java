@@ -0,0 +1,78 @@
+/*
+ * TemporalityCase.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the temporality cases of the temporality handler.
+ *
+ * <code>
+ * {@code
+ * Case A: 1) <--(A)-->
+ *         2) <--(A)-->
+ *
+ * Case B: 1) <--(A)-->
+ *         2) <--(A)--> <--(B)-->
+ *
+ * Case C: 1)           <--(A)-->
+ *         2) <--(B)--> <--(A)-->
+ *
+ * Case D: 1) <--(A)----->
+ *         2) <--(A)--><--(B)-->
+ *
+ * Case E: 1)       <------(A)-->
+ *         2) <--(B)--><---(A)-->
+ *
+ * Case F: 1) <------(A)-------->
+ *         2) <-(A)-><-(B)-><(A)>
+ *
+ * Case G: 1) <-(A)-><-(B)-><-C->
+ *         2) <-------(D)------->
+ *
+ * Case H: 1) <---(A)--->
+ *         2) <---(A)-->
+ *
+ * Case E1: 1)      <------(A)-->
+ *          2)     <---(B)------>
+ * }</code>
+ */
+public enum TemporalityCase {
+    /** The new record is identical to an existing record */
+    A,
+
+    /** The existing record ends before the new record */
+    B,
+
+    /** The existing record starts after the new record */
+    C,
+
+    /** The existing record is terminated at the start of the new record */
+    D,
+
+    /** The existing record starts at the end of the new record */
+    E,
+
+    /** The existing record is replaced by the new record with the same valid till */
+    E1,
+
+    /** The existing record is split by the new record */
+    F,
+
+    /** The existing record is covered by the new record and deleted */
+    G,
+
+    /** The existing record is replaced by the new record with the same valid from */
+    H,
+
+    /** The new record is written */
+    NEW,
+
+    /** Contiguous records with the same payload are merged into one record */
+    COMPACT,
+
+    /** The timeline is reconciled with a target timeline */
+    RECONCILE;
+}
@@ -0,0 +1,142 @@
+/*
+ * TemporalityChangeEvent.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.Objects;
+
+
+/**
+ * Defines a change of a timeline which was accepted by the dao service: the action type, the temporality case, the record
+ * before and after the change and the data key. The record before is empty in case a new record is written, the record
+ * after is empty in case a record is deleted. The records are copies, they are not changed by later writes.
+ *
+ * @param <R> the generic record type.
+ */
+public final class TemporalityChangeEvent<R> {
+    private final TemporalityActionType temporalityActionType;
+    private final TemporalityCase temporalityCase;
+    private final R before;
+    private final R after;
+    private final Object dataKey;
+
+
+    /**
+     * Constructor for TemporalityChangeEvent
+     *
+     * @param temporalityActionType the temporality action type
+     * @param temporalityCase the temporality case or null
+     * @param before the record before the change or null in case a new record is written
+     * @param after the record after the change or null in case a record is deleted
+     * @param dataKey the data key
+     */
+    public TemporalityChangeEvent(TemporalityActionType temporalityActionType, TemporalityCase temporalityCase, R before, R after, Object dataKey) {
+        this.temporalityActionType = temporalityActionType;
+        this.temporalityCase = temporalityCase;
+        this.before = before;
+        this.after = after;
+        this.dataKey = dataKey;
+    }
+
+
+    /**
+     * Get the temporality action type
+     *
+     * @return the temporality action type
+     */
+    public TemporalityActionType getTemporalityActionType() {
+        return temporalityActionType;
+    }
+
+
+    /**
+     * Get the temporality case
+     *
+     * @return the temporality case or null
+     */
+    public TemporalityCase getTemporalityCase() {
+        return temporalityCase;
+    }
+
+
+    /**
+     * Get the record before the change
+     *
+     * @return the record before the change or null in case a new record is written
+     */
+    public R getBefore() {
+        return before;
+    }
+
+
+    /**
+     * Get the record after the change
+     *
+     * @return the record after the change or null in case a record is deleted
+     */
+    public R getAfter() {
+        return after;
+    }
+
+
+    /**
+     * Get the data key
+     *
+     * @return the data key
+     */
+    public Object getDataKey() {
+        return dataKey;
+    }
+
+
+    /**
+     * Check if it is a delete
+     *
+     * @return true if the record is deleted
+     */
+    public boolean isDelete() {
+        return temporalityActionType == TemporalityActionType.DELETE;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(temporalityActionType, temporalityCase, before, after, dataKey);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        @SuppressWarnings("rawtypes")
+        TemporalityChangeEvent other = (TemporalityChangeEvent) obj;
+        return temporalityActionType == other.temporalityActionType && temporalityCase == other.temporalityCase
+               && Objects.equals(before, other.before) && Objects.equals(after, other.after) && Objects.equals(dataKey, other.dataKey);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalityChangeEvent [temporalityActionType=" + temporalityActionType + ", temporalityCase=" + temporalityCase + ", before=" + before + ", after=" + after + ", dataKey=" + dataKey + "]";
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * TemporalityConflictException.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the exception of a conditional write of an {@link IVersionedDAOService}: the timeline of the data key was changed
+ * since it was read.
+ */
+public class TemporalityConflictException extends RuntimeException {
+    private static final long serialVersionUID = 6318407519632054923L;
+    private final transient Object dataKey;
+    private final transient Object expectedVersion;
+    private final transient Object currentVersion;
+
+
+    /**
+     * Constructor for TemporalityConflictException
+     *
+     * @param dataKey the data key
+     * @param expectedVersion the expected version of the timeline
+     * @param currentVersion the current version of the timeline
+     */
+    public TemporalityConflictException(Object dataKey, Object expectedVersion, Object currentVersion) {
+        super("Conflict on data key " + dataKey + ", the version of the timeline is " + currentVersion + " instead of " + expectedVersion + "!");
+        this.dataKey = dataKey;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+
+    /**
+     * Get the data key
+     *
+     * @return the data key
+     */
+    public Object getDataKey() {
+        return dataKey;
+    }
+
+
+    /**
+     * Get the expected version of the timeline
+     *
+     * @return the expected version
+     */
+    public Object getExpectedVersion() {
+        return expectedVersion;
+    }
+
+
+    /**
+     * Get the current version of the timeline
+     *
+     * @return the current version or null if it is not known
+     */
+    public Object getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * TemporalityDAOOperation.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines the operations of the dao service which are measured by the {@link ITemporalityMetricsListener}.
+ */
+public enum TemporalityDAOOperation {
+    /** SEARCH: {@link IDAOService#search(Object)}, {@link IDAOService#searchOverlapping(Object, java.time.Instant, java.time.Instant)} or {@link IVersionedDAOService#searchSnapshot(Object, java.time.Instant, java.time.Instant)} */
+    SEARCH,
+
+    /** WRITE: {@link IDAOService#write(TemporalityActionType, Object)} */
+    WRITE,
+
+    /** DELETE: {@link IDAOService#delete(Object)} */
+    DELETE,
+
+    /** WRITE_ALL: {@link IBatchDAOService#writeAll(java.util.List)} */
+    WRITE_ALL,
+
+    /** DELETE_ALL: {@link IBatchDAOService#deleteAll(java.util.List)} */
+    DELETE_ALL,
+
+    /** APPLY_ALL: {@link IBatchDAOService#apply(java.util.List, java.util.List)} */
+    APPLY_ALL,
+
+    /** WRITE_VERSIONED: {@link IVersionedDAOService#writeAll(java.util.List, Object)} */
+    WRITE_VERSIONED;
+}
@@ -0,0 +1,218 @@
+/*
+ * TemporalityHandlerBuilder.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import com.github.toolarium.temporality.handler.impl.AsyncTemporalityHandlerImpl;
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import java.time.Duration;
+import java.time.Instant;
+
+
+/**
+ * Builds a temporality handler. The built handler is immutable and thread safe, it can be shared by all threads and used
+ * on any executor. The builder itself is not thread safe.
+ */
+public final class TemporalityHandlerBuilder {
+    private ITemporalityMetricsListener metricsListener;
+    private boolean compactOnWrite;
+    private boolean batchWrite;
+    private boolean timelineCache;
+    private TemporalitySortContract sortContract;
+    private Instant maxInstant;
+    private int conflictRetries;
+    private Duration conflictBackoff;
+    private ITemporalityChangeListener changeListener;
+
+
+    /**
+     * Constructor for TemporalityHandlerBuilder
+     */
+    public TemporalityHandlerBuilder() {
+        metricsListener = ITemporalityMetricsListener.NO_OP;
+        compactOnWrite = false;
+        batchWrite = true;
+        timelineCache = true;
+        sortContract = TemporalitySortContract.DAO_SERVICE;
+        maxInstant = Instant.MAX;
+        conflictRetries = TemporalityHandlerImpl.DEFAULT_CONFLICT_RETRIES;
+        conflictBackoff = TemporalityHandlerImpl.DEFAULT_CONFLICT_BACKOFF;
+        changeListener = ITemporalityChangeListener.NO_OP;
+    }
+
+
+    /**
+     * Set the metrics listener, by default the metrics are disabled
+     *
+     * @param metricsListener the metrics listener or null to disable the metrics
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder metricsListener(ITemporalityMetricsListener metricsListener) {
+        if (metricsListener == null) {
+            this.metricsListener = ITemporalityMetricsListener.NO_OP;
+        } else {
+            this.metricsListener = metricsListener;
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Set if a written record is merged with the contiguous records of the same payload, by default it is disabled
+     *
+     * @param compactOnWrite true to compact on write
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder compactOnWrite(boolean compactOnWrite) {
+        this.compactOnWrite = compactOnWrite;
+        return this;
+    }
+
+
+    /**
+     * Set if the operations of a write are flushed at once in case of an {@link IBatchDAOService}, by default it is enabled.
+     * If it is disabled, an {@link IBatchDAOService} is called record by record.
+     *
+     * @param batchWrite true to use the batch write
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder batchWrite(boolean batchWrite) {
+        this.batchWrite = batchWrite;
+        return this;
+    }
+
+
+    /**
+     * Set if a bulk write reads the timeline of a data key once and keeps it in memory for all records of the data key,
+     * by default it is enabled. If it is disabled, the timeline is read for each record.
+     *
+     * @param timelineCache true to keep the timeline of a data key in memory during a bulk write
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder timelineCache(boolean timelineCache) {
+        this.timelineCache = timelineCache;
+        return this;
+    }
+
+
+    /**
+     * Set how the order of the records returned by a dao service is treated, by default the order is defined by the
+     * dao service
+     *
+     * @param sortContract the sort contract
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder sortContract(TemporalitySortContract sortContract) {
+        if (sortContract == null) {
+            throw new IllegalArgumentException("Invalid sort contract!");
+        }
+
+        this.sortContract = sortContract;
+        return this;
+    }
+
+
+    /**
+     * Set the sentinel of the valid till which stands for an unlimited validity, by default it is {@link Instant#MAX}.
+     * An existing record which starts later and is valid till the sentinel as well is kept
+     * unchanged by a record which is valid till the sentinel (Case E).
+     *
+     * @param maxInstant the sentinel of the unlimited validity
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder maxInstant(Instant maxInstant) {
+        if (maxInstant == null) {
+            throw new IllegalArgumentException("Invalid max instant!");
+        }
+
+        this.maxInstant = maxInstant;
+        return this;
+    }
+
+
+    /**
+     * Set the number of retries of a write in case of a conflict of an {@link IVersionedDAOService}, by default
+     * {@link TemporalityHandlerImpl#DEFAULT_CONFLICT_RETRIES}. The write is planned again on the current timeline, after
+     * the last retry the {@link TemporalityConflictException} is thrown.
+     *
+     * @param conflictRetries the number of retries
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder conflictRetries(int conflictRetries) {
+        if (conflictRetries < 0) {
+            throw new IllegalArgumentException("Invalid number of conflict retries: " + conflictRetries);
+        }
+
+        this.conflictRetries = conflictRetries;
+        return this;
+    }
+
+
+    /**
+     * Set the backoff of the first retry in case of a conflict, by default {@link TemporalityHandlerImpl#DEFAULT_CONFLICT_BACKOFF}.
+     * It is doubled on each retry up to {@link TemporalityHandlerImpl#MAX_CONFLICT_BACKOFF}.
+     *
+     * @param conflictBackoff the backoff
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder conflictBackoff(Duration conflictBackoff) {
+        if (conflictBackoff == null || conflictBackoff.isNegative()) {
+            throw new IllegalArgumentException("Invalid conflict backoff: " + conflictBackoff);
+        }
+
+        this.conflictBackoff = conflictBackoff;
+        return this;
+    }
+
+
+    /**
+     * Set the change listener which gets each change accepted by the dao service, by default the change events are disabled
+     *
+     * @param changeListener the change listener or null to disable the change events
+     * @return the builder
+     * @see com.github.toolarium.temporality.handler.event.TemporalityChangePublisher
+     */
+    public TemporalityHandlerBuilder changeListener(ITemporalityChangeListener changeListener) {
+        if (changeListener == null) {
+            this.changeListener = ITemporalityChangeListener.NO_OP;
+        } else {
+            this.changeListener = changeListener;
+        }
+
+        return this;
+    }
+
+
+    /**
+     * Build the temporality handler
+     *
+     * @return the temporality handler
+     */
+    public ITemporalityHandler build() {
+        return createTemporalityHandler();
+    }
+
+
+    /**
+     * Build the asynchronous temporality handler, its writes are planned with the options of this builder. The batch write,
+     * the timeline cache and the conflict retries don't apply to a single asynchronous write.
+     *
+     * @return the asynchronous temporality handler
+     */
+    public IAsyncTemporalityHandler buildAsync() {
+        return new AsyncTemporalityHandlerImpl(createTemporalityHandler());
+    }
+
+
+    /**
+     * Create the temporality handler
+     *
+     * @return the temporality handler
+     */
+    private TemporalityHandlerImpl createTemporalityHandler() {
+        return new TemporalityHandlerImpl(metricsListener, compactOnWrite, batchWrite, timelineCache, sortContract, maxInstant, conflictRetries, conflictBackoff, changeListener);
+    }
+}
@@ -5,21 +5,32 @@
  */
 package com.github.toolarium.temporality.handler;
 
+import com.github.toolarium.temporality.handler.impl.AsyncTemporalityHandlerImpl;
+import com.github.toolarium.temporality.handler.impl.ParallelTemporalityWriterImpl;
 import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Defines the temporality handler factory.
+ * Defines the temporality handler factory. The factory keeps one shared temporality handler with the default options which
+ * is immutable and thread safe. The shared asynchronous temporality handler plans its writes with the shared temporality
+ * handler. A handler with other options, e.g. a metrics listener or the compaction on write, is built by the
+ * {@link TemporalityHandlerBuilder} and kept by its user.
  */
 public final class TemporalityHandlerFactory {
-    private static TemporalityHandlerFactory instance;
-    private static final ThreadLocal<ITemporalityHandler> threadLocal = new ThreadLocal<ITemporalityHandler>();
+    private static final TemporalityHandlerFactory instance = new TemporalityHandlerFactory();
+    private final ITemporalityHandler temporalityHandler;
+    private final IAsyncTemporalityHandler asyncTemporalityHandler;
+    private final IParallelTemporalityWriter parallelTemporalityWriter;
 
 
     /**
      * Constructor
      */
     private TemporalityHandlerFactory() {
-        // NOP
+        TemporalityHandlerImpl handler = new TemporalityHandlerImpl();
+        temporalityHandler = handler;
+        asyncTemporalityHandler = new AsyncTemporalityHandlerImpl(handler);
+        parallelTemporalityWriter = new ParallelTemporalityWriterImpl(handler, ForkJoinPool.commonPool(), ParallelTemporalityWriterImpl.DEFAULT_NUMBER_OF_LOCKS);
     }
 
 
@@ -29,26 +40,48 @@ public final class TemporalityHandlerFactory {
      * @return the instance
      */
     public static TemporalityHandlerFactory getInstance() {
-        if (instance == null) {
-            instance = new TemporalityHandlerFactory();
-        }
-
         return instance;
     }
 
 
     /**
-     * Get the temporality handler
+     * Get the shared temporality handler. It is immutable and thread safe, it can be kept and used by any thread.
      *
      * @return the temporality handler
      */
     public ITemporalityHandler getTemporalityHandler() {
-        ITemporalityHandler temporalityHandler = threadLocal.get();
-        if (temporalityHandler == null) {
-            temporalityHandler = new TemporalityHandlerImpl();
-            threadLocal.set(temporalityHandler);
-        }
-
         return temporalityHandler;
     }
+
+
+    /**
+     * Get a new builder of a temporality handler with the default options
+     *
+     * @return the builder
+     */
+    public TemporalityHandlerBuilder builder() {
+        return new TemporalityHandlerBuilder();
+    }
+
+
+    /**
+     * Get the asynchronous temporality handler. It is thread safe and shared, the writes of the same data key are
+     * executed in the order of the calls. Its writes are planned with the options of the shared temporality handler.
+     *
+     * @return the asynchronous temporality handler
+     */
+    public IAsyncTemporalityHandler getAsyncTemporalityHandler() {
+        return asyncTemporalityHandler;
+    }
+
+
+    /**
+     * Get the parallel temporality writer. It is thread safe and shared, a data key is written by only one thread
+     * at a time. It writes with the shared temporality handler.
+     *
+     * @return the parallel temporality writer
+     */
+    public IParallelTemporalityWriter getParallelTemporalityWriter() {
+        return parallelTemporalityWriter;
+    }
 }
@@ -0,0 +1,139 @@
+/*
+ * TemporalityOperation.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.Objects;
+
+
+/**
+ * Defines a temporality operation: the action type and the record to write or delete. A planned operation additionally
+ * contains the temporality case and the existing record which is changed or deleted by the operation.
+ *
+ * @param <R> the generic record type.
+ */
+public final class TemporalityOperation<R> {
+    private final TemporalityCase temporalityCase;
+    private final TemporalityActionType temporalityActionType;
+    private final R record;
+    private final R existingRecord;
+
+
+    /**
+     * Constructor for TemporalityOperation
+     *
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     */
+    public TemporalityOperation(TemporalityActionType temporalityActionType, R record) {
+        this(null, temporalityActionType, record, null);
+    }
+
+
+    /**
+     * Constructor for TemporalityOperation
+     *
+     * @param temporalityCase the temporality case
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     * @param existingRecord the existing record which is changed or deleted, null in case a new record is written
+     */
+    public TemporalityOperation(TemporalityCase temporalityCase, TemporalityActionType temporalityActionType, R record, R existingRecord) {
+        this.temporalityCase = temporalityCase;
+        this.temporalityActionType = temporalityActionType;
+        this.record = record;
+        this.existingRecord = existingRecord;
+    }
+
+
+    /**
+     * Get the temporality case
+     *
+     * @return the temporality case or null
+     */
+    public TemporalityCase getTemporalityCase() {
+        return temporalityCase;
+    }
+
+
+    /**
+     * Get the temporality action type
+     *
+     * @return the temporality action type
+     */
+    public TemporalityActionType getTemporalityActionType() {
+        return temporalityActionType;
+    }
+
+
+    /**
+     * Get the record
+     *
+     * @return the record
+     */
+    public R getRecord() {
+        return record;
+    }
+
+
+    /**
+     * Get the existing record which is changed or deleted by this operation
+     *
+     * @return the existing record or null in case a new record is written
+     */
+    public R getExistingRecord() {
+        return existingRecord;
+    }
+
+
+    /**
+     * Check if it is a delete operation
+     *
+     * @return true if the record is deleted
+     */
+    public boolean isDelete() {
+        return temporalityActionType == TemporalityActionType.DELETE;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(temporalityCase, temporalityActionType, record, existingRecord);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        @SuppressWarnings("rawtypes")
+        TemporalityOperation other = (TemporalityOperation) obj;
+        return temporalityCase == other.temporalityCase && temporalityActionType == other.temporalityActionType
+               && Objects.equals(record, other.record) && Objects.equals(existingRecord, other.existingRecord);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalityOperation [temporalityCase=" + temporalityCase + ", temporalityActionType=" + temporalityActionType + ", record=" + record + ", existingRecord=" + existingRecord + "]";
+    }
+}
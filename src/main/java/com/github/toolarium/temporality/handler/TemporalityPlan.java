@@ -0,0 +1,188 @@
+/*
+ * TemporalityPlan.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+
+/**
+ * Defines an immutable plan of a temporality write: the ordered list of operations to apply to the dao service.
+ * A plan is computed without any access to the dao service and can be executed later, e.g. together with other plans.
+ * The plan contains the temporality cases of the planning, they are passed to the metrics listener when the plan is
+ * executed and not when it is planned.
+ *
+ * @param <R> the generic record type.
+ */
+public final class TemporalityPlan<R> {
+    private final List<TemporalityOperation<R>> operationList;
+    private final List<TemporalityCase> caseList;
+
+
+    /**
+     * Constructor for TemporalityPlan, the temporality cases are the cases of the operations
+     *
+     * @param operationList the operations
+     */
+    public TemporalityPlan(List<TemporalityOperation<R>> operationList) {
+        this(operationList, toCaseList(operationList));
+    }
+
+
+    /**
+     * Constructor for TemporalityPlan
+     *
+     * @param operationList the operations
+     * @param caseList the temporality cases of the planning, e.g. also of the checked records without an operation
+     */
+    public TemporalityPlan(List<TemporalityOperation<R>> operationList, List<TemporalityCase> caseList) {
+        if (operationList == null || operationList.isEmpty()) {
+            this.operationList = Collections.emptyList();
+        } else {
+            this.operationList = Collections.unmodifiableList(new ArrayList<TemporalityOperation<R>>(operationList));
+        }
+
+        if (caseList == null || caseList.isEmpty()) {
+            this.caseList = Collections.emptyList();
+        } else {
+            this.caseList = Collections.unmodifiableList(new ArrayList<TemporalityCase>(caseList));
+        }
+    }
+
+
+    /**
+     * Create an empty plan
+     *
+     * @param <R> the generic record type.
+     * @return the empty plan
+     */
+    public static <R> TemporalityPlan<R> empty() {
+        return new TemporalityPlan<R>(null);
+    }
+
+
+    /**
+     * Merge plans, the operations are kept in the given order
+     *
+     * @param <R> the generic record type.
+     * @param planList the plans
+     * @return the merged plan
+     */
+    public static <R> TemporalityPlan<R> merge(List<TemporalityPlan<R>> planList) {
+        List<TemporalityOperation<R>> operationList = new ArrayList<TemporalityOperation<R>>();
+        List<TemporalityCase> caseList = new ArrayList<TemporalityCase>();
+        if (planList != null) {
+            for (TemporalityPlan<R> plan : planList) {
+                operationList.addAll(plan.getOperationList());
+                caseList.addAll(plan.getCaseList());
+            }
+        }
+
+        return new TemporalityPlan<R>(operationList, caseList);
+    }
+
+
+    /**
+     * Get the operations
+     *
+     * @return the unmodifiable list of operations
+     */
+    public List<TemporalityOperation<R>> getOperationList() {
+        return operationList;
+    }
+
+
+    /**
+     * Get the temporality cases of the planning: the case of each checked record, of the new record and of each merge.
+     *
+     * @return the unmodifiable list of temporality cases
+     */
+    public List<TemporalityCase> getCaseList() {
+        return caseList;
+    }
+
+
+    /**
+     * Get the number of operations
+     *
+     * @return the number of operations
+     */
+    public int size() {
+        return operationList.size();
+    }
+
+
+    /**
+     * Check if the plan is empty
+     *
+     * @return true if there are no operations
+     */
+    public boolean isEmpty() {
+        return operationList.isEmpty();
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(operationList, caseList);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        @SuppressWarnings("rawtypes")
+        TemporalityPlan other = (TemporalityPlan) obj;
+        return operationList.equals(other.operationList) && caseList.equals(other.caseList);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalityPlan [operationList=" + operationList + ", caseList=" + caseList + "]";
+    }
+
+
+    /**
+     * Get the temporality cases of operations
+     *
+     * @param <R> the generic record type.
+     * @param operationList the operations
+     * @return the temporality cases
+     */
+    private static <R> List<TemporalityCase> toCaseList(List<TemporalityOperation<R>> operationList) {
+        List<TemporalityCase> result = new ArrayList<TemporalityCase>();
+        if (operationList != null) {
+            for (TemporalityOperation<R> operation : operationList) {
+                if (operation.getTemporalityCase() != null) {
+                    result.add(operation.getTemporalityCase());
+                }
+            }
+        }
+
+        return result;
+    }
+}
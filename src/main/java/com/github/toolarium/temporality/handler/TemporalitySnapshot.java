@@ -0,0 +1,68 @@
+/*
+ * TemporalitySnapshot.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Defines an immutable snapshot of the timeline of a data key which is returned by an {@link IVersionedDAOService}: the
+ * records and the version of the timeline at the time of the search. The version can be any value which changes on each
+ * change of the timeline, e.g. a sequence number or an etag.
+ *
+ * @param <R> the generic record type.
+ */
+public final class TemporalitySnapshot<R> {
+    private final List<R> recordList;
+    private final Object version;
+
+
+    /**
+     * Constructor for TemporalitySnapshot
+     *
+     * @param recordList the records or null if there are no records
+     * @param version the version of the timeline
+     */
+    public TemporalitySnapshot(List<R> recordList, Object version) {
+        if (recordList == null) {
+            this.recordList = Collections.emptyList();
+        } else {
+            this.recordList = recordList;
+        }
+
+        this.version = version;
+    }
+
+
+    /**
+     * Get the records
+     *
+     * @return the records
+     */
+    public List<R> getRecordList() {
+        return recordList;
+    }
+
+
+    /**
+     * Get the version of the timeline
+     *
+     * @return the version
+     */
+    public Object getVersion() {
+        return version;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalitySnapshot [version=" + version + ", recordList=" + recordList + "]";
+    }
+}
@@ -0,0 +1,21 @@
+/*
+ * TemporalitySortContract.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+
+/**
+ * Defines how a temporality handler treats the order of the records returned by a dao service.
+ */
+public enum TemporalitySortContract {
+    /** DAO_SERVICE: the order is defined by {@link IDAOService#isSortedByValidFrom()} of each dao service */
+    DAO_SERVICE,
+
+    /** SORTED: the records of all dao services are ordered by the valid from and the valid till, a timeline is searched by binary search */
+    SORTED,
+
+    /** UNSORTED: the records are never expected in order, all records of a timeline are checked */
+    UNSORTED;
+}
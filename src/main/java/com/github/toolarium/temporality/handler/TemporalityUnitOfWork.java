@@ -0,0 +1,469 @@
+/*
+ * TemporalityUnitOfWork.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a unit of work: a {@link IDAOService} which collects the operations of several writes of the temporality
+ * handler on an in-memory view of the affected timelines and writes the net result once on {@link #commit()}. The timeline
+ * of a data key is read once with {@link IDAOService#search(Object)} on the first access, all later searches of the data
+ * key and the writes of the temporality handler see the pending state. On commit the view of each data key is reconciled
+ * with the read timeline, which means operations of the same record cancel each other out or are merged: a created record
+ * which is terminated later is written once with the final validity and a created record which is deleted later is not
+ * written at all. A view with overlapping records, e.g. a record till the max instant which does not terminate a later record
+ * till the max instant, is written by the primary keys of its records instead. In case of a {@link IVersionedDAOService} the net operations of a data key are written conditionally on
+ * the version of the read timeline. In case several data keys are changed, the versions of all of them are checked before
+ * the first data key is written; a conflict which occurs after the check, e.g. by a concurrent commit, leaves the data
+ * keys before written.
+ *
+ * <p>A unit of work is used by one transaction and is not thread safe. The records of the view need a valid from and a
+ * valid till.</p>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public final class TemporalityUnitOfWork<R extends ITemporalityRecord<R, P, D>, P, D> implements IDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(TemporalityUnitOfWork.class);
+    private static final Comparator<ITemporalityRecord<?, ?, ?>> VALID_FROM_COMPARATOR =
+            Comparator.comparing((ITemporalityRecord<?, ?, ?> r) -> r.getValidFrom(), Comparator.nullsFirst(Comparator.<Instant>naturalOrder()));
+    private final ITemporalityHandler temporalityHandler;
+    private final IDAOService<R> daoService;
+    private final Map<D, Timeline<R>> timelineByDataKey;
+    private int numberOfPendingOperations;
+
+
+    /**
+     * Constructor for TemporalityUnitOfWork, the net operations are written by the temporality handler of the factory
+     *
+     * @param daoService the dao service
+     */
+    public TemporalityUnitOfWork(IDAOService<R> daoService) {
+        this(TemporalityHandlerFactory.getInstance().getTemporalityHandler(), daoService);
+    }
+
+
+    /**
+     * Constructor for TemporalityUnitOfWork
+     *
+     * @param temporalityHandler the temporality handler which plans and writes the net operations on commit
+     * @param daoService the dao service
+     */
+    public TemporalityUnitOfWork(ITemporalityHandler temporalityHandler, IDAOService<R> daoService) {
+        if (temporalityHandler == null) {
+            throw new IllegalArgumentException("Invalid temporality handler!");
+        }
+
+        if (daoService == null) {
+            throw new IllegalArgumentException("Invalid dao service!");
+        }
+
+        this.temporalityHandler = temporalityHandler;
+        this.daoService = daoService;
+        this.timelineByDataKey = new LinkedHashMap<D, Timeline<R>>();
+        this.numberOfPendingOperations = 0;
+    }
+
+
+    /**
+     * Apply the operations of a plan to the in-memory view, the temporality handler applies its plans instead of executing
+     * them on this dao service. An operation references the record of the view by the existing record, otherwise by the
+     * primary key.
+     *
+     * @param plan the plan
+     * @return the number of applied operations
+     */
+    public int apply(TemporalityPlan<R> plan) {
+        if (plan == null || plan.isEmpty()) {
+            return 0;
+        }
+
+        for (TemporalityOperation<R> operation : plan.getOperationList()) {
+            List<R> recordList = getTimeline(operation.getRecord()).recordList;
+            R record = operation.getRecord();
+            int index = indexOf(recordList, operation.getExistingRecord(), record);
+            if (operation.isDelete()) {
+                if (index >= 0) {
+                    recordList.remove(index);
+                }
+            } else if (index >= 0 && (index == 0 || VALID_FROM_COMPARATOR.compare(recordList.get(index - 1), record) <= 0)
+                       && (index == recordList.size() - 1 || VALID_FROM_COMPARATOR.compare(record, recordList.get(index + 1)) <= 0)) {
+                // the changed record keeps its position in the view
+                recordList.set(index, record);
+            } else {
+                if (index >= 0) {
+                    recordList.remove(index);
+                }
+
+                recordList.add(indexOfFirstLater(recordList, record), record);
+            }
+        }
+
+        numberOfPendingOperations += plan.size();
+        return plan.size();
+    }
+
+
+    /**
+     * Write the net operations of all data keys to the dao service, the unit of work is empty afterwards. The operations are
+     * planned as reconciliation of the read timeline with the view and executed by the temporality handler, a view with
+     * overlapping records is planned by the primary keys of its records.
+     *
+     * @return the number of written and deleted records
+     * @throws TemporalityConflictException in case the timeline of a {@link IVersionedDAOService} was changed since it was read.
+     *         In case the conflict is detected before the first data key is written, no data key is written.
+     */
+    public int commit() {
+        int result = 0;
+        try {
+            Map<D, TemporalityPlan<R>> planByDataKey = new LinkedHashMap<D, TemporalityPlan<R>>();
+            for (Map.Entry<D, Timeline<R>> e : timelineByDataKey.entrySet()) {
+                Timeline<R> timeline = e.getValue();
+                TemporalityPlan<R> plan;
+                if (hasOverlappingRecords(timeline.recordList)) {
+                    plan = planByPrimaryKey(timeline);
+                } else {
+                    plan = temporalityHandler.planTemporalityReconciliation(timeline.recordList, timeline.existingRecordList);
+                }
+
+                if (!plan.isEmpty()) {
+                    planByDataKey.put(e.getKey(), plan);
+                }
+            }
+
+            if (daoService instanceof IVersionedDAOService && planByDataKey.size() > 1) {
+                checkVersions((IVersionedDAOService<R>) daoService, planByDataKey.keySet());
+            }
+
+            for (Map.Entry<D, TemporalityPlan<R>> e : planByDataKey.entrySet()) {
+                TemporalityPlan<R> plan = e.getValue();
+                if (log.isDebugEnabled()) {
+                    log.debug("Commit " + plan.size() + " net operations of data key " + e.getKey() + ".");
+                }
+
+                if (daoService instanceof IVersionedDAOService) {
+                    result += temporalityHandler.executeTemporalityPlan(plan, (IVersionedDAOService<R>) daoService, timelineByDataKey.get(e.getKey()).version);
+                } else {
+                    result += temporalityHandler.executeTemporalityPlan(plan, daoService);
+                }
+            }
+        } finally {
+            rollback();
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Discard the pending operations and the read timelines
+     */
+    public void rollback() {
+        timelineByDataKey.clear();
+        numberOfPendingOperations = 0;
+    }
+
+
+    /**
+     * Get the number of operations which were applied to the view since the last commit or rollback
+     *
+     * @return the number of pending operations
+     */
+    public int getNumberOfPendingOperations() {
+        return numberOfPendingOperations;
+    }
+
+
+    /**
+     * Get the dao service
+     *
+     * @return the dao service
+     */
+    public IDAOService<R> getDAOService() {
+        return daoService;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        apply(new TemporalityPlan<R>(Collections.singletonList(new TemporalityOperation<R>(temporalityActionType, record))));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        apply(new TemporalityPlan<R>(Collections.singletonList(new TemporalityOperation<R>(null, TemporalityActionType.DELETE, record, record))));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        return new ArrayList<R>(getTimeline(recordFilter).recordList);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        List<R> result = new ArrayList<R>();
+        for (R record : getTimeline(recordFilter).recordList) {
+            if ((validTill == null || record.getValidFrom() == null || !record.getValidFrom().isAfter(validTill))
+                && (validFrom == null || record.getValidTill() == null || !record.getValidTill().isBefore(validFrom))) {
+                result.add(record);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return daoService.isSortedByValidFrom();
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalityUnitOfWork [dataKeys=" + timelineByDataKey.keySet() + ", numberOfPendingOperations=" + numberOfPendingOperations + "]";
+    }
+
+
+    /**
+     * Check that the timelines of the data keys were not changed since they were read
+     *
+     * @param versionedDAOService the versioned dao service
+     * @param dataKeys the data keys to check
+     * @throws TemporalityConflictException in case the version of a timeline has changed
+     */
+    private void checkVersions(IVersionedDAOService<R> versionedDAOService, Collection<D> dataKeys) {
+        for (D dataKey : dataKeys) {
+            Timeline<R> timeline = timelineByDataKey.get(dataKey);
+            Object currentVersion = versionedDAOService.searchSnapshot(timeline.recordFilter, null, null).getVersion();
+            if (!Objects.equals(timeline.version, currentVersion)) {
+                throw new TemporalityConflictException(dataKey, timeline.version, currentVersion);
+            }
+        }
+    }
+
+
+    /**
+     * Check if records of a view overlap
+     *
+     * @param recordList the records of the view ordered by the valid from
+     * @return true if a record overlaps a previous record
+     */
+    private boolean hasOverlappingRecords(List<R> recordList) {
+        Instant validTill = null;
+        for (R record : recordList) {
+            if (validTill != null && record.getValidFrom().isBefore(validTill)) {
+                return true;
+            }
+
+            if (validTill == null || record.getValidTill().isAfter(validTill)) {
+                validTill = record.getValidTill();
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Plan the net operations of a view by the primary keys of its records: a read record which is not in the view is
+     * deleted, a changed record with the primary key of a read record is updated and a record without it is created.
+     *
+     * @param timeline the read timeline and its view
+     * @return the plan
+     */
+    private TemporalityPlan<R> planByPrimaryKey(Timeline<R> timeline) {
+        Map<P, R> existingRecordByPrimaryKey = new LinkedHashMap<P, R>();
+        for (R existingRecord : timeline.existingRecordList) {
+            existingRecordByPrimaryKey.put(existingRecord.getPrimaryKey(), existingRecord);
+        }
+
+        List<TemporalityOperation<R>> updateList = new ArrayList<TemporalityOperation<R>>();
+        List<TemporalityOperation<R>> createList = new ArrayList<TemporalityOperation<R>>();
+        for (R record : timeline.recordList) {
+            R existingRecord = null;
+            if (record.getPrimaryKey() != null) {
+                existingRecord = existingRecordByPrimaryKey.remove(record.getPrimaryKey());
+            }
+
+            if (existingRecord == null) {
+                R entry = record.clone();
+                entry.setPrimaryKey(null);
+                createList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, TemporalityActionType.CREATE, entry, null));
+            } else if (existingRecord != record) {
+                updateList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, TemporalityActionType.UPDATE, record.clone(), existingRecord));
+            }
+        }
+
+        // the deletes first, then the updates and the creates
+        List<TemporalityOperation<R>> operationList = new ArrayList<TemporalityOperation<R>>();
+        for (R existingRecord : existingRecordByPrimaryKey.values()) {
+            operationList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, TemporalityActionType.DELETE, existingRecord, existingRecord));
+        }
+
+        operationList.addAll(updateList);
+        operationList.addAll(createList);
+        return new TemporalityPlan<R>(operationList);
+    }
+
+
+    /**
+     * Get the view of the data key of a record, the timeline is read on the first access
+     *
+     * @param record the record
+     * @return the view
+     */
+    private Timeline<R> getTimeline(R record) {
+        Timeline<R> timeline = timelineByDataKey.get(record.getDataKey());
+        if (timeline != null) {
+            return timeline;
+        }
+
+        List<R> existingRecordList;
+        Object version = null;
+        if (daoService instanceof IVersionedDAOService) {
+            TemporalitySnapshot<R> snapshot = ((IVersionedDAOService<R>) daoService).searchSnapshot(record, null, null);
+            existingRecordList = snapshot.getRecordList();
+            version = snapshot.getVersion();
+        } else {
+            existingRecordList = daoService.search(record);
+        }
+
+        if (existingRecordList == null) {
+            existingRecordList = new ArrayList<R>(0);
+        }
+
+        timeline = new Timeline<R>(record, existingRecordList, version);
+        timelineByDataKey.put(record.getDataKey(), timeline);
+        return timeline;
+    }
+
+
+    /**
+     * Get the index of the record of the view which is referenced by an operation
+     *
+     * @param recordList the records of the view
+     * @param existingRecord the existing record of the operation or null
+     * @param record the record of the operation
+     * @return the index or -1
+     */
+    private int indexOf(List<R> recordList, R existingRecord, R record) {
+        if (existingRecord != null) {
+            // the records with the valid from of the existing record are checked first
+            int index = indexOfFirstLater(recordList, existingRecord) - 1;
+            while (index >= 0 && VALID_FROM_COMPARATOR.compare(recordList.get(index), existingRecord) == 0) {
+                if (recordList.get(index) == existingRecord) {
+                    return index;
+                }
+
+                index--;
+            }
+
+            for (int i = 0; i < recordList.size(); i++) {
+                if (recordList.get(i) == existingRecord) {
+                    return i;
+                }
+            }
+        }
+
+        if (record.getPrimaryKey() == null) {
+            return -1;
+        }
+
+        for (int i = 0; i < recordList.size(); i++) {
+            if (Objects.equals(record.getPrimaryKey(), recordList.get(i).getPrimaryKey())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Get the index of the first record of the view with a later valid from than the record by a binary search
+     *
+     * @param recordList the records of the view ordered by the valid from
+     * @param record the record
+     * @return the index where the record is inserted
+     */
+    private int indexOfFirstLater(List<R> recordList, R record) {
+        int low = 0;
+        int high = recordList.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (VALID_FROM_COMPARATOR.compare(recordList.get(mid), record) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * The read timeline of a data key and its view
+     *
+     * @param <R> the generic record type.
+     */
+    private static final class Timeline<R extends ITemporalityRecord<R, ?, ?>> {
+        private final R recordFilter;
+        private final List<R> existingRecordList;
+        private final Object version;
+        private final List<R> recordList;
+
+
+        /**
+         * Constructor for Timeline
+         *
+         * @param recordFilter the record filter the timeline was read with
+         * @param existingRecordList the read records
+         * @param version the version of the read records or null
+         */
+        Timeline(R recordFilter, List<R> existingRecordList, Object version) {
+            this.recordFilter = recordFilter;
+            this.existingRecordList = existingRecordList;
+            this.version = version;
+            this.recordList = new ArrayList<R>(existingRecordList);
+            this.recordList.sort(VALID_FROM_COMPARATOR);
+        }
+    }
+}
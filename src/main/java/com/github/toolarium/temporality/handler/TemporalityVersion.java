@@ -0,0 +1,112 @@
+/*
+ * TemporalityVersion.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.Objects;
+
+
+/**
+ * Defines an immutable version of a record in an append-only store. Each change of a record is appended as new version
+ * with the same primary key: a version supersedes all previous versions of the primary key, a tombstone marks the record
+ * as deleted. The versions of a data key are resolved in the order they were appended.
+ *
+ * @param <R> the generic record type.
+ */
+public final class TemporalityVersion<R> {
+    private final TemporalityActionType temporalityActionType;
+    private final R record;
+
+
+    /**
+     * Constructor for TemporalityVersion
+     *
+     * @param temporalityActionType the temporality action type, {@link TemporalityActionType#DELETE} for a tombstone
+     * @param record the record, it must not be modified
+     */
+    public TemporalityVersion(TemporalityActionType temporalityActionType, R record) {
+        this.temporalityActionType = temporalityActionType;
+        this.record = record;
+    }
+
+
+    /**
+     * Get the temporality action type which created the version
+     *
+     * @return the temporality action type
+     */
+    public TemporalityActionType getTemporalityActionType() {
+        return temporalityActionType;
+    }
+
+
+    /**
+     * Get the record
+     *
+     * @return the record
+     */
+    public R getRecord() {
+        return record;
+    }
+
+
+    /**
+     * Check if the version supersedes a previous version of the same primary key
+     *
+     * @return true if it is not the first version of the record
+     */
+    public boolean isSupersedes() {
+        return temporalityActionType != TemporalityActionType.CREATE;
+    }
+
+
+    /**
+     * Check if the version is a tombstone, the record is deleted
+     *
+     * @return true if the record is deleted
+     */
+    public boolean isTombstone() {
+        return temporalityActionType == TemporalityActionType.DELETE;
+    }
+
+
+    /**
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(temporalityActionType, record);
+    }
+
+
+    /**
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+
+        @SuppressWarnings("rawtypes")
+        TemporalityVersion other = (TemporalityVersion) obj;
+        return temporalityActionType == other.temporalityActionType && Objects.equals(record, other.record);
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalityVersion [temporalityActionType=" + temporalityActionType + ", record=" + record + "]";
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * AppendOnlyDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IAppendOnlyDAOService;
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalityVersion;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements an {@link IBatchDAOService} on an {@link IAppendOnlyDAOService}: the writes (create, update and terminate) of the
+ * temporality handler are appended as new versions and a delete is appended as tombstone, an existing version is never
+ * changed. The operations of a batch are appended in one call. A search resolves the effective timeline from the versions,
+ * see {@link #resolve(List)}. A record without primary key gets a new primary key from the primary key generator, the primary
+ * key is set to the written record and a copy of the record is appended.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class AppendOnlyDAOService<R extends ITemporalityRecord<R, P, D>, P, D> implements IBatchDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(AppendOnlyDAOService.class);
+    private static final Comparator<ITemporalityRecord<?, ?, ?>> VALIDITY_COMPARATOR =
+            Comparator.comparing((ITemporalityRecord<?, ?, ?> r) -> r.getValidFrom(), Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                      .thenComparing(r -> r.getValidTill(), Comparator.nullsLast(Comparator.<Instant>naturalOrder()));
+    private IAppendOnlyDAOService<R> appendOnlyDAOService;
+    private Supplier<P> primaryKeyGenerator;
+
+
+    /**
+     * Constructor for AppendOnlyDAOService
+     *
+     * @param appendOnlyDAOService the append-only dao service
+     * @param primaryKeyGenerator the primary key generator
+     */
+    public AppendOnlyDAOService(IAppendOnlyDAOService<R> appendOnlyDAOService, Supplier<P> primaryKeyGenerator) {
+        this.appendOnlyDAOService = appendOnlyDAOService;
+        this.primaryKeyGenerator = primaryKeyGenerator;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        appendOnlyDAOService.append(Collections.singletonList(createVersion(temporalityActionType, record)));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+     */
+    @Override
+    public void writeAll(List<TemporalityOperation<R>> operationList) {
+        List<TemporalityVersion<R>> versionList = new ArrayList<TemporalityVersion<R>>(operationList.size());
+        for (TemporalityOperation<R> operation : operationList) {
+            versionList.add(createVersion(operation.getTemporalityActionType(), operation.getRecord()));
+        }
+
+        appendOnlyDAOService.append(versionList);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        appendOnlyDAOService.append(Collections.singletonList(createVersion(TemporalityActionType.DELETE, record)));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+     */
+    @Override
+    public void deleteAll(List<R> recordList) {
+        List<TemporalityVersion<R>> versionList = new ArrayList<TemporalityVersion<R>>(recordList.size());
+        for (R record : recordList) {
+            versionList.add(createVersion(TemporalityActionType.DELETE, record));
+        }
+
+        appendOnlyDAOService.append(versionList);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        List<TemporalityVersion<R>> versionList = appendOnlyDAOService.searchVersions(recordFilter);
+        if (versionList == null) {
+            return null;
+        }
+
+        return resolve(versionList);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        List<R> recordList = search(recordFilter);
+        if (recordList == null || validFrom == null || validTill == null) {
+            return recordList;
+        }
+
+        List<R> result = new ArrayList<R>();
+        for (R record : recordList) {
+            if ((record.getValidFrom() == null || !record.getValidFrom().isAfter(validTill)) && (record.getValidTill() == null || !record.getValidTill().isBefore(validFrom))) {
+                result.add(record);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return true;
+    }
+
+
+    /**
+     * Resolve the effective timeline of the versions of a data key: the last version of each primary key is effective
+     * unless it is a tombstone.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param versionList the versions in the order they were appended
+     * @return the effective records ordered by the valid from
+     */
+    public static <R extends ITemporalityRecord<R, P, ?>, P> List<R> resolve(List<TemporalityVersion<R>> versionList) {
+        Map<P, R> recordByPrimaryKey = new LinkedHashMap<P, R>();
+        for (TemporalityVersion<R> version : versionList) {
+            if (version.isTombstone()) {
+                recordByPrimaryKey.remove(version.getRecord().getPrimaryKey());
+            } else {
+                // a new version supersedes all previous versions of the primary key
+                recordByPrimaryKey.remove(version.getRecord().getPrimaryKey());
+                recordByPrimaryKey.put(version.getRecord().getPrimaryKey(), version.getRecord());
+            }
+        }
+
+        List<R> result = new ArrayList<R>(recordByPrimaryKey.values());
+        result.sort(VALIDITY_COMPARATOR);
+        return result;
+    }
+
+
+    /**
+     * Create the version of a record
+     *
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     * @return the version
+     */
+    protected TemporalityVersion<R> createVersion(TemporalityActionType temporalityActionType, R record) {
+        if (record.getPrimaryKey() == null) {
+            record.setPrimaryKey(primaryKeyGenerator.get());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Append version (" + temporalityActionType + "): " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
+        }
+
+        return new TemporalityVersion<R>(temporalityActionType, record.clone());
+    }
+}
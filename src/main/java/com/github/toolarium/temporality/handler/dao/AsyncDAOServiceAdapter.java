@@ -0,0 +1,141 @@
+/*
+ * AsyncDAOServiceAdapter.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IAsyncDAOService;
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements an {@link IAsyncDAOService} which runs the calls of a blocking {@link IDAOService} on an executor.
+ * By default a virtual thread per call is used in case the runtime supports virtual threads, otherwise a cached
+ * thread pool with daemon threads.
+ *
+ * @param <R> the generic record type.
+ */
+public class AsyncDAOServiceAdapter<R> implements IAsyncDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(AsyncDAOServiceAdapter.class);
+    private IDAOService<R> daoService;
+    private Executor executor;
+
+
+    /**
+     * Constructor for AsyncDAOServiceAdapter
+     *
+     * @param daoService the blocking dao service
+     */
+    public AsyncDAOServiceAdapter(IDAOService<R> daoService) {
+        this(daoService, DefaultExecutorHolder.EXECUTOR);
+    }
+
+
+    /**
+     * Constructor for AsyncDAOServiceAdapter
+     *
+     * @param daoService the blocking dao service
+     * @param executor the executor to run the calls
+     */
+    public AsyncDAOServiceAdapter(IDAOService<R> daoService, Executor executor) {
+        this.daoService = daoService;
+        this.executor = executor;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public CompletableFuture<Void> write(TemporalityActionType temporalityActionType, R record) {
+        return CompletableFuture.runAsync(() -> daoService.write(temporalityActionType, record), executor);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public CompletableFuture<Void> delete(R record) {
+        return CompletableFuture.runAsync(() -> daoService.delete(record), executor);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncDAOService#search(java.lang.Object)
+     */
+    @Override
+    public CompletableFuture<List<R>> search(R recordFilter) {
+        return CompletableFuture.supplyAsync(() -> daoService.search(recordFilter), executor);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public CompletableFuture<List<R>> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        return CompletableFuture.supplyAsync(() -> daoService.searchOverlapping(recordFilter, validFrom, validTill), executor);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return daoService.isSortedByValidFrom();
+    }
+
+
+    /**
+     * Get the default executor: a virtual thread per task executor if available
+     *
+     * @return the default executor
+     */
+    public static Executor getDefaultExecutor() {
+        return DefaultExecutorHolder.EXECUTOR;
+    }
+
+
+    /**
+     * Holds the default executor, it is created on first access.
+     */
+    private static final class DefaultExecutorHolder {
+        static final Executor EXECUTOR = createExecutor();
+
+
+        /**
+         * Create the default executor
+         *
+         * @return the executor
+         */
+        private static Executor createExecutor() {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ExecutorService executorService = (ExecutorService) method.invoke(null);
+                log.debug("Use virtual threads for the asynchronous dao calls.");
+                return executorService;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Virtual threads are not supported, use a cached thread pool for the asynchronous dao calls.");
+            }
+
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "temporality-dao");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
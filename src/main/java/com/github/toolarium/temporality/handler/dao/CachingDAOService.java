@@ -0,0 +1,697 @@
+/*
+ * CachingDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.timeline.ITemporalTimeline;
+import com.github.toolarium.temporality.handler.timeline.TemporalTimeline;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a read-through cache of the timelines in front of a {@link IDAOService}. The first search of a data key reads
+ * the timeline from the dao service, the following searches are answered from the cache. The writes and deletes are passed
+ * to the dao service and applied to the cached timeline (write-through). The search of the dao service has to return the
+ * whole timeline of the data key of the filter record.
+ *
+ * <p>The cache keeps at most the given number of data keys, the least recently used data key is evicted first. An optional
+ * time to live evicts a cached timeline after the given time. A timeline which contains a record without primary key or
+ * validity is not cached. In case a record is written without primary key, e.g. if the dao service assigns the primary key
+ * of a created record to a copy, the next search reads the stored copies of these records for their period only and adds
+ * them to the cached timeline by their validity. This class is thread safe, but the writes of the same data key have to be
+ * serialized by the caller, see {@link com.github.toolarium.temporality.handler.IParallelTemporalityWriter}. The returned
+ * records are the cached instances and must not be modified.</p>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class CachingDAOService<R extends ITemporalityRecord<R, P, D>, P, D> implements IBatchDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(CachingDAOService.class);
+    private IDAOService<R> daoService;
+    private int maximumSize;
+    private long timeToLiveNanos;
+    private Supplier<ITemporalTimeline<R, P, D>> timelineFactory;
+    private Map<D, CacheEntry<R, P, D>> cache;
+    private AtomicLong hitCounter;
+    private AtomicLong missCounter;
+    private AtomicLong evictionCounter;
+
+
+    /**
+     * Constructor for CachingDAOService
+     *
+     * @param daoService the dao service
+     * @param maximumSize the maximum number of cached data keys
+     */
+    public CachingDAOService(IDAOService<R> daoService, int maximumSize) {
+        this(daoService, maximumSize, null);
+    }
+
+
+    /**
+     * Constructor for CachingDAOService
+     *
+     * @param daoService the dao service
+     * @param maximumSize the maximum number of cached data keys
+     * @param timeToLive the time to live of a cached timeline or null to keep it until it is evicted by size
+     */
+    public CachingDAOService(IDAOService<R> daoService, int maximumSize, Duration timeToLive) {
+        this(daoService, maximumSize, timeToLive, TemporalTimeline::new);
+    }
+
+
+    /**
+     * Constructor for CachingDAOService
+     *
+     * @param daoService the dao service
+     * @param maximumSize the maximum number of cached data keys
+     * @param timeToLive the time to live of a cached timeline or null to keep it until it is evicted by size
+     * @param timelineFactory creates the cached timeline of a data key, e.g. PrimitiveTemporalTimeline::new
+     */
+    public CachingDAOService(IDAOService<R> daoService, int maximumSize, Duration timeToLive, Supplier<ITemporalTimeline<R, P, D>> timelineFactory) {
+        if (daoService == null) {
+            throw new IllegalArgumentException("Invalid dao service!");
+        }
+
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+        }
+
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Invalid time to live: " + timeToLive);
+        }
+
+        if (timelineFactory == null) {
+            throw new IllegalArgumentException("Invalid timeline factory!");
+        }
+
+        this.daoService = daoService;
+        this.maximumSize = maximumSize;
+        this.timelineFactory = timelineFactory;
+        this.timeToLiveNanos = 0;
+        if (timeToLive != null) {
+            this.timeToLiveNanos = timeToLive.toNanos();
+        }
+
+        this.cache = new LinkedHashMap<D, CacheEntry<R, P, D>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<D, CacheEntry<R, P, D>> eldest) {
+                if (size() > CachingDAOService.this.maximumSize) {
+                    evictionCounter.incrementAndGet();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+
+        this.hitCounter = new AtomicLong();
+        this.missCounter = new AtomicLong();
+        this.evictionCounter = new AtomicLong();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        try {
+            daoService.write(temporalityActionType, record);
+        } catch (RuntimeException e) {
+            invalidate(record.getDataKey());
+            throw e;
+        }
+
+        applyWrite(temporalityActionType, record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+     */
+    @Override
+    public void writeAll(List<TemporalityOperation<R>> operationList) {
+        if (!(daoService instanceof IBatchDAOService)) {
+            for (TemporalityOperation<R> operation : operationList) {
+                write(operation.getTemporalityActionType(), operation.getRecord());
+            }
+
+            return;
+        }
+
+        try {
+            ((IBatchDAOService<R>) daoService).writeAll(operationList);
+        } catch (RuntimeException e) {
+            for (TemporalityOperation<R> operation : operationList) {
+                invalidate(operation.getRecord().getDataKey());
+            }
+
+            throw e;
+        }
+
+        for (TemporalityOperation<R> operation : operationList) {
+            applyWrite(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        try {
+            daoService.delete(record);
+        } catch (RuntimeException e) {
+            invalidate(record.getDataKey());
+            throw e;
+        }
+
+        applyDelete(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+     */
+    @Override
+    public void deleteAll(List<R> recordList) {
+        if (!(daoService instanceof IBatchDAOService)) {
+            for (R record : recordList) {
+                delete(record);
+            }
+
+            return;
+        }
+
+        try {
+            ((IBatchDAOService<R>) daoService).deleteAll(recordList);
+        } catch (RuntimeException e) {
+            for (R record : recordList) {
+                invalidate(record.getDataKey());
+            }
+
+            throw e;
+        }
+
+        for (R record : recordList) {
+            applyDelete(record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#apply(java.util.List, java.util.List)
+     */
+    @Override
+    public void apply(List<R> deleteRecordList, List<TemporalityOperation<R>> operationList) {
+        if (!(daoService instanceof IBatchDAOService)) {
+            deleteAll(deleteRecordList);
+            writeAll(operationList);
+            return;
+        }
+
+        try {
+            ((IBatchDAOService<R>) daoService).apply(deleteRecordList, operationList);
+        } catch (RuntimeException e) {
+            for (R record : deleteRecordList) {
+                invalidate(record.getDataKey());
+            }
+
+            for (TemporalityOperation<R> operation : operationList) {
+                invalidate(operation.getRecord().getDataKey());
+            }
+
+            throw e;
+        }
+
+        for (R record : deleteRecordList) {
+            applyDelete(record);
+        }
+
+        for (TemporalityOperation<R> operation : operationList) {
+            applyWrite(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        return search(recordFilter, timeline -> select(timeline, null, null));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        return search(recordFilter, timeline -> select(timeline, validFrom, validTill));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchValidAt(java.lang.Object, java.time.Instant)
+     */
+    @Override
+    public List<R> searchValidAt(R recordFilter, Instant validAt) {
+        return search(recordFilter, timeline -> {
+            R record = timeline.findValidAt(validAt);
+            if (record == null) {
+                return null;
+            }
+
+            return Collections.singletonList(record);
+        });
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return daoService.isSortedByValidFrom();
+    }
+
+
+    /**
+     * Remove the cached timeline of a data key
+     *
+     * @param dataKey the data key
+     */
+    public void invalidate(D dataKey) {
+        synchronized (cache) {
+            cache.remove(dataKey);
+        }
+    }
+
+
+    /**
+     * Remove all cached timelines
+     */
+    public void invalidateAll() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+
+    /**
+     * Get the number of searches which are answered from the cache
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hitCounter.get();
+    }
+
+
+    /**
+     * Get the number of searches which are passed to the dao service
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return missCounter.get();
+    }
+
+
+    /**
+     * Get the number of timelines which are evicted because of the maximum size
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCounter.get();
+    }
+
+
+    /**
+     * Get the number of cached data keys
+     *
+     * @return the number of cached data keys
+     */
+    public int getNumberOfCachedDataKeys() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+
+    /**
+     * Get the current time in nanoseconds, it is used for the time to live
+     *
+     * @return the current time in nanoseconds
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+
+    /**
+     * Search the records of a data key. In case the timeline can't be cached, the result of the dao service is returned.
+     *
+     * @param recordFilter the record filter
+     * @param selector selects the records of the cached timeline
+     * @return the records
+     */
+    protected List<R> search(R recordFilter, Function<ITemporalTimeline<R, P, D>, List<R>> selector) {
+        D dataKey = recordFilter.getDataKey();
+        CacheEntry<R, P, D> entry;
+        List<R> unresolvedRecordList = null;
+
+        synchronized (cache) {
+            entry = cache.get(dataKey);
+            if (entry != null && entry.timeline != null && !isExpired(entry)) {
+                if (entry.unresolvedRecordList == null) {
+                    hitCounter.incrementAndGet();
+                    return selector.apply(entry.timeline);
+                }
+
+                unresolvedRecordList = entry.unresolvedRecordList;
+            }
+        }
+
+        if (unresolvedRecordList != null) {
+            List<R> result = resolve(recordFilter, entry, unresolvedRecordList, selector);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        synchronized (cache) {
+            // the entry is a placeholder until the timeline is loaded, a write in the meantime invalidates it
+            missCounter.incrementAndGet();
+            entry = new CacheEntry<R, P, D>();
+            cache.put(dataKey, entry);
+        }
+
+        List<R> recordList;
+        try {
+            recordList = daoService.search(recordFilter);
+        } catch (RuntimeException e) {
+            removeEntry(dataKey, entry);
+            throw e;
+        }
+
+        ITemporalTimeline<R, P, D> timeline = createTimeline(recordList);
+        synchronized (cache) {
+            if (timeline == null || !entry.valid || cache.get(dataKey) != entry) {
+                log.debug("Don't cache the timeline of the data key " + dataKey + ".");
+                removeEntry(dataKey, entry);
+                return recordList;
+            }
+
+            entry.timeline = timeline;
+            entry.loadTime = currentTimeNanos();
+            return selector.apply(timeline);
+        }
+    }
+
+
+    /**
+     * Apply a write to the cached timeline
+     *
+     * @param temporalityActionType the temporality action type
+     * @param record the written record
+     */
+    protected void applyWrite(TemporalityActionType temporalityActionType, R record) {
+        synchronized (cache) {
+            CacheEntry<R, P, D> entry = cache.get(record.getDataKey());
+            if (entry == null) {
+                return;
+            }
+
+            if (entry.timeline == null || record.getValidFrom() == null || record.getValidTill() == null) {
+                entry.valid = false;
+                cache.remove(record.getDataKey());
+                return;
+            }
+
+            if (record.getPrimaryKey() == null) {
+                // the stored copy is added on the next search
+                List<R> unresolvedRecordList = new ArrayList<R>();
+                if (entry.unresolvedRecordList != null) {
+                    unresolvedRecordList.addAll(entry.unresolvedRecordList);
+                }
+
+                unresolvedRecordList.add(record.clone());
+                entry.unresolvedRecordList = unresolvedRecordList;
+                return;
+            }
+
+            entry.timeline.apply(temporalityActionType, record.clone());
+        }
+    }
+
+
+    /**
+     * Apply a delete to the cached timeline
+     *
+     * @param record the deleted record
+     */
+    protected void applyDelete(R record) {
+        synchronized (cache) {
+            CacheEntry<R, P, D> entry = cache.get(record.getDataKey());
+            if (entry == null) {
+                return;
+            }
+
+            if (entry.timeline == null || record.getPrimaryKey() == null) {
+                entry.valid = false;
+                cache.remove(record.getDataKey());
+                return;
+            }
+
+            entry.timeline.delete(record);
+        }
+    }
+
+
+    /**
+     * Add the stored copies of the records which are written without primary key to a cached timeline. The stored records
+     * are read for the period of the written records and are found by their validity.
+     *
+     * @param recordFilter the record filter
+     * @param entry the cache entry
+     * @param unresolvedRecordList the records which are written without primary key
+     * @param selector selects the records of the cached timeline
+     * @return the selected records or null if the stored copies are not found unambiguously, the entry is removed in this case
+     */
+    private List<R> resolve(R recordFilter, CacheEntry<R, P, D> entry, List<R> unresolvedRecordList, Function<ITemporalTimeline<R, P, D>, List<R>> selector) {
+        D dataKey = recordFilter.getDataKey();
+        Instant validFrom = null;
+        Instant validTill = null;
+        for (R record : unresolvedRecordList) {
+            if (validFrom == null || record.getValidFrom().isBefore(validFrom)) {
+                validFrom = record.getValidFrom();
+            }
+
+            if (validTill == null || record.getValidTill().isAfter(validTill)) {
+                validTill = record.getValidTill();
+            }
+        }
+
+        List<R> recordList;
+        try {
+            recordList = daoService.searchOverlapping(recordFilter, validFrom, validTill);
+        } catch (RuntimeException e) {
+            invalidate(entry, dataKey);
+            throw e;
+        }
+
+        synchronized (cache) {
+            if (!entry.valid || cache.get(dataKey) != entry || entry.unresolvedRecordList != unresolvedRecordList) {
+                return null;
+            }
+
+            List<R> storedRecordList = new ArrayList<R>(unresolvedRecordList.size());
+            for (R record : unresolvedRecordList) {
+                R storedRecord = findStoredRecord(entry.timeline, recordList, record);
+                if (storedRecord == null || storedRecordList.contains(storedRecord)) {
+                    log.debug("Don't resolve the records without primary key of the data key " + dataKey + ".");
+                    invalidate(entry, dataKey);
+                    return null;
+                }
+
+                storedRecordList.add(storedRecord);
+            }
+
+            for (R storedRecord : storedRecordList) {
+                entry.timeline.apply(TemporalityActionType.CREATE, storedRecord.clone());
+            }
+
+            entry.unresolvedRecordList = null;
+            hitCounter.incrementAndGet();
+            return selector.apply(entry.timeline);
+        }
+    }
+
+
+    /**
+     * Find the stored copy of a record which is written without primary key: the only stored record with the same validity
+     * whose primary key is not in the cached timeline
+     *
+     * @param timeline the cached timeline
+     * @param recordList the stored records
+     * @param record the written record
+     * @return the stored copy or null
+     */
+    private R findStoredRecord(ITemporalTimeline<R, P, D> timeline, List<R> recordList, R record) {
+        if (recordList == null) {
+            return null;
+        }
+
+        R result = null;
+        for (R storedRecord : recordList) {
+            if (isCacheable(storedRecord) && timeline.get(storedRecord.getPrimaryKey()) == null
+                    && storedRecord.getValidFrom().equals(record.getValidFrom()) && storedRecord.getValidTill().equals(record.getValidTill())) {
+                if (result != null) {
+                    return null;
+                }
+
+                result = storedRecord;
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Invalidate a cache entry if it is still cached
+     *
+     * @param entry the entry
+     * @param dataKey the data key
+     */
+    private void invalidate(CacheEntry<R, P, D> entry, D dataKey) {
+        synchronized (cache) {
+            entry.valid = false;
+            removeEntry(dataKey, entry);
+        }
+    }
+
+
+    /**
+     * Create the timeline of the records
+     *
+     * @param recordList the records
+     * @return the timeline or null if the records can't be cached
+     */
+    private ITemporalTimeline<R, P, D> createTimeline(List<R> recordList) {
+        ITemporalTimeline<R, P, D> timeline = timelineFactory.get();
+        if (recordList != null) {
+            for (R record : recordList) {
+                if (!isCacheable(record)) {
+                    return null;
+                }
+
+                timeline.apply(TemporalityActionType.CREATE, record.clone());
+            }
+        }
+
+        return timeline;
+    }
+
+
+    /**
+     * Select the records of a timeline
+     *
+     * @param timeline the timeline
+     * @param validFrom the valid from or null to get all records
+     * @param validTill the valid till or null to get all records
+     * @return the records
+     */
+    private List<R> select(ITemporalTimeline<R, P, D> timeline, Instant validFrom, Instant validTill) {
+        if (timeline.isEmpty()) {
+            return null;
+        }
+
+        if (validFrom == null || validTill == null) {
+            return timeline.toList();
+        }
+
+        return timeline.findOverlapping(validFrom, validTill);
+    }
+
+
+    /**
+     * Check if a record can be cached
+     *
+     * @param record the record
+     * @return true if the record can be cached
+     */
+    private boolean isCacheable(R record) {
+        return record.getPrimaryKey() != null && record.getValidFrom() != null && record.getValidTill() != null;
+    }
+
+
+    /**
+     * Check if a cache entry is expired
+     *
+     * @param entry the entry
+     * @return true if it is expired
+     */
+    private boolean isExpired(CacheEntry<R, P, D> entry) {
+        return timeToLiveNanos > 0 && currentTimeNanos() - entry.loadTime >= timeToLiveNanos;
+    }
+
+
+    /**
+     * Remove a cache entry if it is still cached
+     *
+     * @param dataKey the data key
+     * @param entry the entry
+     */
+    private void removeEntry(D dataKey, CacheEntry<R, P, D> entry) {
+        synchronized (cache) {
+            if (cache.get(dataKey) == entry) {
+                cache.remove(dataKey);
+            }
+        }
+    }
+
+
+    /**
+     * The cached timeline of a data key
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     */
+    private static final class CacheEntry<R extends ITemporalityRecord<R, P, D>, P, D> {
+        private ITemporalTimeline<R, P, D> timeline;
+        private long loadTime;
+        private boolean valid = true;
+        private List<R> unresolvedRecordList;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * InMemoryAppendOnlyDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IAppendOnlyDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityVersion;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Implements an in-memory {@link IAppendOnlyDAOService} which keeps the versions of each data key in a list.
+ *
+ * @param <R> the generic record type.
+ * @param <D> the generic data key type.
+ */
+public class InMemoryAppendOnlyDAOService<R extends ITemporalityRecord<R, ?, D>, D> implements IAppendOnlyDAOService<R> {
+    private Map<D, List<TemporalityVersion<R>>> data;
+
+
+    /**
+     * Constructor for InMemoryAppendOnlyDAOService
+     */
+    public InMemoryAppendOnlyDAOService() {
+        this.data = new ConcurrentHashMap<D, List<TemporalityVersion<R>>>();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAppendOnlyDAOService#append(java.util.List)
+     */
+    @Override
+    public void append(List<TemporalityVersion<R>> versionList) {
+        for (TemporalityVersion<R> version : versionList) {
+            List<TemporalityVersion<R>> dataKeyVersionList = data.computeIfAbsent(version.getRecord().getDataKey(), k -> new ArrayList<TemporalityVersion<R>>());
+            synchronized (dataKeyVersionList) {
+                dataKeyVersionList.add(version);
+            }
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAppendOnlyDAOService#searchVersions(java.lang.Object)
+     */
+    @Override
+    public List<TemporalityVersion<R>> searchVersions(R recordFilter) {
+        List<TemporalityVersion<R>> dataKeyVersionList = data.get(recordFilter.getDataKey());
+        if (dataKeyVersionList == null) {
+            return null;
+        }
+
+        synchronized (dataKeyVersionList) {
+            return new ArrayList<TemporalityVersion<R>>(dataKeyVersionList);
+        }
+    }
+
+
+    /**
+     * Get the number of versions of a data key
+     *
+     * @param dataKey the data key
+     * @return the number of versions
+     */
+    public int getNumberOfVersions(D dataKey) {
+        List<TemporalityVersion<R>> dataKeyVersionList = data.get(dataKey);
+        if (dataKeyVersionList == null) {
+            return 0;
+        }
+
+        synchronized (dataKeyVersionList) {
+            return dataKeyVersionList.size();
+        }
+    }
+
+
+    /**
+     * Remove all versions
+     */
+    public void clear() {
+        data.clear();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * InMemoryDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.timeline.ITemporalTimeline;
+import com.github.toolarium.temporality.handler.timeline.TemporalTimeline;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements an in-memory {@link IBatchDAOService} which keeps a {@link ITemporalTimeline} per data key, by default a
+ * {@link TemporalTimeline}. A record without
+ * primary key gets a new primary key from the primary key generator. The primary key is set to the written record and
+ * a copy of the record is stored. The search results are ordered by the valid from and must not be modified.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class InMemoryDAOService<R extends ITemporalityRecord<R, P, D>, P, D> implements IBatchDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryDAOService.class);
+    private Map<D, ITemporalTimeline<R, P, D>> data;
+    private Supplier<P> primaryKeyGenerator;
+    private Supplier<ITemporalTimeline<R, P, D>> timelineFactory;
+
+
+    /**
+     * Constructor for InMemoryDAOService
+     *
+     * @param primaryKeyGenerator the primary key generator
+     */
+    public InMemoryDAOService(Supplier<P> primaryKeyGenerator) {
+        this(primaryKeyGenerator, TemporalTimeline::new);
+    }
+
+
+    /**
+     * Constructor for InMemoryDAOService
+     *
+     * @param primaryKeyGenerator the primary key generator
+     * @param timelineFactory creates the timeline of a data key, e.g. PrimitiveTemporalTimeline::new
+     */
+    public InMemoryDAOService(Supplier<P> primaryKeyGenerator, Supplier<ITemporalTimeline<R, P, D>> timelineFactory) {
+        this.data = new ConcurrentHashMap<D, ITemporalTimeline<R, P, D>>();
+        this.primaryKeyGenerator = primaryKeyGenerator;
+        this.timelineFactory = timelineFactory;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        ITemporalTimeline<R, P, D> timeline = getTimeline(record.getDataKey(), true);
+        synchronized (timeline) {
+            write(timeline, temporalityActionType, record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+     */
+    @Override
+    public void writeAll(List<TemporalityOperation<R>> operationList) {
+        for (TemporalityOperation<R> operation : operationList) {
+            write(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        ITemporalTimeline<R, P, D> timeline = data.get(record.getDataKey());
+        if (timeline == null) {
+            return;
+        }
+
+        synchronized (timeline) {
+            log.debug("Delete record: " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
+            timeline.delete(record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+     */
+    @Override
+    public void deleteAll(List<R> recordList) {
+        for (R record : recordList) {
+            delete(record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        ITemporalTimeline<R, P, D> timeline = data.get(recordFilter.getDataKey());
+        if (timeline == null) {
+            return null;
+        }
+
+        synchronized (timeline) {
+            return timeline.toList();
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        if (validFrom == null || validTill == null) {
+            return search(recordFilter);
+        }
+
+        ITemporalTimeline<R, P, D> timeline = data.get(recordFilter.getDataKey());
+        if (timeline == null) {
+            return null;
+        }
+
+        synchronized (timeline) {
+            return timeline.findOverlapping(validFrom, validTill);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchValidAt(java.lang.Object, java.time.Instant)
+     */
+    @Override
+    public List<R> searchValidAt(R recordFilter, Instant validAt) {
+        R record = findValidAt(recordFilter.getDataKey(), validAt);
+        if (record == null) {
+            return null;
+        }
+
+        return Collections.singletonList(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return true;
+    }
+
+
+    /**
+     * Get the record which is valid at the given instant
+     *
+     * @param dataKey the data key
+     * @param validAt the instant
+     * @return the record or null
+     */
+    public R findValidAt(D dataKey, Instant validAt) {
+        ITemporalTimeline<R, P, D> timeline = data.get(dataKey);
+        if (timeline == null) {
+            return null;
+        }
+
+        synchronized (timeline) {
+            return timeline.findValidAt(validAt);
+        }
+    }
+
+
+    /**
+     * Get the number of records of a data key
+     *
+     * @param dataKey the data key
+     * @return the number of records
+     */
+    public int getNumberOfRecords(D dataKey) {
+        ITemporalTimeline<R, P, D> timeline = data.get(dataKey);
+        if (timeline == null) {
+            return 0;
+        }
+
+        synchronized (timeline) {
+            return timeline.size();
+        }
+    }
+
+
+    /**
+     * Get the number of records
+     *
+     * @return the number of records
+     */
+    public long getNumberOfRecords() {
+        long result = 0;
+        for (D dataKey : data.keySet()) {
+            result += getNumberOfRecords(dataKey);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Remove all records
+     */
+    public void clear() {
+        data.clear();
+    }
+
+
+    /**
+     * Get the timeline of a data key
+     *
+     * @param dataKey the data key
+     * @param create true to create the timeline if it not exists
+     * @return the timeline or null if it not exists
+     */
+    protected ITemporalTimeline<R, P, D> getTimeline(D dataKey, boolean create) {
+        if (create) {
+            return data.computeIfAbsent(dataKey, k -> timelineFactory.get());
+        }
+
+        return data.get(dataKey);
+    }
+
+
+    /**
+     * Write a record into the timeline
+     *
+     * @param timeline the timeline
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     */
+    protected void write(ITemporalTimeline<R, P, D> timeline, TemporalityActionType temporalityActionType, R record) {
+        if (record.getPrimaryKey() == null) {
+            record.setPrimaryKey(primaryKeyGenerator.get());
+        }
+
+        log.debug("Write record (" + temporalityActionType + "): " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
+        timeline.apply(temporalityActionType, record.clone());
+    }
+}
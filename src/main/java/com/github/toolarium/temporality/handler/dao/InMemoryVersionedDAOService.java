@@ -0,0 +1,163 @@
+/*
+ * InMemoryVersionedDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.IVersionedDAOService;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityConflictException;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalitySnapshot;
+import com.github.toolarium.temporality.handler.timeline.ITemporalTimeline;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+
+/**
+ * Extends the {@link InMemoryDAOService} by a version per data key, it is the reference implementation of the
+ * {@link IVersionedDAOService}. The version is a sequence number which is incremented on each change of the timeline,
+ * the version of a data key without timeline is 0. The versions are kept on {@link #clear()}.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class InMemoryVersionedDAOService<R extends ITemporalityRecord<R, P, D>, P, D> extends InMemoryDAOService<R, P, D> implements IVersionedDAOService<R> {
+    private static final Long INITIAL_VERSION = 0L;
+    private Map<D, Long> versionMap;
+
+
+    /**
+     * Constructor for InMemoryVersionedDAOService
+     *
+     * @param primaryKeyGenerator the primary key generator
+     */
+    public InMemoryVersionedDAOService(Supplier<P> primaryKeyGenerator) {
+        super(primaryKeyGenerator);
+        this.versionMap = new ConcurrentHashMap<D, Long>();
+    }
+
+
+    /**
+     * Constructor for InMemoryVersionedDAOService
+     *
+     * @param primaryKeyGenerator the primary key generator
+     * @param timelineFactory creates the timeline of a data key, e.g. PrimitiveTemporalTimeline::new
+     */
+    public InMemoryVersionedDAOService(Supplier<P> primaryKeyGenerator, Supplier<ITemporalTimeline<R, P, D>> timelineFactory) {
+        super(primaryKeyGenerator, timelineFactory);
+        this.versionMap = new ConcurrentHashMap<D, Long>();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        ITemporalTimeline<R, P, D> timeline = getTimeline(record.getDataKey(), true);
+        synchronized (timeline) {
+            super.write(temporalityActionType, record);
+            incrementVersion(record.getDataKey());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#delete(com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void delete(R record) {
+        ITemporalTimeline<R, P, D> timeline = getTimeline(record.getDataKey(), false);
+        if (timeline == null) {
+            return;
+        }
+
+        synchronized (timeline) {
+            super.delete(record);
+            incrementVersion(record.getDataKey());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IVersionedDAOService#searchSnapshot(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public TemporalitySnapshot<R> searchSnapshot(R recordFilter, Instant validFrom, Instant validTill) {
+        // the version is read before the timeline, a timeline which is created in between is detected by the conditional write
+        long version = getVersion(recordFilter.getDataKey());
+        ITemporalTimeline<R, P, D> timeline = getTimeline(recordFilter.getDataKey(), false);
+        if (timeline == null) {
+            return new TemporalitySnapshot<R>(null, version);
+        }
+
+        synchronized (timeline) {
+            return new TemporalitySnapshot<R>(searchOverlapping(recordFilter, validFrom, validTill), getVersion(recordFilter.getDataKey()));
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IVersionedDAOService#writeAll(java.util.List, java.lang.Object)
+     */
+    @Override
+    public void writeAll(List<TemporalityOperation<R>> operationList, Object expectedVersion) throws TemporalityConflictException {
+        if (operationList == null || operationList.isEmpty()) {
+            return;
+        }
+
+        D dataKey = operationList.get(0).getRecord().getDataKey();
+        ITemporalTimeline<R, P, D> timeline = getTimeline(dataKey, true);
+        synchronized (timeline) {
+            Long currentVersion = getVersion(dataKey);
+            if (!Objects.equals(currentVersion, expectedVersion)) {
+                throw new TemporalityConflictException(dataKey, expectedVersion, currentVersion);
+            }
+
+            for (TemporalityOperation<R> operation : operationList) {
+                if (!Objects.equals(dataKey, operation.getRecord().getDataKey())) {
+                    throw new IllegalArgumentException("Invalid data key " + operation.getRecord().getDataKey() + ", the operations must have the data key " + dataKey + "!");
+                }
+            }
+
+            for (TemporalityOperation<R> operation : operationList) {
+                if (operation.isDelete()) {
+                    timeline.delete(operation.getRecord());
+                } else {
+                    write(timeline, operation.getTemporalityActionType(), operation.getRecord());
+                }
+            }
+
+            incrementVersion(dataKey);
+        }
+    }
+
+
+    /**
+     * Get the version of the timeline of a data key
+     *
+     * @param dataKey the data key
+     * @return the version
+     */
+    public long getVersion(D dataKey) {
+        return versionMap.getOrDefault(dataKey, INITIAL_VERSION);
+    }
+
+
+    /**
+     * Increment the version of the timeline of a data key, the caller holds the lock of the timeline
+     *
+     * @param dataKey the data key
+     */
+    private void incrementVersion(D dataKey) {
+        versionMap.merge(dataKey, 1L, Long::sum);
+    }
+}
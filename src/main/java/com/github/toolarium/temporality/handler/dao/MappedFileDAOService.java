@@ -0,0 +1,504 @@
+/*
+ * MappedFileDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.ITemporalityRecordCodec;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a persistent {@link IBatchDAOService} which stores the timeline of each data key in memory-mapped files of a
+ * directory. The data file of a data key is an append-only log of the records encoded by the {@link ITemporalityRecordCodec},
+ * the index file contains the validity and the offset of each record ordered by the valid from. A write appends the record
+ * and updates the index, a search scans the range of the index and decodes the records directly from the mapped data file.
+ * The data of a replaced or deleted record remains in the data file. The files are mapped with the size of their data.
+ *
+ * <p>The files of a data key are named by the URL safe Base64 encoding of the string representation of the data key, a long
+ * name is replaced by the SHA-256 hash of the string representation. Different data keys with the same name are told apart
+ * by the data key of the first record of the data file, the files of the next data key get a numbered name. The files
+ * are opened on first access and only the first record is decoded, the files of the least recently used data key are closed in case
+ * more than the maximum number of data keys are open. A record without primary key gets a new primary key from the primary
+ * key generator, which has to continue the primary keys of the existing files. The primary key is set to the written record,
+ * its hash code is kept in the index and has to be the same in each process. The changes are written to the storage device by
+ * {@link #flush()} and {@link #close()}. An index of a data key holds up to 53 million records.</p>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class MappedFileDAOService<R extends ITemporalityRecord<R, P, D>, P, D> implements IBatchDAOService<R>, Closeable {
+    /** The default size of a mapped segment of a data file */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** The default maximum number of data keys with open files */
+    public static final int DEFAULT_MAX_OPEN_DATA_KEYS = 256;
+    private static final Logger log = LoggerFactory.getLogger(MappedFileDAOService.class);
+    private static final String INDEX_FILE_EXTENSION = ".idx";
+    private static final String DATA_FILE_EXTENSION = ".dat";
+    private static final int MAX_ENCODED_FILE_NAME_LENGTH = 128;
+    private static final String HASHED_FILE_NAME_PREFIX = "=";
+    private static final String FILE_NUMBER_SEPARATOR = ".";
+    private final Path directory;
+    private final ITemporalityRecordCodec<R> codec;
+    private final Supplier<P> primaryKeyGenerator;
+    private final int segmentSize;
+    private final int maxOpenDataKeys;
+    private final Map<D, MappedTimelineFile<R, P>> data;
+    private final Set<Path> openDataFileSet;
+
+
+    /**
+     * Constructor for MappedFileDAOService
+     *
+     * @param directory the directory of the files
+     * @param codec the record codec
+     * @param primaryKeyGenerator the primary key generator
+     */
+    public MappedFileDAOService(Path directory, ITemporalityRecordCodec<R> codec, Supplier<P> primaryKeyGenerator) {
+        this(directory, codec, primaryKeyGenerator, DEFAULT_SEGMENT_SIZE);
+    }
+
+
+    /**
+     * Constructor for MappedFileDAOService
+     *
+     * @param directory the directory of the files
+     * @param codec the record codec
+     * @param primaryKeyGenerator the primary key generator
+     * @param segmentSize the size of a mapped segment of a data file, the largest encoded record has to fit into a segment
+     */
+    public MappedFileDAOService(Path directory, ITemporalityRecordCodec<R> codec, Supplier<P> primaryKeyGenerator, int segmentSize) {
+        this(directory, codec, primaryKeyGenerator, segmentSize, DEFAULT_MAX_OPEN_DATA_KEYS);
+    }
+
+
+    /**
+     * Constructor for MappedFileDAOService
+     *
+     * @param directory the directory of the files
+     * @param codec the record codec
+     * @param primaryKeyGenerator the primary key generator
+     * @param segmentSize the size of a mapped segment of a data file, the largest encoded record has to fit into a segment
+     * @param maxOpenDataKeys the maximum number of data keys with open files
+     */
+    public MappedFileDAOService(Path directory, ITemporalityRecordCodec<R> codec, Supplier<P> primaryKeyGenerator, int segmentSize, int maxOpenDataKeys) {
+        if (segmentSize <= MappedTimelineFile.DATA_HEADER_SIZE + 4) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+
+        if (maxOpenDataKeys <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of open data keys: " + maxOpenDataKeys);
+        }
+
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the directory " + directory + ": " + e.getMessage(), e);
+        }
+
+        this.directory = directory;
+        this.codec = codec;
+        this.primaryKeyGenerator = primaryKeyGenerator;
+        this.segmentSize = segmentSize;
+        this.maxOpenDataKeys = maxOpenDataKeys;
+        this.openDataFileSet = new HashSet<Path>();
+        this.data = new LinkedHashMap<D, MappedTimelineFile<R, P>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+             */
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<D, MappedTimelineFile<R, P>> eldest) {
+                if (size() <= MappedFileDAOService.this.maxOpenDataKeys) {
+                    return false;
+                }
+
+                log.debug("Close timeline files of the least recently used data key " + eldest.getKey() + ".");
+                openDataFileSet.remove(eldest.getValue().getDataFile());
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        execute(record.getDataKey(), true, timelineFile -> {
+            if (record.getPrimaryKey() == null) {
+                record.setPrimaryKey(primaryKeyGenerator.get());
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Write record (" + temporalityActionType + "): " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
+            }
+
+            timelineFile.write(record);
+            return null;
+        });
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+     */
+    @Override
+    public void writeAll(List<TemporalityOperation<R>> operationList) {
+        for (TemporalityOperation<R> operation : operationList) {
+            write(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        if (record.getPrimaryKey() == null) {
+            return;
+        }
+
+        execute(record.getDataKey(), false, timelineFile -> {
+            if (log.isDebugEnabled()) {
+                log.debug("Delete record: " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
+            }
+
+            return timelineFile.delete(record);
+        });
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+     */
+    @Override
+    public void deleteAll(List<R> recordList) {
+        for (R record : recordList) {
+            delete(record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        return execute(recordFilter.getDataKey(), false, timelineFile -> timelineFile.toList());
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        if (validFrom == null || validTill == null) {
+            return search(recordFilter);
+        }
+
+        return execute(recordFilter.getDataKey(), false, timelineFile -> timelineFile.findOverlapping(validFrom, validTill));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchValidAt(java.lang.Object, java.time.Instant)
+     */
+    @Override
+    public List<R> searchValidAt(R recordFilter, Instant validAt) {
+        R record = execute(recordFilter.getDataKey(), false, timelineFile -> timelineFile.findValidAt(validAt));
+        if (record == null) {
+            return null;
+        }
+
+        return Collections.singletonList(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return true;
+    }
+
+
+    /**
+     * Get the number of records of a data key
+     *
+     * @param dataKey the data key
+     * @return the number of records
+     */
+    public int getNumberOfRecords(D dataKey) {
+        Integer result = execute(dataKey, false, timelineFile -> timelineFile.size());
+        if (result == null) {
+            return 0;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get the size of the data file of a data key which is used, including the data of the replaced and deleted records
+     *
+     * @param dataKey the data key
+     * @return the size in bytes
+     */
+    public long getDataSize(D dataKey) {
+        Long result = execute(dataKey, false, timelineFile -> timelineFile.getDataSize());
+        if (result == null) {
+            return 0;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get the number of data keys with open files
+     *
+     * @return the number of data keys with open files
+     */
+    public int getNumberOfOpenDataKeys() {
+        synchronized (data) {
+            return data.size();
+        }
+    }
+
+
+    /**
+     * Write the changes of all open files to the storage device
+     */
+    public void flush() {
+        List<MappedTimelineFile<R, P>> timelineFileList;
+        synchronized (data) {
+            timelineFileList = new ArrayList<MappedTimelineFile<R, P>>(data.values());
+        }
+
+        for (MappedTimelineFile<R, P> timelineFile : timelineFileList) {
+            synchronized (timelineFile) {
+                timelineFile.force();
+            }
+        }
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        List<MappedTimelineFile<R, P>> timelineFileList;
+        synchronized (data) {
+            timelineFileList = new ArrayList<MappedTimelineFile<R, P>>(data.values());
+            data.clear();
+            openDataFileSet.clear();
+        }
+
+        IOException exception = null;
+        for (MappedTimelineFile<R, P> timelineFile : timelineFileList) {
+            synchronized (timelineFile) {
+                try {
+                    timelineFile.close();
+                } catch (IOException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+
+    /**
+     * Execute a function on the timeline file of a data key. In case the file was closed meanwhile because it was the least
+     * recently used, it is opened again.
+     *
+     * @param <T> the generic result type
+     * @param dataKey the data key
+     * @param create true to create the files if they not exist
+     * @param function the function
+     * @return the result of the function or null if the files not exist
+     */
+    private <T> T execute(D dataKey, boolean create, Function<MappedTimelineFile<R, P>, T> function) {
+        for (;;) {
+            MappedTimelineFile<R, P> timelineFile = getTimelineFile(dataKey, create);
+            if (timelineFile == null) {
+                return null;
+            }
+
+            synchronized (timelineFile) {
+                if (!timelineFile.isClosed()) {
+                    return function.apply(timelineFile);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Open the timeline files of a data key
+     *
+     * @param dataKey the data key
+     * @param indexFile the index file
+     * @param dataFile the data file
+     * @return the timeline file
+     */
+    private MappedTimelineFile<R, P> openTimelineFile(D dataKey, Path indexFile, Path dataFile) {
+        try {
+            log.debug("Open timeline files of data key " + dataKey + ": " + indexFile);
+            return new MappedTimelineFile<R, P>(indexFile, dataFile, codec, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the timeline files of data key " + dataKey + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Check if the timeline files belong to a data key: the first record of the data file has the data key. A data file
+     * without records can be taken by any data key.
+     *
+     * @param timelineFile the timeline file
+     * @param dataKey the data key
+     * @return true if the timeline files belong to the data key
+     */
+    private boolean isTimelineFileOf(MappedTimelineFile<R, P> timelineFile, D dataKey) {
+        R record = timelineFile.readFirst();
+        return record == null || dataKey.equals(record.getDataKey());
+    }
+
+
+    /**
+     * Get the name of the files of a data key: the URL safe Base64 encoding of the string representation of the data key or
+     * its SHA-256 hash in case the encoding is too long for a file name
+     *
+     * @param dataKey the data key
+     * @return the name of the files without extension
+     */
+    private String getFileName(D dataKey) {
+        byte[] bytes = dataKey.toString().getBytes(StandardCharsets.UTF_8);
+        String fileName = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        if (fileName.length() <= MAX_ENCODED_FILE_NAME_LENGTH) {
+            return fileName;
+        }
+
+        try {
+            StringBuilder hash = new StringBuilder(HASHED_FILE_NAME_PREFIX);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not hash the file name of data key " + dataKey + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Close the timeline file of an evicted data key
+     *
+     * @param timelineFile the timeline file
+     */
+    private void close(MappedTimelineFile<R, P> timelineFile) {
+        synchronized (timelineFile) {
+            try {
+                timelineFile.close();
+            } catch (IOException e) {
+                log.warn("Could not close the timeline files: " + e.getMessage(), e);
+            }
+        }
+    }
+
+
+    /**
+     * Get the timeline file of a data key, it is opened on first access and the least recently used files are closed
+     *
+     * @param dataKey the data key
+     * @param create true to create the files if they not exist
+     * @return the timeline file or null if it not exists
+     */
+    private MappedTimelineFile<R, P> getTimelineFile(D dataKey, boolean create) {
+        if (dataKey == null) {
+            throw new IllegalArgumentException("Invalid data key, the data key must not be null!");
+        }
+
+        synchronized (data) {
+            MappedTimelineFile<R, P> timelineFile = data.get(dataKey);
+            if (timelineFile != null) {
+                return timelineFile;
+            }
+
+            String fileName = getFileName(dataKey);
+            for (int number = 0; timelineFile == null; number++) {
+                String numberedFileName = fileName;
+                if (number > 0) {
+                    numberedFileName = fileName + FILE_NUMBER_SEPARATOR + number;
+                }
+
+                Path indexFile = directory.resolve(numberedFileName + INDEX_FILE_EXTENSION);
+                Path dataFile = directory.resolve(numberedFileName + DATA_FILE_EXTENSION);
+                boolean exists = Files.exists(dataFile);
+                if (!create && !exists) {
+                    return null;
+                }
+
+                // the files of an other open data key with the same name
+                if (openDataFileSet.contains(dataFile)) {
+                    continue;
+                }
+
+                timelineFile = openTimelineFile(dataKey, indexFile, dataFile);
+                if (exists && !isTimelineFileOf(timelineFile, dataKey)) {
+                    log.debug("The timeline files " + indexFile + " belong to an other data key with the same name as " + dataKey + ".");
+                    close(timelineFile);
+                    timelineFile = null;
+                }
+            }
+
+            openDataFileSet.add(timelineFile.getDataFile());
+            data.put(dataKey, timelineFile);
+            return timelineFile;
+        }
+    }
+}
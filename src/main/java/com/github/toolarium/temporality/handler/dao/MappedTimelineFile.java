@@ -0,0 +1,752 @@
+/*
+ * MappedTimelineFile.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.dao;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.ITemporalityRecordCodec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Implements the timeline of one data key in two memory-mapped files. The data file is an append-only log of the encoded
+ * records, it is divided in segments of a fixed size and a record never crosses a segment. A segment is mapped with the size
+ * of its data, the mapping is doubled when the data grows up to the segment size. The index file contains an entry of a fixed
+ * width per record: the valid from, the valid till, the offset of the record in the data file and the hash code of the primary
+ * key. The entries are ordered by the valid from and the valid till. A write appends the record and inserts the entry into the
+ * index, the entry of a replaced or deleted record is removed, its data remains in the data file. A record is found by the
+ * primary key with a map of the hash codes to the offsets of the records, which is built from the index on open without
+ * decoding the records. Only the records with the same hash code are decoded and their entry is found by the valid from;
+ * the hash code of the primary key has to be the same in each process. The records are expected to be free of overlaps as
+ * maintained by the temporality handler. This class is not thread safe.
+ *
+ * <code>
+ * index: [size:int, version:int, reserved:24 bytes] [fromSeconds:long, tillSeconds:long, fromNanos:int, tillNanos:int, offset:long, keyHash:int, reserved:int] ...
+ * data:  [position:long] [length:int, record:byte[length]] ...
+ * </code>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ */
+final class MappedTimelineFile<R extends ITemporalityRecord<R, P, ?>, P> implements Closeable {
+    static final int INDEX_HEADER_SIZE = 32;
+    static final int INDEX_ENTRY_SIZE = 40;
+    static final int INDEX_VERSION = 1;
+    static final int DATA_HEADER_SIZE = 8;
+    private static final int INITIAL_INDEX_ENTRIES = 64;
+    private static final int INITIAL_SEGMENT_MAPPING_SIZE = 4096;
+    private static final int COPY_BUFFER_ENTRIES = 64;
+    private final Path dataFile;
+    private final ITemporalityRecordCodec<R> codec;
+    private final int segmentSize;
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final List<MappedByteBuffer> dataSegmentList;
+    private final byte[] copyBuffer;
+    private final Map<Integer, long[]> offsetsByKeyHash;
+    private MappedByteBuffer index;
+    private int size;
+    private long dataPosition;
+    private boolean closed;
+
+
+    /**
+     * Constructor for MappedTimelineFile
+     *
+     * @param indexFile the index file
+     * @param dataFile the data file
+     * @param codec the record codec
+     * @param segmentSize the size of a mapped segment of the data file
+     * @throws IOException In case the files can not be opened
+     */
+    MappedTimelineFile(Path indexFile, Path dataFile, ITemporalityRecordCodec<R> codec, int segmentSize) throws IOException {
+        this.dataFile = dataFile;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.indexChannel = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dataChannel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dataSegmentList = new ArrayList<MappedByteBuffer>();
+        this.copyBuffer = new byte[COPY_BUFFER_ENTRIES * INDEX_ENTRY_SIZE];
+        this.offsetsByKeyHash = new HashMap<Integer, long[]>();
+        this.closed = false;
+
+        boolean isNew = dataChannel.size() == 0;
+        this.index = indexChannel.map(MapMode.READ_WRITE, 0, Math.max(indexChannel.size(), INDEX_HEADER_SIZE + (long) INITIAL_INDEX_ENTRIES * INDEX_ENTRY_SIZE));
+        if (isNew) {
+            size = 0;
+            dataPosition = DATA_HEADER_SIZE;
+            index.putInt(0, size);
+            index.putInt(4, INDEX_VERSION);
+            getSegment(0, DATA_HEADER_SIZE).putLong(0, dataPosition);
+        } else {
+            if (index.getInt(4) != INDEX_VERSION) {
+                close();
+                throw new IOException("Unsupported version " + index.getInt(4) + " of the index file " + indexFile + "!");
+            }
+
+            size = index.getInt(0);
+            dataPosition = getSegment(0, DATA_HEADER_SIZE).getLong(0);
+            for (int i = 0; i < size; i++) {
+                addOffset(getKeyHash(i), getOffset(i));
+            }
+        }
+    }
+
+
+    /**
+     * Write a record: a record with a known primary key replaces the existing record, otherwise it is added.
+     *
+     * @param record the record
+     */
+    void write(R record) {
+        if (record.getValidFrom() == null || record.getValidTill() == null) {
+            throw new IllegalArgumentException("Invalid record, the validity must not be null: " + record);
+        }
+
+        int keyHash = Objects.hashCode(record.getPrimaryKey());
+        int existingIndex = indexOf(record.getPrimaryKey());
+        long offset = append(codec.encode(record));
+        if (existingIndex >= 0) {
+            removeOffset(keyHash, getOffset(existingIndex));
+            removeEntry(existingIndex);
+        }
+
+        insertEntry(record.getValidFrom(), record.getValidTill(), offset, keyHash);
+        addOffset(keyHash, offset);
+    }
+
+
+    /**
+     * Delete the record with the same primary key
+     *
+     * @param record the record
+     * @return true if the record was removed
+     */
+    boolean delete(R record) {
+        int entryIndex = indexOf(record.getPrimaryKey());
+        if (entryIndex < 0) {
+            return false;
+        }
+
+        removeOffset(Objects.hashCode(record.getPrimaryKey()), getOffset(entryIndex));
+        removeEntry(entryIndex);
+        return true;
+    }
+
+
+    /**
+     * Get all records ordered by the valid from
+     *
+     * @return the records
+     */
+    List<R> toList() {
+        return read(0, size);
+    }
+
+
+    /**
+     * Find the records which overlap or touch the given period, which means the valid from is not after the given
+     * valid till and the valid till is not before the given valid from.
+     *
+     * @param validFrom the valid from of the period
+     * @param validTill the valid till of the period
+     * @return the records ordered by the valid from
+     */
+    List<R> findOverlapping(Instant validFrom, Instant validTill) {
+        // the valid till is not decreasing: the first entry which valid till is not before the period
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(getTillSeconds(mid), getTillNanos(mid), validFrom) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int end = low;
+        while (end < size && compare(getFromSeconds(end), getFromNanos(end), validTill) <= 0) {
+            end++;
+        }
+
+        return read(low, end);
+    }
+
+
+    /**
+     * Find the record which is valid at the given instant, which means the valid from is not after the instant and the
+     * valid till is after the instant.
+     *
+     * @param validAt the instant
+     * @return the record or null
+     */
+    R findValidAt(Instant validAt) {
+        // the last entry which starts not after the instant
+        int index = indexOfFirstLater(validAt) - 1;
+        if (index < 0) {
+            return null;
+        }
+
+        // the first valid entry with the same valid from, same as the TemporalTimeline
+        long fromSeconds = getFromSeconds(index);
+        int fromNanos = getFromNanos(index);
+        while (index > 0 && getFromSeconds(index - 1) == fromSeconds && getFromNanos(index - 1) == fromNanos) {
+            index--;
+        }
+
+        for (; index < size && getFromSeconds(index) == fromSeconds && getFromNanos(index) == fromNanos; index++) {
+            if (compare(getTillSeconds(index), getTillNanos(index), validAt) > 0) {
+                return read(getOffset(index));
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Get the number of records
+     *
+     * @return the number of records
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Read the first record of the data file, it remains in the data file also if it was replaced or deleted
+     *
+     * @return the first record or null if the data file contains no record
+     */
+    R readFirst() {
+        if (dataPosition <= DATA_HEADER_SIZE) {
+            return null;
+        }
+
+        return read(DATA_HEADER_SIZE);
+    }
+
+
+    /**
+     * Get the data file
+     *
+     * @return the data file
+     */
+    Path getDataFile() {
+        return dataFile;
+    }
+
+
+    /**
+     * Get the size of the data file which is used, including the data of the replaced and deleted records
+     *
+     * @return the size in bytes
+     */
+    long getDataSize() {
+        return dataPosition;
+    }
+
+
+    /**
+     * Check if the files are closed
+     *
+     * @return true if the files are closed
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+
+    /**
+     * Write the changes of the mapped files to the storage device
+     */
+    void force() {
+        if (closed) {
+            return;
+        }
+
+        index.force();
+        for (MappedByteBuffer segment : dataSegmentList) {
+            segment.force();
+        }
+    }
+
+
+    /**
+     * Close the files, the mappings are released as soon as they are garbage collected.
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            force();
+        } finally {
+            closed = true;
+            dataSegmentList.clear();
+            offsetsByKeyHash.clear();
+            try {
+                indexChannel.close();
+            } finally {
+                dataChannel.close();
+            }
+        }
+    }
+
+
+    /**
+     * Append an encoded record to the data file
+     *
+     * @param bytes the encoded record
+     * @return the offset of the record
+     */
+    private long append(byte[] bytes) {
+        int length = 4 + bytes.length;
+        if (length > segmentSize - DATA_HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid record, the encoded record (" + bytes.length + " bytes) is larger than a segment of the data file!");
+        }
+
+        // a record never crosses a segment
+        long position = dataPosition;
+        if (position % segmentSize + length > segmentSize) {
+            position = (position / segmentSize + 1) * segmentSize;
+        }
+
+        ByteBuffer segment = getSegment((int) (position / segmentSize), (int) (position % segmentSize) + length).duplicate();
+        segment.position((int) (position % segmentSize));
+        segment.putInt(bytes.length);
+        segment.put(bytes);
+
+        dataPosition = position + length;
+        getSegment(0, DATA_HEADER_SIZE).putLong(0, dataPosition);
+        return position;
+    }
+
+
+    /**
+     * Read a record of the data file
+     *
+     * @param offset the offset of the record
+     * @return the record
+     */
+    private R read(long offset) {
+        int segmentIndex = (int) (offset / segmentSize);
+        int position = (int) (offset % segmentSize);
+        int length = getSegment(segmentIndex, position + 4).getInt(position);
+        ByteBuffer segment = getSegment(segmentIndex, position + 4 + length).duplicate();
+        segment.limit(position + 4 + length);
+        segment.position(position + 4);
+        return codec.decode(segment.slice().asReadOnlyBuffer());
+    }
+
+
+    /**
+     * Read the records of a range of index entries
+     *
+     * @param fromIndex the first index, inclusive
+     * @param toIndex the last index, exclusive
+     * @return the records
+     */
+    private List<R> read(int fromIndex, int toIndex) {
+        List<R> result = new ArrayList<R>(Math.max(0, toIndex - fromIndex));
+        for (int i = fromIndex; i < toIndex; i++) {
+            result.add(read(getOffset(i)));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get a mapped segment of the data file which covers at least the required size. A segment is mapped on first access,
+     * the segments before are complete and mapped with the segment size. In case the mapping is too small, the segment is
+     * mapped again with the doubled size up to the segment size, which extends the data file.
+     *
+     * @param segmentIndex the index of the segment
+     * @param requiredSize the required size of the mapping
+     * @return the segment
+     */
+    private MappedByteBuffer getSegment(int segmentIndex, int requiredSize) {
+        try {
+            while (dataSegmentList.size() < segmentIndex) {
+                dataSegmentList.add(dataChannel.map(MapMode.READ_WRITE, (long) dataSegmentList.size() * segmentSize, segmentSize));
+            }
+
+            MappedByteBuffer segment = null;
+            if (segmentIndex < dataSegmentList.size()) {
+                segment = dataSegmentList.get(segmentIndex);
+                if (segment.capacity() >= requiredSize) {
+                    return segment;
+                }
+            }
+
+            long mappingSize = INITIAL_SEGMENT_MAPPING_SIZE;
+            if (segment != null) {
+                mappingSize = 2L * segment.capacity();
+                segment.force();
+            }
+
+            while (mappingSize < requiredSize) {
+                mappingSize <<= 1;
+            }
+
+            segment = dataChannel.map(MapMode.READ_WRITE, (long) segmentIndex * segmentSize, Math.min(segmentSize, mappingSize));
+            if (segmentIndex < dataSegmentList.size()) {
+                dataSegmentList.set(segmentIndex, segment);
+            } else {
+                dataSegmentList.add(segment);
+            }
+
+            return segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map the data file: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Insert an index entry, the order by valid from and valid till is kept
+     *
+     * @param validFrom the valid from
+     * @param validTill the valid till
+     * @param offset the offset of the record
+     * @param keyHash the hash code of the primary key
+     */
+    private void insertEntry(Instant validFrom, Instant validTill, long offset, int keyHash) {
+        ensureIndexCapacity(size + 1);
+
+        // after the last entry which is not later
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int result = compare(getFromSeconds(mid), getFromNanos(mid), validFrom);
+            if (result > 0 || (result == 0 && compare(getTillSeconds(mid), getTillNanos(mid), validTill) > 0)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        int insertIndex = low;
+
+        moveEntries(insertIndex, insertIndex + 1, size - insertIndex);
+
+        int position = getEntryPosition(insertIndex);
+        index.putLong(position, validFrom.getEpochSecond());
+        index.putLong(position + 8, validTill.getEpochSecond());
+        index.putInt(position + 16, validFrom.getNano());
+        index.putInt(position + 20, validTill.getNano());
+        index.putLong(position + 24, offset);
+        index.putInt(position + 32, keyHash);
+        index.putInt(position + 36, 0);
+        size++;
+        index.putInt(0, size);
+    }
+
+
+    /**
+     * Remove an index entry
+     *
+     * @param entryIndex the index of the entry
+     */
+    private void removeEntry(int entryIndex) {
+        moveEntries(entryIndex + 1, entryIndex, size - entryIndex - 1);
+        size--;
+        index.putInt(0, size);
+    }
+
+
+    /**
+     * Get the index of the entry of a primary key, only the records with the same hash code are decoded
+     *
+     * @param primaryKey the primary key
+     * @return the index of the entry or -1
+     */
+    private int indexOf(P primaryKey) {
+        if (primaryKey == null) {
+            return -1;
+        }
+
+        long[] offsets = offsetsByKeyHash.get(primaryKey.hashCode());
+        if (offsets == null) {
+            return -1;
+        }
+
+        for (long offset : offsets) {
+            R record = read(offset);
+            if (primaryKey.equals(record.getPrimaryKey())) {
+                return indexOf(offset, record.getValidFrom());
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Get the index of the entry of a record, the entries with the same valid from are searched by a binary search
+     *
+     * @param offset the offset of the record
+     * @param validFrom the valid from of the record
+     * @return the index of the entry
+     */
+    private int indexOf(long offset, Instant validFrom) {
+        for (int i = indexOfFirstLater(validFrom) - 1; i >= 0 && compare(getFromSeconds(i), getFromNanos(i), validFrom) == 0; i--) {
+            if (getOffset(i) == offset) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException("Inconsistent index, the record at offset " + offset + " is not indexed!");
+    }
+
+
+    /**
+     * Add the offset of a record to the offsets of its hash code
+     *
+     * @param keyHash the hash code of the primary key
+     * @param offset the offset of the record
+     */
+    private void addOffset(int keyHash, long offset) {
+        long[] offsets = offsetsByKeyHash.get(keyHash);
+        if (offsets == null) {
+            offsetsByKeyHash.put(keyHash, new long[] {offset});
+            return;
+        }
+
+        long[] newOffsets = Arrays.copyOf(offsets, offsets.length + 1);
+        newOffsets[offsets.length] = offset;
+        offsetsByKeyHash.put(keyHash, newOffsets);
+    }
+
+
+    /**
+     * Remove the offset of a record from the offsets of its hash code
+     *
+     * @param keyHash the hash code of the primary key
+     * @param offset the offset of the record
+     */
+    private void removeOffset(int keyHash, long offset) {
+        long[] offsets = offsetsByKeyHash.get(keyHash);
+        if (offsets == null) {
+            return;
+        }
+
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] == offset) {
+                if (offsets.length == 1) {
+                    offsetsByKeyHash.remove(keyHash);
+                } else {
+                    long[] newOffsets = new long[offsets.length - 1];
+                    System.arraycopy(offsets, 0, newOffsets, 0, i);
+                    System.arraycopy(offsets, i + 1, newOffsets, i, newOffsets.length - i);
+                    offsetsByKeyHash.put(keyHash, newOffsets);
+                }
+
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Get the index of the first entry which valid from is after the given instant
+     *
+     * @param instant the instant
+     * @return the index
+     */
+    private int indexOfFirstLater(Instant instant) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(getFromSeconds(mid), getFromNanos(mid), instant) > 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * Ensure the capacity of the mapped index, it is doubled if necessary
+     *
+     * @param numberOfEntries the number of entries
+     */
+    private void ensureIndexCapacity(int numberOfEntries) {
+        long requiredCapacity = INDEX_HEADER_SIZE + (long) numberOfEntries * INDEX_ENTRY_SIZE;
+        if (requiredCapacity <= index.capacity()) {
+            return;
+        }
+
+        long capacity = Math.max(requiredCapacity, 2L * index.capacity());
+        if (capacity > Integer.MAX_VALUE) {
+            capacity = requiredCapacity;
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("The index is full, too many records!");
+            }
+        }
+
+        try {
+            index.force();
+            index = indexChannel.map(MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map the index file: " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Move a range of index entries with bulk copies. The entries are copied in chunks through the copy buffer, starting at
+     * the end in case they are moved to a higher index, so the overlapping entries are read before they are overwritten.
+     *
+     * @param fromIndex the index of the first source entry
+     * @param toIndex the index of the first target entry
+     * @param numberOfEntries the number of entries to move
+     */
+    private void moveEntries(int fromIndex, int toIndex, int numberOfEntries) {
+        if (numberOfEntries <= 0 || fromIndex == toIndex) {
+            return;
+        }
+
+        ByteBuffer source = index.duplicate();
+        ByteBuffer target = index.duplicate();
+        int from = getEntryPosition(fromIndex);
+        int to = getEntryPosition(toIndex);
+        int length = numberOfEntries * INDEX_ENTRY_SIZE;
+        for (int copied = 0; copied < length;) {
+            int chunkLength = Math.min(copyBuffer.length, length - copied);
+            int chunkStart = copied;
+            if (toIndex > fromIndex) {
+                chunkStart = length - copied - chunkLength;
+            }
+
+            source.position(from + chunkStart);
+            source.get(copyBuffer, 0, chunkLength);
+            target.position(to + chunkStart);
+            target.put(copyBuffer, 0, chunkLength);
+            copied += chunkLength;
+        }
+    }
+
+
+    /**
+     * Compare the instant of an index entry with an instant
+     *
+     * @param seconds the epoch seconds of the entry
+     * @param nanos the nanos of the entry
+     * @param instant the instant
+     * @return the comparison result
+     */
+    private int compare(long seconds, int nanos, Instant instant) {
+        int result = Long.compare(seconds, instant.getEpochSecond());
+        if (result != 0) {
+            return result;
+        }
+
+        return Integer.compare(nanos, instant.getNano());
+    }
+
+
+    /**
+     * Get the position of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the position
+     */
+    private int getEntryPosition(int entryIndex) {
+        return INDEX_HEADER_SIZE + entryIndex * INDEX_ENTRY_SIZE;
+    }
+
+
+    /**
+     * Get the epoch seconds of the valid from of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the epoch seconds
+     */
+    private long getFromSeconds(int entryIndex) {
+        return index.getLong(getEntryPosition(entryIndex));
+    }
+
+
+    /**
+     * Get the epoch seconds of the valid till of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the epoch seconds
+     */
+    private long getTillSeconds(int entryIndex) {
+        return index.getLong(getEntryPosition(entryIndex) + 8);
+    }
+
+
+    /**
+     * Get the nanos of the valid from of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the nanos
+     */
+    private int getFromNanos(int entryIndex) {
+        return index.getInt(getEntryPosition(entryIndex) + 16);
+    }
+
+
+    /**
+     * Get the nanos of the valid till of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the nanos
+     */
+    private int getTillNanos(int entryIndex) {
+        return index.getInt(getEntryPosition(entryIndex) + 20);
+    }
+
+
+    /**
+     * Get the offset of the record of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the offset
+     */
+    private long getOffset(int entryIndex) {
+        return index.getLong(getEntryPosition(entryIndex) + 24);
+    }
+
+
+    /**
+     * Get the hash code of the primary key of an index entry
+     *
+     * @param entryIndex the index of the entry
+     * @return the hash code
+     */
+    private int getKeyHash(int entryIndex) {
+        return index.getInt(getEntryPosition(entryIndex) + 32);
+    }
+}
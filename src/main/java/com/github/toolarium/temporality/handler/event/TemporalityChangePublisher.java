@@ -0,0 +1,298 @@
+/*
+ * TemporalityChangePublisher.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.event;
+
+import com.github.toolarium.temporality.handler.ITemporalityChangeListener;
+import com.github.toolarium.temporality.handler.TemporalityChangeEvent;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a {@link ITemporalityChangeListener} which publishes the change events as {@link Flow.Publisher} in micro
+ * batches. The events are collected in the order of the changes and a batch is published as soon as it reaches the max
+ * batch size or at the latest after the max batch delay. The batches are delivered asynchronously by a
+ * {@link SubmissionPublisher} with a buffer per subscriber: if the buffer of a subscriber is full, the writing thread waits
+ * until the subscriber requests more batches (backpressure), at most for the max subscriber wait. After that the batch is
+ * dropped for this subscriber and counted. The full batches are queued in order and are submitted outside of the lock
+ * of the collected events, so the changes of other writers are collected while a slow subscriber is waited for.
+ * A change without subscriber is dropped. This class is thread safe.
+ */
+public class TemporalityChangePublisher implements ITemporalityChangeListener, Flow.Publisher<List<TemporalityChangeEvent<?>>>, AutoCloseable {
+    /** The default max number of events of a batch */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    /** The default max delay of an event until the batch is published */
+    public static final Duration DEFAULT_MAX_BATCH_DELAY = Duration.ofMillis(10);
+
+    /** The default max wait for a subscriber with a full buffer until the batch is dropped for it */
+    public static final Duration DEFAULT_MAX_SUBSCRIBER_WAIT = Duration.ofSeconds(10);
+
+    private static final Logger log = LoggerFactory.getLogger(TemporalityChangePublisher.class);
+    private final SubmissionPublisher<List<TemporalityChangeEvent<?>>> publisher;
+    private final ScheduledExecutorService scheduler;
+    private final int maxBatchSize;
+    private final long maxSubscriberWaitNanos;
+    private final Object lock;
+    private final Lock publishLock;
+    private final Queue<List<TemporalityChangeEvent<?>>> pendingBatchQueue;
+    private final AtomicLong droppedBatchCounter;
+    private List<TemporalityChangeEvent<?>> batch;
+    private boolean closed;
+
+
+    /**
+     * Constructor for TemporalityChangePublisher, the batches are delivered on the common pool
+     */
+    public TemporalityChangePublisher() {
+        this(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_DELAY);
+    }
+
+
+    /**
+     * Constructor for TemporalityChangePublisher
+     *
+     * @param executor the executor which delivers the batches to the subscribers
+     * @param maxBufferCapacity the max number of batches which are buffered per subscriber
+     * @param maxBatchSize the max number of events of a batch
+     * @param maxBatchDelay the max delay of an event until the batch is published
+     */
+    public TemporalityChangePublisher(Executor executor, int maxBufferCapacity, int maxBatchSize, Duration maxBatchDelay) {
+        this(executor, maxBufferCapacity, maxBatchSize, maxBatchDelay, DEFAULT_MAX_SUBSCRIBER_WAIT);
+    }
+
+
+    /**
+     * Constructor for TemporalityChangePublisher
+     *
+     * @param executor the executor which delivers the batches to the subscribers
+     * @param maxBufferCapacity the max number of batches which are buffered per subscriber
+     * @param maxBatchSize the max number of events of a batch
+     * @param maxBatchDelay the max delay of an event until the batch is published
+     * @param maxSubscriberWait the max wait for a subscriber with a full buffer, after it the batch is dropped for the subscriber
+     */
+    public TemporalityChangePublisher(Executor executor, int maxBufferCapacity, int maxBatchSize, Duration maxBatchDelay, Duration maxSubscriberWait) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Invalid executor!");
+        }
+
+        if (maxBufferCapacity <= 0) {
+            throw new IllegalArgumentException("Invalid max buffer capacity: " + maxBufferCapacity);
+        }
+
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Invalid max batch size: " + maxBatchSize);
+        }
+
+        if (maxBatchDelay == null || maxBatchDelay.isNegative() || maxBatchDelay.isZero()) {
+            throw new IllegalArgumentException("Invalid max batch delay: " + maxBatchDelay);
+        }
+
+        if (maxSubscriberWait == null || maxSubscriberWait.isNegative()) {
+            throw new IllegalArgumentException("Invalid max subscriber wait: " + maxSubscriberWait);
+        }
+
+        this.publisher = new SubmissionPublisher<List<TemporalityChangeEvent<?>>>(executor, maxBufferCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxSubscriberWaitNanos = maxSubscriberWait.toNanos();
+        this.lock = new Object();
+        this.publishLock = new ReentrantLock();
+        this.pendingBatchQueue = new ConcurrentLinkedQueue<List<TemporalityChangeEvent<?>>>();
+        this.droppedBatchCounter = new AtomicLong();
+        this.batch = new ArrayList<TemporalityChangeEvent<?>>();
+        this.closed = false;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "temporality-change-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long delayNanos = maxBatchDelay.toNanos();
+        scheduler.scheduleWithFixedDelay(this::flushPending, delayNanos, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityChangeListener#onTemporalityChange(com.github.toolarium.temporality.handler.TemporalityChangeEvent)
+     */
+    @Override
+    public void onTemporalityChange(TemporalityChangeEvent<?> event) {
+        synchronized (lock) {
+            if (closed) {
+                log.debug("Ignore change of closed publisher: " + event);
+                return;
+            }
+
+            batch.add(event);
+            if (batch.size() < maxBatchSize) {
+                return;
+            }
+
+            enqueueBatch();
+        }
+
+        publishPending();
+    }
+
+
+    /**
+     * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<TemporalityChangeEvent<?>>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+
+    /**
+     * Publish the collected events immediately
+     */
+    public void flush() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            enqueueBatch();
+        }
+
+        publishPending();
+    }
+
+
+    /**
+     * Get the number of subscribers
+     *
+     * @return the number of subscribers
+     */
+    public int getNumberOfSubscribers() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+
+    /**
+     * Get the number of batches which are dropped for a subscriber after the max subscriber wait
+     *
+     * @return the number of dropped batches
+     */
+    public long getNumberOfDroppedBatches() {
+        return droppedBatchCounter.get();
+    }
+
+
+    /**
+     * Get the max number of events of a batch
+     *
+     * @return the max batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+
+    /**
+     * Publish the collected events and complete the subscribers, later changes are ignored
+     *
+     * @see java.lang.AutoCloseable#close()
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            enqueueBatch();
+            closed = true;
+        }
+
+        scheduler.shutdownNow();
+        publishPending();
+        publishLock.lock();
+        try {
+            publisher.close();
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+
+    /**
+     * Publish the collected events after the max batch delay
+     */
+    private void flushPending() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // keep the scheduled flush alive
+            log.debug("Could not publish the changes\n->" + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Queue the collected events as one batch, it has to be called under the lock of the collected events
+     */
+    private void enqueueBatch() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        pendingBatchQueue.add(Collections.unmodifiableList(batch));
+        batch = new ArrayList<TemporalityChangeEvent<?>>();
+    }
+
+
+    /**
+     * Publish the queued batches in order, it waits as long as the buffer of a subscriber is full but at most for the
+     * max subscriber wait per batch
+     */
+    private void publishPending() {
+        publishLock.lock();
+        try {
+            List<TemporalityChangeEvent<?>> events = pendingBatchQueue.poll();
+            while (events != null) {
+                if (!publisher.isClosed()) {
+                    publisher.offer(events, maxSubscriberWaitNanos, TimeUnit.NANOSECONDS, this::onDrop);
+                }
+
+                events = pendingBatchQueue.poll();
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+
+    /**
+     * Drop a batch for a subscriber which buffer is still full after the max subscriber wait
+     *
+     * @param subscriber the subscriber
+     * @param events the batch
+     * @return false, the batch is not offered again
+     */
+    private boolean onDrop(Flow.Subscriber<? super List<TemporalityChangeEvent<?>>> subscriber, List<TemporalityChangeEvent<?>> events) {
+        droppedBatchCounter.incrementAndGet();
+        log.warn("Drop a batch of " + events.size() + " changes for the subscriber " + subscriber + ", its buffer is full.");
+        return false;
+    }
+}
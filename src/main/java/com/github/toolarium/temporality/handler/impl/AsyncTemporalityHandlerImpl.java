@@ -0,0 +1,251 @@
+/*
+ * AsyncTemporalityHandlerImpl.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IAsyncDAOService;
+import com.github.toolarium.temporality.handler.IAsyncTemporalityHandler;
+import com.github.toolarium.temporality.handler.ITemporalityMetricsListener;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityDAOOperation;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalityPlan;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements {@link IAsyncTemporalityHandler}. The search and the operations of a write are chained without blocking
+ * a thread. The writes of the same data key are chained to the previous write of the data key. The case logic is
+ * the same as of the {@link TemporalityHandlerImpl}: the plan, the metrics, the compaction, the sort contract, the max instant
+ * and the change events follow the options of the temporality handler. This class is thread safe.
+ */
+public final class AsyncTemporalityHandlerImpl implements IAsyncTemporalityHandler {
+    private static final Logger log = LoggerFactory.getLogger(AsyncTemporalityHandlerImpl.class);
+    private static final Object NULL_DATA_KEY = new Object();
+    private final TemporalityHandlerImpl temporalityHandler;
+    private final Map<Object, CompletableFuture<Integer>> pendingWriteMap;
+
+
+    /**
+     * Constructor for AsyncTemporalityHandlerImpl
+     */
+    public AsyncTemporalityHandlerImpl() {
+        this(new TemporalityHandlerImpl());
+    }
+
+
+    /**
+     * Constructor for AsyncTemporalityHandlerImpl
+     *
+     * @param temporalityHandler the temporality handler which plans the writes, e.g. built by the
+     *        {@link com.github.toolarium.temporality.handler.TemporalityHandlerBuilder}
+     */
+    public AsyncTemporalityHandlerImpl(TemporalityHandlerImpl temporalityHandler) {
+        if (temporalityHandler == null) {
+            throw new IllegalArgumentException("Invalid temporality handler!");
+        }
+
+        this.temporalityHandler = temporalityHandler;
+        this.pendingWriteMap = new ConcurrentHashMap<Object, CompletableFuture<Integer>>();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IAsyncTemporalityHandler#writeTemporalityRecordAsync(com.github.toolarium.temporality.handler.ITemporalityRecord,
+     *      com.github.toolarium.temporality.handler.IAsyncDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> CompletableFuture<Integer> writeTemporalityRecordAsync(R record, IAsyncDAOService<R> daoService) {
+        Object key = record.getDataKey();
+        if (key == null) {
+            key = NULL_DATA_KEY;
+        }
+
+        final Object dataKey = key;
+        final CompletableFuture<Integer> result = new CompletableFuture<Integer>();
+
+        // chain the write to the previous write of the same data key
+        CompletableFuture<Integer> previousWrite = pendingWriteMap.put(dataKey, result);
+        CompletableFuture<?> start = previousWrite;
+        if (start == null) {
+            start = CompletableFuture.completedFuture(null);
+        }
+
+        start.handle((r, e) -> null)
+             .thenCompose(v -> write(record, daoService))
+             .whenComplete((count, e) -> {
+                 pendingWriteMap.remove(dataKey, result);
+                 if (e != null) {
+                     result.completeExceptionally(e);
+                 } else {
+                     result.complete(count);
+                 }
+             });
+
+        return result;
+    }
+
+
+    /**
+     * Get the temporality handler which plans the writes
+     *
+     * @return the temporality handler
+     */
+    public TemporalityHandlerImpl getTemporalityHandler() {
+        return temporalityHandler;
+    }
+
+
+    /**
+     * Get the number of data keys with pending writes
+     *
+     * @return the number of data keys with pending writes
+     */
+    public int getNumberOfPendingDataKeys() {
+        return pendingWriteMap.size();
+    }
+
+
+    /**
+     * Write a record: read the timeline, plan and execute the operations
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param record the record
+     * @param daoService the dao service
+     * @return the future of the number of updated records
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> CompletableFuture<Integer> write(R record, IAsyncDAOService<R> daoService) {
+        if (log.isDebugEnabled()) {
+            log.debug("Write temporality record asynchronous: " + temporalityHandler.toString(record));
+        }
+
+        return call(TemporalityDAOOperation.SEARCH, () -> {
+            if (record.getValidFrom() != null && record.getValidTill() != null) {
+                return daoService.searchOverlapping(record, record.getValidFrom(), record.getValidTill());
+            }
+
+            return daoService.search(record);
+        }).exceptionally(e -> {
+            log.debug("Could not read current configuration: " + e.getMessage(), e);
+            return null;
+        }).thenCompose(resultList -> {
+            TemporalityPlan<R> plan = temporalityHandler.planRecord(record, resultList, temporalityHandler.isSorted(daoService.isSortedByValidFrom()));
+            return execute(plan, daoService).thenApply(count -> {
+                temporalityHandler.onTemporalityCases(plan);
+                if (temporalityHandler.isMetricsEnabled()) {
+                    temporalityHandler.getMetricsListener().onTemporalityWrite(1, 1 + plan.size());
+                }
+
+                return count;
+            });
+        });
+    }
+
+
+    /**
+     * Execute the operations of a plan one after the other, the change of each executed operation is passed to the change
+     * listener of the temporality handler
+     *
+     * @param <R> the generic record type.
+     * @param plan the plan
+     * @param daoService the dao service
+     * @return the future of the number of written and deleted records
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> CompletableFuture<Integer> execute(TemporalityPlan<R> plan, IAsyncDAOService<R> daoService) {
+        CompletableFuture<Integer> result = CompletableFuture.completedFuture(0);
+
+        for (TemporalityOperation<R> operation : plan.getOperationList()) {
+            result = result.thenCompose(count -> {
+                CompletableFuture<Void> future;
+                if (operation.isDelete()) {
+                    future = call(TemporalityDAOOperation.DELETE, () -> daoService.delete(operation.getRecord()));
+                } else {
+                    future = call(TemporalityDAOOperation.WRITE, () -> daoService.write(operation.getTemporalityActionType(), operation.getRecord()));
+                }
+
+                return future.handle((v, e) -> {
+                    if (e != null) {
+                        if (operation.isDelete()) {
+                            log.debug("Could not delete: " + operation.getRecord() + "\n->" + e.getMessage(), e);
+                        } else {
+                            log.debug("Could not write: " + operation.getRecord() + "\n->" + e.getMessage(), e);
+                        }
+
+                        return count;
+                    }
+
+                    if (temporalityHandler.isChangeEventsEnabled()) {
+                        temporalityHandler.getChangeListener().onTemporalityChange(TemporalityHandlerImpl.createChangeEvent(operation));
+                    }
+
+                    return count + 1;
+                });
+            });
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Call a dao service method and pass its duration to the metrics listener of the temporality handler
+     *
+     * @param <T> the generic result type
+     * @param operation the dao operation
+     * @param supplier the supplier of the future
+     * @return the future
+     */
+    private <T> CompletableFuture<T> call(TemporalityDAOOperation operation, Supplier<CompletableFuture<T>> supplier) {
+        if (!temporalityHandler.isMetricsEnabled()) {
+            return call(supplier);
+        }
+
+        final ITemporalityMetricsListener metricsListener = temporalityHandler.getMetricsListener();
+        final long start = System.nanoTime();
+        return call(supplier).whenComplete((r, e) -> {
+            if (e != null) {
+                Throwable cause = e;
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+
+                if (cause instanceof RuntimeException) {
+                    metricsListener.onDAOException(operation, (RuntimeException) cause);
+                } else {
+                    metricsListener.onDAOException(operation, new CompletionException(cause));
+                }
+            }
+
+            metricsListener.onDAOCall(operation, System.nanoTime() - start);
+        });
+    }
+
+
+    /**
+     * Call a dao service method, an exception is returned as failed future
+     *
+     * @param <T> the generic result type
+     * @param supplier the supplier of the future
+     * @return the future
+     */
+    private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> supplier) {
+        try {
+            return supplier.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> result = new CompletableFuture<T>();
+            result.completeExceptionally(e);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * BatchOperationDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityChangeListener;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a {@link IDAOService} which collects the write and delete operations and passes them on {@link #flush()}
+ * to the {@link IBatchDAOService}. The deletes are passed before the writes in one call, a pending write of the same primary
+ * key is superseded by the delete and removed from the batch.
+ * A search flushes the pending operations of the same data key before it is passed to the dao service. A pending write of
+ * a record without primary key can be replaced or removed by a later change of the same record instance, the net write is
+ * flushed once and its primary key is never needed. The changes of the executed operations are passed to the change
+ * listener after they are flushed.
+ *
+ * @param <R> the generic record type.
+ * @param <D> the generic data key type.
+ */
+class BatchOperationDAOService<R extends ITemporalityRecord<R, ?, D>, D> implements IDAOService<R> {
+    private static final Logger log = LoggerFactory.getLogger(BatchOperationDAOService.class);
+    private IBatchDAOService<R> batchDAOService;
+    private List<TemporalityOperation<R>> writeOperationList;
+    private List<R> deleteRecordList;
+    private Map<D, Integer> resultByDataKey;
+    private ITemporalityChangeListener changeListener;
+    private List<TemporalityOperation<R>> writeChangeList;
+    private List<TemporalityOperation<R>> deleteChangeList;
+    private List<R> foldedRecordList;
+
+
+    /**
+     * Constructor for BatchOperationDAOService
+     *
+     * @param batchDAOService the batch dao service
+     */
+    BatchOperationDAOService(IBatchDAOService<R> batchDAOService) {
+        this(batchDAOService, ITemporalityChangeListener.NO_OP);
+    }
+
+
+    /**
+     * Constructor for BatchOperationDAOService
+     *
+     * @param batchDAOService the batch dao service
+     * @param changeListener the change listener
+     */
+    BatchOperationDAOService(IBatchDAOService<R> batchDAOService, ITemporalityChangeListener changeListener) {
+        this.batchDAOService = batchDAOService;
+        this.writeOperationList = new ArrayList<TemporalityOperation<R>>();
+        this.deleteRecordList = new ArrayList<R>();
+        this.resultByDataKey = new HashMap<D, Integer>();
+        this.changeListener = changeListener;
+        this.writeChangeList = new ArrayList<TemporalityOperation<R>>();
+        this.deleteChangeList = new ArrayList<TemporalityOperation<R>>();
+        this.foldedRecordList = new ArrayList<R>();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        writeOperationList.add(new TemporalityOperation<R>(temporalityActionType, record));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        if (record.getPrimaryKey() != null) {
+            for (int i = writeOperationList.size() - 1; i >= 0; i--) {
+                R pendingRecord = writeOperationList.get(i).getRecord();
+                if (Objects.equals(record.getPrimaryKey(), pendingRecord.getPrimaryKey())) {
+                    // the pending write is superseded by the delete and counted
+                    writeOperationList.remove(i);
+                    foldedRecordList.add(pendingRecord);
+                }
+            }
+        }
+
+        deleteRecordList.add(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        if (hasPendingOperations(recordFilter.getDataKey())) {
+            flush();
+        }
+
+        return batchDAOService.search(recordFilter);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        if (hasPendingOperations(recordFilter.getDataKey())) {
+            flush();
+        }
+
+        return batchDAOService.searchOverlapping(recordFilter, validFrom, validTill);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchValidAt(java.lang.Object, java.time.Instant)
+     */
+    @Override
+    public List<R> searchValidAt(R recordFilter, Instant validAt) {
+        if (hasPendingOperations(recordFilter.getDataKey())) {
+            flush();
+        }
+
+        return batchDAOService.searchValidAt(recordFilter, validAt);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return batchDAOService.isSortedByValidFrom();
+    }
+
+
+    /**
+     * Check if a record instance is written by a pending operation
+     *
+     * @param record the record
+     * @return true if the record is pending
+     */
+    boolean isPendingWrite(R record) {
+        return indexOfPendingWrite(record) >= 0;
+    }
+
+
+    /**
+     * Replace the record of a pending write by a changed record, the action type of the pending write is kept
+     *
+     * @param pendingRecord the record instance of the pending write
+     * @param record the changed record
+     * @return true if the pending write was replaced
+     */
+    boolean replacePendingWrite(R pendingRecord, R record) {
+        int index = indexOfPendingWrite(pendingRecord);
+        if (index < 0) {
+            return false;
+        }
+
+        writeOperationList.set(index, new TemporalityOperation<R>(writeOperationList.get(index).getTemporalityActionType(), record));
+        foldedRecordList.add(record);
+        return true;
+    }
+
+
+    /**
+     * Remove a pending write, the record is never written
+     *
+     * @param pendingRecord the record instance of the pending write
+     * @return true if the pending write was removed
+     */
+    boolean removePendingWrite(R pendingRecord) {
+        int index = indexOfPendingWrite(pendingRecord);
+        if (index < 0) {
+            return false;
+        }
+
+        // the removed write and the delete are counted
+        writeOperationList.remove(index);
+        foldedRecordList.add(pendingRecord);
+        foldedRecordList.add(pendingRecord);
+        return true;
+    }
+
+
+    /**
+     * Add the planned operation of the last collected write or delete, the change is passed to the change listener after the flush
+     *
+     * @param operation the planned operation
+     */
+    void addChange(TemporalityOperation<R> operation) {
+        if (operation.isDelete()) {
+            deleteChangeList.add(operation);
+        } else {
+            writeChangeList.add(operation);
+        }
+    }
+
+
+    /**
+     * Flush the pending operations. The deletes and the writes are passed in one call of
+     * {@link IBatchDAOService#apply(List, List)} in case there are both. The changes which were folded into a pending write
+     * are counted as well. A failed flush is logged and its operations are not counted.
+     *
+     * @return the number of written and deleted records
+     */
+    public int flush() {
+        List<R> foldedList = foldedRecordList;
+        foldedRecordList = new ArrayList<R>();
+        if (deleteRecordList.isEmpty() && writeOperationList.isEmpty()) {
+            countFolded(foldedList);
+            return foldedList.size();
+        }
+
+        List<R> recordList = deleteRecordList;
+        List<TemporalityOperation<R>> operationList = writeOperationList;
+        List<TemporalityOperation<R>> changeList = deleteChangeList;
+        changeList.addAll(writeChangeList);
+        deleteRecordList = new ArrayList<R>();
+        writeOperationList = new ArrayList<TemporalityOperation<R>>();
+        deleteChangeList = new ArrayList<TemporalityOperation<R>>();
+        writeChangeList = new ArrayList<TemporalityOperation<R>>();
+
+        try {
+            if (operationList.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Delete " + recordList.size() + " entries.");
+                }
+
+                batchDAOService.deleteAll(recordList);
+            } else if (recordList.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Write " + operationList.size() + " entries.");
+                }
+
+                batchDAOService.writeAll(operationList);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Delete " + recordList.size() + " and write " + operationList.size() + " entries.");
+                }
+
+                batchDAOService.apply(recordList, operationList);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not delete " + recordList.size() + " and write " + operationList.size() + " entries: " + e.getMessage(), e);
+            return 0;
+        }
+
+        for (R record : recordList) {
+            resultByDataKey.merge(record.getDataKey(), 1, Integer::sum);
+        }
+
+        for (TemporalityOperation<R> operation : operationList) {
+            resultByDataKey.merge(operation.getRecord().getDataKey(), 1, Integer::sum);
+        }
+
+        countFolded(foldedList);
+        publishChanges(changeList);
+        return recordList.size() + operationList.size() + foldedList.size();
+    }
+
+
+    /**
+     * Get the number of written and deleted records of a data key
+     *
+     * @param dataKey the data key
+     * @return the number of written and deleted records
+     */
+    public int getResult(D dataKey) {
+        Integer result = resultByDataKey.get(dataKey);
+        if (result == null) {
+            return 0;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Count the changes which were folded into a pending write
+     *
+     * @param foldedList the records of the folded changes
+     */
+    private void countFolded(List<R> foldedList) {
+        for (R record : foldedList) {
+            resultByDataKey.merge(record.getDataKey(), 1, Integer::sum);
+        }
+    }
+
+
+    /**
+     * Pass the changes of the flushed operations to the change listener
+     *
+     * @param changeList the planned operations
+     */
+    private void publishChanges(List<TemporalityOperation<R>> changeList) {
+        for (TemporalityOperation<R> operation : changeList) {
+            changeListener.onTemporalityChange(TemporalityHandlerImpl.createChangeEvent(operation));
+        }
+    }
+
+
+    /**
+     * Get the index of the pending write of a record instance
+     *
+     * @param record the record
+     * @return the index or -1
+     */
+    private int indexOfPendingWrite(R record) {
+        for (int i = 0; i < writeOperationList.size(); i++) {
+            if (writeOperationList.get(i).getRecord() == record) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Check if there are pending operations of a data key
+     *
+     * @param dataKey the data key
+     * @return true if there are pending operations
+     */
+    private boolean hasPendingOperations(D dataKey) {
+        for (R record : deleteRecordList) {
+            if (Objects.equals(dataKey, record.getDataKey())) {
+                return true;
+            }
+        }
+
+        for (TemporalityOperation<R> operation : writeOperationList) {
+            if (Objects.equals(dataKey, operation.getRecord().getDataKey())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
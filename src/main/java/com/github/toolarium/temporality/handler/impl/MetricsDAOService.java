@@ -0,0 +1,341 @@
+/*
+ * MetricsDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IBatchDAOService;
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityMetricsListener;
+import com.github.toolarium.temporality.handler.IVersionedDAOService;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityDAOOperation;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalitySnapshot;
+import java.time.Instant;
+import java.util.List;
+
+
+/**
+ * Implements a {@link IDAOService} which measures the calls of the dao service and passes them to the
+ * {@link ITemporalityMetricsListener}. A failed call is passed to the listener and rethrown. An instance is used by one
+ * write of the temporality handler and is not thread safe.
+ *
+ * @param <R> the generic record type.
+ */
+class MetricsDAOService<R> implements IDAOService<R> {
+    private IDAOService<R> daoService;
+    private ITemporalityMetricsListener metricsListener;
+    private int numberOfCalls;
+
+
+    /**
+     * Constructor for MetricsDAOService
+     *
+     * @param daoService the dao service
+     * @param metricsListener the metrics listener
+     */
+    MetricsDAOService(IDAOService<R> daoService, ITemporalityMetricsListener metricsListener) {
+        this.daoService = daoService;
+        this.metricsListener = metricsListener;
+        this.numberOfCalls = 0;
+    }
+
+
+    /**
+     * Create the metrics dao service, a {@link IVersionedDAOService} is wrapped into a versioned dao service and a
+     * {@link IBatchDAOService} into a batch dao service.
+     *
+     * @param <R> the generic record type.
+     * @param daoService the dao service
+     * @param metricsListener the metrics listener
+     * @return the metrics dao service
+     */
+    static <R> MetricsDAOService<R> wrap(IDAOService<R> daoService, ITemporalityMetricsListener metricsListener) {
+        if (daoService instanceof IVersionedDAOService) {
+            return new MetricsVersionedDAOService<R>((IVersionedDAOService<R>) daoService, metricsListener);
+        }
+
+        if (daoService instanceof IBatchDAOService) {
+            return new MetricsBatchDAOService<R>((IBatchDAOService<R>) daoService, metricsListener);
+        }
+
+        return new MetricsDAOService<R>(daoService, metricsListener);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        long start = start();
+        try {
+            daoService.write(temporalityActionType, record);
+        } catch (RuntimeException e) {
+            metricsListener.onDAOException(TemporalityDAOOperation.WRITE, e);
+            throw e;
+        } finally {
+            end(TemporalityDAOOperation.WRITE, start);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        long start = start();
+        try {
+            daoService.delete(record);
+        } catch (RuntimeException e) {
+            metricsListener.onDAOException(TemporalityDAOOperation.DELETE, e);
+            throw e;
+        } finally {
+            end(TemporalityDAOOperation.DELETE, start);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        long start = start();
+        try {
+            return daoService.search(recordFilter);
+        } catch (RuntimeException e) {
+            metricsListener.onDAOException(TemporalityDAOOperation.SEARCH, e);
+            throw e;
+        } finally {
+            end(TemporalityDAOOperation.SEARCH, start);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        long start = start();
+        try {
+            return daoService.searchOverlapping(recordFilter, validFrom, validTill);
+        } catch (RuntimeException e) {
+            metricsListener.onDAOException(TemporalityDAOOperation.SEARCH, e);
+            throw e;
+        } finally {
+            end(TemporalityDAOOperation.SEARCH, start);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchValidAt(java.lang.Object, java.time.Instant)
+     */
+    @Override
+    public List<R> searchValidAt(R recordFilter, Instant validAt) {
+        long start = start();
+        try {
+            return daoService.searchValidAt(recordFilter, validAt);
+        } catch (RuntimeException e) {
+            metricsListener.onDAOException(TemporalityDAOOperation.SEARCH, e);
+            throw e;
+        } finally {
+            end(TemporalityDAOOperation.SEARCH, start);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return daoService.isSortedByValidFrom();
+    }
+
+
+    /**
+     * Get the dao service
+     *
+     * @return the dao service
+     */
+    IDAOService<R> getDAOService() {
+        return daoService;
+    }
+
+
+    /**
+     * Get the number of calls of the dao service
+     *
+     * @return the number of calls
+     */
+    int getNumberOfCalls() {
+        return numberOfCalls;
+    }
+
+
+    /**
+     * Start a call
+     *
+     * @return the start time in nanoseconds
+     */
+    protected long start() {
+        numberOfCalls++;
+        return System.nanoTime();
+    }
+
+
+    /**
+     * End a call
+     *
+     * @param operation the operation
+     * @param start the start time in nanoseconds
+     */
+    protected void end(TemporalityDAOOperation operation, long start) {
+        metricsListener.onDAOCall(operation, System.nanoTime() - start);
+    }
+
+
+    /**
+     * Get the metrics listener
+     *
+     * @return the metrics listener
+     */
+    protected ITemporalityMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+
+    /**
+     * Implements the {@link MetricsDAOService} of a {@link IBatchDAOService}.
+     *
+     * @param <R> the generic record type.
+     */
+    static class MetricsBatchDAOService<R> extends MetricsDAOService<R> implements IBatchDAOService<R> {
+        private IBatchDAOService<R> batchDAOService;
+
+
+        /**
+         * Constructor for MetricsBatchDAOService
+         *
+         * @param batchDAOService the batch dao service
+         * @param metricsListener the metrics listener
+         */
+        MetricsBatchDAOService(IBatchDAOService<R> batchDAOService, ITemporalityMetricsListener metricsListener) {
+            super(batchDAOService, metricsListener);
+            this.batchDAOService = batchDAOService;
+        }
+
+
+        /**
+         * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+         */
+        @Override
+        public void writeAll(List<TemporalityOperation<R>> operationList) {
+            long start = start();
+            try {
+                batchDAOService.writeAll(operationList);
+            } catch (RuntimeException e) {
+                getMetricsListener().onDAOException(TemporalityDAOOperation.WRITE_ALL, e);
+                throw e;
+            } finally {
+                end(TemporalityDAOOperation.WRITE_ALL, start);
+            }
+        }
+
+
+        /**
+         * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+         */
+        @Override
+        public void deleteAll(List<R> recordList) {
+            long start = start();
+            try {
+                batchDAOService.deleteAll(recordList);
+            } catch (RuntimeException e) {
+                getMetricsListener().onDAOException(TemporalityDAOOperation.DELETE_ALL, e);
+                throw e;
+            } finally {
+                end(TemporalityDAOOperation.DELETE_ALL, start);
+            }
+        }
+
+
+        /**
+         * @see com.github.toolarium.temporality.handler.IBatchDAOService#apply(java.util.List, java.util.List)
+         */
+        @Override
+        public void apply(List<R> deleteRecordList, List<TemporalityOperation<R>> operationList) {
+            long start = start();
+            try {
+                batchDAOService.apply(deleteRecordList, operationList);
+            } catch (RuntimeException e) {
+                getMetricsListener().onDAOException(TemporalityDAOOperation.APPLY_ALL, e);
+                throw e;
+            } finally {
+                end(TemporalityDAOOperation.APPLY_ALL, start);
+            }
+        }
+    }
+
+
+    /**
+     * Implements the {@link MetricsDAOService} of a {@link IVersionedDAOService}.
+     *
+     * @param <R> the generic record type.
+     */
+    static class MetricsVersionedDAOService<R> extends MetricsDAOService<R> implements IVersionedDAOService<R> {
+        private IVersionedDAOService<R> versionedDAOService;
+
+
+        /**
+         * Constructor for MetricsVersionedDAOService
+         *
+         * @param versionedDAOService the versioned dao service
+         * @param metricsListener the metrics listener
+         */
+        MetricsVersionedDAOService(IVersionedDAOService<R> versionedDAOService, ITemporalityMetricsListener metricsListener) {
+            super(versionedDAOService, metricsListener);
+            this.versionedDAOService = versionedDAOService;
+        }
+
+
+        /**
+         * @see com.github.toolarium.temporality.handler.IVersionedDAOService#searchSnapshot(java.lang.Object, java.time.Instant, java.time.Instant)
+         */
+        @Override
+        public TemporalitySnapshot<R> searchSnapshot(R recordFilter, Instant validFrom, Instant validTill) {
+            long start = start();
+            try {
+                return versionedDAOService.searchSnapshot(recordFilter, validFrom, validTill);
+            } catch (RuntimeException e) {
+                getMetricsListener().onDAOException(TemporalityDAOOperation.SEARCH, e);
+                throw e;
+            } finally {
+                end(TemporalityDAOOperation.SEARCH, start);
+            }
+        }
+
+
+        /**
+         * @see com.github.toolarium.temporality.handler.IVersionedDAOService#writeAll(java.util.List, java.lang.Object)
+         */
+        @Override
+        public void writeAll(List<TemporalityOperation<R>> operationList, Object expectedVersion) {
+            long start = start();
+            try {
+                versionedDAOService.writeAll(operationList, expectedVersion);
+            } catch (RuntimeException e) {
+                getMetricsListener().onDAOException(TemporalityDAOOperation.WRITE_VERSIONED, e);
+                throw e;
+            } finally {
+                end(TemporalityDAOOperation.WRITE_VERSIONED, start);
+            }
+        }
+    }
+}
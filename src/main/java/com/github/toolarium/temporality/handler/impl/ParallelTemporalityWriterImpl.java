@@ -0,0 +1,288 @@
+/*
+ * ParallelTemporalityWriterImpl.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.IParallelTemporalityWriter;
+import com.github.toolarium.temporality.handler.ITemporalityHandler;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityHandlerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements {@link IParallelTemporalityWriter}. The partitions of the data keys are processed on a {@link ForkJoinPool}.
+ * A data key is guarded by one of a fixed number of striped locks, which keeps the number of locks independent of the
+ * number of data keys. Different data keys may share a lock, which only reduces the parallelism. Only the wait for a lock
+ * which is held by an other write runs as {@link ForkJoinPool.ManagedBlocker}, so the pool adds a thread for a waiting
+ * worker instead of losing its parallelism, also on the common pool. The write itself runs on the worker thread. The
+ * records are written by the temporality handler of the writer, by default the shared temporality handler of the
+ * {@link TemporalityHandlerFactory}. This class is thread safe.
+ */
+public final class ParallelTemporalityWriterImpl implements IParallelTemporalityWriter {
+    /** The default number of locks */
+    public static final int DEFAULT_NUMBER_OF_LOCKS = 64;
+    private static final Logger log = LoggerFactory.getLogger(ParallelTemporalityWriterImpl.class);
+    private final ITemporalityHandler temporalityHandler;
+    private final ForkJoinPool forkJoinPool;
+    private final Lock[] lockList;
+
+
+    /**
+     * Constructor for ParallelTemporalityWriterImpl, the records are written by the shared temporality handler of the
+     * {@link TemporalityHandlerFactory}
+     */
+    public ParallelTemporalityWriterImpl() {
+        this(ForkJoinPool.commonPool(), DEFAULT_NUMBER_OF_LOCKS);
+    }
+
+
+    /**
+     * Constructor for ParallelTemporalityWriterImpl, the records are written by the shared temporality handler of the
+     * {@link TemporalityHandlerFactory}
+     *
+     * @param forkJoinPool the fork join pool to write the partitions
+     * @param numberOfLocks the number of locks, it is rounded up to the next power of two
+     */
+    public ParallelTemporalityWriterImpl(ForkJoinPool forkJoinPool, int numberOfLocks) {
+        this(TemporalityHandlerFactory.getInstance().getTemporalityHandler(), forkJoinPool, numberOfLocks);
+    }
+
+
+    /**
+     * Constructor for ParallelTemporalityWriterImpl
+     *
+     * @param temporalityHandler the temporality handler which writes the records, e.g. a handler built by the
+     *        {@link com.github.toolarium.temporality.handler.TemporalityHandlerBuilder}
+     * @param forkJoinPool the fork join pool to write the partitions
+     * @param numberOfLocks the number of locks, it is rounded up to the next power of two
+     */
+    public ParallelTemporalityWriterImpl(ITemporalityHandler temporalityHandler, ForkJoinPool forkJoinPool, int numberOfLocks) {
+        if (temporalityHandler == null) {
+            throw new IllegalArgumentException("Invalid temporality handler!");
+        }
+
+        if (forkJoinPool == null) {
+            throw new IllegalArgumentException("Invalid fork join pool!");
+        }
+
+        if (numberOfLocks <= 0) {
+            throw new IllegalArgumentException("Invalid number of locks: " + numberOfLocks);
+        }
+
+        int size = 1;
+        while (size < numberOfLocks) {
+            size <<= 1;
+        }
+
+        this.temporalityHandler = temporalityHandler;
+        this.forkJoinPool = forkJoinPool;
+        this.lockList = new Lock[size];
+        for (int i = 0; i < size; i++) {
+            lockList[i] = new ReentrantLock();
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IParallelTemporalityWriter#writeTemporalityRecord(com.github.toolarium.temporality.handler.ITemporalityRecord,
+     *      com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> int writeTemporalityRecord(R record, IDAOService<R> daoService) {
+        return writeLocked(record.getDataKey(), () -> temporalityHandler.writeTemporlityRecord(record, daoService));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IParallelTemporalityWriter#writeTemporalityRecords(java.util.Collection, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> Map<D, Integer> writeTemporalityRecords(Collection<R> recordList, IDAOService<R> daoService) {
+        Map<D, Integer> result = new LinkedHashMap<D, Integer>();
+        if (recordList == null || recordList.isEmpty()) {
+            return result;
+        }
+
+        // partition the records by the data key, keep the order of the records
+        Map<D, List<R>> recordsByDataKey = new LinkedHashMap<D, List<R>>();
+        for (R record : recordList) {
+            recordsByDataKey.computeIfAbsent(record.getDataKey(), k -> new ArrayList<R>()).add(record);
+        }
+
+        log.debug("Write " + recordList.size() + " temporality records of " + recordsByDataKey.size() + " data keys in parallel.");
+        List<Callable<Integer>> taskList = new ArrayList<Callable<Integer>>(recordsByDataKey.size());
+        for (Map.Entry<D, List<R>> e : recordsByDataKey.entrySet()) {
+            taskList.add(() -> writePartition(e.getKey(), e.getValue(), daoService));
+        }
+
+        List<Future<Integer>> futureList = forkJoinPool.invokeAll(taskList);
+        int i = 0;
+        for (D dataKey : recordsByDataKey.keySet()) {
+            result.put(dataKey, getResult(futureList.get(i++)));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get the temporality handler which writes the records
+     *
+     * @return the temporality handler
+     */
+    public ITemporalityHandler getTemporalityHandler() {
+        return temporalityHandler;
+    }
+
+
+    /**
+     * Write the records of a data key
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param dataKey the data key
+     * @param recordList the records of the data key
+     * @param daoService the dao service
+     * @return the number of updated records
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int writePartition(D dataKey, List<R> recordList, IDAOService<R> daoService) {
+        Integer result = writeLocked(dataKey, () -> temporalityHandler.writeTemporalityRecords(recordList, daoService).get(dataKey));
+        if (result == null) {
+            return 0;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Write under the lock of a data key. Only the wait for the lock is executed as managed blocker, which lets
+     * a {@link ForkJoinPool} compensate the waiting worker thread. A free lock is taken without a compensation.
+     *
+     * @param <T> the generic result type
+     * @param dataKey the data key
+     * @param writer the write
+     * @return the result of the write
+     */
+    protected <T> T writeLocked(Object dataKey, Supplier<T> writer) {
+        Lock lock = getLock(dataKey);
+        if (!lock.tryLock()) {
+            try {
+                ForkJoinPool.managedBlock(new LockBlocker(lock));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while writing the temporality records!", e);
+            }
+        }
+
+        try {
+            return writer.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    /**
+     * Get the lock of a data key
+     *
+     * @param dataKey the data key
+     * @return the lock
+     */
+    protected Lock getLock(Object dataKey) {
+        int hash = 0;
+        if (dataKey != null) {
+            hash = dataKey.hashCode();
+            hash ^= hash >>> 16;
+        }
+
+        return lockList[hash & (lockList.length - 1)];
+    }
+
+
+    /**
+     * Get the result of a partition
+     *
+     * @param future the future
+     * @return the number of updated records
+     */
+    private int getResult(Future<Integer> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing the temporality records!", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw new IllegalStateException("Could not write the temporality records: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+
+    /**
+     * The wait for a lock as managed blocker, the lock is held after the blocker is released
+     */
+    private static final class LockBlocker implements ForkJoinPool.ManagedBlocker {
+        private final Lock lock;
+        private boolean locked;
+
+
+        /**
+         * Constructor for LockBlocker
+         *
+         * @param lock the lock
+         */
+        LockBlocker(Lock lock) {
+            this.lock = lock;
+            this.locked = false;
+        }
+
+
+        /**
+         * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#block()
+         */
+        @Override
+        public boolean block() {
+            if (!locked) {
+                lock.lock();
+                locked = true;
+            }
+
+            return true;
+        }
+
+
+        /**
+         * @see java.util.concurrent.ForkJoinPool.ManagedBlocker#isReleasable()
+         */
+        @Override
+        public boolean isReleasable() {
+            if (!locked) {
+                locked = lock.tryLock();
+            }
+
+            return locked;
+        }
+    }
+}
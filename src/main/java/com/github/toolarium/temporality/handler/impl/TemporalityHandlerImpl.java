@@ -5,17 +5,41 @@
  */
 package com.github.toolarium.temporality.handler.impl;
 
+import com.github.toolarium.temporality.handler.IBatchDAOService;
 import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityChangeListener;
 import com.github.toolarium.temporality.handler.ITemporalityHandler;
+import com.github.toolarium.temporality.handler.ITemporalityMetricsListener;
 import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.IVersionedDAOService;
 import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityCase;
+import com.github.toolarium.temporality.handler.TemporalityChangeEvent;
+import com.github.toolarium.temporality.handler.TemporalityConflictException;
+import com.github.toolarium.temporality.handler.TemporalityHandlerBuilder;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalityPlan;
+import com.github.toolarium.temporality.handler.TemporalitySnapshot;
+import com.github.toolarium.temporality.handler.TemporalitySortContract;
+import com.github.toolarium.temporality.handler.TemporalityUnitOfWork;
 import java.io.Serializable;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.Month;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,140 +76,1470 @@ import org.slf4j.LoggerFactory;
  *
  * Case E1: 1)      <------(A)-->
  *          2)     <---(B)------>
+ *
+ * Compact: 1) <-(A)-><-(A')-><-(B)->
+ *          2) <-----(A)-----><-(B)->
  * }</code>
  */
 public final class TemporalityHandlerImpl implements ITemporalityHandler, Serializable {
+    /** The default number of retries of a write in case of a conflict of an {@link IVersionedDAOService} */
+    public static final int DEFAULT_CONFLICT_RETRIES = 5;
+
+    /** The default backoff of the first retry, it is doubled on each retry */
+    public static final Duration DEFAULT_CONFLICT_BACKOFF = Duration.ofMillis(10);
+
+    /** The maximum backoff of a retry */
+    public static final Duration MAX_CONFLICT_BACKOFF = Duration.ofSeconds(1);
+
     private static final long serialVersionUID = -1597927371967741727L;
     private static final Logger log = LoggerFactory.getLogger(TemporalityHandlerImpl.class);
-    
+    static final Comparator<ITemporalityRecord<?, ?, ?>> VALIDITY_COMPARATOR =
+            Comparator.comparing((ITemporalityRecord<?, ?, ?> r) -> r.getValidFrom(), Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+                      .thenComparing(r -> r.getValidTill(), Comparator.nullsLast(Comparator.<Instant>naturalOrder()));
+    private final transient ITemporalityMetricsListener metricsListener;
+    private final boolean compactOnWrite;
+    private final boolean batchWrite;
+    private final boolean timelineCache;
+    private final TemporalitySortContract sortContract;
+    private final Instant maxInstant;
+    private final int conflictRetries;
+    private final Duration conflictBackoff;
+    private final transient ITemporalityChangeListener changeListener;
+    private final transient TemporalityPlanBuffer.Pool planBufferPool;
+
+
+    /**
+     * Constructor for TemporalityHandlerImpl, a handler with other options is built by the {@link TemporalityHandlerBuilder}
+     */
+    public TemporalityHandlerImpl() {
+        this(ITemporalityMetricsListener.NO_OP, false, true, true, TemporalitySortContract.DAO_SERVICE, Instant.MAX, DEFAULT_CONFLICT_RETRIES, DEFAULT_CONFLICT_BACKOFF,
+             ITemporalityChangeListener.NO_OP);
+    }
+
+
+    /**
+     * Constructor for TemporalityHandlerImpl, it is called by the {@link TemporalityHandlerBuilder}
+     *
+     * @param metricsListener the metrics listener or null
+     * @param compactOnWrite true to merge the written record with the contiguous records of the same payload
+     * @param batchWrite true to flush the operations of a write at once in case of an {@link IBatchDAOService}
+     * @param timelineCache true to read the timeline of a data key once in a bulk write
+     * @param sortContract the sort contract of the records returned by the dao services
+     * @param maxInstant the sentinel of the unlimited valid till
+     * @param conflictRetries the number of retries of a write in case of a conflict of an {@link IVersionedDAOService}
+     * @param conflictBackoff the backoff of the first retry, it is doubled on each retry up to {@link #MAX_CONFLICT_BACKOFF}
+     * @param changeListener the change listener or null
+     */
+    public TemporalityHandlerImpl(ITemporalityMetricsListener metricsListener, boolean compactOnWrite, boolean batchWrite, boolean timelineCache,
+                                  TemporalitySortContract sortContract, Instant maxInstant, int conflictRetries, Duration conflictBackoff,
+                                  ITemporalityChangeListener changeListener) {
+        if (sortContract == null) {
+            throw new IllegalArgumentException("Invalid sort contract!");
+        }
+
+        if (maxInstant == null) {
+            throw new IllegalArgumentException("Invalid max instant!");
+        }
+
+        this.metricsListener = metricsListener;
+        this.compactOnWrite = compactOnWrite;
+        this.batchWrite = batchWrite;
+        this.timelineCache = timelineCache;
+        this.sortContract = sortContract;
+        this.maxInstant = maxInstant;
+        this.conflictRetries = Math.max(0, conflictRetries);
+        if (conflictBackoff == null || conflictBackoff.isNegative()) {
+            this.conflictBackoff = Duration.ZERO;
+        } else {
+            this.conflictBackoff = conflictBackoff;
+        }
+
+        this.changeListener = changeListener;
+        this.planBufferPool = new TemporalityPlanBuffer.Pool(Runtime.getRuntime().availableProcessors());
+    }
+
 
     /**
      * @see com.github.toolarium.temporality.handler.ITemporalityHandler#writeTemporlityRecord(com.github.toolarium.temporality.handler.ITemporalityRecord, com.github.toolarium.temporality.handler.IDAOService)
      */
     @Override
     public <R extends ITemporalityRecord<R, P, D>, P, D> int writeTemporlityRecord(R record, IDAOService<R> daoService) {
-        log.debug("Write temporality record: " + toString(record));
-        int result = 0;
+        if (!isMetricsEnabled()) {
+            return writeRecord(record, daoService);
+        }
+
+        MetricsDAOService<R> metricsDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        int result = writeRecord(record, metricsDAOService);
+        metricsListener.onTemporalityWrite(1, metricsDAOService.getNumberOfCalls());
+        return result;
+    }
+
+
+    /**
+     * Get the metrics listener
+     *
+     * @return the metrics listener
+     */
+    public ITemporalityMetricsListener getMetricsListener() {
+        if (metricsListener == null) {
+            return ITemporalityMetricsListener.NO_OP;
+        }
+
+        return metricsListener;
+    }
+
+
+    /**
+     * Check if the written records are merged with the contiguous records of the same payload
+     *
+     * @return true if the written records are compacted
+     */
+    public boolean isCompactOnWrite() {
+        return compactOnWrite;
+    }
+
+
+    /**
+     * Check if the operations of a write are flushed at once in case of an {@link IBatchDAOService}
+     *
+     * @return true if the batch write is used
+     */
+    public boolean isBatchWrite() {
+        return batchWrite;
+    }
+
+
+    /**
+     * Check if a bulk write reads the timeline of a data key once
+     *
+     * @return true if the timeline of a data key is kept in memory during a bulk write
+     */
+    public boolean isTimelineCache() {
+        return timelineCache;
+    }
+
+
+    /**
+     * Get the sort contract of the records returned by the dao services
+     *
+     * @return the sort contract
+     */
+    public TemporalitySortContract getSortContract() {
+        return sortContract;
+    }
+
+
+    /**
+     * Get the sentinel of the unlimited valid till
+     *
+     * @return the max instant
+     */
+    public Instant getMaxInstant() {
+        return maxInstant;
+    }
+
+
+    /**
+     * Get the number of retries of a write in case of a conflict of an {@link IVersionedDAOService}
+     *
+     * @return the number of retries
+     */
+    public int getConflictRetries() {
+        return conflictRetries;
+    }
+
+
+    /**
+     * Get the backoff of the first retry in case of a conflict of an {@link IVersionedDAOService}
+     *
+     * @return the backoff
+     */
+    public Duration getConflictBackoff() {
+        return conflictBackoff;
+    }
+
+
+    /**
+     * Get the change listener
+     *
+     * @return the change listener
+     */
+    public ITemporalityChangeListener getChangeListener() {
+        if (changeListener == null) {
+            return ITemporalityChangeListener.NO_OP;
+        }
+
+        return changeListener;
+    }
+
+
+    /**
+     * Write a temporality record, in case of an {@link IVersionedDAOService} the write is conditional on the version of
+     * the timeline.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param daoService the data access service.
+     * @return the number of updated records.
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int writeRecord(R record, IDAOService<R> daoService) {
+        if (log.isDebugEnabled()) {
+            log.debug("Write temporality record: " + toString(record));
+        }
+
+        if (daoService instanceof IVersionedDAOService) {
+            boolean sorted = isSorted(daoService);
+            return writeVersioned((IVersionedDAOService<R>) daoService, record, record.getValidFrom(), record.getValidTill(), recordList -> planRecord(record, recordList, sorted));
+        }
 
         List<R> resultList = readTemporalityRecordList(daoService, record);
-        if (resultList != null && !resultList.isEmpty()) {
-            // terminate entries
-            boolean ignore = false;
-            for (R existingEntry : resultList) {
-                log.info("Check record " + record.getDataKey() + " (" + record.getPrimaryKey() + ") for update...");
-
-                KeyValueHolder<Integer, Boolean> k = updateExistingRecords(daoService, record, existingEntry);
-                result += k.getKey();
-                if (Boolean.TRUE.equals(k.getValue())) {
-                    ignore = true;
+        if (compactOnWrite || getUnitOfWork(daoService) != null) {
+            return executePlan(planRecord(record, resultList, isSorted(daoService)), daoService);
+        }
+
+        // the operations are executed from a pooled buffer without a plan, a deserialized handler has no pool
+        if (planBufferPool == null) {
+            TemporalityPlanBuffer<R> buffer = new TemporalityPlanBuffer<R>();
+            planRecord(record, resultList, isSorted(daoService), buffer);
+            return executeBuffer(buffer, daoService);
+        }
+
+        TemporalityPlanBuffer<R> buffer = planBufferPool.acquire();
+        try {
+            planRecord(record, resultList, isSorted(daoService), buffer);
+            return executeBuffer(buffer, daoService);
+        } finally {
+            planBufferPool.release(buffer);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#writeTemporalityRecords(java.util.Collection, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> Map<D, Integer> writeTemporalityRecords(Collection<R> recordList, IDAOService<R> daoService) {
+        Map<D, Integer> result = new LinkedHashMap<D, Integer>();
+        if (recordList == null || recordList.isEmpty()) {
+            return result;
+        }
+
+        // group the records by data key and keep the order
+        Map<D, List<R>> recordsByDataKey = new LinkedHashMap<D, List<R>>();
+        for (R record : recordList) {
+            recordsByDataKey.computeIfAbsent(record.getDataKey(), k -> new ArrayList<R>()).add(record);
+        }
+
+        MetricsDAOService<R> metricsDAOService = null;
+        IDAOService<R> writeDAOService = daoService;
+        if (isMetricsEnabled()) {
+            metricsDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+            writeDAOService = metricsDAOService;
+        }
+
+        // in case of a versioned dao service each record is written conditionally on the version of the timeline
+        boolean versioned = writeDAOService instanceof IVersionedDAOService;
+
+        // in case of a batch dao service all operations are collected and flushed at once
+        BatchOperationDAOService<R, D> batchOperationDAOService = null;
+        if (!versioned && batchWrite && writeDAOService instanceof IBatchDAOService) {
+            batchOperationDAOService = new BatchOperationDAOService<R, D>((IBatchDAOService<R>) writeDAOService, getChangeListener());
+            writeDAOService = batchOperationDAOService;
+        }
+
+        log.debug("Write " + recordList.size() + " temporality records of " + recordsByDataKey.size() + " data keys.");
+        for (Map.Entry<D, List<R>> e : recordsByDataKey.entrySet()) {
+            // the timeline of the data key is read once for the period of all records and kept in memory
+            Instant validFrom = null;
+            Instant validTill = null;
+            boolean hasPeriod = true;
+            for (R record : e.getValue()) {
+                if (record.getValidFrom() == null || record.getValidTill() == null) {
+                    hasPeriod = false;
+                } else {
+                    if (validFrom == null || record.getValidFrom().isBefore(validFrom)) {
+                        validFrom = record.getValidFrom();
+                    }
+
+                    if (validTill == null || record.getValidTill().isAfter(validTill)) {
+                        validTill = record.getValidTill();
+                    }
                 }
             }
 
-            // write the temporal record
-            if (!ignore) {
-                result += writeTemporalRecord(daoService, TemporalityActionType.UPDATE, record, "Update entry: " + toString(record));
+            if (!hasPeriod) {
+                validFrom = null;
+                validTill = null;
+            }
+
+            IDAOService<R> recordDAOService = writeDAOService;
+            if (timelineCache && !versioned && getUnitOfWork(writeDAOService) == null) {
+                recordDAOService = new TimelineDAOService<R>(writeDAOService, validFrom, validTill, isSorted(writeDAOService));
+            }
+
+            int count = 0;
+            for (R record : e.getValue()) {
+                count += writeRecord(record, recordDAOService);
+            }
+
+            result.put(e.getKey(), count);
+        }
+
+        if (batchOperationDAOService != null) {
+            batchOperationDAOService.flush();
+            for (D dataKey : result.keySet()) {
+                result.put(dataKey, batchOperationDAOService.getResult(dataKey));
+            }
+        }
+
+        if (metricsDAOService != null) {
+            metricsListener.onTemporalityWrite(recordList.size(), metricsDAOService.getNumberOfCalls());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#importTemporalityRecords(java.util.Iterator, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> long importTemporalityRecords(Iterator<R> recordIterator, IDAOService<R> daoService) {
+        long result = 0;
+        if (recordIterator == null) {
+            return result;
+        }
+
+        TimelineSweepMerge<R, P, D> sweepMerge = null;
+        MetricsDAOService<R> metricsDAOService = null;
+        int numberOfRecords = 0;
+        while (recordIterator.hasNext()) {
+            R record = recordIterator.next();
+            if (!isNotEmpty(record.getValidFrom()) || !isNotEmpty(record.getValidTill())) {
+                throw new IllegalArgumentException("Invalid validity, an imported record needs a valid from and a valid till: " + toString(record));
             }
 
+            if (sweepMerge == null || !Objects.equals(sweepMerge.getDataKey(), record.getDataKey())) {
+                // the next data key: the existing timeline is read once
+                if (metricsDAOService != null) {
+                    metricsListener.onTemporalityWrite(numberOfRecords, metricsDAOService.getNumberOfCalls());
+                }
+
+                IDAOService<R> importDAOService = daoService;
+                if (isMetricsEnabled()) {
+                    metricsDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+                    importDAOService = metricsDAOService;
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Import temporality records of data key " + record.getDataKey());
+                }
+
+                numberOfRecords = 0;
+                sweepMerge = new TimelineSweepMerge<R, P, D>(this, importDAOService, record);
+            }
+
+            numberOfRecords++;
+            result += sweepMerge.merge(record);
+        }
+
+        if (metricsDAOService != null) {
+            metricsListener.onTemporalityWrite(numberOfRecords, metricsDAOService.getNumberOfCalls());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#planTemporalityRecord(com.github.toolarium.temporality.handler.ITemporalityRecord, java.util.List)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planTemporalityRecord(R record, List<R> existingRecordList) {
+        return planRecord(record, existingRecordList, false);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#executeTemporalityPlan(com.github.toolarium.temporality.handler.TemporalityPlan, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> int executeTemporalityPlan(TemporalityPlan<R> plan, IDAOService<R> daoService) {
+        if (isMetricsEnabled()) {
+            return executePlan(plan, MetricsDAOService.wrap(daoService, metricsListener));
+        }
+
+        return executePlan(plan, daoService);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#executeTemporalityPlan(com.github.toolarium.temporality.handler.TemporalityPlan,
+     *      com.github.toolarium.temporality.handler.IVersionedDAOService, java.lang.Object)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> int executeTemporalityPlan(TemporalityPlan<R> plan, IVersionedDAOService<R> daoService, Object expectedVersion) {
+        if (plan == null || plan.isEmpty()) {
+            return 0;
+        }
+
+        IVersionedDAOService<R> versionedDAOService = daoService;
+        if (isMetricsEnabled()) {
+            versionedDAOService = (IVersionedDAOService<R>) MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Write " + plan.size() + " entries of version " + expectedVersion + ".");
+        }
+
+        versionedDAOService.writeAll(plan.getOperationList(), expectedVersion);
+        for (TemporalityOperation<R> operation : plan.getOperationList()) {
+            onTemporalityChange(versionedDAOService, operation);
+        }
+
+        onTemporalityCases(plan);
+        return plan.size();
+    }
+
+
+    /**
+     * Execute a plan, in case of a {@link IBatchDAOService} the operations are flushed at once. In case of a
+     * {@link TemporalityUnitOfWork} the operations are applied to its view.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param plan the plan
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int executePlan(TemporalityPlan<R> plan, IDAOService<R> daoService) {
+        if (plan == null || plan.isEmpty()) {
+            return 0;
+        }
+
+        int result;
+        TemporalityUnitOfWork<R, P, D> unitOfWork = getUnitOfWork(daoService);
+        if (unitOfWork != null) {
+            // the operations are applied to the view of the unit of work and written on its commit
+            result = unitOfWork.apply(plan);
+        } else if (batchWrite && daoService instanceof IBatchDAOService) {
+            // collect all operations and flush them at once
+            BatchOperationDAOService<R, D> batchOperationDAOService = new BatchOperationDAOService<R, D>((IBatchDAOService<R>) daoService, getChangeListener());
+            executeOperations(plan, batchOperationDAOService);
+            result = batchOperationDAOService.flush();
         } else {
-            result += writeTemporalRecord(daoService, TemporalityActionType.CREATE, record, "Create entry: " + toString(record));
+            result = executeOperations(plan, daoService);
+        }
+
+        onTemporalityCases(plan);
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#findValidAt(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant,
+     *      com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> R findValidAt(R recordFilter, Instant validAt, IDAOService<R> daoService) {
+        if (validAt == null) {
+            throw new IllegalArgumentException("Invalid instant!");
+        }
+
+        IDAOService<R> searchDAOService = daoService;
+        if (isMetricsEnabled()) {
+            searchDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        return selectValidAt(searchDAOService.searchValidAt(recordFilter, validAt), validAt, isSorted(daoService));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#findOverlapping(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant,
+     *      java.time.Instant, boolean, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> List<R> findOverlapping(R recordFilter, Instant validFrom, Instant validTill, boolean clip, IDAOService<R> daoService) {
+        if (validFrom == null || validTill == null || !validFrom.isBefore(validTill)) {
+            throw new IllegalArgumentException("Invalid period: " + validFrom + " - " + validTill);
+        }
+
+        IDAOService<R> searchDAOService = daoService;
+        if (isMetricsEnabled()) {
+            searchDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        List<R> recordList = searchDAOService.searchOverlapping(recordFilter, validFrom, validTill);
+        List<R> result = new ArrayList<R>();
+        if (recordList == null || recordList.isEmpty()) {
+            return result;
+        }
+
+        // in case of an ordered timeline only the overlapping records are checked
+        boolean sorted = isSorted(daoService) && recordList instanceof RandomAccess;
+        List<R> checkList = recordList;
+        if (sorted) {
+            int fromIndex = indexOfFirstOverlapping(recordList, validFrom);
+            checkList = recordList.subList(fromIndex, Math.max(fromIndex, indexOfFirstLater(recordList, validTill)));
+        }
+
+        for (R record : checkList) {
+            if ((record.getValidFrom() == null || record.getValidFrom().isBefore(validTill)) && (record.getValidTill() == null || record.getValidTill().isAfter(validFrom))) {
+                if (clip) {
+                    result.add(clip(record, validFrom, validTill));
+                } else {
+                    result.add(record);
+                }
+            }
+        }
+
+        if (!sorted) {
+            result.sort(VALIDITY_COMPARATOR);
         }
 
         return result;
     }
 
-    
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#compactTemporalityRecords(com.github.toolarium.temporality.handler.ITemporalityRecord,
+     *      com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> int compactTemporalityRecords(R recordFilter, IDAOService<R> daoService) {
+        IDAOService<R> compactDAOService = daoService;
+        if (isMetricsEnabled()) {
+            compactDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Compact temporality records: " + toString(recordFilter));
+        }
+
+        if (compactDAOService instanceof IVersionedDAOService) {
+            return writeVersioned((IVersionedDAOService<R>) compactDAOService, recordFilter, null, null, recordList -> planTemporalityCompaction(recordList));
+        }
+
+        return executePlan(planTemporalityCompaction(compactDAOService.search(recordFilter)), compactDAOService);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#planTemporalityCompaction(java.util.List)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planTemporalityCompaction(List<R> existingRecordList) {
+        List<TemporalityOperation<R>> operationList = new ArrayList<TemporalityOperation<R>>(0);
+        List<TemporalityCase> caseList = new ArrayList<TemporalityCase>(0);
+        if (existingRecordList != null && existingRecordList.size() > 1) {
+            operationList = compact(existingRecordList, operationList, caseList, null, null);
+        }
+
+        return new TemporalityPlan<R>(operationList, caseList);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#reconcileTemporalityRecords(com.github.toolarium.temporality.handler.ITemporalityRecord,
+     *      java.util.List, com.github.toolarium.temporality.handler.IDAOService)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> int reconcileTemporalityRecords(R recordFilter, List<R> targetRecordList, IDAOService<R> daoService) {
+        if (targetRecordList != null) {
+            for (R targetRecord : targetRecordList) {
+                if (!Objects.equals(recordFilter.getDataKey(), targetRecord.getDataKey())) {
+                    throw new IllegalArgumentException("The target record [" + toString(targetRecord) + "] has not the data key " + recordFilter.getDataKey() + "!");
+                }
+            }
+        }
+
+        // the target timeline is checked before the dao service is accessed
+        List<R> targetTimeline = sortTargetTimeline(targetRecordList);
+
+        IDAOService<R> reconcileDAOService = daoService;
+        if (isMetricsEnabled()) {
+            reconcileDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Reconcile temporality records with " + targetTimeline.size() + " target records: " + toString(recordFilter));
+        }
+
+        if (reconcileDAOService instanceof IVersionedDAOService) {
+            return writeVersioned((IVersionedDAOService<R>) reconcileDAOService, recordFilter, null, null, recordList -> planReconciliation(targetTimeline, recordList));
+        }
+
+        return executePlan(planReconciliation(targetTimeline, reconcileDAOService.search(recordFilter)), reconcileDAOService);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityHandler#planTemporalityReconciliation(java.util.List, java.util.List)
+     */
+    @Override
+    public <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planTemporalityReconciliation(List<R> targetRecordList, List<R> existingRecordList) {
+        return planReconciliation(sortTargetTimeline(targetRecordList), existingRecordList);
+    }
+
+
+    /**
+     * Plan the reconciliation of the existing records with the target timeline. In a first sweep the existing records which
+     * are equal to a target record apart from the primary key are kept. In a second sweep a changed target record reuses the
+     * first remaining existing record which overlaps it, the remaining records are paired in the order of the timeline
+     * because an update is cheaper than a delete and a create.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param targetTimeline the target records ordered by the valid from without overlaps
+     * @param existingRecordList the existing records
+     * @return the plan
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planReconciliation(List<R> targetTimeline, List<R> existingRecordList) {
+        List<R> existingTimeline = new ArrayList<R>(0);
+        if (existingRecordList != null) {
+            existingTimeline = new ArrayList<R>(existingRecordList);
+            existingTimeline.sort(VALIDITY_COMPARATOR);
+        }
+
+        // the index of the existing record of a target record and if the existing record is unchanged
+        int[] existingIndex = new int[targetTimeline.size()];
+        Arrays.fill(existingIndex, -1);
+        boolean[] unchanged = new boolean[targetTimeline.size()];
+        boolean[] used = new boolean[existingTimeline.size()];
+
+        // the unchanged records have the same validity
+        int j = 0;
+        for (int i = 0; i < targetTimeline.size(); i++) {
+            R targetRecord = targetTimeline.get(i);
+            while (j < existingTimeline.size() && VALIDITY_COMPARATOR.compare(existingTimeline.get(j), targetRecord) < 0) {
+                j++;
+            }
+
+            for (int k = j; k < existingTimeline.size() && VALIDITY_COMPARATOR.compare(existingTimeline.get(k), targetRecord) == 0; k++) {
+                if (!used[k] && isSamePayload(existingTimeline.get(k), targetRecord)) {
+                    existingIndex[i] = k;
+                    unchanged[i] = true;
+                    used[k] = true;
+                    break;
+                }
+            }
+        }
+
+        // a changed record is written to the existing record which overlaps it
+        j = 0;
+        for (int i = 0; i < targetTimeline.size(); i++) {
+            if (existingIndex[i] >= 0) {
+                continue;
+            }
+
+            R targetRecord = targetTimeline.get(i);
+            while (j < existingTimeline.size() && (used[j] || !validTill(existingTimeline.get(j)).isAfter(targetRecord.getValidFrom()))) {
+                j++;
+            }
+
+            for (int k = j; k < existingTimeline.size() && validFrom(existingTimeline.get(k)).isBefore(targetRecord.getValidTill()); k++) {
+                if (!used[k] && validTill(existingTimeline.get(k)).isAfter(targetRecord.getValidFrom())) {
+                    existingIndex[i] = k;
+                    used[k] = true;
+                    break;
+                }
+            }
+        }
+
+        // the remaining records are paired in the order of the timeline
+        j = 0;
+        for (int i = 0; i < targetTimeline.size(); i++) {
+            if (existingIndex[i] < 0) {
+                while (j < existingTimeline.size() && used[j]) {
+                    j++;
+                }
+
+                if (j < existingTimeline.size()) {
+                    existingIndex[i] = j;
+                    used[j] = true;
+                }
+            }
+        }
+
+        // the deletes first, then the updates and the creates
+        List<TemporalityOperation<R>> operationList = new ArrayList<TemporalityOperation<R>>(0);
+        for (int k = 0; k < existingTimeline.size(); k++) {
+            if (!used[k]) {
+                operationList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, TemporalityActionType.DELETE, existingTimeline.get(k), existingTimeline.get(k)));
+            }
+        }
+
+        for (int i = 0; i < targetTimeline.size(); i++) {
+            if (existingIndex[i] >= 0 && !unchanged[i]) {
+                R targetRecord = targetTimeline.get(i);
+                R existingRecord = existingTimeline.get(existingIndex[i]);
+                R entry = targetRecord.clone();
+                entry.setPrimaryKey(existingRecord.getPrimaryKey());
+
+                TemporalityActionType temporalityActionType = TemporalityActionType.UPDATE;
+                if (Objects.equals(existingRecord.getValidFrom(), targetRecord.getValidFrom()) && targetRecord.getValidTill().isBefore(validTill(existingRecord))
+                    && isSamePayload(existingRecord, targetRecord)) {
+                    temporalityActionType = TemporalityActionType.TERMINATE;
+                }
+
+                operationList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, temporalityActionType, entry, existingRecord));
+            }
+        }
+
+        for (int i = 0; i < targetTimeline.size(); i++) {
+            if (existingIndex[i] < 0) {
+                R entry = targetTimeline.get(i).clone();
+                entry.setPrimaryKey(null);
+                operationList.add(new TemporalityOperation<R>(TemporalityCase.RECONCILE, TemporalityActionType.CREATE, entry, null));
+            }
+        }
+
+        return new TemporalityPlan<R>(operationList);
+    }
+
+
+    /**
+     * Check the target records and order them by the valid from
+     *
+     * @param <R> the generic record type.
+     * @param targetRecordList the target records
+     * @return the ordered copy of the target records
+     * @throws IllegalArgumentException in case a target record has no validity or overlaps an other target record
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> List<R> sortTargetTimeline(List<R> targetRecordList) {
+        List<R> result = new ArrayList<R>(0);
+        if (targetRecordList == null) {
+            return result;
+        }
+
+        result = new ArrayList<R>(targetRecordList);
+        for (R targetRecord : result) {
+            if (!isNotEmpty(targetRecord.getValidFrom()) || !isNotEmpty(targetRecord.getValidTill()) || !targetRecord.getValidFrom().isBefore(targetRecord.getValidTill())) {
+                throw new IllegalArgumentException("Invalid validity of the target record [" + toString(targetRecord) + "]!");
+            }
+        }
+
+        result.sort(VALIDITY_COMPARATOR);
+        for (int i = 1; i < result.size(); i++) {
+            if (result.get(i).getValidFrom().isBefore(result.get(i - 1).getValidTill())) {
+                throw new IllegalArgumentException("The target record [" + toString(result.get(i)) + "] overlaps [" + toString(result.get(i - 1)) + "]!");
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Write several records of a data key with one net plan, see {@link #planRecords(List, List)}. The existing records are
+     * read once for the period of all records, in case of an {@link IVersionedDAOService} the plan is written conditionally.
+     * In case the resulting timeline can not be reconciled the records are written one after the other, see
+     * {@link #writeSequential(List, IDAOService)}. Other than a single write a failed operation is not ignored, the caller
+     * keeps the records to write them again. A repeated write of the records has the same result also if a part of the plan
+     * was written before.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param recordList the records of one data key in the order of the writes, the records need a valid from and a valid till
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     * @throws IllegalStateException in case not all operations of the plan could be written
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int writeCoalesced(List<R> recordList, IDAOService<R> daoService) {
+        if (recordList == null || recordList.isEmpty()) {
+            return 0;
+        }
+
+        R recordFilter = recordList.get(0);
+        Instant validFrom = recordFilter.getValidFrom();
+        Instant validTill = recordFilter.getValidTill();
+        for (R record : recordList) {
+            if (record.getValidFrom().isBefore(validFrom)) {
+                validFrom = record.getValidFrom();
+            }
+
+            if (record.getValidTill().isAfter(validTill)) {
+                validTill = record.getValidTill();
+            }
+        }
+
+        IDAOService<R> writeDAOService = daoService;
+        if (isMetricsEnabled()) {
+            writeDAOService = MetricsDAOService.wrap(daoService, metricsListener);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Write " + recordList.size() + " coalesced temporality records: " + toString(recordFilter));
+        }
+
+        int result = 0;
+        int[] planSize = new int[1];
+        boolean[] sequential = new boolean[1];
+        if (writeDAOService instanceof IVersionedDAOService) {
+            result = writeVersioned((IVersionedDAOService<R>) writeDAOService, recordFilter, validFrom, validTill, existingRecordList -> {
+                TemporalityPlan<R> plan = planRecords(recordList, existingRecordList);
+                if (plan == null) {
+                    sequential[0] = true;
+                    plan = new TemporalityPlan<R>(new ArrayList<TemporalityOperation<R>>(0));
+                }
+
+                planSize[0] = plan.size();
+                return plan;
+            });
+        } else {
+            TemporalityPlan<R> plan = planRecords(recordList, writeDAOService.searchOverlapping(recordFilter, validFrom, validTill));
+            if (plan == null) {
+                sequential[0] = true;
+            } else {
+                planSize[0] = plan.size();
+                result = executePlan(plan, writeDAOService);
+            }
+        }
+
+        if (sequential[0]) {
+            return writeSequential(recordList, writeDAOService);
+        }
+
+        if (result < planSize[0]) {
+            throw new IllegalStateException("Could not write " + (planSize[0] - result) + " of " + planSize[0] + " operations of data key " + recordFilter.getDataKey() + "!");
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Write several records of a data key one after the other with the same plans as a single write. Other than a single
+     * write a failed operation is not ignored.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param recordList the records of one data key in the order of the writes
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     * @throws IllegalStateException in case not all operations of a plan could be written
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int writeSequential(List<R> recordList, IDAOService<R> daoService) {
+        if (log.isDebugEnabled()) {
+            log.debug("Write " + recordList.size() + " temporality records one after the other: " + toString(recordList.get(0)));
+        }
+
+        boolean sorted = isSorted(daoService);
+        int result = 0;
+        for (R record : recordList) {
+            int count;
+            int[] planSize = new int[1];
+            if (daoService instanceof IVersionedDAOService) {
+                count = writeVersioned((IVersionedDAOService<R>) daoService, record, record.getValidFrom(), record.getValidTill(), existingRecordList -> {
+                    TemporalityPlan<R> plan = planRecord(record, existingRecordList, sorted);
+                    planSize[0] = plan.size();
+                    return plan;
+                });
+            } else {
+                TemporalityPlan<R> plan = planRecord(record, daoService.searchOverlapping(record, record.getValidFrom(), record.getValidTill()), sorted);
+                planSize[0] = plan.size();
+                count = executePlan(plan, daoService);
+            }
+
+            if (count < planSize[0]) {
+                throw new IllegalStateException("Could not write " + (planSize[0] - count) + " of " + planSize[0] + " operations of data key " + record.getDataKey() + "!");
+            }
+
+            result += count;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Plan the writes of several records of a data key as one net plan. The records are planned one after the other on an
+     * in-memory copy of the existing records and the resulting timeline is reconciled with the existing records, an
+     * intermediate version which is superseded by a later record is never written. The resulting timeline may have
+     * overlapping records, e.g. a record till the max instant does not terminate a later existing record till the max instant,
+     * such a timeline can not be reconciled.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param recordList the records in the order of the writes, the records need a valid from and a valid till
+     * @param existingRecordList the existing records
+     * @return the plan or null in case the resulting timeline has overlapping records
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planRecords(List<R> recordList, List<R> existingRecordList) {
+        List<R> timeline = new ArrayList<R>();
+        if (existingRecordList != null) {
+            timeline.addAll(existingRecordList);
+        }
+
+        for (R record : recordList) {
+            for (TemporalityOperation<R> operation : planRecord(record, timeline, false).getOperationList()) {
+                int index = -1;
+                for (int i = 0; operation.getExistingRecord() != null && i < timeline.size(); i++) {
+                    if (timeline.get(i) == operation.getExistingRecord()) {
+                        index = i;
+                        break;
+                    }
+                }
+
+                if (operation.isDelete()) {
+                    if (index >= 0) {
+                        timeline.remove(index);
+                    }
+                } else if (index >= 0) {
+                    timeline.set(index, operation.getRecord());
+                } else {
+                    timeline.add(operation.getRecord());
+                }
+            }
+        }
+
+        timeline.sort(VALIDITY_COMPARATOR);
+        for (int i = 1; i < timeline.size(); i++) {
+            if (validFrom(timeline.get(i)).isBefore(validTill(timeline.get(i - 1)))) {
+                return null;
+            }
+        }
+
+        return planReconciliation(sortTargetTimeline(timeline), existingRecordList);
+    }
+
+
+    /**
+     * Plan the write of a temporality record
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param existingRecordList the existing records
+     * @param sorted true if the existing records are ordered by valid from and valid till
+     * @return the plan
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityPlan<R> planRecord(R record, List<R> existingRecordList, boolean sorted) {
+        TemporalityPlanBuffer<R> buffer = new TemporalityPlanBuffer<R>();
+        planRecord(record, existingRecordList, sorted, buffer);
+        if (!compactOnWrite || existingRecordList == null || existingRecordList.isEmpty()) {
+            return buffer.toPlan();
+        }
+
+        List<TemporalityCase> caseList = buffer.getCaseList();
+        List<R> checkList = existingRecordList;
+        if (sorted && existingRecordList instanceof RandomAccess && isNotEmpty(record.getValidFrom()) && isNotEmpty(record.getValidTill())) {
+            int fromIndex = indexOfFirstOverlapping(existingRecordList, record.getValidFrom());
+            checkList = existingRecordList.subList(fromIndex, Math.max(fromIndex, indexOfFirstLater(existingRecordList, record.getValidTill())));
+        }
+
+        return new TemporalityPlan<R>(compact(checkList, buffer.getOperationList(), caseList, record.getValidFrom(), record.getValidTill()), caseList);
+    }
+
+
+    /**
+     * Plan the write of a temporality record into a buffer, the operations are not compacted
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param record the record to write.
+     * @param existingRecordList the existing records
+     * @param sorted true if the existing records are ordered by valid from and valid till
+     * @param buffer the buffer of the planned operations and cases
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> void planRecord(R record, List<R> existingRecordList, boolean sorted, TemporalityPlanBuffer<R> buffer) {
+        if (existingRecordList == null || existingRecordList.isEmpty()) {
+            buffer.addCase(TemporalityCase.NEW);
+            buffer.add(TemporalityCase.NEW, TemporalityActionType.CREATE, record, null);
+            return;
+        }
+
+        // in case of an ordered timeline only the overlapping records have to be checked
+        boolean randomAccess = existingRecordList instanceof RandomAccess;
+        int fromIndex = 0;
+        int toIndex = existingRecordList.size();
+        if (sorted && randomAccess && isNotEmpty(record.getValidFrom()) && isNotEmpty(record.getValidTill())) {
+            fromIndex = indexOfFirstOverlapping(existingRecordList, record.getValidFrom());
+            toIndex = Math.max(fromIndex, indexOfFirstLater(existingRecordList, record.getValidTill()));
+        }
+
+        // terminate entries, a random access list is iterated without iterator
+        boolean ignore = false;
+        Iterator<R> it = null;
+        if (!randomAccess) {
+            it = existingRecordList.iterator();
+        }
+
+        for (int i = fromIndex; i < toIndex; i++) {
+            R existingEntry;
+            if (randomAccess) {
+                existingEntry = existingRecordList.get(i);
+            } else {
+                existingEntry = it.next();
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Check record " + record.getDataKey() + " (" + record.getPrimaryKey() + ") for update...");
+            }
+
+            if (planExistingRecord(buffer, record, existingEntry)) {
+                ignore = true;
+            }
+        }
+
+        // write the temporal record
+        if (!ignore) {
+            buffer.addCase(TemporalityCase.NEW);
+            buffer.add(TemporalityCase.NEW, TemporalityActionType.UPDATE, record, null);
+        }
+    }
+
+
+    /**
+     * Plan the operations of an existing record
+     *
+     * @param <R> the record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param buffer the buffer to add the planned operations and cases
+     * @param record the record
+     * @param existingEntry the existing record
+     * @return true if the record must not be written
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> boolean planExistingRecord(TemporalityPlanBuffer<R> buffer, R record, R existingEntry) {
+        boolean ignoreRecord = false;
+
+        if (isNotEmpty(existingEntry.getValidFrom()) && isNotEmpty(record.getValidFrom())
+            && existingEntry.getValidFrom().isBefore(record.getValidFrom())) { // <
+            // existing entries starting earlier
+            if (existingEntry.getValidTill().isBefore(record.getValidFrom())) { // <
+                // Case B: Add
+                buffer.addCase(TemporalityCase.B);
+                if (log.isDebugEnabled()) {
+                    log.debug("Keep original entry, because it is before (Case B): " + toString(existingEntry));
+                }
+            } else if (existingEntry.getValidTill().isAfter(record.getValidTill())) { // >
+                // Case F: Insert
+                buffer.addCase(TemporalityCase.F);
+                if (log.isDebugEnabled()) {
+                    log.debug("Insert entry, because it is before and after (Case F): " + toString(existingEntry));
+                }
+
+                R entry1 = existingEntry.clone();
+                entry1.setValidTill(record.getValidFrom());
+                buffer.add(TemporalityCase.F, TemporalityActionType.TERMINATE, entry1, existingEntry);
+
+                R entry2 = existingEntry.clone();
+                entry2.setPrimaryKey(null); // get new primary key for this entry
+                entry2.setValidFrom(record.getValidTill());
+                buffer.add(TemporalityCase.F, TemporalityActionType.CREATE, entry2, null);
+            } else {
+                // Case D: Terminate
+                buffer.addCase(TemporalityCase.D);
+                R entry = existingEntry.clone();
+                entry.setValidTill(record.getValidFrom());
+                buffer.add(TemporalityCase.D, TemporalityActionType.TERMINATE, entry, existingEntry);
+            }
+        } else {
+            // existing entries which starting now or in future
+            if (existingEntry.getValidTill().isBefore(record.getValidTill())) { // <
+                // Case G: Reduce
+                // delete entries which are part of the current entry
+                buffer.addCase(TemporalityCase.G);
+                buffer.add(TemporalityCase.G, TemporalityActionType.DELETE, existingEntry, existingEntry);
+            } else if (existingEntry.getValidFrom().isAfter(record.getValidTill())) { // >
+                // Case C: Add
+                // ignore entries which starting in future
+                buffer.addCase(TemporalityCase.C);
+                if (log.isDebugEnabled()) {
+                    log.debug("Keep original entry, because it is in future (Case C): " + toString(existingEntry));
+                }
+            } else {
+                // check if it is the same
+                if (isSameRecord(existingEntry, record)) {
+                    // Case A: same record
+                    // ignore already existing entry!
+                    buffer.addCase(TemporalityCase.A);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Identical entry found on database, ignore writing (Case A): [" + toString(record) + "] == [" + toString(existingEntry) + "].");
+                    }
+
+                    ignoreRecord = true;
+                } else if (isNotEmpty(existingEntry.getValidFrom()) && isNotEmpty(record.getValidFrom())
+                          && existingEntry.getDataKey().equals(record.getDataKey())
+                          && existingEntry.getValidFrom().equals(record.getValidFrom())
+                          && (record.getPrimaryKey() == null || existingEntry.getPrimaryKey().equals(record.getPrimaryKey()))) {
+                    // Case H: terminate -> delete
+                    buffer.addCase(TemporalityCase.H);
+                    R entry = record.clone();
+                    entry.setPrimaryKey(existingEntry.getPrimaryKey());
+                    buffer.add(TemporalityCase.H, TemporalityActionType.TERMINATE, entry, existingEntry);
+                    ignoreRecord = true;
+                } else {
+                    // Case E: terminate
+
+                    // if from = till
+                    if (isNotEmpty(record.getValidTill()) && isMaxInstant(record.getValidTill())) {
+                        // Case E: empty record
+                        buffer.addCase(TemporalityCase.E);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Ignore record, nothing to terminate because max timestamp: [" + toString(existingEntry) + "], [" + toString(record) + "].");
+                        }
+                    } else if (existingEntry.getValidTill().equals(record.getValidTill())) { // ==
+                        buffer.addCase(TemporalityCase.E1);
+                        R entry = record.clone();
+                        entry.setPrimaryKey(existingEntry.getPrimaryKey());
+                        buffer.add(TemporalityCase.E1, TemporalityActionType.UPDATE, entry, existingEntry);
+                        ignoreRecord = true;
+                    } else {
+                        buffer.addCase(TemporalityCase.E);
+                        R entry = existingEntry.clone();
+                        entry.setValidFrom(record.getValidTill());
+                        buffer.add(TemporalityCase.E, TemporalityActionType.TERMINATE, entry, existingEntry);
+                    }
+                }
+            }
+        }
+
+        return ignoreRecord;
+    }
+
+
+    /**
+     * Compact the timeline which results from the existing records and the planned operations: contiguous records which are
+     * equal apart from the primary key and the validity are merged. A merged record keeps the primary key of an existing
+     * record if possible, the other records of the run are deleted or not written at all.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param existingRecordList the existing records
+     * @param operationList the planned operations of the existing records
+     * @param caseList the temporality cases of the planning to add a case per merge
+     * @param validFrom the valid from of the written record or null to compact all existing records
+     * @param validTill the valid till of the written record or null to compact all existing records
+     * @return the operations including the merges
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> List<TemporalityOperation<R>> compact(List<R> existingRecordList, List<TemporalityOperation<R>> operationList, List<TemporalityCase> caseList,
+                                                                                           Instant validFrom, Instant validTill) {
+        // the resulting timeline: a version per existing record which overlaps or touches the period and per new record
+        Map<R, CompactionVersion<R>> versionByExistingRecord = new IdentityHashMap<R, CompactionVersion<R>>();
+        List<CompactionVersion<R>> versionList = new ArrayList<CompactionVersion<R>>(existingRecordList.size() + operationList.size());
+        for (R existingRecord : existingRecordList) {
+            if (validFrom == null || validTill == null
+                || (!existingRecord.getValidTill().isBefore(validFrom) && !existingRecord.getValidFrom().isAfter(validTill))) {
+                CompactionVersion<R> version = new CompactionVersion<R>(existingRecord, existingRecord, null);
+                versionByExistingRecord.put(existingRecord, version);
+                versionList.add(version);
+            }
+        }
+
+        Map<TemporalityOperation<R>, CompactionVersion<R>> versionByOperation = new IdentityHashMap<TemporalityOperation<R>, CompactionVersion<R>>();
+        for (TemporalityOperation<R> operation : operationList) {
+            CompactionVersion<R> version = null;
+            if (operation.getExistingRecord() != null) {
+                version = versionByExistingRecord.get(operation.getExistingRecord());
+            }
+
+            if (version == null) {
+                version = new CompactionVersion<R>(operation.getExistingRecord(), operation.getRecord(), operation);
+                versionList.add(version);
+            } else {
+                version.operation = operation;
+                version.record = operation.getRecord();
+            }
+
+            if (operation.isDelete()) {
+                version.record = null;
+            }
+
+            versionByOperation.put(operation, version);
+        }
+
+        List<CompactionVersion<R>> timeline = new ArrayList<CompactionVersion<R>>(versionList.size());
+        for (CompactionVersion<R> version : versionList) {
+            if (version.record != null && version.record.getValidFrom() != null && version.record.getValidTill() != null) {
+                timeline.add(version);
+            }
+        }
+
+        timeline.sort((v1, v2) -> VALIDITY_COMPARATOR.compare(v1.record, v2.record));
+
+        // merge the contiguous versions
+        boolean compacted = false;
+        CompactionVersion<R> previous = null;
+        for (CompactionVersion<R> version : timeline) {
+            if (previous != null && previous.record.getValidTill().equals(version.record.getValidFrom()) && isSamePayload(previous.record, version.record)) {
+                caseList.add(TemporalityCase.COMPACT);
+                CompactionVersion<R> survivor = previous;
+                CompactionVersion<R> merged = version;
+                if (previous.existingRecord == null && version.existingRecord != null) {
+                    survivor = version;
+                    merged = previous;
+                }
+
+                R entry = survivor.record.clone();
+                entry.setValidFrom(previous.record.getValidFrom());
+                entry.setValidTill(version.record.getValidTill());
+                if (log.isDebugEnabled()) {
+                    log.debug("Merge contiguous entries with same payload (Compact): [" + toString(previous.record) + "], [" + toString(version.record) + "].");
+                }
+
+                survivor.record = entry;
+                survivor.compacted = true;
+                merged.record = null;
+                merged.compacted = true;
+                compacted = true;
+                previous = survivor;
+            } else {
+                previous = version;
+            }
+        }
+
+        if (!compacted) {
+            return operationList;
+        }
+
+        // the merged existing records are deleted first to never have overlapping records
+        List<TemporalityOperation<R>> result = new ArrayList<TemporalityOperation<R>>(operationList.size() + 2);
+        for (CompactionVersion<R> version : versionList) {
+            if (version.compacted && version.record == null && version.existingRecord != null) {
+                result.add(new TemporalityOperation<R>(TemporalityCase.COMPACT, TemporalityActionType.DELETE, version.existingRecord, version.existingRecord));
+            }
+        }
+
+        for (TemporalityOperation<R> operation : operationList) {
+            CompactionVersion<R> version = versionByOperation.get(operation);
+            if (!version.compacted) {
+                result.add(operation);
+            } else if (version.record != null) {
+                if (version.existingRecord == null) {
+                    result.add(new TemporalityOperation<R>(operation.getTemporalityCase(), operation.getTemporalityActionType(), version.record, null));
+                } else if (!version.record.equals(version.existingRecord)) {
+                    result.add(new TemporalityOperation<R>(TemporalityCase.COMPACT, TemporalityActionType.UPDATE, version.record, version.existingRecord));
+                }
+            }
+        }
+
+        // the extended existing records without a planned operation
+        for (CompactionVersion<R> version : versionList) {
+            if (version.compacted && version.operation == null && version.record != null && !version.record.equals(version.existingRecord)) {
+                result.add(new TemporalityOperation<R>(TemporalityCase.COMPACT, TemporalityActionType.UPDATE, version.record, version.existingRecord));
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Execute the operations of a buffer, in case of a {@link IBatchDAOService} the operations are flushed at once.
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param buffer the buffer of the planned operations and cases
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     */
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int executeBuffer(TemporalityPlanBuffer<R> buffer, IDAOService<R> daoService) {
+        int result = 0;
+        if (buffer.size() > 0) {
+            if (batchWrite && daoService instanceof IBatchDAOService) {
+                // collect all operations and flush them at once
+                BatchOperationDAOService<R, D> batchOperationDAOService = new BatchOperationDAOService<R, D>((IBatchDAOService<R>) daoService, getChangeListener());
+                executeOperations(buffer, batchOperationDAOService);
+                result = batchOperationDAOService.flush();
+            } else {
+                result = executeOperations(buffer, daoService);
+            }
+        }
+
+        if (isMetricsEnabled()) {
+            for (int i = 0; i < buffer.getNumberOfCases(); i++) {
+                metricsListener.onTemporalityCase(buffer.getCase(i));
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Execute the operations of a plan one by one
+     *
+     * @param <R> the generic record type.
+     * @param plan the plan
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> int executeOperations(TemporalityPlan<R> plan, IDAOService<R> daoService) {
+        int result = 0;
+        List<TemporalityOperation<R>> operationList = plan.getOperationList();
+        for (int i = 0; i < operationList.size(); i++) {
+            TemporalityOperation<R> operation = operationList.get(i);
+            int count = executeOperation(daoService, operation.getTemporalityCase(), operation.getTemporalityActionType(), operation.getRecord(), operation.getExistingRecord());
+            if (count > 0) {
+                onTemporalityChange(daoService, operation);
+            }
+
+            result += count;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Execute the operations of a buffer one by one, an operation is only created for the change listener
+     *
+     * @param <R> the generic record type.
+     * @param buffer the buffer of the planned operations
+     * @param daoService the dao service
+     * @return the number of written and deleted entries
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> int executeOperations(TemporalityPlanBuffer<R> buffer, IDAOService<R> daoService) {
+        int result = 0;
+        for (int i = 0; i < buffer.size(); i++) {
+            int count = executeOperation(daoService, buffer.getTemporalityCase(i), buffer.getTemporalityActionType(i), buffer.getRecord(i), buffer.getExistingRecord(i));
+            if (count > 0 && isChangeEventsEnabled()) {
+                onTemporalityChange(daoService, buffer.getOperation(i));
+            }
+
+            result += count;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Execute an operation. In a bulk write the change of a record without primary key which is still pending in the batch
+     * replaces the pending write.
+     *
+     * @param <R> the generic record type.
+     * @param daoService the dao service
+     * @param temporalityCase the temporality case
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     * @param existingRecord the existing record which is changed or deleted, null in case a new record is written
+     * @return the number of written and deleted entries
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> int executeOperation(IDAOService<R> daoService, TemporalityCase temporalityCase, TemporalityActionType temporalityActionType,
+                                                                        R record, R existingRecord) {
+        if (existingRecord != null && temporalityActionType != TemporalityActionType.DELETE && daoService instanceof TimelineDAOService
+            && ((TimelineDAOService<R>) daoService).replacePendingRecord(existingRecord, record)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Replace pending entry (Case " + temporalityCase + ", " + temporalityActionType + "): " + toString(record));
+            }
+
+            return 1;
+        }
+
+        if (temporalityActionType == TemporalityActionType.DELETE) {
+            String logComment = null;
+            if (log.isDebugEnabled()) {
+                logComment = "Delete entry (Case " + temporalityCase + "): " + toString(record);
+            }
+
+            return deleteTemporalRecord(daoService, record, logComment);
+        }
+
+        String logComment = null;
+        if (log.isDebugEnabled()) {
+            logComment = "Write entry (Case " + temporalityCase + ", " + temporalityActionType + "): " + toString(record);
+        }
+
+        return writeTemporalRecord(daoService, temporalityActionType, record, logComment);
+    }
+
+
     /**
-     * Update existing records
+     * Plan and write the operations conditionally on the version of the timeline. In case of a conflict the operations are
+     * planned again on the current timeline after a backoff, up to the number of conflict retries.
      *
-     * @param <R> the record type.
+     * @param <R> the generic record type.
      * @param <P> the generic primary key type.
      * @param <D> the generic data key type.
-     * @param daoService the dao service
-     * @param record the record
-     * @param existingEntry the existing record
-     * @return the number of updated records
+     * @param daoService the versioned dao service
+     * @param recordFilter the record filter
+     * @param validFrom the valid from of the period to read or null to read the whole timeline
+     * @param validTill the valid till of the period to read or null to read the whole timeline
+     * @param planner plans the operations on the records of the timeline
+     * @return the number of written and deleted entries
+     * @throws TemporalityConflictException in case the conflict retries are exhausted
      */
-    protected <R extends ITemporalityRecord<R, P, D>, P, D> KeyValueHolder<Integer, Boolean> updateExistingRecords(IDAOService<R> daoService, R record, R existingEntry) {
-        int result = 0;
-        Boolean ignoreRecord = Boolean.FALSE;
-
-        if (isNotEmpty(existingEntry.getValidFrom()) && isNotEmpty(record.getValidFrom())
-            && existingEntry.getValidFrom().isBefore(record.getValidFrom())) { // <
-            // existing entries starting earlier
-            if (existingEntry.getValidTill().isBefore(record.getValidFrom())) { // <
-                // Case B: Add
-                log.debug("Keep original entry, because it is before (Case B): " + toString(existingEntry));
-            } else if (existingEntry.getValidTill().isAfter(record.getValidTill())) { // >
-                // Case F: Insert
-                log.debug("Insert entry, because it is before and after (Case F): " + toString(existingEntry));
-                R entry1 = existingEntry.clone();
-                entry1.setValidTill(record.getValidFrom());
-                result += writeTemporalRecord(daoService, TemporalityActionType.TERMINATE, entry1, "Terminate entry (Case F): " + toString(entry1));
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> int writeVersioned(IVersionedDAOService<R> daoService, R recordFilter, Instant validFrom, Instant validTill,
+                                                                               Function<List<R>, TemporalityPlan<R>> planner) {
+        Instant from = null;
+        Instant till = null;
+        if (isNotEmpty(validFrom) && isNotEmpty(validTill)) {
+            from = validFrom;
+            till = validTill;
+        }
 
-                R entry2 = existingEntry.clone();
-                entry2.setPrimaryKey(null); // get new primary key for this entry
-                entry2.setValidFrom(record.getValidTill());
-                result += writeTemporalRecord(daoService, TemporalityActionType.CREATE, entry2, "Add new entry at the end (Case F): " + toString(entry2));
-            } else {
-                // Case D: Terminate
-                R entry = existingEntry.clone();
-                entry.setValidTill(record.getValidFrom());
-                result += writeTemporalRecord(daoService, TemporalityActionType.TERMINATE, entry, "Terminate entry (Case D): " + toString(entry));
+        for (int attempt = 0;; attempt++) {
+            TemporalitySnapshot<R> snapshot = daoService.searchSnapshot(recordFilter, from, till);
+            TemporalityPlan<R> plan = planner.apply(snapshot.getRecordList());
+            if (plan.isEmpty()) {
+                return 0;
             }
-        } else {
-            // existing entries which starting now or in future
-            if (existingEntry.getValidTill().isBefore(record.getValidTill())) { // <
-                // Case G: Reduce
-                // delete entries which are part of the current entry
-                result += deleteTemporalRecord(daoService, existingEntry, "Delete entry, because new entry valid till has changed (Case G): " + toString(existingEntry));
-            } else if (existingEntry.getValidFrom().isAfter(record.getValidTill())) { // >
-                // Case C: Add
-                // ignore entries which starting in future
-                log.debug("Keep original entry, because it is in future (Case C): " + toString(existingEntry));
-            } else {
-                // check if it is the same
-                R compareEntry = record.clone();
-                compareEntry.setPrimaryKey(existingEntry.getPrimaryKey());
 
-                if (existingEntry.equals(compareEntry)) {
-                    // Case A: same record
-                    // ignore already existing entry!
-                    log.debug("Identical entry found on database, ignore writing (Case A): [" + toString(record) + "] == [" + toString(existingEntry) + "].");
-                    ignoreRecord = Boolean.TRUE;
-                } else if (isNotEmpty(existingEntry.getValidFrom()) && isNotEmpty(record.getValidFrom())
-                          && existingEntry.getDataKey().equals(record.getDataKey())
-                          && existingEntry.getValidFrom().equals(record.getValidFrom())
-                          && (record.getPrimaryKey() == null || existingEntry.getPrimaryKey().equals(record.getPrimaryKey()))) {
-                    // Case H: terminate -> delete
-                    //deleteTemporalRecord(daoService, record, "Terminate entry (Case H): " + toString(existingEntry) + " -> " + toString(record));
-                    R entry = record.clone();
-                    entry.setPrimaryKey(existingEntry.getPrimaryKey());
-                    result += writeTemporalRecord(daoService, TemporalityActionType.TERMINATE, entry, "Terminate entry (Case H): " + toString(existingEntry) + " -> " + toString(record));
-                    ignoreRecord = Boolean.TRUE;
-                } else {
-                    // Case E: terminate
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("Write " + plan.size() + " entries of version " + snapshot.getVersion() + ": " + toString(recordFilter));
+                }
 
-                    // if from = till
-                    if (isNotEmpty(record.getValidTill()) && isMaxInstant(record.getValidTill())) {
-                        // Case E: empty record
-                        log.debug("Ignore record, nothing to terminate because max timestamp: [" + toString(existingEntry) + "], [" + toString(record) + "].");
-                    } else if (existingEntry.getValidTill().equals(record.getValidTill())) { // ==
-                        R entry = record.clone();
-                        entry.setPrimaryKey(existingEntry.getPrimaryKey());
-                        result += writeTemporalRecord(daoService, TemporalityActionType.UPDATE, entry, "Terminate entry (Case E1): " + toString(existingEntry) + " -> " + toString(record));
-                        ignoreRecord = Boolean.TRUE;
-                    } else {
-                        R entry = existingEntry.clone();
-                        entry.setValidFrom(record.getValidTill());
+                daoService.writeAll(plan.getOperationList(), snapshot.getVersion());
+                for (TemporalityOperation<R> operation : plan.getOperationList()) {
+                    onTemporalityChange(daoService, operation);
+                }
 
-                        // write the temporal record
-                        result += writeTemporalRecord(daoService, TemporalityActionType.TERMINATE, entry, "Terminate entry (Case E): " + toString(existingEntry) + " -> " + toString(entry));
-                    }
+                onTemporalityCases(plan);
+                return plan.size();
+            } catch (TemporalityConflictException e) {
+                if (attempt >= conflictRetries) {
+                    throw e;
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Retry write (" + (attempt + 1) + "/" + conflictRetries + "): " + e.getMessage());
                 }
+
+                backoff(attempt, e);
+            } catch (RuntimeException e) {
+                log.debug("Could not write " + plan.size() + " entries\n->" + e.getMessage(), e);
+                return 0;
             }
         }
+    }
+
+
+    /**
+     * Wait before a retry, the backoff is doubled on each attempt up to {@link #MAX_CONFLICT_BACKOFF} and randomized to
+     * spread the retries of concurrent writers
+     *
+     * @param attempt the attempt starting with 0
+     * @param e the conflict
+     * @throws TemporalityConflictException in case the thread is interrupted
+     */
+    protected void backoff(int attempt, TemporalityConflictException e) {
+        long backoffNanos = Math.min(conflictBackoff.toNanos() << Math.min(attempt, 30), MAX_CONFLICT_BACKOFF.toNanos());
+        if (backoffNanos <= 0) {
+            return;
+        }
 
-        return new KeyValueHolder<Integer, Boolean>(result, ignoreRecord);
+        try {
+            TimeUnit.NANOSECONDS.sleep(backoffNanos / 2 + ThreadLocalRandom.current().nextLong(backoffNanos / 2 + 1));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
     }
 
 
@@ -245,15 +1599,19 @@ public final class TemporalityHandlerImpl implements ITemporalityHandler, Serial
 
 
     /**
-     * Read the temporality records
+     * Read the temporality records which overlap or touch the validity of the record
      *
-     * @param <T> the generic type
+     * @param <R> the generic record type.
      * @param recordFilter the record
      * @param daoService the service
      * @return the result
      */
-    protected <T> List<T> readTemporalityRecordList(IDAOService<T> daoService, T recordFilter) {
+    protected <R extends ITemporalityRecord<R, ?, ?>> List<R> readTemporalityRecordList(IDAOService<R> daoService, R recordFilter) {
         try {
+            if (isNotEmpty(recordFilter.getValidFrom()) && isNotEmpty(recordFilter.getValidTill())) {
+                return daoService.searchOverlapping(recordFilter, recordFilter.getValidFrom(), recordFilter.getValidTill());
+            }
+
             return daoService.search(recordFilter);
         } catch (Exception ex) {
             log.debug("Could not read current configuration: " + ex.getMessage(), ex);
@@ -263,6 +1621,128 @@ public final class TemporalityHandlerImpl implements ITemporalityHandler, Serial
     }
 
 
+    /**
+     * Clip the validity of a record to a period
+     *
+     * @param <R> the generic record type.
+     * @param record the record
+     * @param validFrom the valid from of the period
+     * @param validTill the valid till of the period
+     * @return the record or a copy with the clipped validity
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> R clip(R record, Instant validFrom, Instant validTill) {
+        boolean clipFrom = record.getValidFrom() == null || record.getValidFrom().isBefore(validFrom);
+        boolean clipTill = record.getValidTill() == null || record.getValidTill().isAfter(validTill);
+        if (!clipFrom && !clipTill) {
+            return record;
+        }
+
+        R result = record.clone();
+        if (clipFrom) {
+            result.setValidFrom(validFrom);
+        }
+
+        if (clipTill) {
+            result.setValidTill(validTill);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Select the record which is valid at the given instant. In case of an ordered timeline the record is found by binary
+     * search. If more than one record is valid, the record with the latest valid from is selected.
+     *
+     * @param <R> the generic record type.
+     * @param recordList the records
+     * @param validAt the instant
+     * @param sorted true if the records are ordered by valid from and valid till
+     * @return the valid record or null
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> R selectValidAt(List<R> recordList, Instant validAt, boolean sorted) {
+        if (recordList == null || recordList.isEmpty()) {
+            return null;
+        }
+
+        if (sorted && recordList instanceof RandomAccess) {
+            // the last record which starts not after the instant
+            int index = indexOfFirstLater(recordList, validAt) - 1;
+            if (index < 0 || !recordList.get(index).getValidTill().isAfter(validAt)) {
+                return null;
+            }
+
+            // the first valid record with the same valid from, same as the linear search
+            while (index > 0 && recordList.get(index - 1).getValidFrom().equals(recordList.get(index).getValidFrom()) && recordList.get(index - 1).getValidTill().isAfter(validAt)) {
+                index--;
+            }
+
+            return recordList.get(index);
+        }
+
+        R result = null;
+        for (R record : recordList) {
+            if ((record.getValidFrom() == null || !record.getValidFrom().isAfter(validAt)) && (record.getValidTill() == null || record.getValidTill().isAfter(validAt))) {
+                if (result == null || (record.getValidFrom() != null && (result.getValidFrom() == null || record.getValidFrom().isAfter(result.getValidFrom())))) {
+                    result = record;
+                }
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get the index of the first record of an ordered timeline which valid till is not before the given valid from.
+     * All records before are not affected (Case B).
+     *
+     * @param <R> the generic record type.
+     * @param timeline the timeline ordered by valid from and valid till
+     * @param validFrom the valid from
+     * @return the index
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> int indexOfFirstOverlapping(List<R> timeline, Instant validFrom) {
+        int low = 0;
+        int high = timeline.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeline.get(mid).getValidTill().isBefore(validFrom)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * Get the index of the first record of an ordered timeline which valid from is after the given valid till.
+     * This and all following records are not affected (Case C).
+     *
+     * @param <R> the generic record type.
+     * @param timeline the timeline ordered by valid from and valid till
+     * @param validTill the valid till
+     * @return the index
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> int indexOfFirstLater(List<R> timeline, Instant validTill) {
+        int low = 0;
+        int high = timeline.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timeline.get(mid).getValidFrom().isAfter(validTill)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+
     /**
      * Convert a temporality record into a string
      *
@@ -303,18 +1783,192 @@ public final class TemporalityHandlerImpl implements ITemporalityHandler, Serial
      * @return true if the max date is reached
      */
     protected boolean isMaxInstant(Instant instat) {
-        if (Instant.MAX.equals(instat)) {
-            return true;
+        return maxInstant.equals(instat);
+    }
+
+
+    /**
+     * Get the unit of work of a dao service, a dao service of the temporality handler is unwrapped
+     *
+     * @param <R> the generic record type.
+     * @param <P> the generic primary key type.
+     * @param <D> the generic data key type.
+     * @param daoService the dao service
+     * @return the unit of work or null
+     */
+    @SuppressWarnings("unchecked")
+    protected <R extends ITemporalityRecord<R, P, D>, P, D> TemporalityUnitOfWork<R, P, D> getUnitOfWork(IDAOService<R> daoService) {
+        IDAOService<R> result = daoService;
+        if (result instanceof TimelineDAOService) {
+            result = ((TimelineDAOService<R>) result).getDAOService();
+        }
+
+        if (result instanceof MetricsDAOService) {
+            result = ((MetricsDAOService<R>) result).getDAOService();
+        }
+
+        if (result instanceof TemporalityUnitOfWork) {
+            return (TemporalityUnitOfWork<R, P, D>) result;
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Check if the records of a dao service are ordered by the valid from and the valid till, see {@link TemporalitySortContract}
+     *
+     * @param daoService the dao service
+     * @return true if the records are ordered
+     */
+    protected boolean isSorted(IDAOService<?> daoService) {
+        if (sortContract == TemporalitySortContract.DAO_SERVICE) {
+            return daoService.isSortedByValidFrom();
+        }
+
+        return isSorted(false);
+    }
+
+
+    /**
+     * Check if the records of a dao service are ordered by the valid from and the valid till, see {@link TemporalitySortContract}
+     *
+     * @param sortedByValidFrom true if the dao service declares its records as ordered
+     * @return true if the records are ordered
+     */
+    protected boolean isSorted(boolean sortedByValidFrom) {
+        switch (sortContract) {
+            case SORTED:
+                return true;
+            case UNSORTED:
+                return false;
+            default:
+                return sortedByValidFrom;
+        }
+    }
+
+
+    /**
+     * Check if an existing record is the same as the record, the primary key is not compared
+     *
+     * @param <R> the record type.
+     * @param <P> the generic primary key type.
+     * @param existingEntry the existing record
+     * @param record the record
+     * @return true if it is the same
+     */
+    protected <R extends ITemporalityRecord<R, P, ?>, P> boolean isSameRecord(R existingEntry, R record) {
+        if (Objects.equals(existingEntry.getPrimaryKey(), record.getPrimaryKey())) {
+            return existingEntry.equals(record);
+        }
+
+        R compareEntry = record.clone();
+        compareEntry.setPrimaryKey(existingEntry.getPrimaryKey());
+        return existingEntry.equals(compareEntry);
+    }
+
+
+    /**
+     * Check if two records are equal apart from the primary key and the validity
+     *
+     * @param <R> the record type.
+     * @param <P> the generic primary key type.
+     * @param record1 the first record
+     * @param record2 the second record
+     * @return true if the payload is the same
+     */
+    protected <R extends ITemporalityRecord<R, P, ?>, P> boolean isSamePayload(R record1, R record2) {
+        R compareEntry = record2.clone();
+        compareEntry.setPrimaryKey(record1.getPrimaryKey());
+        compareEntry.setValidFrom(record1.getValidFrom());
+        compareEntry.setValidTill(record1.getValidTill());
+        return record1.equals(compareEntry);
+    }
+
+
+    /**
+     * Check if the change events are enabled
+     *
+     * @return true if the change events are enabled
+     */
+    protected boolean isChangeEventsEnabled() {
+        return changeListener != null && changeListener != ITemporalityChangeListener.NO_OP;
+    }
+
+
+    /**
+     * Pass the change of an executed operation to the change listener. In case of a batch write the change is passed after
+     * the operations are flushed.
+     *
+     * @param <R> the generic record type.
+     * @param daoService the dao service which executed the operation
+     * @param operation the planned operation
+     */
+    protected <R extends ITemporalityRecord<R, ?, ?>> void onTemporalityChange(IDAOService<R> daoService, TemporalityOperation<R> operation) {
+        if (!isChangeEventsEnabled()) {
+            return;
+        }
+
+        IDAOService<R> executingDAOService = daoService;
+        if (executingDAOService instanceof TimelineDAOService) {
+            executingDAOService = ((TimelineDAOService<R>) executingDAOService).getDAOService();
+        }
+
+        if (executingDAOService instanceof BatchOperationDAOService) {
+            ((BatchOperationDAOService<R, ?>) executingDAOService).addChange(operation);
+        } else {
+            changeListener.onTemporalityChange(createChangeEvent(operation));
+        }
+    }
+
+
+    /**
+     * Create the change event of an executed operation, the records are copied
+     *
+     * @param <R> the generic record type.
+     * @param operation the executed operation
+     * @return the change event
+     */
+    static <R extends ITemporalityRecord<R, ?, ?>> TemporalityChangeEvent<R> createChangeEvent(TemporalityOperation<R> operation) {
+        R before = null;
+        R after = null;
+        if (operation.isDelete()) {
+            before = operation.getRecord().clone();
+        } else {
+            after = operation.getRecord().clone();
+            if (operation.getExistingRecord() != null) {
+                before = operation.getExistingRecord().clone();
+            }
         }
-        
-        LocalDateTime d = LocalDateTime.ofInstant(instat, ZoneId.systemDefault());
-        if (d.getDayOfMonth() == 31 && Month.DECEMBER.equals(d.getMonth()) && d.getDayOfYear() >= 9999) {
-            return true;
+
+        return new TemporalityChangeEvent<R>(operation.getTemporalityActionType(), operation.getTemporalityCase(), before, after, operation.getRecord().getDataKey());
+    }
+
+
+    /**
+     * Check if the metrics are enabled
+     *
+     * @return true if the metrics are enabled
+     */
+    protected boolean isMetricsEnabled() {
+        return metricsListener != null && metricsListener != ITemporalityMetricsListener.NO_OP;
+    }
+
+
+    /**
+     * Pass the temporality cases of an executed plan to the metrics listener
+     *
+     * @param plan the executed plan
+     */
+    protected void onTemporalityCases(TemporalityPlan<?> plan) {
+        if (isMetricsEnabled()) {
+            for (TemporalityCase temporalityCase : plan.getCaseList()) {
+                metricsListener.onTemporalityCase(temporalityCase);
+            }
         }
-        
-        return false;
     }
-    
+
+
     /**
      * Check if given object is not empty
      *
@@ -324,4 +1978,62 @@ public final class TemporalityHandlerImpl implements ITemporalityHandler, Serial
     protected boolean isNotEmpty(Object obj) {
         return obj != null;
     }
+
+
+    /**
+     * Get the valid from of a record, an empty valid from is before any instant
+     *
+     * @param record the record
+     * @return the valid from or {@link Instant#MIN}
+     */
+    protected Instant validFrom(ITemporalityRecord<?, ?, ?> record) {
+        if (record.getValidFrom() == null) {
+            return Instant.MIN;
+        }
+
+        return record.getValidFrom();
+    }
+
+
+    /**
+     * Get the valid till of a record, an empty valid till is after any instant
+     *
+     * @param record the record
+     * @return the valid till or {@link Instant#MAX}
+     */
+    protected Instant validTill(ITemporalityRecord<?, ?, ?> record) {
+        if (record.getValidTill() == null) {
+            return Instant.MAX;
+        }
+
+        return record.getValidTill();
+    }
+
+
+    /**
+     * A version of the compacted timeline: the existing record, the resulting record and the planned operation.
+     *
+     * @param <R> the generic record type.
+     */
+    private static final class CompactionVersion<R> {
+        private R existingRecord;
+        private R record;
+        private TemporalityOperation<R> operation;
+        private boolean compacted;
+
+
+        /**
+         * Constructor for CompactionVersion
+         *
+         * @param existingRecord the existing record or null
+         * @param record the resulting record or null if it is deleted
+         * @param operation the planned operation or null
+         */
+        CompactionVersion(R existingRecord, R record, TemporalityOperation<R> operation) {
+            this.existingRecord = existingRecord;
+            this.record = record;
+            this.operation = operation;
+            this.compacted = false;
+        }
+    }
 }
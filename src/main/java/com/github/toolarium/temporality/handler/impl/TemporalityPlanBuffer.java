@@ -0,0 +1,304 @@
+/*
+ * TemporalityPlanBuffer.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityCase;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalityPlan;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Collects the planned operations and the temporality cases of a planning. The cases are kept apart from the operations
+ * because a checked record may not result in an operation, e.g. a record before the written record (Case B). The planner
+ * only records the cases, they are passed to the metrics listener when the plan is executed. A write of a single record
+ * plans into a buffer of the {@link Pool} of the temporality handler and executes the operations from it, which allocates
+ * no plan and no operations. This class is not thread safe.
+ *
+ * @param <R> the generic record type.
+ */
+final class TemporalityPlanBuffer<R> {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int MAX_POOLED_CAPACITY = 64;
+    private TemporalityCase[] caseArray;
+    private int numberOfCases;
+    private TemporalityCase[] operationCaseArray;
+    private TemporalityActionType[] actionTypeArray;
+    private Object[] recordArray;
+    private Object[] existingRecordArray;
+    private int size;
+
+
+    /**
+     * Constructor for TemporalityPlanBuffer
+     */
+    TemporalityPlanBuffer() {
+        caseArray = new TemporalityCase[INITIAL_CAPACITY];
+        operationCaseArray = new TemporalityCase[INITIAL_CAPACITY];
+        actionTypeArray = new TemporalityActionType[INITIAL_CAPACITY];
+        recordArray = new Object[INITIAL_CAPACITY];
+        existingRecordArray = new Object[INITIAL_CAPACITY];
+        numberOfCases = 0;
+        size = 0;
+    }
+
+
+    /**
+     * Clear the buffer, the references to the records are cleared
+     */
+    void clear() {
+        Arrays.fill(recordArray, 0, size, null);
+        Arrays.fill(existingRecordArray, 0, size, null);
+        numberOfCases = 0;
+        size = 0;
+    }
+
+
+    /**
+     * Check if the buffer is small enough to be kept in a pool, a buffer which has grown by a large plan is dropped
+     *
+     * @return true if the buffer can be pooled
+     */
+    boolean isPoolable() {
+        return recordArray.length <= MAX_POOLED_CAPACITY && caseArray.length <= MAX_POOLED_CAPACITY;
+    }
+
+
+    /**
+     * Add the temporality case of a checked record
+     *
+     * @param temporalityCase the temporality case
+     */
+    void addCase(TemporalityCase temporalityCase) {
+        if (numberOfCases == caseArray.length) {
+            caseArray = Arrays.copyOf(caseArray, numberOfCases * 2);
+        }
+
+        caseArray[numberOfCases++] = temporalityCase;
+    }
+
+
+    /**
+     * Add an operation
+     *
+     * @param temporalityCase the temporality case
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     * @param existingRecord the existing record which is changed or deleted, null in case a new record is written
+     */
+    void add(TemporalityCase temporalityCase, TemporalityActionType temporalityActionType, R record, R existingRecord) {
+        if (size == recordArray.length) {
+            int capacity = size * 2;
+            operationCaseArray = Arrays.copyOf(operationCaseArray, capacity);
+            actionTypeArray = Arrays.copyOf(actionTypeArray, capacity);
+            recordArray = Arrays.copyOf(recordArray, capacity);
+            existingRecordArray = Arrays.copyOf(existingRecordArray, capacity);
+        }
+
+        operationCaseArray[size] = temporalityCase;
+        actionTypeArray[size] = temporalityActionType;
+        recordArray[size] = record;
+        existingRecordArray[size] = existingRecord;
+        size++;
+    }
+
+
+    /**
+     * Get the number of temporality cases
+     *
+     * @return the number of temporality cases
+     */
+    int getNumberOfCases() {
+        return numberOfCases;
+    }
+
+
+    /**
+     * Get a temporality case
+     *
+     * @param index the index
+     * @return the temporality case
+     */
+    TemporalityCase getCase(int index) {
+        return caseArray[index];
+    }
+
+
+    /**
+     * Get the number of operations
+     *
+     * @return the number of operations
+     */
+    int size() {
+        return size;
+    }
+
+
+    /**
+     * Get the temporality case of an operation
+     *
+     * @param index the index of the operation
+     * @return the temporality case
+     */
+    TemporalityCase getTemporalityCase(int index) {
+        return operationCaseArray[index];
+    }
+
+
+    /**
+     * Get the temporality action type of an operation
+     *
+     * @param index the index of the operation
+     * @return the temporality action type
+     */
+    TemporalityActionType getTemporalityActionType(int index) {
+        return actionTypeArray[index];
+    }
+
+
+    /**
+     * Get the record of an operation
+     *
+     * @param index the index of the operation
+     * @return the record
+     */
+    @SuppressWarnings("unchecked")
+    R getRecord(int index) {
+        return (R) recordArray[index];
+    }
+
+
+    /**
+     * Get the existing record of an operation
+     *
+     * @param index the index of the operation
+     * @return the existing record or null
+     */
+    @SuppressWarnings("unchecked")
+    R getExistingRecord(int index) {
+        return (R) existingRecordArray[index];
+    }
+
+
+    /**
+     * Create the operation at the given index
+     *
+     * @param index the index of the operation
+     * @return the operation
+     */
+    TemporalityOperation<R> getOperation(int index) {
+        return new TemporalityOperation<R>(getTemporalityCase(index), getTemporalityActionType(index), getRecord(index), getExistingRecord(index));
+    }
+
+
+    /**
+     * Create the list of the operations
+     *
+     * @return the operations
+     */
+    List<TemporalityOperation<R>> getOperationList() {
+        List<TemporalityOperation<R>> result = new ArrayList<TemporalityOperation<R>>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(getOperation(i));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Create the list of the temporality cases
+     *
+     * @return the temporality cases
+     */
+    List<TemporalityCase> getCaseList() {
+        return new ArrayList<TemporalityCase>(Arrays.asList(caseArray).subList(0, numberOfCases));
+    }
+
+
+    /**
+     * Create the plan of the buffered operations and cases
+     *
+     * @return the plan
+     */
+    TemporalityPlan<R> toPlan() {
+        return new TemporalityPlan<R>(getOperationList(), getCaseList());
+    }
+
+
+    /**
+     * A bounded pool of empty buffers which is owned by a temporality handler. A buffer is taken from the pool for one
+     * write and returned afterwards, in case the pool is empty a new buffer is created and in case it is full or the buffer
+     * has grown beyond the max pooled capacity the buffer is dropped. This class is thread safe.
+     */
+    static final class Pool {
+        private final AtomicReferenceArray<TemporalityPlanBuffer<?>> bufferArray;
+
+
+        /**
+         * Constructor for Pool
+         *
+         * @param size the max number of pooled buffers
+         */
+        Pool(int size) {
+            bufferArray = new AtomicReferenceArray<TemporalityPlanBuffer<?>>(Math.max(1, size));
+        }
+
+
+        /**
+         * Take an empty buffer from the pool, it has to be released after the execution
+         *
+         * @param <R> the generic record type.
+         * @return the empty buffer
+         */
+        @SuppressWarnings("unchecked")
+        <R> TemporalityPlanBuffer<R> acquire() {
+            int start = startIndex();
+            for (int i = 0; i < bufferArray.length(); i++) {
+                TemporalityPlanBuffer<?> buffer = bufferArray.getAndSet((start + i) % bufferArray.length(), null);
+                if (buffer != null) {
+                    return (TemporalityPlanBuffer<R>) buffer;
+                }
+            }
+
+            return new TemporalityPlanBuffer<R>();
+        }
+
+
+        /**
+         * Clear the buffer and return it to the pool
+         *
+         * @param buffer the buffer
+         */
+        void release(TemporalityPlanBuffer<?> buffer) {
+            buffer.clear();
+            if (!buffer.isPoolable()) {
+                return;
+            }
+
+            int start = startIndex();
+            for (int i = 0; i < bufferArray.length(); i++) {
+                if (bufferArray.compareAndSet((start + i) % bufferArray.length(), null, buffer)) {
+                    return;
+                }
+            }
+        }
+
+
+        /**
+         * Get the first slot which is checked by the current thread, the threads start at different slots
+         *
+         * @return the index of the slot
+         */
+        private int startIndex() {
+            return (int) ((Thread.currentThread().getId() & Integer.MAX_VALUE) % bufferArray.length());
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * TimelineDAOService.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+
+/**
+ * Implements a {@link IDAOService} which keeps the timeline of one data key in memory. The timeline is read once from the
+ * delegate and all write and delete operations are passed to the delegate and applied to the in-memory timeline.
+ * In case a written record has still no primary key on the next search, the stored copy is read by its validity and
+ * replaces the written record, because the record can not be referenced otherwise. Only in case the stored copy is not
+ * found unambiguously the in-memory timeline is read again. A record which is still pending in a batch is not resolved,
+ * a later change of it replaces the pending write, see {@link #replacePendingRecord(ITemporalityRecord, ITemporalityRecord)}.
+ * The timeline can be restricted to a period, in this case only the records which overlap or touch the period are read.
+ * In case the temporality handler treats the results as ordered, which depends on its sort contract and not only on the
+ * dao service, the in-memory timeline is kept in the same order.
+ *
+ * @param <R> the generic record type.
+ */
+class TimelineDAOService<R extends ITemporalityRecord<R, ?, ?>> implements IDAOService<R> {
+    private IDAOService<R> daoService;
+    private Instant validFrom;
+    private Instant validTill;
+    private List<R> timeline;
+    private List<R> unresolvedRecordList;
+    private boolean sortedTimeline;
+    private boolean sorted;
+
+
+    /**
+     * Constructor for TimelineDAOService
+     *
+     * @param daoService the dao service
+     * @param validFrom the valid from of the period or null
+     * @param validTill the valid till of the period or null
+     * @param sortedTimeline true if the temporality handler treats the results of the dao service as ordered
+     */
+    TimelineDAOService(IDAOService<R> daoService, Instant validFrom, Instant validTill, boolean sortedTimeline) {
+        this.daoService = daoService;
+        this.validFrom = validFrom;
+        this.validTill = validTill;
+        this.timeline = null;
+        this.unresolvedRecordList = new ArrayList<R>();
+        this.sortedTimeline = sortedTimeline;
+        this.sorted = true;
+    }
+
+
+    /**
+     * Get the dao service
+     *
+     * @return the dao service
+     */
+    IDAOService<R> getDAOService() {
+        return daoService;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, R record) {
+        daoService.write(temporalityActionType, record);
+
+        if (timeline == null) {
+            return;
+        }
+
+        int index = -1;
+        if (record.getPrimaryKey() != null) {
+            index = indexOf(record);
+        }
+
+        if (index >= 0) {
+            timeline.set(index, record);
+        } else {
+            timeline.add(record);
+            if (record.getPrimaryKey() == null) {
+                unresolvedRecordList.add(record);
+            }
+        }
+
+        sorted = false;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(R record) {
+        if (record.getPrimaryKey() == null && timeline != null && daoService instanceof BatchOperationDAOService
+            && ((BatchOperationDAOService<R, ?>) daoService).removePendingWrite(record)) {
+            // the pending record is never written
+            removeRecord(record);
+            return;
+        }
+
+        daoService.delete(record);
+
+        if (timeline == null) {
+            return;
+        }
+
+        if (record.getPrimaryKey() == null) {
+            timeline = null;
+            return;
+        }
+
+        int index = indexOf(record);
+        if (index >= 0) {
+            timeline.remove(index);
+        }
+    }
+
+
+    /**
+     * Replace a record without primary key which is still pending in a batch by its changed version, the pending write of
+     * the batch is replaced and the record is written once on the flush of the batch
+     *
+     * @param existingRecord the record instance of the timeline without primary key
+     * @param record the changed record
+     * @return true if the pending record was replaced, otherwise the change has to be written
+     */
+    boolean replacePendingRecord(R existingRecord, R record) {
+        if (timeline == null || existingRecord.getPrimaryKey() != null || !(daoService instanceof BatchOperationDAOService)) {
+            return false;
+        }
+
+        int index = indexOfRecord(existingRecord);
+        if (index < 0 || !((BatchOperationDAOService<R, ?>) daoService).replacePendingWrite(existingRecord, record)) {
+            return false;
+        }
+
+        timeline.set(index, record);
+        for (int i = 0; i < unresolvedRecordList.size(); i++) {
+            if (unresolvedRecordList.get(i) == existingRecord) {
+                unresolvedRecordList.set(i, record);
+            }
+        }
+
+        sorted = false;
+        return true;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<R> search(R recordFilter) {
+        if (timeline != null && !unresolvedRecordList.isEmpty()) {
+            resolveRecords(recordFilter);
+        }
+
+        if (timeline == null) {
+            List<R> recordList;
+            if (validFrom != null && validTill != null) {
+                recordList = daoService.searchOverlapping(recordFilter, validFrom, validTill);
+            } else {
+                recordList = daoService.search(recordFilter);
+            }
+
+            if (recordList == null) {
+                timeline = new ArrayList<R>();
+            } else {
+                timeline = new ArrayList<R>(recordList);
+            }
+
+            unresolvedRecordList.clear();
+            sorted = true;
+        }
+
+        if (!sorted && sortedTimeline) {
+            timeline.sort(TemporalityHandlerImpl.VALIDITY_COMPARATOR);
+            sorted = true;
+        }
+
+        return new ArrayList<R>(timeline);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> searchOverlapping(R recordFilter, Instant validFrom, Instant validTill) {
+        return search(recordFilter);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return sortedTimeline;
+    }
+
+
+    /**
+     * Replace the written records without primary key by their stored copies. The stored copies are read at once for the
+     * period of the written records and are found by their validity. In case a record has no validity or its stored copy
+     * is not found unambiguously, the in-memory timeline is dropped and read again. A record which is still pending in a
+     * batch is kept, it is resolved after the batch is flushed.
+     *
+     * @param recordFilter the record for filtering
+     */
+    private void resolveRecords(R recordFilter) {
+        List<R> pendingRecordList = new ArrayList<R>(0);
+        if (daoService instanceof BatchOperationDAOService) {
+            for (R record : unresolvedRecordList) {
+                if (record.getPrimaryKey() == null && ((BatchOperationDAOService<R, ?>) daoService).isPendingWrite(record)) {
+                    pendingRecordList.add(record);
+                }
+            }
+        }
+
+        Instant from = null;
+        Instant till = null;
+        for (R record : unresolvedRecordList) {
+            if (record.getPrimaryKey() == null && !containsRecord(pendingRecordList, record)) {
+                if (record.getValidFrom() == null || record.getValidTill() == null) {
+                    timeline = null;
+                    return;
+                }
+
+                if (from == null || record.getValidFrom().isBefore(from)) {
+                    from = record.getValidFrom();
+                }
+
+                if (till == null || record.getValidTill().isAfter(till)) {
+                    till = record.getValidTill();
+                }
+            }
+        }
+
+        if (from != null) {
+            List<R> recordList = daoService.searchOverlapping(recordFilter, from, till);
+            Set<Object> primaryKeySet = new HashSet<Object>();
+            for (R record : timeline) {
+                if (record.getPrimaryKey() != null) {
+                    primaryKeySet.add(record.getPrimaryKey());
+                }
+            }
+
+            for (R record : unresolvedRecordList) {
+                if (record.getPrimaryKey() != null || containsRecord(pendingRecordList, record)) {
+                    continue;
+                }
+
+                R storedRecord = findStoredRecord(recordList, record, primaryKeySet);
+                int index = indexOfRecord(record);
+                if (storedRecord == null || index < 0) {
+                    timeline = null;
+                    return;
+                }
+
+                timeline.set(index, storedRecord);
+                primaryKeySet.add(storedRecord.getPrimaryKey());
+            }
+        }
+
+        unresolvedRecordList.clear();
+        unresolvedRecordList.addAll(pendingRecordList);
+    }
+
+
+    /**
+     * Find the stored copy of a written record: the only record with the same validity whose primary key is not yet in the timeline
+     *
+     * @param recordList the stored records
+     * @param record the written record
+     * @param primaryKeySet the primary keys of the timeline
+     * @return the stored copy or null
+     */
+    private R findStoredRecord(List<R> recordList, R record, Set<Object> primaryKeySet) {
+        if (recordList == null) {
+            return null;
+        }
+
+        R result = null;
+        for (R storedRecord : recordList) {
+            if (storedRecord.getPrimaryKey() != null && !primaryKeySet.contains(storedRecord.getPrimaryKey())
+                    && Objects.equals(storedRecord.getValidFrom(), record.getValidFrom()) && Objects.equals(storedRecord.getValidTill(), record.getValidTill())) {
+                if (result != null) {
+                    return null;
+                }
+
+                result = storedRecord;
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Remove a record instance from the timeline and the unresolved records
+     *
+     * @param record the record
+     */
+    private void removeRecord(R record) {
+        int index = indexOfRecord(record);
+        if (index >= 0) {
+            timeline.remove(index);
+        }
+
+        for (int i = unresolvedRecordList.size() - 1; i >= 0; i--) {
+            if (unresolvedRecordList.get(i) == record) {
+                unresolvedRecordList.remove(i);
+            }
+        }
+    }
+
+
+    /**
+     * Check if a list contains the record instance
+     *
+     * @param recordList the records
+     * @param record the record
+     * @return true if the record instance is contained
+     */
+    private boolean containsRecord(List<R> recordList, R record) {
+        for (R r : recordList) {
+            if (r == record) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Get the index of the record instance in the timeline
+     *
+     * @param record the record
+     * @return the index or -1
+     */
+    private int indexOfRecord(R record) {
+        for (int i = 0; i < timeline.size(); i++) {
+            if (timeline.get(i) == record) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Get the index of the record with the same primary key in the timeline
+     *
+     * @param record the record
+     * @return the index or -1
+     */
+    private int indexOf(R record) {
+        for (int i = 0; i < timeline.size(); i++) {
+            if (Objects.equals(timeline.get(i).getPrimaryKey(), record.getPrimaryKey())) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
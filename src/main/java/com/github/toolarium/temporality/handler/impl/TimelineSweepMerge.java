@@ -0,0 +1,226 @@
+/*
+ * TimelineSweepMerge.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import com.github.toolarium.temporality.handler.TemporalityPlan;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+
+/**
+ * Merges the records of one data key which are ordered by the valid from into the existing timeline in a single pass. The
+ * existing timeline is read once and swept in the order of the valid from: an existing record enters the window as soon as
+ * it can overlap or touch a record and leaves it as soon as it ends before the valid from of a record, because it can not be
+ * affected by any later record (Case B). Each record is planned on the records of the window which overlap or touch it and
+ * the operations are passed to the dao service immediately, the window is updated by the operations.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+class TimelineSweepMerge<R extends ITemporalityRecord<R, P, D>, P, D> {
+    private final TemporalityHandlerImpl temporalityHandler;
+    private final IDAOService<R> daoService;
+    private final R recordFilter;
+    private final List<R> existingRecordList;
+    private int existingIndex;
+    private List<R> window;
+    private Instant lastValidFrom;
+
+
+    /**
+     * Constructor for TimelineSweepMerge
+     *
+     * @param temporalityHandler the temporality handler which plans and executes the records
+     * @param daoService the dao service
+     * @param recordFilter the first record of the data key, it is used as filter to read the existing timeline
+     */
+    TimelineSweepMerge(TemporalityHandlerImpl temporalityHandler, IDAOService<R> daoService, R recordFilter) {
+        this.temporalityHandler = temporalityHandler;
+        this.daoService = daoService;
+        this.recordFilter = recordFilter;
+
+        List<R> recordList = daoService.search(recordFilter);
+        if (recordList == null) {
+            recordList = new ArrayList<R>();
+        } else if (!temporalityHandler.isSorted(daoService) || !(recordList instanceof RandomAccess)) {
+            recordList = new ArrayList<R>(recordList);
+            recordList.sort(TemporalityHandlerImpl.VALIDITY_COMPARATOR);
+        }
+
+        this.existingRecordList = recordList;
+        this.existingIndex = 0;
+        this.window = new ArrayList<R>();
+        this.lastValidFrom = null;
+    }
+
+
+    /**
+     * Get the data key
+     *
+     * @return the data key
+     */
+    D getDataKey() {
+        return recordFilter.getDataKey();
+    }
+
+
+    /**
+     * Merge the next record of the data key
+     *
+     * @param record the record, the valid from is not before the valid from of the previous record
+     * @return the number of written and deleted entries
+     * @throws IllegalArgumentException in case the record starts before the previous record
+     */
+    int merge(R record) {
+        if (lastValidFrom != null && record.getValidFrom().isBefore(lastValidFrom)) {
+            throw new IllegalArgumentException("The records of data key " + getDataKey() + " are not ordered by the valid from: "
+                                               + record.getValidFrom() + " is before " + lastValidFrom + "!");
+        }
+
+        lastValidFrom = record.getValidFrom();
+
+        // the existing records which start not after the record can be affected from now on
+        while (existingIndex < existingRecordList.size() && !isAfter(existingRecordList.get(existingIndex).getValidFrom(), record.getValidTill())) {
+            window.add(existingRecordList.get(existingIndex++));
+        }
+
+        // the records which end before the record are not affected by this or any later record (Case B)
+        window.removeIf(r -> r.getValidTill() != null && r.getValidTill().isBefore(record.getValidFrom()));
+
+        // a created record without primary key can not be referenced, the window is read again
+        if (containsRecordWithoutPrimaryKey()) {
+            readWindow(record);
+        }
+
+        window.sort(TemporalityHandlerImpl.VALIDITY_COMPARATOR);
+        List<R> checkList = new ArrayList<R>(window.size());
+        for (R windowRecord : window) {
+            if (!isAfter(windowRecord.getValidFrom(), record.getValidTill())) {
+                checkList.add(windowRecord);
+            }
+        }
+
+        TemporalityPlan<R> plan = temporalityHandler.planRecord(record, checkList, false);
+        int result = temporalityHandler.executePlan(plan, daoService);
+        apply(plan);
+        return result;
+    }
+
+
+    /**
+     * Apply the executed operations to the window
+     *
+     * @param plan the executed plan
+     */
+    private void apply(TemporalityPlan<R> plan) {
+        for (TemporalityOperation<R> operation : plan.getOperationList()) {
+            int index = indexOf(operation.getRecord());
+            if (operation.isDelete()) {
+                if (index >= 0) {
+                    window.remove(index);
+                }
+            } else if (index >= 0) {
+                window.set(index, operation.getRecord());
+            } else {
+                window.add(operation.getRecord());
+            }
+        }
+    }
+
+
+    /**
+     * Read the records of the window and the record again from the dao service
+     *
+     * @param record the record
+     */
+    private void readWindow(R record) {
+        Instant validFrom = record.getValidFrom();
+        Instant validTill = record.getValidTill();
+        for (R windowRecord : window) {
+            if (validFrom != null && (windowRecord.getValidFrom() == null || windowRecord.getValidFrom().isBefore(validFrom))) {
+                validFrom = windowRecord.getValidFrom();
+            }
+
+            if (validTill != null && (windowRecord.getValidTill() == null || windowRecord.getValidTill().isAfter(validTill))) {
+                validTill = windowRecord.getValidTill();
+            }
+        }
+
+        List<R> recordList;
+        if (validFrom == null || validTill == null) {
+            recordList = daoService.search(recordFilter);
+        } else {
+            recordList = daoService.searchOverlapping(recordFilter, validFrom, validTill);
+        }
+
+        window = new ArrayList<R>();
+        if (recordList != null) {
+            for (R r : recordList) {
+                if (r.getValidTill() == null || !r.getValidTill().isBefore(record.getValidFrom())) {
+                    window.add(r);
+                }
+            }
+        }
+
+        // the existing records which overlap or touch the period are part of the result
+        while (existingIndex < existingRecordList.size() && !isAfter(existingRecordList.get(existingIndex).getValidFrom(), validTill)) {
+            existingIndex++;
+        }
+    }
+
+
+    /**
+     * Check if the window contains a record without primary key
+     *
+     * @return true if there is a record without primary key
+     */
+    private boolean containsRecordWithoutPrimaryKey() {
+        for (R record : window) {
+            if (record.getPrimaryKey() == null) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Get the index of the record in the window, a record without primary key is compared by identity
+     *
+     * @param record the record
+     * @return the index or -1
+     */
+    private int indexOf(R record) {
+        for (int i = 0; i < window.size(); i++) {
+            R windowRecord = window.get(i);
+            if (windowRecord == record || (record.getPrimaryKey() != null && Objects.equals(windowRecord.getPrimaryKey(), record.getPrimaryKey()))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Check if a valid from is after a valid till, an empty valid from is before and an empty valid till after any instant
+     *
+     * @param validFrom the valid from
+     * @param validTill the valid till
+     * @return true if the valid from is after the valid till
+     */
+    private boolean isAfter(Instant validFrom, Instant validTill) {
+        return validFrom != null && validTill != null && validFrom.isAfter(validTill);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * WriteAheadLog.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecordCodec;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements a local write-ahead log of records. A record is appended as length prefixed entry encoded by the
+ * {@link ITemporalityRecordCodec} and forced to the storage device before the append returns. An incomplete entry at the
+ * end of the file, e.g. after a crash, is ignored. This class is not thread safe.
+ *
+ * @param <R> the generic record type.
+ */
+class WriteAheadLog<R> implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+    private final Path file;
+    private final ITemporalityRecordCodec<R> codec;
+    private FileChannel channel;
+
+
+    /**
+     * Constructor for WriteAheadLog
+     *
+     * @param file the file
+     * @param codec the record codec
+     * @throws UncheckedIOException in case the file can not be opened
+     */
+    WriteAheadLog(Path file, ITemporalityRecordCodec<R> codec) {
+        this.file = file;
+        this.codec = codec;
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+
+            this.channel = open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the write-ahead log " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Read the logged records, an incomplete entry at the end is removed
+     *
+     * @return the logged records in the order of the appends
+     * @throws UncheckedIOException in case the file can not be read
+     */
+    List<R> read() {
+        List<R> result = new ArrayList<R>();
+        try {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+            while (position + Integer.BYTES <= size) {
+                lengthBuffer.clear();
+                readFully(lengthBuffer, position);
+                int length = lengthBuffer.getInt(0);
+                if (length < 0 || position + Integer.BYTES + length > size) {
+                    break;
+                }
+
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                readFully(buffer, position + Integer.BYTES);
+                buffer.flip();
+                result.add(codec.decode(buffer.asReadOnlyBuffer()));
+                position += Integer.BYTES + length;
+            }
+
+            if (position < size) {
+                log.debug("Remove incomplete entry of the write-ahead log " + file + " at position " + position + ".");
+                channel.truncate(position);
+                channel.force(false);
+            }
+
+            channel.position(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the write-ahead log " + file + ": " + e.getMessage(), e);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Append a record and force it to the storage device
+     *
+     * @param record the record
+     * @throws UncheckedIOException in case the record can not be written
+     */
+    void append(R record) {
+        byte[] data = codec.encode(record);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + data.length);
+        buffer.putInt(data.length).put(data).flip();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the write-ahead log " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Replace the logged records, the file is replaced atomically
+     *
+     * @param recordList the records which are still pending
+     * @throws UncheckedIOException in case the file can not be written
+     */
+    void rewrite(List<R> recordList) {
+        try {
+            if (recordList.isEmpty()) {
+                channel.truncate(0);
+                channel.force(false);
+                return;
+            }
+
+            Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (R record : recordList) {
+                    byte[] data = codec.encode(record);
+                    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + data.length);
+                    buffer.putInt(data.length).put(data).flip();
+                    while (buffer.hasRemaining()) {
+                        tempChannel.write(buffer);
+                    }
+                }
+
+                tempChannel.force(false);
+            }
+
+            channel.close();
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = open(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rewrite the write-ahead log " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    /**
+     * Open the file for appending
+     *
+     * @param file the file
+     * @return the channel positioned at the end
+     * @throws IOException in case the file can not be opened
+     */
+    private static FileChannel open(Path file) throws IOException {
+        FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileChannel.position(fileChannel.size());
+        return fileChannel;
+    }
+
+
+    /**
+     * Read a buffer completely
+     *
+     * @param buffer the buffer
+     * @param position the position in the file
+     * @throws IOException in case the file can not be read
+     */
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, offset);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file at position " + offset);
+            }
+
+            offset += n;
+        }
+    }
+}
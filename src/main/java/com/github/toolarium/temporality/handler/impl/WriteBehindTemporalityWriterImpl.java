@@ -0,0 +1,460 @@
+/*
+ * WriteBehindTemporalityWriterImpl.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.impl;
+
+import com.github.toolarium.temporality.handler.IDAOService;
+import com.github.toolarium.temporality.handler.ITemporalityHandler;
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.ITemporalityRecordCodec;
+import com.github.toolarium.temporality.handler.IWriteBehindTemporalityWriter;
+import com.github.toolarium.temporality.handler.TemporalityHandlerFactory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Implements the {@link IWriteBehindTemporalityWriter}. The buffer of a data key is flushed after the flush window which
+ * starts with its first record or as soon as it contains the max number of buffered records. The flushes run on one
+ * daemon thread and are serialized with the explicit flushes, the records of a data key are written in the order of the
+ * writes. With a temporality handler of this package the records of a flush are folded into one net plan which needs one
+ * read of the timeline, otherwise they are written as bulk write.
+ *
+ * <p>In case the records of a data key can not be written, they are buffered again before the records which were written in
+ * the meantime and the flush is retried after the flush window. After the max number of flush retries the records are
+ * removed and passed to the dead letter handler, the later records of the data key are flushed anyway.</p>
+ *
+ * <p>With a write-ahead log each record is forced to a local file before the write returns. The file contains the buffered
+ * records only and is rewritten after a successful flush, the records of a previous run which were not flushed are buffered
+ * again on start and written with the next flush. A record which was already written before the crash is written again with
+ * the same result. This class is thread safe.</p>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public final class WriteBehindTemporalityWriterImpl<R extends ITemporalityRecord<R, P, D>, P, D> implements IWriteBehindTemporalityWriter<R> {
+    /** The default flush window */
+    public static final Duration DEFAULT_FLUSH_WINDOW = Duration.ofSeconds(1);
+
+    /** The default max number of buffered records of a data key */
+    public static final int DEFAULT_MAX_BUFFERED_RECORDS = 1000;
+
+    /** The default max number of retries of a failed flush of a data key */
+    public static final int DEFAULT_MAX_FLUSH_RETRIES = 10;
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindTemporalityWriterImpl.class);
+    private final ITemporalityHandler temporalityHandler;
+    private final IDAOService<R> daoService;
+    private final long flushWindowNanos;
+    private final int maxBufferedRecords;
+    private final WriteAheadLog<R> writeAheadLog;
+    private final int maxFlushRetries;
+    private final BiConsumer<List<R>, RuntimeException> deadLetterHandler;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Lock flushLock;
+    private final Object lock;
+    private final Map<D, List<R>> bufferByDataKey;
+    private final Map<D, Integer> failedFlushesByDataKey;
+    private int numberOfPendingRecords;
+    private boolean closed;
+
+
+    /**
+     * Constructor for WriteBehindTemporalityWriterImpl, the records are written by the temporality handler of the factory
+     *
+     * @param daoService the dao service
+     */
+    public WriteBehindTemporalityWriterImpl(IDAOService<R> daoService) {
+        this(TemporalityHandlerFactory.getInstance().getTemporalityHandler(), daoService, DEFAULT_FLUSH_WINDOW, DEFAULT_MAX_BUFFERED_RECORDS);
+    }
+
+
+    /**
+     * Constructor for WriteBehindTemporalityWriterImpl
+     *
+     * @param temporalityHandler the temporality handler
+     * @param daoService the dao service
+     * @param flushWindow the time a record is buffered at most
+     * @param maxBufferedRecords the max number of buffered records of a data key
+     */
+    public WriteBehindTemporalityWriterImpl(ITemporalityHandler temporalityHandler, IDAOService<R> daoService, Duration flushWindow, int maxBufferedRecords) {
+        this(temporalityHandler, daoService, flushWindow, maxBufferedRecords, null, null);
+    }
+
+
+    /**
+     * Constructor for WriteBehindTemporalityWriterImpl
+     *
+     * @param temporalityHandler the temporality handler
+     * @param daoService the dao service
+     * @param flushWindow the time a record is buffered at most
+     * @param maxBufferedRecords the max number of buffered records of a data key
+     * @param writeAheadLogFile the file of the write-ahead log or null to disable it
+     * @param codec the record codec of the write-ahead log
+     * @throws java.io.UncheckedIOException in case the write-ahead log can not be read
+     */
+    public WriteBehindTemporalityWriterImpl(ITemporalityHandler temporalityHandler, IDAOService<R> daoService, Duration flushWindow, int maxBufferedRecords,
+                                            Path writeAheadLogFile, ITemporalityRecordCodec<R> codec) {
+        this(temporalityHandler, daoService, flushWindow, maxBufferedRecords, writeAheadLogFile, codec, DEFAULT_MAX_FLUSH_RETRIES, null);
+    }
+
+
+    /**
+     * Constructor for WriteBehindTemporalityWriterImpl
+     *
+     * @param temporalityHandler the temporality handler
+     * @param daoService the dao service
+     * @param flushWindow the time a record is buffered at most
+     * @param maxBufferedRecords the max number of buffered records of a data key
+     * @param writeAheadLogFile the file of the write-ahead log or null to disable it
+     * @param codec the record codec of the write-ahead log
+     * @param maxFlushRetries the max number of retries of a failed flush of a data key
+     * @param deadLetterHandler gets the records and the failure of the last flush after the max number of flush retries or
+     *        null to log them
+     * @throws java.io.UncheckedIOException in case the write-ahead log can not be read
+     */
+    public WriteBehindTemporalityWriterImpl(ITemporalityHandler temporalityHandler, IDAOService<R> daoService, Duration flushWindow, int maxBufferedRecords,
+                                            Path writeAheadLogFile, ITemporalityRecordCodec<R> codec, int maxFlushRetries,
+                                            BiConsumer<List<R>, RuntimeException> deadLetterHandler) {
+        if (temporalityHandler == null) {
+            throw new IllegalArgumentException("Invalid temporality handler!");
+        }
+
+        if (daoService == null) {
+            throw new IllegalArgumentException("Invalid dao service!");
+        }
+
+        if (flushWindow == null || flushWindow.isNegative()) {
+            throw new IllegalArgumentException("Invalid flush window: " + flushWindow);
+        }
+
+        if (maxBufferedRecords <= 0) {
+            throw new IllegalArgumentException("Invalid max number of buffered records: " + maxBufferedRecords);
+        }
+
+        if (writeAheadLogFile != null && codec == null) {
+            throw new IllegalArgumentException("Invalid codec of the write-ahead log!");
+        }
+
+        if (maxFlushRetries < 0) {
+            throw new IllegalArgumentException("Invalid max number of flush retries: " + maxFlushRetries);
+        }
+
+        this.temporalityHandler = temporalityHandler;
+        this.daoService = daoService;
+        this.flushWindowNanos = flushWindow.toNanos();
+        this.maxBufferedRecords = maxBufferedRecords;
+        this.maxFlushRetries = maxFlushRetries;
+        this.deadLetterHandler = deadLetterHandler;
+        this.flushLock = new ReentrantLock();
+        this.lock = new Object();
+        this.bufferByDataKey = new LinkedHashMap<D, List<R>>();
+        this.failedFlushesByDataKey = new HashMap<D, Integer>();
+        this.numberOfPendingRecords = 0;
+        this.closed = false;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "temporality-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+        if (writeAheadLogFile == null) {
+            this.writeAheadLog = null;
+        } else {
+            this.writeAheadLog = new WriteAheadLog<R>(writeAheadLogFile, codec);
+            List<R> recordList = writeAheadLog.read();
+            if (!recordList.isEmpty()) {
+                log.debug("Recover " + recordList.size() + " buffered records of the write-ahead log " + writeAheadLogFile + ".");
+                synchronized (lock) {
+                    for (R record : recordList) {
+                        buffer(record);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IWriteBehindTemporalityWriter#writeTemporalityRecord(java.lang.Object)
+     */
+    @Override
+    public void writeTemporalityRecord(R record) {
+        if (record == null || record.getValidFrom() == null || record.getValidTill() == null || !record.getValidFrom().isBefore(record.getValidTill())) {
+            throw new IllegalArgumentException("Invalid record, a buffered record needs a valid period: " + record);
+        }
+
+        R entry = record.clone();
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("The write-behind writer is closed!");
+            }
+
+            if (writeAheadLog != null) {
+                writeAheadLog.append(entry);
+            }
+
+            buffer(entry);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IWriteBehindTemporalityWriter#flush()
+     */
+    @Override
+    public int flush() {
+        List<D> dataKeyList;
+        synchronized (lock) {
+            dataKeyList = new ArrayList<D>(bufferByDataKey.keySet());
+        }
+
+        // the data keys after a failed data key are flushed as well
+        int result = 0;
+        RuntimeException failure = null;
+        for (D dataKey : dataKeyList) {
+            try {
+                result += flush(dataKey);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IWriteBehindTemporalityWriter#getNumberOfPendingRecords()
+     */
+    @Override
+    public int getNumberOfPendingRecords() {
+        synchronized (lock) {
+            return numberOfPendingRecords;
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IWriteBehindTemporalityWriter#close()
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        }
+
+        // the scheduled flushes are cancelled, a running flush is finished before
+        scheduler.shutdown();
+        try {
+            flush();
+        } finally {
+            try {
+                scheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (writeAheadLog != null) {
+                try {
+                    writeAheadLog.close();
+                } catch (IOException e) {
+                    log.warn("Could not close the write-ahead log: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Add a record to the buffer of its data key and schedule the flush, the caller holds the lock
+     *
+     * @param record the record
+     */
+    private void buffer(R record) {
+        D dataKey = record.getDataKey();
+        List<R> recordList = bufferByDataKey.get(dataKey);
+        if (recordList == null) {
+            recordList = new ArrayList<R>();
+            bufferByDataKey.put(dataKey, recordList);
+            scheduler.schedule(() -> flushScheduled(dataKey), flushWindowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        recordList.add(record);
+        numberOfPendingRecords++;
+        if (recordList.size() == maxBufferedRecords) {
+            scheduler.execute(() -> flushScheduled(dataKey));
+        }
+    }
+
+
+    /**
+     * Flush the buffered records of a data key on the scheduler thread
+     *
+     * @param dataKey the data key
+     */
+    private void flushScheduled(D dataKey) {
+        try {
+            flush(dataKey);
+        } catch (RuntimeException e) {
+            log.warn("Could not flush the buffered records of data key " + dataKey + ": " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Flush the buffered records of a data key
+     *
+     * @param dataKey the data key
+     * @return the number of updated records
+     */
+    private int flush(D dataKey) {
+        flushLock.lock();
+        try {
+            List<R> recordList;
+            synchronized (lock) {
+                recordList = bufferByDataKey.remove(dataKey);
+            }
+
+            if (recordList == null) {
+                return 0;
+            }
+
+            int result;
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("Flush " + recordList.size() + " buffered records of data key " + dataKey + ".");
+                }
+
+                result = write(recordList);
+            } catch (RuntimeException e) {
+                boolean retry;
+                synchronized (lock) {
+                    int failedFlushes = failedFlushesByDataKey.merge(dataKey, 1, Integer::sum);
+                    retry = failedFlushes <= maxFlushRetries;
+                    if (retry) {
+                        // the records stay pending and in the write-ahead log, they are written before the later records of the data key
+                        List<R> laterRecordList = bufferByDataKey.remove(dataKey);
+                        if (laterRecordList != null) {
+                            recordList.addAll(laterRecordList);
+                        }
+
+                        bufferByDataKey.put(dataKey, recordList);
+                        if (!closed) {
+                            scheduler.schedule(() -> flushScheduled(dataKey), flushWindowNanos, TimeUnit.NANOSECONDS);
+                        }
+                    } else {
+                        // the later records of the data key are still buffered and flushed on their own
+                        failedFlushesByDataKey.remove(dataKey);
+                        removePending(recordList);
+                    }
+                }
+
+                if (!retry) {
+                    onDeadLetter(dataKey, recordList, e);
+                }
+
+                throw e;
+            }
+
+            synchronized (lock) {
+                failedFlushesByDataKey.remove(dataKey);
+                removePending(recordList);
+            }
+
+            return result;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+
+    /**
+     * Remove flushed or dropped records from the pending records and the write-ahead log, the caller holds the lock
+     *
+     * @param recordList the records which are not pending anymore
+     */
+    private void removePending(List<R> recordList) {
+        numberOfPendingRecords -= recordList.size();
+        if (writeAheadLog != null) {
+            List<R> pendingRecordList = new ArrayList<R>(numberOfPendingRecords);
+            for (List<R> bufferedRecordList : bufferByDataKey.values()) {
+                pendingRecordList.addAll(bufferedRecordList);
+            }
+
+            writeAheadLog.rewrite(pendingRecordList);
+        }
+    }
+
+
+    /**
+     * Pass the records of a data key which could not be written after the max number of flush retries to the dead letter handler
+     *
+     * @param dataKey the data key
+     * @param recordList the records
+     * @param e the failure of the last flush
+     */
+    private void onDeadLetter(D dataKey, List<R> recordList, RuntimeException e) {
+        if (deadLetterHandler == null) {
+            log.error("Drop " + recordList.size() + " records of data key " + dataKey + " after " + (maxFlushRetries + 1) + " failed flushes: " + recordList);
+            return;
+        }
+
+        log.warn("Pass " + recordList.size() + " records of data key " + dataKey + " after " + (maxFlushRetries + 1) + " failed flushes to the dead letter handler.");
+        try {
+            deadLetterHandler.accept(recordList, e);
+        } catch (RuntimeException ex) {
+            log.warn("The dead letter handler failed: " + ex.getMessage(), ex);
+        }
+    }
+
+
+    /**
+     * Write the records of a data key
+     *
+     * @param recordList the records of a data key in the order of the writes
+     * @return the number of updated records
+     * @throws IllegalStateException in case the records could not be written
+     */
+    private int write(List<R> recordList) {
+        if (temporalityHandler instanceof TemporalityHandlerImpl) {
+            return ((TemporalityHandlerImpl) temporalityHandler).writeCoalesced(recordList, daoService);
+        }
+
+        Integer result = temporalityHandler.writeTemporalityRecords(recordList, daoService).get(recordList.get(0).getDataKey());
+        if (result == null) {
+            return 0;
+        }
+
+        return result;
+    }
+}
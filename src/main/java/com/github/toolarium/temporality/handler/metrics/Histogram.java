@@ -0,0 +1,191 @@
+/*
+ * Histogram.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Implements a lock free histogram of non negative values. The values are counted in buckets with a relative width of
+ * 12.5% (eight buckets per power of two), which bounds the error of a percentile. Recording a value doesn't allocate.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private AtomicLongArray buckets;
+    private LongAdder count;
+    private LongAdder sum;
+    private LongAccumulator max;
+
+
+    /**
+     * Constructor for Histogram
+     */
+    public Histogram() {
+        buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+        count = new LongAdder();
+        sum = new LongAdder();
+        max = new LongAccumulator(Math::max, 0);
+    }
+
+
+    /**
+     * Record a value, a negative value is recorded as 0
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        buckets.incrementAndGet(indexOf(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+
+    /**
+     * Get the number of recorded values
+     *
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+
+    /**
+     * Get the sum of the recorded values
+     *
+     * @return the sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+
+    /**
+     * Get the maximum recorded value
+     *
+     * @return the maximum or 0 if no value is recorded
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+
+    /**
+     * Get the mean of the recorded values
+     *
+     * @return the mean or 0 if no value is recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        if (n == 0) {
+            return 0;
+        }
+
+        return (double) getSum() / n;
+    }
+
+
+    /**
+     * Get the percentile of the recorded values. The result is the upper bound of the bucket of the percentile and not
+     * more than the maximum.
+     *
+     * @param percentile the percentile between 0 and 100
+     * @return the value of the percentile or 0 if no value is recorded
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+
+        long total = 0;
+        long[] snapshot = new long[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long cumulated = 0;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            cumulated += snapshot[i];
+            if (cumulated >= target) {
+                return Math.min(upperBoundOf(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+
+    /**
+     * Reset the histogram
+     */
+    public void reset() {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "[count=" + getCount() + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(50) + ", p90=" + getPercentile(90)
+               + ", p99=" + getPercentile(99) + ", max=" + getMax() + "]";
+    }
+
+
+    /**
+     * Get the bucket index of a value
+     *
+     * @param value the non negative value
+     * @return the index
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+
+    /**
+     * Get the largest value of a bucket
+     *
+     * @param index the index
+     * @return the largest value
+     */
+    static long upperBoundOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+        return lowerBound + width - 1;
+    }
+}
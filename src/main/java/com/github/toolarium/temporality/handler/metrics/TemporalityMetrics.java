@@ -0,0 +1,194 @@
+/*
+ * TemporalityMetrics.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.metrics;
+
+import com.github.toolarium.temporality.handler.ITemporalityMetricsListener;
+import com.github.toolarium.temporality.handler.TemporalityCase;
+import com.github.toolarium.temporality.handler.TemporalityDAOOperation;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Implements a lightweight {@link ITemporalityMetricsListener} which keeps the counters and histograms in memory: the
+ * number of temporality cases, the number of dao calls per write, the latency of the dao calls in nanoseconds and the
+ * number of failed dao calls. The recording is lock free and doesn't allocate. This class is thread safe.
+ */
+public class TemporalityMetrics implements ITemporalityMetricsListener {
+    private LongAdder[] caseCounter;
+    private Histogram[] latencyHistogram;
+    private LongAdder[] exceptionCounter;
+    private Histogram daoCallsPerRecordHistogram;
+    private LongAdder recordCounter;
+
+
+    /**
+     * Constructor for TemporalityMetrics
+     */
+    public TemporalityMetrics() {
+        caseCounter = new LongAdder[TemporalityCase.values().length];
+        for (int i = 0; i < caseCounter.length; i++) {
+            caseCounter[i] = new LongAdder();
+        }
+
+        latencyHistogram = new Histogram[TemporalityDAOOperation.values().length];
+        exceptionCounter = new LongAdder[TemporalityDAOOperation.values().length];
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            latencyHistogram[i] = new Histogram();
+            exceptionCounter[i] = new LongAdder();
+        }
+
+        daoCallsPerRecordHistogram = new Histogram();
+        recordCounter = new LongAdder();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityMetricsListener#onTemporalityCase(com.github.toolarium.temporality.handler.TemporalityCase)
+     */
+    @Override
+    public void onTemporalityCase(TemporalityCase temporalityCase) {
+        caseCounter[temporalityCase.ordinal()].increment();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityMetricsListener#onDAOCall(com.github.toolarium.temporality.handler.TemporalityDAOOperation, long)
+     */
+    @Override
+    public void onDAOCall(TemporalityDAOOperation operation, long durationNanos) {
+        latencyHistogram[operation.ordinal()].record(durationNanos);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityMetricsListener#onDAOException(com.github.toolarium.temporality.handler.TemporalityDAOOperation, java.lang.RuntimeException)
+     */
+    @Override
+    public void onDAOException(TemporalityDAOOperation operation, RuntimeException e) {
+        exceptionCounter[operation.ordinal()].increment();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityMetricsListener#onTemporalityWrite(int, int)
+     */
+    @Override
+    public void onTemporalityWrite(int numberOfRecords, int numberOfDAOCalls) {
+        if (numberOfRecords <= 0) {
+            return;
+        }
+
+        recordCounter.add(numberOfRecords);
+        daoCallsPerRecordHistogram.record(Math.round((double) numberOfDAOCalls / numberOfRecords));
+    }
+
+
+    /**
+     * Get the number of a temporality case
+     *
+     * @param temporalityCase the temporality case
+     * @return the number
+     */
+    public long getCaseCount(TemporalityCase temporalityCase) {
+        return caseCounter[temporalityCase.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the number of calls of a dao operation
+     *
+     * @param operation the operation
+     * @return the number of calls
+     */
+    public long getDAOCallCount(TemporalityDAOOperation operation) {
+        return latencyHistogram[operation.ordinal()].getCount();
+    }
+
+
+    /**
+     * Get the latency histogram of a dao operation in nanoseconds
+     *
+     * @param operation the operation
+     * @return the histogram
+     */
+    public Histogram getLatencyHistogram(TemporalityDAOOperation operation) {
+        return latencyHistogram[operation.ordinal()];
+    }
+
+
+    /**
+     * Get the number of failed calls of a dao operation
+     *
+     * @param operation the operation
+     * @return the number of failed calls
+     */
+    public long getDAOExceptionCount(TemporalityDAOOperation operation) {
+        return exceptionCounter[operation.ordinal()].sum();
+    }
+
+
+    /**
+     * Get the histogram of the dao calls per written record. In case of a bulk write the mean of the bulk is recorded.
+     *
+     * @return the histogram
+     */
+    public Histogram getDAOCallsPerRecordHistogram() {
+        return daoCallsPerRecordHistogram;
+    }
+
+
+    /**
+     * Get the number of records to write
+     *
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return recordCounter.sum();
+    }
+
+
+    /**
+     * Reset all counters and histograms
+     */
+    public void reset() {
+        for (LongAdder counter : caseCounter) {
+            counter.reset();
+        }
+
+        for (int i = 0; i < latencyHistogram.length; i++) {
+            latencyHistogram[i].reset();
+            exceptionCounter[i].reset();
+        }
+
+        daoCallsPerRecordHistogram.reset();
+        recordCounter.reset();
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TemporalityMetrics [records=").append(getRecordCount()).append(", cases={");
+        for (TemporalityCase temporalityCase : TemporalityCase.values()) {
+            if (temporalityCase.ordinal() > 0) {
+                builder.append(", ");
+            }
+
+            builder.append(temporalityCase).append('=').append(getCaseCount(temporalityCase));
+        }
+
+        builder.append("}, daoCallsPerRecord=").append(daoCallsPerRecordHistogram);
+        for (TemporalityDAOOperation operation : TemporalityDAOOperation.values()) {
+            builder.append(", ").append(operation).append("=").append(getLatencyHistogram(operation)).append(" (exceptions=").append(getDAOExceptionCount(operation)).append(')');
+        }
+
+        builder.append(']');
+        return builder.toString();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * ITemporalTimeline.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.timeline;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import com.github.toolarium.temporality.handler.TemporalityOperation;
+import java.time.Instant;
+import java.util.List;
+
+
+/**
+ * Defines the in-memory timeline of one data key. The records are expected to be free of overlaps (which is what the
+ * temporality handler maintains), at least the valid till has to be not decreasing with the valid from. The validity of
+ * a record must not be modified as long as the record is part of the timeline.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public interface ITemporalTimeline<R extends ITemporalityRecord<R, P, D>, P, D> {
+    /**
+     * Apply a write operation: a record with a known primary key replaces the existing record, otherwise it is added.
+     *
+     * @param temporalityActionType the temporality action type
+     * @param record the record
+     */
+    void apply(TemporalityActionType temporalityActionType, R record);
+
+
+    /**
+     * Apply an operation
+     *
+     * @param operation the operation
+     */
+    default void apply(TemporalityOperation<R> operation) {
+        if (operation.isDelete()) {
+            delete(operation.getRecord());
+        } else {
+            apply(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * Delete a record: the record with the same primary key or the same instance is removed.
+     *
+     * @param record the record
+     * @return true if the record was removed
+     */
+    boolean delete(R record);
+
+
+    /**
+     * Get a record by the primary key
+     *
+     * @param primaryKey the primary key
+     * @return the record or null
+     */
+    R get(P primaryKey);
+
+
+    /**
+     * Find the record which is valid at the given instant, which means the valid from is not after the instant and the
+     * valid till is after the instant.
+     *
+     * @param validAt the instant
+     * @return the record or null
+     */
+    R findValidAt(Instant validAt);
+
+
+    /**
+     * Find the records which overlap or touch the given period, which means the valid from is not after the given
+     * valid till and the valid till is not before the given valid from.
+     *
+     * @param validFrom the valid from of the period
+     * @param validTill the valid till of the period
+     * @return the records ordered by the valid from
+     */
+    List<R> findOverlapping(Instant validFrom, Instant validTill);
+
+
+    /**
+     * Get all records ordered by the valid from
+     *
+     * @return the records
+     */
+    List<R> toList();
+
+
+    /**
+     * Get the number of records
+     *
+     * @return the number of records
+     */
+    int size();
+
+
+    /**
+     * Check if the timeline is empty
+     *
+     * @return true if it is empty
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+
+    /**
+     * Remove all records
+     */
+    void clear();
+}
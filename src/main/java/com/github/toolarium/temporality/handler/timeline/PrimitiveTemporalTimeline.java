@@ -0,0 +1,425 @@
+/*
+ * PrimitiveTemporalTimeline.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.timeline;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Implements the in-memory {@link ITemporalTimeline} of one data key with primitive arrays: the validity of the records is
+ * kept in parallel arrays of epoch seconds and nanos ordered by the valid from and the valid till, the records in an array
+ * of the same order. The searches are binary searches on the primitive arrays without any access to the records, there
+ * are no tree or list nodes per record. A result of {@link #findOverlapping(Instant, Instant)} is the ordered slice which
+ * the temporality handler checks for a write.
+ *
+ * <p>Seconds and nanos represent every instant including {@link Instant#MIN} and {@link Instant#MAX}, which would overflow
+ * in epoch nanos. A null valid from is an open start which is stored as {@link #OPEN_START_SECONDS} and is before any instant,
+ * a null valid till is an open end which is stored as {@link #OPEN_END_SECONDS} and is after any instant, also after
+ * {@link Instant#MAX}. This class is not thread safe.</p>
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class PrimitiveTemporalTimeline<R extends ITemporalityRecord<R, P, D>, P, D> implements ITemporalTimeline<R, P, D> {
+    /** The epoch seconds of an open start, a null valid from */
+    public static final long OPEN_START_SECONDS = Long.MIN_VALUE;
+
+    /** The epoch seconds of an open end, a null valid till */
+    public static final long OPEN_END_SECONDS = Long.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 8;
+    private long[] fromSeconds;
+    private int[] fromNanos;
+    private long[] tillSeconds;
+    private int[] tillNanos;
+    private Object[] records;
+    private int size;
+    private Map<P, R> primaryKeyIndex;
+
+
+    /**
+     * Constructor for PrimitiveTemporalTimeline
+     */
+    public PrimitiveTemporalTimeline() {
+        this(INITIAL_CAPACITY);
+    }
+
+
+    /**
+     * Constructor for PrimitiveTemporalTimeline
+     *
+     * @param initialCapacity the initial capacity
+     */
+    public PrimitiveTemporalTimeline(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        fromSeconds = new long[capacity];
+        fromNanos = new int[capacity];
+        tillSeconds = new long[capacity];
+        tillNanos = new int[capacity];
+        records = new Object[capacity];
+        size = 0;
+        primaryKeyIndex = new HashMap<P, R>();
+    }
+
+
+    /**
+     * Constructor for PrimitiveTemporalTimeline
+     *
+     * @param recordList the records of the timeline
+     */
+    public PrimitiveTemporalTimeline(Collection<R> recordList) {
+        this(INITIAL_CAPACITY);
+
+        if (recordList != null) {
+            ensureCapacity(recordList.size());
+            for (R record : recordList) {
+                add(record);
+            }
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#apply(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void apply(TemporalityActionType temporalityActionType, R record) {
+        if (record.getPrimaryKey() != null) {
+            R existingRecord = primaryKeyIndex.get(record.getPrimaryKey());
+            if (existingRecord != null) {
+                remove(existingRecord);
+            }
+        }
+
+        add(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#delete(com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public boolean delete(R record) {
+        R existingRecord = record;
+        if (record.getPrimaryKey() != null) {
+            existingRecord = primaryKeyIndex.get(record.getPrimaryKey());
+            if (existingRecord == null) {
+                return false;
+            }
+        }
+
+        return remove(existingRecord);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#get(java.lang.Object)
+     */
+    @Override
+    public R get(P primaryKey) {
+        return primaryKeyIndex.get(primaryKey);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#findValidAt(java.time.Instant)
+     */
+    @Override
+    public R findValidAt(Instant validAt) {
+        long seconds = validAt.getEpochSecond();
+        int nanos = validAt.getNano();
+
+        // the valid till is not decreasing, only the records with the latest valid from before the instant are relevant
+        int index = indexOfFirstLater(seconds, nanos) - 1;
+        if (index < 0) {
+            return null;
+        }
+
+        int first = index;
+        while (first > 0 && fromSeconds[first - 1] == fromSeconds[index] && fromNanos[first - 1] == fromNanos[index]) {
+            first--;
+        }
+
+        for (int i = first; i <= index; i++) {
+            if (compare(tillSeconds[i], tillNanos[i], seconds, nanos) > 0) {
+                return getRecord(i);
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#findOverlapping(java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> findOverlapping(Instant validFrom, Instant validTill) {
+        int fromIndex = indexOfFirstOverlapping(validFrom.getEpochSecond(), validFrom.getNano());
+        int toIndex = indexOfFirstLater(validTill.getEpochSecond(), validTill.getNano());
+        return subList(fromIndex, Math.max(fromIndex, toIndex));
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#toList()
+     */
+    @Override
+    public List<R> toList() {
+        return subList(0, size);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#clear()
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(records, 0, size, null);
+        primaryKeyIndex.clear();
+        size = 0;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "PrimitiveTemporalTimeline [size=" + size + ", timeline=" + toList() + "]";
+    }
+
+
+    /**
+     * Add a record
+     *
+     * @param record the record
+     */
+    private void add(R record) {
+        long recordFromSeconds = OPEN_START_SECONDS;
+        int recordFromNanos = 0;
+        if (record.getValidFrom() != null) {
+            recordFromSeconds = record.getValidFrom().getEpochSecond();
+            recordFromNanos = record.getValidFrom().getNano();
+        }
+
+        long recordTillSeconds = OPEN_END_SECONDS;
+        int recordTillNanos = 0;
+        if (record.getValidTill() != null) {
+            recordTillSeconds = record.getValidTill().getEpochSecond();
+            recordTillNanos = record.getValidTill().getNano();
+        }
+
+        // after the records which are not later, the records with the same valid from are ordered by the valid till
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int result = compare(fromSeconds[mid], fromNanos[mid], recordFromSeconds, recordFromNanos);
+            if (result == 0) {
+                result = compare(tillSeconds[mid], tillNanos[mid], recordTillSeconds, recordTillNanos);
+            }
+
+            if (result > 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        ensureCapacity(size + 1);
+        int numberOfMoved = size - low;
+        if (numberOfMoved > 0) {
+            System.arraycopy(fromSeconds, low, fromSeconds, low + 1, numberOfMoved);
+            System.arraycopy(fromNanos, low, fromNanos, low + 1, numberOfMoved);
+            System.arraycopy(tillSeconds, low, tillSeconds, low + 1, numberOfMoved);
+            System.arraycopy(tillNanos, low, tillNanos, low + 1, numberOfMoved);
+            System.arraycopy(records, low, records, low + 1, numberOfMoved);
+        }
+
+        fromSeconds[low] = recordFromSeconds;
+        fromNanos[low] = recordFromNanos;
+        tillSeconds[low] = recordTillSeconds;
+        tillNanos[low] = recordTillNanos;
+        records[low] = record;
+        size++;
+
+        if (record.getPrimaryKey() != null) {
+            primaryKeyIndex.put(record.getPrimaryKey(), record);
+        }
+    }
+
+
+    /**
+     * Remove a record instance from the timeline
+     *
+     * @param record the record
+     * @return true if the record was removed
+     */
+    private boolean remove(R record) {
+        long seconds = OPEN_START_SECONDS;
+        int nanos = 0;
+        if (record.getValidFrom() != null) {
+            seconds = record.getValidFrom().getEpochSecond();
+            nanos = record.getValidFrom().getNano();
+        }
+
+        // the records with the same valid from are before the first later record
+        for (int i = indexOfFirstLater(seconds, nanos) - 1; i >= 0 && fromSeconds[i] == seconds && fromNanos[i] == nanos; i--) {
+            if (records[i] == record) {
+                int numberOfMoved = size - i - 1;
+                if (numberOfMoved > 0) {
+                    System.arraycopy(fromSeconds, i + 1, fromSeconds, i, numberOfMoved);
+                    System.arraycopy(fromNanos, i + 1, fromNanos, i, numberOfMoved);
+                    System.arraycopy(tillSeconds, i + 1, tillSeconds, i, numberOfMoved);
+                    System.arraycopy(tillNanos, i + 1, tillNanos, i, numberOfMoved);
+                    System.arraycopy(records, i + 1, records, i, numberOfMoved);
+                }
+
+                size--;
+                records[size] = null;
+                if (record.getPrimaryKey() != null) {
+                    primaryKeyIndex.remove(record.getPrimaryKey());
+                }
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Get the index of the first record which valid till is not before the given instant
+     *
+     * @param seconds the epoch seconds of the instant
+     * @param nanos the nanos of the instant
+     * @return the index
+     */
+    private int indexOfFirstOverlapping(long seconds, int nanos) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(tillSeconds[mid], tillNanos[mid], seconds, nanos) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * Get the index of the first record which valid from is after the given instant
+     *
+     * @param seconds the epoch seconds of the instant
+     * @param nanos the nanos of the instant
+     * @return the index
+     */
+    private int indexOfFirstLater(long seconds, int nanos) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(fromSeconds[mid], fromNanos[mid], seconds, nanos) > 0) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+
+        return low;
+    }
+
+
+    /**
+     * Get the records of a range
+     *
+     * @param fromIndex the first index, inclusive
+     * @param toIndex the last index, exclusive
+     * @return the records
+     */
+    private List<R> subList(int fromIndex, int toIndex) {
+        List<R> result = new ArrayList<R>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            result.add(getRecord(i));
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Get a record
+     *
+     * @param index the index
+     * @return the record
+     */
+    @SuppressWarnings("unchecked")
+    private R getRecord(int index) {
+        return (R) records[index];
+    }
+
+
+    /**
+     * Ensure the capacity of the arrays, they grow by the half
+     *
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= records.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, records.length + (records.length >> 1));
+        fromSeconds = Arrays.copyOf(fromSeconds, newCapacity);
+        fromNanos = Arrays.copyOf(fromNanos, newCapacity);
+        tillSeconds = Arrays.copyOf(tillSeconds, newCapacity);
+        tillNanos = Arrays.copyOf(tillNanos, newCapacity);
+        records = Arrays.copyOf(records, newCapacity);
+    }
+
+
+    /**
+     * Compare two instants in epoch seconds and nanos
+     *
+     * @param seconds1 the epoch seconds of the first instant
+     * @param nanos1 the nanos of the first instant
+     * @param seconds2 the epoch seconds of the second instant
+     * @param nanos2 the nanos of the second instant
+     * @return the comparison result
+     */
+    private static int compare(long seconds1, int nanos1, long seconds2, int nanos2) {
+        int result = Long.compare(seconds1, seconds2);
+        if (result != 0) {
+            return result;
+        }
+
+        return Integer.compare(nanos1, nanos2);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * TemporalTimeline.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler.timeline;
+
+import com.github.toolarium.temporality.handler.ITemporalityRecord;
+import com.github.toolarium.temporality.handler.TemporalityActionType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+
+/**
+ * Implements the in-memory {@link ITemporalTimeline} of one data key. The records are kept in a navigable map ordered by the valid from,
+ * which supports overlap queries and point lookups in O(log n + k). The records are expected to be free of overlaps
+ * (which is what the temporality handler maintains), at least the valid till has to be not decreasing with the valid from.
+ * The valid from and the valid till of a record must not be null and must not be modified as long as the record is part
+ * of the timeline. This class is not thread safe.
+ *
+ * @param <R> the generic record type.
+ * @param <P> the generic primary key type.
+ * @param <D> the generic data key type.
+ */
+public class TemporalTimeline<R extends ITemporalityRecord<R, P, D>, P, D> implements ITemporalTimeline<R, P, D> {
+    private NavigableMap<Instant, List<R>> timeline;
+    private Map<P, R> primaryKeyIndex;
+    private int size;
+
+
+    /**
+     * Constructor for TemporalTimeline
+     */
+    public TemporalTimeline() {
+        timeline = new TreeMap<Instant, List<R>>();
+        primaryKeyIndex = new HashMap<P, R>();
+        size = 0;
+    }
+
+
+    /**
+     * Constructor for TemporalTimeline
+     *
+     * @param recordList the records of the timeline
+     */
+    public TemporalTimeline(Collection<R> recordList) {
+        this();
+
+        if (recordList != null) {
+            for (R record : recordList) {
+                add(record);
+            }
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#apply(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void apply(TemporalityActionType temporalityActionType, R record) {
+        if (record.getPrimaryKey() != null) {
+            R existingRecord = primaryKeyIndex.get(record.getPrimaryKey());
+            if (existingRecord != null) {
+                removeFromTimeline(existingRecord);
+            }
+        }
+
+        add(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#delete(com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public boolean delete(R record) {
+        R existingRecord = record;
+        if (record.getPrimaryKey() != null) {
+            existingRecord = primaryKeyIndex.get(record.getPrimaryKey());
+            if (existingRecord == null) {
+                return false;
+            }
+        }
+
+        return removeFromTimeline(existingRecord);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#get(java.lang.Object)
+     */
+    @Override
+    public R get(P primaryKey) {
+        return primaryKeyIndex.get(primaryKey);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#findValidAt(java.time.Instant)
+     */
+    @Override
+    public R findValidAt(Instant validAt) {
+        // the valid till is not decreasing, only the records with the latest valid from before the instant are relevant
+        Map.Entry<Instant, List<R>> e = timeline.floorEntry(validAt);
+        if (e != null) {
+            for (R record : e.getValue()) {
+                if (record.getValidTill().isAfter(validAt)) {
+                    return record;
+                }
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#findOverlapping(java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<R> findOverlapping(Instant validFrom, Instant validTill) {
+        List<R> result = new ArrayList<R>();
+
+        // records which start before the period
+        for (Map.Entry<Instant, List<R>> e : timeline.headMap(validFrom, false).descendingMap().entrySet()) {
+            boolean reachesPeriod = false;
+            for (R record : e.getValue()) {
+                if (!record.getValidTill().isBefore(validFrom)) {
+                    reachesPeriod = true;
+                }
+            }
+
+            if (!reachesPeriod) {
+                break;
+            }
+
+            // keep the order: the records are added in reverse order and reversed later
+            for (int i = e.getValue().size() - 1; i >= 0; i--) {
+                R record = e.getValue().get(i);
+                if (!record.getValidTill().isBefore(validFrom)) {
+                    result.add(record);
+                }
+            }
+        }
+
+        Collections.reverse(result);
+
+        // records which start in the period
+        if (!validFrom.isAfter(validTill)) {
+            for (List<R> recordList : timeline.subMap(validFrom, true, validTill, true).values()) {
+                result.addAll(recordList);
+            }
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#toList()
+     */
+    @Override
+    public List<R> toList() {
+        List<R> result = new ArrayList<R>(size);
+        for (List<R> recordList : timeline.values()) {
+            result.addAll(recordList);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#size()
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#isEmpty()
+     */
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.timeline.ITemporalTimeline#clear()
+     */
+    @Override
+    public void clear() {
+        timeline.clear();
+        primaryKeyIndex.clear();
+        size = 0;
+    }
+
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+        return "TemporalTimeline [size=" + size + ", timeline=" + toList() + "]";
+    }
+
+
+    /**
+     * Add a record
+     *
+     * @param record the record
+     */
+    private void add(R record) {
+        if (record.getValidFrom() == null || record.getValidTill() == null) {
+            throw new IllegalArgumentException("Invalid record, the validity must not be null: " + record);
+        }
+
+        List<R> recordList = timeline.get(record.getValidFrom());
+        if (recordList == null) {
+            recordList = new ArrayList<R>(1);
+            timeline.put(record.getValidFrom(), recordList);
+        }
+
+        // keep the records with the same valid from ordered by the valid till
+        int index = recordList.size();
+        while (index > 0 && recordList.get(index - 1).getValidTill().isAfter(record.getValidTill())) {
+            index--;
+        }
+
+        recordList.add(index, record);
+        if (record.getPrimaryKey() != null) {
+            primaryKeyIndex.put(record.getPrimaryKey(), record);
+        }
+
+        size++;
+    }
+
+
+    /**
+     * Remove a record instance from the timeline
+     *
+     * @param record the record
+     * @return true if the record was removed
+     */
+    private boolean removeFromTimeline(R record) {
+        List<R> recordList = timeline.get(record.getValidFrom());
+        if (recordList == null) {
+            return false;
+        }
+
+        for (Iterator<R> it = recordList.iterator(); it.hasNext();) {
+            if (it.next() == record) {
+                it.remove();
+                if (recordList.isEmpty()) {
+                    timeline.remove(record.getValidFrom());
+                }
+
+                if (record.getPrimaryKey() != null) {
+                    primaryKeyIndex.remove(record.getPrimaryKey());
+                }
+
+                size--;
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * AppendOnlyDAOServiceTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.AppendOnlyDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryAppendOnlyDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link AppendOnlyDAOService}.
+ */
+public class AppendOnlyDAOServiceTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public AppendOnlyDAOServiceTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records: the changes are appended as new versions
+     */
+    @Test
+    public void writeRecords() {
+        InMemoryAppendOnlyDAOService<MyRecord, String> store = new InMemoryAppendOnlyDAOService<MyRecord, String>();
+        AppendOnlyDAOService<MyRecord, Long, String> daoService = new AppendOnlyDAOService<MyRecord, Long, String>(store, new AtomicLong()::incrementAndGet);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(1, store.getNumberOfVersions(KEY));
+        List<TemporalityVersion<MyRecord>> versionList = store.searchVersions(filter);
+        MyRecord first = versionList.get(0).getRecord();
+        assertFalse(versionList.get(0).isSupersedes());
+
+        // Case F: the terminated record is a new version of the same primary key
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+        assertEquals(4, store.getNumberOfVersions(KEY));
+        assertEquals(first, store.searchVersions(filter).get(0).getRecord());
+        assertEquals(Instant.MAX, first.getValidTill());
+        versionList = store.searchVersions(filter);
+        assertTrue(versionList.get(1).isSupersedes());
+        assertEquals(first.getPrimaryKey(), versionList.get(1).getRecord().getPrimaryKey());
+
+        List<MyRecord> recordList = daoService.search(filter);
+        assertEquals(3, recordList.size());
+        assertEquals(day(3), recordList.get(0).getValidTill());
+        assertEquals(VALUE + "new", recordList.get(1).getValue());
+        assertEquals(day(5), recordList.get(2).getValidFrom());
+
+        // Case G and E: the deleted records are appended as tombstone
+        assertEquals(4, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "all", referenceTimestamp, day(10)), daoService));
+        assertEquals(8, store.getNumberOfVersions(KEY));
+        int numberOfTombstones = 0;
+        for (TemporalityVersion<MyRecord> version : store.searchVersions(filter)) {
+            if (version.isTombstone()) {
+                numberOfTombstones++;
+            }
+        }
+
+        assertEquals(2, numberOfTombstones);
+        recordList = daoService.search(filter);
+        assertEquals(2, recordList.size());
+        assertEquals(VALUE + "all", recordList.get(0).getValue());
+        assertEquals(day(10), recordList.get(1).getValidFrom());
+        assertEquals(VALUE, h.findValidAt(filter, day(10), daoService).getValue());
+        assertNull(daoService.search(new MyRecord(KEY + "unknown", null, null, null)));
+    }
+
+
+    /**
+     * Resolve the effective timeline
+     */
+    @Test
+    public void resolve() {
+        MyRecord record1 = createRecord(1L, VALUE, referenceTimestamp, day(5));
+        MyRecord record2 = createRecord(2L, VALUE, day(5), day(10));
+        MyRecord record1Terminated = createRecord(1L, VALUE, referenceTimestamp, day(3));
+        MyRecord record3 = createRecord(3L, VALUE + "new", day(3), day(5));
+
+        List<TemporalityVersion<MyRecord>> versionList = new ArrayList<TemporalityVersion<MyRecord>>();
+        versionList.add(new TemporalityVersion<MyRecord>(TemporalityActionType.CREATE, record2));
+        versionList.add(new TemporalityVersion<MyRecord>(TemporalityActionType.CREATE, record1));
+        assertEquals(Arrays.asList(record1, record2), AppendOnlyDAOService.resolve(versionList));
+
+        versionList.add(new TemporalityVersion<MyRecord>(TemporalityActionType.TERMINATE, record1Terminated));
+        versionList.add(new TemporalityVersion<MyRecord>(TemporalityActionType.CREATE, record3));
+        assertEquals(Arrays.asList(record1Terminated, record3, record2), AppendOnlyDAOService.resolve(versionList));
+
+        versionList.add(new TemporalityVersion<MyRecord>(TemporalityActionType.DELETE, record2));
+        assertEquals(Arrays.asList(record1Terminated, record3), AppendOnlyDAOService.resolve(versionList));
+        assertTrue(AppendOnlyDAOService.resolve(new ArrayList<TemporalityVersion<MyRecord>>()).isEmpty());
+    }
+
+
+    /**
+     * Random writes have the same result as with the {@link InMemoryDAOService}, the batch writes included
+     */
+    @Test
+    public void writeRandomRecordsCompareWithInMemoryDAOService() {
+        Random random = new Random(1234);
+        InMemoryAppendOnlyDAOService<MyRecord, String> store = new InMemoryAppendOnlyDAOService<MyRecord, String>();
+        AppendOnlyDAOService<MyRecord, Long, String> daoService = new AppendOnlyDAOService<MyRecord, Long, String>(store, new AtomicLong()::incrementAndGet);
+        InMemoryDAOService<MyRecord, Long, String> inMemoryDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        int numberOfVersions = 0;
+        for (int i = 0; i < 50; i++) {
+            List<MyRecord> recordList = new ArrayList<MyRecord>();
+            for (int j = 0; j < 4; j++) {
+                int from = random.nextInt(60);
+                recordList.add(new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(10))));
+            }
+
+            if (i % 2 == 0) {
+                for (MyRecord record : recordList) {
+                    assertEquals(h.writeTemporlityRecord(record.clone(), inMemoryDAOService), h.writeTemporlityRecord(record, daoService));
+                }
+            } else {
+                List<MyRecord> copyList = new ArrayList<MyRecord>();
+                for (MyRecord record : recordList) {
+                    copyList.add(record.clone());
+                }
+
+                assertEquals(h.writeTemporalityRecords(copyList, inMemoryDAOService), h.writeTemporalityRecords(recordList, daoService));
+            }
+
+            assertEquals(toString(inMemoryDAOService.search(filter)), toString(daoService.search(filter)));
+
+            // versions are only appended
+            assertTrue(store.getNumberOfVersions(KEY) >= numberOfVersions);
+            numberOfVersions = store.getNumberOfVersions(KEY);
+        }
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        for (MyRecord record : recordList) {
+            result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Create a record with a primary key
+     *
+     * @param primaryKey the primary key
+     * @param value the value
+     * @param validFrom the valid from
+     * @param validTill the valid till
+     * @return the record
+     */
+    private MyRecord createRecord(Long primaryKey, String value, Instant validFrom, Instant validTill) {
+        MyRecord record = new MyRecord(KEY, value, validFrom, validTill);
+        record.setPrimaryKey(primaryKey);
+        return record;
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * AsyncTemporalityHandlerTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.toolarium.temporality.handler.dao.AsyncDAOServiceAdapter;
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.impl.AsyncTemporalityHandlerImpl;
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link IAsyncTemporalityHandler}.
+ */
+public class AsyncTemporalityHandlerTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public AsyncTemporalityHandlerTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records one after the other
+     */
+    @Test
+    public void writeRecords() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        IAsyncDAOService<MyRecord> asyncDAOService = new AsyncDAOServiceAdapter<MyRecord>(daoService);
+        IAsyncTemporalityHandler h = TemporalityHandlerFactory.getInstance().getAsyncTemporalityHandler();
+
+        assertEquals(1, h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), asyncDAOService).join().intValue());
+
+        // Case F
+        assertEquals(3, h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), asyncDAOService).join().intValue());
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+        assertEquals(VALUE + "new", daoService.findValidAt(KEY, referenceTimestamp.plus(4, ChronoUnit.DAYS)).getValue());
+        assertEquals(VALUE, daoService.findValidAt(KEY, referenceTimestamp.plus(5, ChronoUnit.DAYS)).getValue());
+    }
+
+
+    /**
+     * The writes of the same data key are executed in the order of the calls
+     */
+    @Test
+    public void writeRecordsOfSameDataKey() {
+        Random random = new Random(1234);
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        IAsyncDAOService<MyRecord> asyncDAOService = new AsyncDAOServiceAdapter<MyRecord>(daoService);
+        AsyncTemporalityHandlerImpl h = new AsyncTemporalityHandlerImpl();
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+
+        int expectedResult = 0;
+        List<CompletableFuture<Integer>> futureList = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 50; i++) {
+            MyRecord record = createRandomRecord(random, KEY);
+            expectedResult += TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), myRecordDAO);
+            futureList.add(h.writeTemporalityRecordAsync(record, asyncDAOService));
+        }
+
+        int result = 0;
+        for (CompletableFuture<Integer> future : futureList) {
+            result += future.join();
+        }
+
+        assertEquals(expectedResult, result);
+        assertEquals(toSortedList(myRecordDAO.getData().get(KEY)), toSortedList(daoService.search(new MyRecord(KEY, null, null, null))));
+        assertEquals(0, h.getNumberOfPendingDataKeys());
+    }
+
+
+    /**
+     * The writes of different data keys are executed concurrently
+     */
+    @Test
+    public void writeRecordsOfDifferentDataKeys() {
+        Random random = new Random(5678);
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        IAsyncDAOService<MyRecord> asyncDAOService = new AsyncDAOServiceAdapter<MyRecord>(daoService);
+        AsyncTemporalityHandlerImpl h = new AsyncTemporalityHandlerImpl();
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+
+        List<CompletableFuture<Integer>> futureList = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 200; i++) {
+            MyRecord record = createRandomRecord(random, KEY + random.nextInt(5));
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), myRecordDAO);
+            futureList.add(h.writeTemporalityRecordAsync(record, asyncDAOService));
+        }
+
+        CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[futureList.size()])).join();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(toSortedList(myRecordDAO.getData().get(KEY + i)), toSortedList(daoService.search(new MyRecord(KEY + i, null, null, null))));
+        }
+
+        assertEquals(0, h.getNumberOfPendingDataKeys());
+    }
+
+
+    /**
+     * The writes are planned with the options of the builder
+     */
+    @Test
+    public void writeRecordsWithBuilderOptions() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        IAsyncDAOService<MyRecord> asyncDAOService = new AsyncDAOServiceAdapter<MyRecord>(daoService);
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        List<TemporalityChangeEvent<?>> eventList = Collections.synchronizedList(new ArrayList<TemporalityChangeEvent<?>>());
+        IAsyncTemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).compactOnWrite(true).changeListener(eventList::add).buildAsync();
+
+        assertEquals(1, h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), asyncDAOService).join().intValue());
+
+        // the re-sent record is merged with the existing record
+        assertEquals(0, h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp.plus(5, ChronoUnit.DAYS), Instant.MAX), asyncDAOService).join().intValue());
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertEquals(1, eventList.size());
+        assertEquals(TemporalityActionType.CREATE, eventList.get(0).getTemporalityActionType());
+        assertEquals(2, metrics.getRecordCount());
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.COMPACT));
+        assertEquals(2, metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+        assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE));
+    }
+
+
+    /**
+     * The asynchronous temporality handler plans its writes with the given temporality handler, the shared asynchronous
+     * temporality handler of the factory keeps the default options
+     */
+    @Test
+    public void writeRecordsWithTemporalityHandler() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        IAsyncDAOService<MyRecord> asyncDAOService = new AsyncDAOServiceAdapter<MyRecord>(daoService);
+        TemporalityHandlerImpl temporalityHandler = (TemporalityHandlerImpl) new TemporalityHandlerBuilder().compactOnWrite(true).build();
+        AsyncTemporalityHandlerImpl h = new AsyncTemporalityHandlerImpl(temporalityHandler);
+        assertSame(temporalityHandler, h.getTemporalityHandler());
+        assertThrows(IllegalArgumentException.class, () -> new AsyncTemporalityHandlerImpl(null));
+
+        h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), asyncDAOService).join();
+        assertEquals(0, h.writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp.plus(5, ChronoUnit.DAYS), Instant.MAX), asyncDAOService).join().intValue());
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+
+        assertEquals(2, TemporalityHandlerFactory.getInstance().getAsyncTemporalityHandler()
+            .writeTemporalityRecordAsync(new MyRecord(KEY, VALUE, referenceTimestamp.plus(10, ChronoUnit.DAYS), Instant.MAX), asyncDAOService).join().intValue());
+        assertEquals(2, daoService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * Create a random record
+     *
+     * @param random the random
+     * @param dataKey the data key
+     * @return the record
+     */
+    private MyRecord createRandomRecord(Random random, String dataKey) {
+        int from = random.nextInt(40);
+        return new MyRecord(dataKey, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS));
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        AtomicLong sequence = new AtomicLong();
+        return new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.add(record.toString());
+            }
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * CachingDAOServiceTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.CachingDAOService;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link CachingDAOService}.
+ */
+public class CachingDAOServiceTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public CachingDAOServiceTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Only the first write of a data key reads the timeline
+     */
+    @Test
+    public void writeRecords() {
+        MyCountingRecordDAO myRecordDAO = new MyCountingRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(myRecordDAO, 10);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService));
+        assertEquals(4, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(6, ChronoUnit.DAYS)), daoService));
+
+        assertEquals(1, myRecordDAO.getSearchCounter());
+        assertEquals(1, daoService.getMissCount());
+        assertEquals(2, daoService.getHitCount());
+        assertEquals(toSortedList(myRecordDAO.getData().get(KEY)), toSortedList(daoService.search(new MyRecord(KEY, null, null, null))));
+    }
+
+
+    /**
+     * Random writes have the same result as without cache
+     */
+    @Test
+    public void writeRandomRecordsCompareWithoutCache() {
+        Random random = new Random(97531);
+        MyCountingRecordDAO cachedRecordDAO = new MyCountingRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(cachedRecordDAO, 2);
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+
+        for (int i = 0; i < 300; i++) {
+            String dataKey = KEY + random.nextInt(3);
+            int from = random.nextInt(40);
+            MyRecord record = new MyRecord(dataKey, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS));
+
+            int expectedResult = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), myRecordDAO);
+            assertEquals(expectedResult, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record, daoService));
+            assertEquals(toSortedList(myRecordDAO.getData().get(dataKey)), toSortedList(cachedRecordDAO.getData().get(dataKey)));
+        }
+
+        assertEquals(300, daoService.getHitCount() + daoService.getMissCount());
+        assertEquals(daoService.getMissCount(), cachedRecordDAO.getSearchCounter());
+        assertTrue(daoService.getEvictionCount() > 0);
+        assertEquals(2, daoService.getNumberOfCachedDataKeys());
+    }
+
+
+    /**
+     * The least recently used data key is evicted
+     */
+    @Test
+    public void evictLeastRecentlyUsed() {
+        MyCountingRecordDAO myRecordDAO = new MyCountingRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(myRecordDAO, 2);
+
+        daoService.search(new MyRecord(KEY + 1, null, null, null));
+        daoService.search(new MyRecord(KEY + 2, null, null, null));
+        daoService.search(new MyRecord(KEY + 1, null, null, null));
+        daoService.search(new MyRecord(KEY + 3, null, null, null));
+        assertEquals(1, daoService.getEvictionCount());
+
+        // key 1 is still cached, key 2 is evicted
+        daoService.search(new MyRecord(KEY + 1, null, null, null));
+        assertEquals(2, daoService.getHitCount());
+        daoService.search(new MyRecord(KEY + 2, null, null, null));
+        assertEquals(4, daoService.getMissCount());
+        assertEquals(4, myRecordDAO.getSearchCounter());
+    }
+
+
+    /**
+     * The cached timeline expires after the time to live
+     */
+    @Test
+    public void expireTimeToLive() {
+        AtomicLong time = new AtomicLong();
+        MyCountingRecordDAO myRecordDAO = new MyCountingRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(myRecordDAO, 10, Duration.ofSeconds(10)) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.CachingDAOService#currentTimeNanos()
+             */
+            @Override
+            protected long currentTimeNanos() {
+                return time.get();
+            }
+        };
+
+        daoService.search(new MyRecord(KEY, null, null, null));
+        time.addAndGet(Duration.ofSeconds(9).toNanos());
+        daoService.search(new MyRecord(KEY, null, null, null));
+        assertEquals(1, daoService.getHitCount());
+        time.addAndGet(Duration.ofSeconds(1).toNanos());
+        daoService.search(new MyRecord(KEY, null, null, null));
+        assertEquals(2, daoService.getMissCount());
+        assertEquals(2, myRecordDAO.getSearchCounter());
+    }
+
+
+    /**
+     * A dao service which assigns the primary key to a copy: only the stored copies of the written records are read again
+     */
+    @Test
+    public void writeRecordsWithoutPrimaryKey() {
+        List<Instant[]> periodList = new ArrayList<Instant[]>();
+        MyRecordDAO myRecordDAO = new MyRecordDAO() {
+            /**
+             * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+             */
+            @Override
+            public synchronized List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                periodList.add(new Instant[] {validFrom, validTill});
+                return search(recordFilter);
+            }
+        };
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(myRecordDAO, 10);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService));
+        assertEquals(4, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(6, ChronoUnit.DAYS)), daoService));
+        assertEquals(3, myRecordDAO.getData().get(KEY).size());
+        assertEquals(toSortedList(myRecordDAO.getData().get(KEY)), toSortedList(daoService.search(new MyRecord(KEY, null, null, null))));
+
+        // the first search misses, the others read only the periods of the records which are written without primary key
+        assertEquals(1, daoService.getMissCount());
+        assertEquals(3, daoService.getHitCount());
+        assertEquals(3, periodList.size());
+        assertEquals(Arrays.asList(referenceTimestamp, Instant.MAX), Arrays.asList(periodList.get(0)));
+        assertEquals(Arrays.asList(referenceTimestamp.plus(3, ChronoUnit.DAYS), Instant.MAX), Arrays.asList(periodList.get(1)));
+        assertEquals(Arrays.asList(referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(6, ChronoUnit.DAYS)), Arrays.asList(periodList.get(2)));
+    }
+
+
+    /**
+     * Random writes with a dao service which assigns the primary key to a copy have the same result as without cache
+     */
+    @Test
+    public void writeRandomRecordsWithoutPrimaryKeyCompareWithoutCache() {
+        Random random = new Random(86420);
+        MyRecordDAO cachedRecordDAO = new MyRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(cachedRecordDAO, 10);
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+
+        for (int i = 0; i < 300; i++) {
+            String dataKey = KEY + random.nextInt(3);
+            int from = random.nextInt(40);
+            MyRecord record = new MyRecord(dataKey, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS));
+
+            int expectedResult = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), myRecordDAO);
+            assertEquals(expectedResult, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record, daoService));
+            assertEquals(toSortedList(myRecordDAO.getData().get(dataKey)), toSortedList(cachedRecordDAO.getData().get(dataKey)));
+        }
+
+        // only the first search of a data key misses
+        assertEquals(3, daoService.getMissCount());
+        assertEquals(297, daoService.getHitCount());
+    }
+
+
+    /**
+     * Invalid parameters
+     */
+    @Test
+    public void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new CachingDAOService<MyRecord, Long, String>(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> new CachingDAOService<MyRecord, Long, String>(new MyRecordDAO(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new CachingDAOService<MyRecord, Long, String>(new MyRecordDAO(), 10, Duration.ZERO));
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.add(record.toString());
+            }
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
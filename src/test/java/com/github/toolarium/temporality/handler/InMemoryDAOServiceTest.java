@@ -0,0 +1,115 @@
+/*
+ * InMemoryDAOServiceTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link InMemoryDAOService}.
+ */
+public class InMemoryDAOServiceTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public InMemoryDAOServiceTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records
+     */
+    @Test
+    public void writeRecords() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+
+        // Case F
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService));
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+        assertEquals(VALUE, daoService.findValidAt(KEY, referenceTimestamp).getValue());
+        assertEquals(VALUE + "new", daoService.findValidAt(KEY, referenceTimestamp.plus(4, ChronoUnit.DAYS)).getValue());
+        assertEquals(VALUE, daoService.findValidAt(KEY, referenceTimestamp.plus(5, ChronoUnit.DAYS)).getValue());
+        assertNull(daoService.findValidAt(KEY, referenceTimestamp.minusSeconds(1)));
+
+        // Case G and E
+        assertEquals(4, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "all", referenceTimestamp, referenceTimestamp.plus(10, ChronoUnit.DAYS)), daoService));
+        assertEquals(2, daoService.getNumberOfRecords());
+        assertEquals(VALUE + "all", daoService.findValidAt(KEY, referenceTimestamp.plus(9, ChronoUnit.DAYS)).getValue());
+        assertEquals(VALUE, daoService.findValidAt(KEY, referenceTimestamp.plus(10, ChronoUnit.DAYS)).getValue());
+    }
+
+
+    /**
+     * Random writes have the same result as with the {@link MyRecordDAO}
+     */
+    @Test
+    public void writeRandomRecordsCompareWithMyRecordDAO() {
+        Random random = new Random(815);
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(60);
+            String value = VALUE + random.nextInt(3);
+            Instant validFrom = referenceTimestamp.plus(from, ChronoUnit.DAYS);
+            Instant validTill = referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS);
+
+            int result = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, value, validFrom, validTill), daoService);
+            assertEquals(TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, value, validFrom, validTill), myRecordDAO), result);
+            assertEquals(toSortedList(myRecordDAO.getData().get(KEY)), toSortedList(daoService.search(new MyRecord(KEY, null, null, null))));
+        }
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        AtomicLong sequence = new AtomicLong();
+        return new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.add(record.toString());
+            }
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * MappedFileDAOServiceTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.MappedFileDAOService;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link MappedFileDAOService}.
+ */
+public class MappedFileDAOServiceTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public MappedFileDAOServiceTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records and read them after a reopen
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeRecords() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            AtomicLong sequence = new AtomicLong();
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), sequence::incrementAndGet);
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+            assertNull(daoService.search(filter));
+
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+
+            // Case F
+            assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+            assertEquals(3, daoService.getNumberOfRecords(KEY));
+            assertEquals(VALUE, h.findValidAt(filter, referenceTimestamp, daoService).getValue());
+            assertEquals(VALUE + "new", h.findValidAt(filter, day(4), daoService).getValue());
+            assertEquals(VALUE, h.findValidAt(filter, day(5), daoService).getValue());
+            assertEquals(Instant.MAX, h.findValidAt(filter, day(5), daoService).getValidTill());
+            assertNull(h.findValidAt(filter, referenceTimestamp.minusNanos(1), daoService));
+            assertEquals(2, daoService.searchOverlapping(filter, day(3), day(4)).size());
+
+            // Case G and E
+            assertEquals(4, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "all", referenceTimestamp, day(10)), daoService));
+            assertEquals(2, daoService.getNumberOfRecords(KEY));
+            long dataSize = daoService.getDataSize(KEY);
+            List<MyRecord> recordList = daoService.search(filter);
+            daoService.close();
+
+            // reopen
+            daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), sequence::incrementAndGet);
+            assertEquals(recordList, daoService.search(filter));
+            assertEquals(dataSize, daoService.getDataSize(KEY));
+            assertEquals(VALUE + "all", h.findValidAt(filter, day(9), daoService).getValue());
+            assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY + "other", VALUE, referenceTimestamp, Instant.MAX), daoService));
+            assertEquals(2, daoService.getNumberOfRecords(KEY));
+            assertEquals(1, daoService.getNumberOfRecords(KEY + "other"));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * Random writes have the same result as with the {@link InMemoryDAOService}, small segments and a growing index included
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeRandomRecordsCompareWithInMemoryDAOService() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            Random random = new Random(2718);
+            AtomicLong sequence = new AtomicLong();
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), sequence::incrementAndGet, 200);
+            InMemoryDAOService<MyRecord, Long, String> inMemoryDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+
+            for (int i = 0; i < 300; i++) {
+                int from = random.nextInt(200);
+                MyRecord record = new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(10)).plusNanos(random.nextInt(1000)));
+                assertEquals(h.writeTemporlityRecord(record.clone(), inMemoryDAOService), h.writeTemporlityRecord(record, daoService));
+                assertEquals(toString(inMemoryDAOService.search(filter)), toString(daoService.search(filter)));
+
+                Instant validAt = day(random.nextInt(220));
+                assertEquals(toString(inMemoryDAOService.searchOverlapping(filter, validAt, validAt.plus(3, ChronoUnit.DAYS))),
+                             toString(daoService.searchOverlapping(filter, validAt, validAt.plus(3, ChronoUnit.DAYS))));
+                assertEquals(toString(inMemoryDAOService.searchValidAt(filter, validAt)), toString(daoService.searchValidAt(filter, validAt)));
+            }
+
+            assertTrue(daoService.getNumberOfRecords(KEY) > 64);
+            daoService.close();
+
+            daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), sequence::incrementAndGet, 200);
+            assertEquals(toString(inMemoryDAOService.search(filter)), toString(daoService.search(filter)));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * A large timeline is written without decoding the existing records and the time of a write does not grow with the
+     * timeline. A replaced or deleted record is found by its primary key with one decode, also after a reopen.
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeLargeTimeline() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            AtomicLong decodeCounter = new AtomicLong();
+            MyRecordCodec codec = new MyRecordCodec() {
+                /**
+                 * @see com.github.toolarium.temporality.handler.MyRecordCodec#decode(java.nio.ByteBuffer)
+                 */
+                @Override
+                public MyRecord decode(ByteBuffer buffer) {
+                    decodeCounter.incrementAndGet();
+                    return super.decode(buffer);
+                }
+            };
+
+            int numberOfRecords = 200000;
+            int batchSize = numberOfRecords / 10;
+            long[] batchDuration = new long[10];
+            AtomicLong sequence = new AtomicLong();
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, codec, sequence::incrementAndGet);
+            for (int batch = 0; batch < batchDuration.length; batch++) {
+                long start = System.nanoTime();
+                for (int i = batch * batchSize; i < (batch + 1) * batchSize; i++) {
+                    daoService.write(TemporalityActionType.CREATE, new MyRecord(KEY, VALUE, day(i), day(i + 1)));
+                }
+
+                batchDuration[batch] = System.nanoTime() - start;
+            }
+
+            // the first batch warms up, with a search of the whole index per write the last batch is about seven times slower than the second
+            assertTrue(batchDuration[9] < 4 * batchDuration[1], "The time of a write grows with the timeline: " + Arrays.toString(batchDuration));
+            assertEquals(numberOfRecords, daoService.getNumberOfRecords(KEY));
+            assertEquals(0, decodeCounter.get());
+
+            MyRecord record = new MyRecord(KEY, VALUE + "new", day(100), day(101));
+            record.setPrimaryKey(101L);
+            daoService.write(TemporalityActionType.UPDATE, record);
+            assertEquals(1, decodeCounter.get());
+
+            MyRecord deletedRecord = new MyRecord(KEY, VALUE, day(0), day(1));
+            deletedRecord.setPrimaryKey(1L);
+            daoService.delete(deletedRecord);
+            assertEquals(2, decodeCounter.get());
+            assertEquals(numberOfRecords - 1, daoService.getNumberOfRecords(KEY));
+            daoService.close();
+
+            // reopen, only the first record is decoded to check the data key of the files
+            decodeCounter.set(0);
+            daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, codec, sequence::incrementAndGet);
+            assertEquals(numberOfRecords - 1, daoService.getNumberOfRecords(KEY));
+            assertEquals(1, decodeCounter.get());
+
+            record = new MyRecord(KEY, VALUE + "last", day(numberOfRecords - 1), day(numberOfRecords));
+            record.setPrimaryKey((long) numberOfRecords);
+            daoService.write(TemporalityActionType.UPDATE, record);
+            assertEquals(2, decodeCounter.get());
+            assertEquals(numberOfRecords - 1, daoService.getNumberOfRecords(KEY));
+
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+            assertEquals(VALUE + "new", daoService.searchValidAt(filter, day(100)).get(0).getValue());
+            assertEquals(VALUE + "last", daoService.searchValidAt(filter, day(numberOfRecords - 1)).get(0).getValue());
+            assertNull(daoService.searchValidAt(filter, day(0)));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * A data key with a long string representation gets a hashed file name, the files of an other data key with the same
+     * name are not used
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeRecordsWithSameFileName() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            String longKey = String.join("", Collections.nCopies(300, KEY));
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet);
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            h.writeTemporlityRecord(new MyRecord(longKey, VALUE, referenceTimestamp, Instant.MAX), daoService);
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+            daoService.close();
+
+            List<String> fileNameList = new ArrayList<String>();
+            try (Stream<Path> stream = Files.list(directory)) {
+                stream.forEach(path -> fileNameList.add(path.getFileName().toString()));
+            }
+
+            assertEquals(4, fileNameList.size());
+            for (String fileName : fileNameList) {
+                assertTrue(fileName.length() < 255, fileName);
+            }
+
+            // the files of a data key get the name of an other data key, as in case of the same string representation
+            String fileName = Base64.getUrlEncoder().withoutPadding().encodeToString((KEY + "other").getBytes(StandardCharsets.UTF_8));
+            String keyFileName = Base64.getUrlEncoder().withoutPadding().encodeToString(KEY.getBytes(StandardCharsets.UTF_8));
+            Files.move(directory.resolve(keyFileName + ".idx"), directory.resolve(fileName + ".idx"));
+            Files.move(directory.resolve(keyFileName + ".dat"), directory.resolve(fileName + ".dat"));
+
+            daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong(10)::incrementAndGet);
+            MyRecord filter = new MyRecord(KEY + "other", null, null, null);
+            assertNull(daoService.search(filter));
+            h.writeTemporlityRecord(new MyRecord(KEY + "other", VALUE + "other", referenceTimestamp, Instant.MAX), daoService);
+            assertEquals(VALUE + "other", daoService.searchValidAt(filter, day(1)).get(0).getValue());
+            assertEquals(1, daoService.getNumberOfRecords(longKey));
+            assertEquals(VALUE, daoService.searchValidAt(new MyRecord(longKey, null, null, null), day(1)).get(0).getValue());
+            daoService.close();
+
+            // reopen, the numbered files belong to the data key
+            daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong(20)::incrementAndGet);
+            assertEquals(VALUE + "other", daoService.searchValidAt(filter, day(1)).get(0).getValue());
+            assertTrue(Files.exists(directory.resolve(fileName + ".1.dat")));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * The files of the least recently used data keys are closed and opened again on the next access
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeRecordsWithMaxOpenDataKeys() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet,
+                                                                                                                        MappedFileDAOService.DEFAULT_SEGMENT_SIZE, 2);
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            for (int i = 0; i < 5; i++) {
+                h.writeTemporlityRecord(new MyRecord(KEY + i, VALUE + i, referenceTimestamp, Instant.MAX), daoService);
+                h.writeTemporlityRecord(new MyRecord(KEY + i, VALUE + i + "new", day(3), day(5)), daoService);
+                assertTrue(daoService.getNumberOfOpenDataKeys() <= 2);
+            }
+
+            for (int i = 0; i < 5; i++) {
+                MyRecord filter = new MyRecord(KEY + i, null, null, null);
+                assertEquals(3, daoService.getNumberOfRecords(KEY + i));
+                assertEquals(VALUE + i, h.findValidAt(filter, day(6), daoService).getValue());
+                assertEquals(VALUE + i + "new", h.findValidAt(filter, day(4), daoService).getValue());
+                assertTrue(daoService.getNumberOfOpenDataKeys() <= 2);
+            }
+
+            assertThrows(IllegalArgumentException.class, () -> new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet,
+                                                                                                                MappedFileDAOService.DEFAULT_SEGMENT_SIZE, 0));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * The data file is mapped with the size of its data and not with the segment size
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void writeRecordsMappedWithDataSize() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet);
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+            daoService.close();
+
+            try (Stream<Path> stream = Files.list(directory)) {
+                for (Path path : (Iterable<Path>) stream::iterator) {
+                    assertTrue(Files.size(path) < 64 * 1024, path + ": " + Files.size(path));
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * A record has to fit into a segment
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void recordLargerThanSegment() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        try {
+            MappedFileDAOService<MyRecord, Long, String> daoService = new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet, 64);
+            assertThrows(IllegalArgumentException.class, () -> daoService.write(TemporalityActionType.CREATE, new MyRecord(KEY, VALUE + VALUE + VALUE + VALUE, referenceTimestamp, Instant.MAX)));
+            assertThrows(IllegalArgumentException.class, () -> daoService.write(TemporalityActionType.CREATE, new MyRecord(KEY, VALUE, null, Instant.MAX)));
+            assertThrows(IllegalArgumentException.class, () -> new MappedFileDAOService<MyRecord, Long, String>(directory, new MyRecordCodec(), new AtomicLong()::incrementAndGet, 8));
+            daoService.close();
+        } finally {
+            delete(directory);
+        }
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+
+
+    /**
+     * Delete a directory
+     *
+     * @param directory the directory
+     * @throws IOException in case of an error
+     */
+    private void delete(Path directory) throws IOException {
+        List<Path> pathList = new ArrayList<Path>();
+        try (Stream<Path> stream = Files.walk(directory)) {
+            stream.sorted(Comparator.reverseOrder()).forEach(pathList::add);
+        }
+
+        for (Path path : pathList) {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MyBatchRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Implements the {@link MyRecord} batch dao.
+ */
+public class MyBatchRecordDAO extends MyCountingRecordDAO implements IBatchDAOService<MyRecord> {
+    private AtomicLong writeAllCounter;
+    private AtomicLong deleteAllCounter;
+    private AtomicLong applyCounter;
+
+
+    /**
+     * Constructor
+     */
+    public MyBatchRecordDAO() {
+        writeAllCounter = new AtomicLong();
+        deleteAllCounter = new AtomicLong();
+        applyCounter = new AtomicLong();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#writeAll(java.util.List)
+     */
+    @Override
+    public synchronized void writeAll(List<TemporalityOperation<MyRecord>> operationList) {
+        writeAllCounter.incrementAndGet();
+        for (TemporalityOperation<MyRecord> operation : operationList) {
+            write(operation.getTemporalityActionType(), operation.getRecord());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#deleteAll(java.util.List)
+     */
+    @Override
+    public synchronized void deleteAll(List<MyRecord> recordList) {
+        deleteAllCounter.incrementAndGet();
+        for (MyRecord record : recordList) {
+            delete(record);
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IBatchDAOService#apply(java.util.List, java.util.List)
+     */
+    @Override
+    public synchronized void apply(List<MyRecord> deleteRecordList, List<TemporalityOperation<MyRecord>> operationList) {
+        applyCounter.incrementAndGet();
+        IBatchDAOService.super.apply(deleteRecordList, operationList);
+    }
+
+
+    /**
+     * Get the number of write all calls
+     *
+     * @return the number of write all calls
+     */
+    public long getWriteAllCounter() {
+        return writeAllCounter.get();
+    }
+
+
+    /**
+     * Get the number of delete all calls
+     *
+     * @return the number of delete all calls
+     */
+    public long getDeleteAllCounter() {
+        return deleteAllCounter.get();
+    }
+
+
+    /**
+     * Get the number of apply calls
+     *
+     * @return the number of apply calls
+     */
+    public long getApplyCounter() {
+        return applyCounter.get();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyCountingRecordDAO#resetCounter()
+     */
+    @Override
+    public void resetCounter() {
+        super.resetCounter();
+        writeAllCounter.set(0);
+        deleteAllCounter.set(0);
+        applyCounter.set(0);
+    }
+}
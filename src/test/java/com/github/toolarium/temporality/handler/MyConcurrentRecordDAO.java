@@ -0,0 +1,123 @@
+/*
+ * MyConcurrentRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * In-memory dao service which detects concurrent calls with the same data key.
+ */
+public class MyConcurrentRecordDAO extends InMemoryDAOService<MyRecord, Long, String> {
+    private Map<String, AtomicInteger> activeCallsByDataKey;
+    private AtomicInteger maxActiveCallsOfDataKey;
+
+
+    /**
+     * Constructor for MyConcurrentRecordDAO
+     */
+    public MyConcurrentRecordDAO() {
+        super(new AtomicLong()::incrementAndGet);
+        activeCallsByDataKey = new ConcurrentHashMap<String, AtomicInteger>();
+        maxActiveCallsOfDataKey = new AtomicInteger();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, MyRecord record) {
+        enter(record.getDataKey());
+        try {
+            super.write(temporalityActionType, record);
+        } finally {
+            exit(record.getDataKey());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#delete(com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public void delete(MyRecord record) {
+        enter(record.getDataKey());
+        try {
+            super.delete(record);
+        } finally {
+            exit(record.getDataKey());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#search(com.github.toolarium.temporality.handler.ITemporalityRecord)
+     */
+    @Override
+    public List<MyRecord> search(MyRecord recordFilter) {
+        enter(recordFilter.getDataKey());
+        try {
+            return super.search(recordFilter);
+        } finally {
+            exit(recordFilter.getDataKey());
+        }
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#searchOverlapping(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+        enter(recordFilter.getDataKey());
+        try {
+            return super.searchOverlapping(recordFilter, validFrom, validTill);
+        } finally {
+            exit(recordFilter.getDataKey());
+        }
+    }
+
+
+    /**
+     * Get the maximum number of concurrent calls of the same data key
+     *
+     * @return the maximum number of concurrent calls of the same data key
+     */
+    public int getMaxActiveCallsOfDataKey() {
+        return maxActiveCallsOfDataKey.get();
+    }
+
+
+    /**
+     * Enter a call
+     *
+     * @param dataKey the data key
+     */
+    private void enter(String dataKey) {
+        int active = activeCallsByDataKey.computeIfAbsent(dataKey, k -> new AtomicInteger()).incrementAndGet();
+        maxActiveCallsOfDataKey.accumulateAndGet(active, Math::max);
+
+        // give other threads the chance to run into the same data key
+        Thread.yield();
+    }
+
+
+    /**
+     * Exit a call
+     *
+     * @param dataKey the data key
+     */
+    private void exit(String dataKey) {
+        activeCallsByDataKey.get(dataKey).decrementAndGet();
+    }
+}
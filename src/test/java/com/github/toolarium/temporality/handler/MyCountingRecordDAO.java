@@ -0,0 +1,105 @@
+/*
+ * MyCountingRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Extends the {@link MyRecordDAO} by counting the calls. The primary key is assigned to the written record itself.
+ */
+public class MyCountingRecordDAO extends MyRecordDAO {
+    private AtomicLong primaryKeySequence;
+    private AtomicLong searchCounter;
+    private AtomicLong writeCounter;
+    private AtomicLong deleteCounter;
+
+
+    /**
+     * Constructor
+     */
+    public MyCountingRecordDAO() {
+        primaryKeySequence = new AtomicLong(1000);
+        searchCounter = new AtomicLong();
+        writeCounter = new AtomicLong();
+        deleteCounter = new AtomicLong();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyRecordDAO#write(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.MyRecord)
+     */
+    @Override
+    public synchronized void write(TemporalityActionType temporalityActionType, MyRecord inputRecord) {
+        writeCounter.incrementAndGet();
+        if (inputRecord.getPrimaryKey() == null) {
+            inputRecord.setPrimaryKey(primaryKeySequence.incrementAndGet());
+        }
+
+        super.write(temporalityActionType, inputRecord);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyRecordDAO#delete(com.github.toolarium.temporality.handler.MyRecord)
+     */
+    @Override
+    public synchronized void delete(MyRecord record) {
+        deleteCounter.incrementAndGet();
+        super.delete(record);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyRecordDAO#search(com.github.toolarium.temporality.handler.MyRecord)
+     */
+    @Override
+    public synchronized List<MyRecord> search(MyRecord recordFilter) {
+        searchCounter.incrementAndGet();
+        return super.search(recordFilter);
+    }
+
+
+    /**
+     * Get the number of search calls
+     *
+     * @return the number of search calls
+     */
+    public long getSearchCounter() {
+        return searchCounter.get();
+    }
+
+
+    /**
+     * Get the number of write calls
+     *
+     * @return the number of write calls
+     */
+    public long getWriteCounter() {
+        return writeCounter.get();
+    }
+
+
+    /**
+     * Get the number of delete calls
+     *
+     * @return the number of delete calls
+     */
+    public long getDeleteCounter() {
+        return deleteCounter.get();
+    }
+
+
+    /**
+     * Reset the counters
+     */
+    public void resetCounter() {
+        searchCounter.set(0);
+        writeCounter.set(0);
+        deleteCounter.set(0);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * MyFixedRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.List;
+
+
+/**
+ * Dao service which returns always the same ordered timeline and ignores the writes and deletes.
+ */
+public class MyFixedRecordDAO implements IDAOService<MyRecord> {
+    private List<MyRecord> timeline;
+    private long operationCounter;
+
+
+    /**
+     * Constructor for MyFixedRecordDAO
+     *
+     * @param timeline the timeline ordered by valid from
+     */
+    public MyFixedRecordDAO(List<MyRecord> timeline) {
+        this.timeline = timeline;
+        this.operationCounter = 0;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, java.lang.Object)
+     */
+    @Override
+    public void write(TemporalityActionType temporalityActionType, MyRecord record) {
+        operationCounter++;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#delete(java.lang.Object)
+     */
+    @Override
+    public void delete(MyRecord record) {
+        operationCounter++;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#search(java.lang.Object)
+     */
+    @Override
+    public List<MyRecord> search(MyRecord recordFilter) {
+        return timeline;
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return true;
+    }
+
+
+    /**
+     * Get the number of writes and deletes
+     *
+     * @return the number of writes and deletes
+     */
+    public long getOperationCounter() {
+        return operationCounter;
+    }
+}
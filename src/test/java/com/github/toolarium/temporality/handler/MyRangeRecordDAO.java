@@ -0,0 +1,81 @@
+/*
+ * MyRangeRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Extends the {@link MyCountingRecordDAO} by a search of overlapping records.
+ */
+public class MyRangeRecordDAO extends MyCountingRecordDAO {
+    private AtomicLong searchOverlappingCounter;
+    private AtomicLong searchOverlappingRecordCounter;
+
+
+    /**
+     * Constructor
+     */
+    public MyRangeRecordDAO() {
+        searchOverlappingCounter = new AtomicLong();
+        searchOverlappingRecordCounter = new AtomicLong();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+     */
+    @Override
+    public synchronized List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+        searchOverlappingCounter.incrementAndGet();
+        List<MyRecord> result = new ArrayList<MyRecord>();
+        List<MyRecord> recordList = getData().get(recordFilter.getDataKey());
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                if ((validFrom == null || !record.getValidTill().isBefore(validFrom)) && (validTill == null || !record.getValidFrom().isAfter(validTill))) {
+                    result.add(record);
+                }
+            }
+        }
+
+        searchOverlappingRecordCounter.addAndGet(result.size());
+        return result;
+    }
+
+
+    /**
+     * Get the number of search overlapping calls
+     *
+     * @return the number of search overlapping calls
+     */
+    public long getSearchOverlappingCounter() {
+        return searchOverlappingCounter.get();
+    }
+
+
+    /**
+     * Get the number of records returned by the search overlapping calls
+     *
+     * @return the number of returned records
+     */
+    public long getSearchOverlappingRecordCounter() {
+        return searchOverlappingRecordCounter.get();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyCountingRecordDAO#resetCounter()
+     */
+    @Override
+    public void resetCounter() {
+        super.resetCounter();
+        searchOverlappingCounter.set(0);
+        searchOverlappingRecordCounter.set(0);
+    }
+}
@@ -67,6 +67,16 @@ public class MyRecord implements ITemporalityRecord<MyRecord, Long, String>, Clo
     }
 
 
+    /**
+     * Get the value
+     *
+     * @return the value
+     */
+    public String getValue() {
+        return value;
+    }
+
+
     /**
      * @see com.github.toolarium.temporality.handler.ITemporalityRecord#getValidFrom()
      */
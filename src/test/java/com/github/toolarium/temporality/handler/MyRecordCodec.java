@@ -0,0 +1,89 @@
+/*
+ * MyRecordCodec.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+
+/**
+ * Implements the {@link ITemporalityRecordCodec} of the {@link MyRecord}.
+ */
+public class MyRecordCodec implements ITemporalityRecordCodec<MyRecord> {
+    private static final long NO_PRIMARY_KEY = Long.MIN_VALUE;
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityRecordCodec#encode(java.lang.Object)
+     */
+    @Override
+    public byte[] encode(MyRecord record) {
+        byte[] key = record.getDataKey().getBytes(StandardCharsets.UTF_8);
+        byte[] value = null;
+        int valueLength = 0;
+        if (record.getValue() != null) {
+            value = record.getValue().getBytes(StandardCharsets.UTF_8);
+            valueLength = value.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * 12 + 4 + key.length + 4 + valueLength);
+        if (record.getPrimaryKey() != null) {
+            buffer.putLong(record.getPrimaryKey());
+        } else {
+            buffer.putLong(NO_PRIMARY_KEY);
+        }
+
+        buffer.putLong(record.getValidFrom().getEpochSecond()).putInt(record.getValidFrom().getNano());
+        buffer.putLong(record.getValidTill().getEpochSecond()).putInt(record.getValidTill().getNano());
+        buffer.putInt(key.length).put(key);
+        if (value != null) {
+            buffer.putInt(value.length).put(value);
+        } else {
+            buffer.putInt(-1);
+        }
+
+        return buffer.array();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.ITemporalityRecordCodec#decode(java.nio.ByteBuffer)
+     */
+    @Override
+    public MyRecord decode(ByteBuffer buffer) {
+        long primaryKey = buffer.getLong();
+        Instant validFrom = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        Instant validTill = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+        String key = getString(buffer);
+        String value = getString(buffer);
+
+        MyRecord record = new MyRecord(key, value, validFrom, validTill);
+        if (primaryKey != NO_PRIMARY_KEY) {
+            record.setPrimaryKey(primaryKey);
+        }
+
+        return record;
+    }
+
+
+    /**
+     * Get a string of the buffer
+     *
+     * @param buffer the buffer
+     * @return the string or null
+     */
+    private String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -5,7 +5,6 @@
  */
 package com.github.toolarium.temporality.handler;
 
-import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -47,7 +46,7 @@ public class MyRecordDAO implements IDAOService<MyRecord> {
         MyRecord record = inputRecord;
         if (record.getPrimaryKey() == null) {
             record = inputRecord.clone();
-            record.setPrimaryKey(new RandomGenerator().getRandomNumber(100000, false));
+            record.setPrimaryKey(createPrimaryKey(recordList));
         } else {
             for (int i = 0; i < recordList.size() && !replace; i++) {
                 if (recordList.get(i).getPrimaryKey() != null && record.getPrimaryKey() != null && recordList.get(i).getPrimaryKey() == record.getPrimaryKey()) {
@@ -76,7 +75,7 @@ public class MyRecordDAO implements IDAOService<MyRecord> {
         log.debug("Delete record: " + record.getDataKey() + " (" + record.getPrimaryKey() + ")");
         String key = record.getDataKey();
         List<MyRecord> recordList = data.get(key);
-        List<MyRecord> newRecordList = new ArrayList<MyRecord>();
+        List<MyRecord> newRecordList = new CopyOnWriteArrayList<MyRecord>();
         if (recordList != null) {
             for (Iterator<MyRecord> it = recordList.iterator(); it.hasNext();) {
                 MyRecord r = it.next();
@@ -111,6 +110,31 @@ public class MyRecordDAO implements IDAOService<MyRecord> {
     }
 
 
+    /**
+     * Create a random primary key which is unique within the records of the data key
+     *
+     * @param recordList the records of the data key
+     * @return the primary key
+     */
+    private Long createPrimaryKey(List<MyRecord> recordList) {
+        RandomGenerator randomGenerator = new RandomGenerator();
+        while (true) {
+            Long primaryKey = randomGenerator.getRandomNumber(100000, false);
+            boolean used = false;
+            for (MyRecord r : recordList) {
+                if (primaryKey.equals(r.getPrimaryKey())) {
+                    used = true;
+                    break;
+                }
+            }
+
+            if (!used) {
+                return primaryKey;
+            }
+        }
+    }
+
+
     /**
      * Get the data
      *
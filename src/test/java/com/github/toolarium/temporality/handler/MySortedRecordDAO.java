@@ -0,0 +1,111 @@
+/*
+ * MySortedRecordDAO.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Extends the {@link MyCountingRecordDAO} by ordered search results. The access to the elements of the result is counted.
+ */
+public class MySortedRecordDAO extends MyCountingRecordDAO {
+    private AtomicLong accessCounter;
+
+
+    /**
+     * Constructor
+     */
+    public MySortedRecordDAO() {
+        accessCounter = new AtomicLong();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyCountingRecordDAO#search(com.github.toolarium.temporality.handler.MyRecord)
+     */
+    @Override
+    public synchronized List<MyRecord> search(MyRecord recordFilter) {
+        List<MyRecord> recordList = super.search(recordFilter);
+        if (recordList == null) {
+            return null;
+        }
+
+        final List<MyRecord> result = new ArrayList<MyRecord>(recordList);
+        result.sort(Comparator.comparing(MyRecord::getValidFrom).thenComparing(MyRecord::getValidTill));
+        return new CountingList(result);
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.IDAOService#isSortedByValidFrom()
+     */
+    @Override
+    public boolean isSortedByValidFrom() {
+        return true;
+    }
+
+
+    /**
+     * Get the number of accessed elements of the search results
+     *
+     * @return the number of accessed elements
+     */
+    public long getAccessCounter() {
+        return accessCounter.get();
+    }
+
+
+    /**
+     * @see com.github.toolarium.temporality.handler.MyCountingRecordDAO#resetCounter()
+     */
+    @Override
+    public void resetCounter() {
+        super.resetCounter();
+        accessCounter.set(0);
+    }
+
+
+    /**
+     * List which counts the element access
+     */
+    private class CountingList extends AbstractList<MyRecord> implements RandomAccess {
+        private List<MyRecord> list;
+
+
+        /**
+         * Constructor for CountingList
+         *
+         * @param list the list
+         */
+        CountingList(List<MyRecord> list) {
+            this.list = list;
+        }
+
+
+        /**
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public MyRecord get(int index) {
+            accessCounter.incrementAndGet();
+            return list.get(index);
+        }
+
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size() {
+            return list.size();
+        }
+    }
+}
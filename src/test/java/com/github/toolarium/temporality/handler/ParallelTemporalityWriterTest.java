@@ -0,0 +1,269 @@
+/*
+ * ParallelTemporalityWriterTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.impl.ParallelTemporalityWriterImpl;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link IParallelTemporalityWriter}.
+ */
+public class ParallelTemporalityWriterTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public ParallelTemporalityWriterTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * The parallel write has the same result as the sequential write
+     */
+    @Test
+    public void writeRecordsCompareWithSequential() {
+        Random random = new Random(2468);
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < 400; i++) {
+            recordList.add(createRandomRecord(random, KEY + random.nextInt(8)));
+        }
+
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+        List<MyRecord> sequentialRecordList = new ArrayList<MyRecord>();
+        for (MyRecord record : recordList) {
+            sequentialRecordList.add(record.clone());
+        }
+        Map<String, Integer> expectedResult = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(sequentialRecordList, myRecordDAO);
+
+        MyConcurrentRecordDAO daoService = new MyConcurrentRecordDAO();
+        IParallelTemporalityWriter writer = new ParallelTemporalityWriterImpl(new ForkJoinPool(4), 16);
+        Map<String, Integer> result = writer.writeTemporalityRecords(recordList, daoService);
+
+        assertEquals(expectedResult, result);
+        assertEquals(new ArrayList<String>(expectedResult.keySet()), new ArrayList<String>(result.keySet()));
+        for (String dataKey : expectedResult.keySet()) {
+            assertEquals(toSortedList(myRecordDAO.getData().get(dataKey)), toSortedList(daoService.search(new MyRecord(dataKey, null, null, null))));
+        }
+
+        assertEquals(1, daoService.getMaxActiveCallsOfDataKey());
+    }
+
+
+    /**
+     * Concurrent calls don't write the same data key at the same time
+     *
+     * @throws Exception in case of an error
+     */
+    @Test
+    public void writeRecordsConcurrently() throws Exception {
+        Random random = new Random(1357);
+        MyConcurrentRecordDAO daoService = new MyConcurrentRecordDAO();
+        IParallelTemporalityWriter writer = new ParallelTemporalityWriterImpl(new ForkJoinPool(4), 4);
+
+        List<List<MyRecord>> batchList = new ArrayList<List<MyRecord>>();
+        for (int i = 0; i < 8; i++) {
+            List<MyRecord> recordList = new ArrayList<MyRecord>();
+            for (int j = 0; j < 50; j++) {
+                recordList.add(createRandomRecord(random, KEY + random.nextInt(3)));
+            }
+            batchList.add(recordList);
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futureList = new ArrayList<Future<?>>();
+            for (List<MyRecord> recordList : batchList) {
+                futureList.add(executorService.submit(() -> writer.writeTemporalityRecords(recordList, daoService)));
+                futureList.add(executorService.submit(() -> writer.writeTemporalityRecord(createRandomRecord(new Random(recordList.size()), KEY + "0"), daoService)));
+            }
+
+            for (Future<?> future : futureList) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        assertEquals(1, daoService.getMaxActiveCallsOfDataKey());
+
+        // the timeline of each data key is free of overlaps
+        for (int i = 0; i < 3; i++) {
+            List<MyRecord> timeline = daoService.search(new MyRecord(KEY + i, null, null, null));
+            for (int j = 1; j < timeline.size(); j++) {
+                assertFalse(timeline.get(j).getValidFrom().isBefore(timeline.get(j - 1).getValidTill()), "Overlap: " + timeline);
+            }
+        }
+    }
+
+
+    /**
+     * A partition which waits for the lock of its data key doesn't occupy the only thread of the pool
+     *
+     * @throws Exception in case of an error
+     */
+    @Test
+    public void writeRecordsWithLockedDataKey() throws Exception {
+        CountDownLatch searchLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        AtomicBoolean timeout = new AtomicBoolean(false);
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#searchOverlapping(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant, java.time.Instant)
+             */
+            @Override
+            public List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                if (recordFilter.getDataKey().equals(KEY)) {
+                    searchLatch.countDown();
+                    try {
+                        if (!releaseLatch.await(10, TimeUnit.SECONDS)) {
+                            timeout.set(true);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                return super.searchOverlapping(recordFilter, validFrom, validTill);
+            }
+        };
+
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        recordList.add(new MyRecord(KEY + 1, VALUE, referenceTimestamp, Instant.MAX));
+        recordList.add(new MyRecord(KEY + 2, VALUE, referenceTimestamp, Instant.MAX));
+        ForkJoinPool forkJoinPool = new ForkJoinPool(1);
+        try {
+            // all data keys share one lock, it is held by a write outside of the pool
+            ParallelTemporalityWriterImpl writer = new ParallelTemporalityWriterImpl(forkJoinPool, 1);
+            Thread lockingThread = new Thread(() -> writer.writeTemporalityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+            lockingThread.start();
+            assertTrue(searchLatch.await(10, TimeUnit.SECONDS));
+
+            CompletableFuture<Map<String, Integer>> result = CompletableFuture.supplyAsync(() -> writer.writeTemporalityRecords(recordList, daoService));
+            long end = System.currentTimeMillis() + 10000;
+            while (forkJoinPool.getPoolSize() < 2 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+
+            // the waiting worker is compensated by an other thread of the pool
+            assertTrue(forkJoinPool.getPoolSize() >= 2);
+            releaseLatch.countDown();
+            lockingThread.join(10000);
+            assertFalse(timeout.get());
+            assertEquals(1, result.get(10, TimeUnit.SECONDS).get(KEY + 1).intValue());
+            assertEquals(1, result.get(10, TimeUnit.SECONDS).get(KEY + 2).intValue());
+            assertEquals(1, daoService.getNumberOfRecords(KEY));
+        } finally {
+            releaseLatch.countDown();
+            forkJoinPool.shutdown();
+        }
+    }
+
+
+    /**
+     * The records are written by the temporality handler of the writer
+     */
+    @Test
+    public void writeRecordsWithTemporalityHandler() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler temporalityHandler = new TemporalityHandlerBuilder().metricsListener(metrics).compactOnWrite(true).build();
+        ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+        try {
+            ParallelTemporalityWriterImpl writer = new ParallelTemporalityWriterImpl(temporalityHandler, forkJoinPool, 16);
+            assertSame(temporalityHandler, writer.getTemporalityHandler());
+
+            List<MyRecord> recordList = new ArrayList<MyRecord>();
+            for (int i = 0; i < 4; i++) {
+                recordList.add(new MyRecord(KEY + i, VALUE, referenceTimestamp, referenceTimestamp.plus(5, ChronoUnit.DAYS)));
+                recordList.add(new MyRecord(KEY + i, VALUE, referenceTimestamp.plus(5, ChronoUnit.DAYS), Instant.MAX));
+            }
+
+            MyConcurrentRecordDAO daoService = new MyConcurrentRecordDAO();
+            writer.writeTemporalityRecords(recordList, daoService);
+            assertEquals(8, metrics.getRecordCount());
+            assertEquals(4, metrics.getCaseCount(TemporalityCase.COMPACT));
+
+            writer.writeTemporalityRecord(new MyRecord(KEY + "single", VALUE, referenceTimestamp, Instant.MAX), daoService);
+            assertEquals(9, metrics.getRecordCount());
+        } finally {
+            forkJoinPool.shutdown();
+        }
+    }
+
+
+    /**
+     * Invalid parameters
+     */
+    @Test
+    public void invalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTemporalityWriterImpl(null, 4));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTemporalityWriterImpl(null, ForkJoinPool.commonPool(), 4));
+        assertThrows(IllegalArgumentException.class, () -> new ParallelTemporalityWriterImpl(ForkJoinPool.commonPool(), 0));
+        assertEquals(0, new ParallelTemporalityWriterImpl().writeTemporalityRecords(new ArrayList<MyRecord>(), new MyRecordDAO()).size());
+    }
+
+
+    /**
+     * Create a random record
+     *
+     * @param random the random
+     * @param dataKey the data key
+     * @return the record
+     */
+    private MyRecord createRandomRecord(Random random, String dataKey) {
+        int from = random.nextInt(40);
+        return new MyRecord(dataKey, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS));
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.add(record.toString());
+            }
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
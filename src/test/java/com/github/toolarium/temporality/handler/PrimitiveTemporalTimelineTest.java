@@ -0,0 +1,233 @@
+/*
+ * PrimitiveTemporalTimelineTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.CachingDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.timeline.PrimitiveTemporalTimeline;
+import com.github.toolarium.temporality.handler.timeline.TemporalTimeline;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link PrimitiveTemporalTimeline}.
+ */
+public class PrimitiveTemporalTimelineTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public PrimitiveTemporalTimelineTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Find overlapping records and the valid record
+     */
+    @Test
+    public void find() {
+        PrimitiveTemporalTimeline<MyRecord, Long, String> timeline = new PrimitiveTemporalTimeline<MyRecord, Long, String>(createRecordList(10));
+        assertEquals(10, timeline.size());
+
+        assertEquals(List.of(VALUE + 2, VALUE + 3, VALUE + 4), toValueList(timeline.findOverlapping(day(2).plusSeconds(1), day(4).plusSeconds(1))));
+        assertEquals(List.of(VALUE + 1, VALUE + 2, VALUE + 3), toValueList(timeline.findOverlapping(day(2), day(3))));
+        assertEquals(List.of(VALUE + 0), toValueList(timeline.findOverlapping(day(-5), day(0))));
+        assertTrue(timeline.findOverlapping(day(11), day(20)).isEmpty());
+
+        assertEquals(VALUE + 0, timeline.findValidAt(day(0)).getValue());
+        assertEquals(VALUE + 4, timeline.findValidAt(day(4).plusSeconds(1)).getValue());
+        assertEquals(VALUE + 5, timeline.findValidAt(day(5)).getValue());
+        assertEquals(VALUE + 5, timeline.findValidAt(day(6).minusNanos(1)).getValue());
+        assertNull(timeline.findValidAt(day(-1)));
+        assertNull(timeline.findValidAt(day(10)));
+    }
+
+
+    /**
+     * An open start and end and the min and max instant
+     */
+    @Test
+    public void openStartAndEnd() {
+        PrimitiveTemporalTimeline<MyRecord, Long, String> timeline = new PrimitiveTemporalTimeline<MyRecord, Long, String>();
+        timeline.apply(TemporalityActionType.CREATE, createRecord(1L, VALUE + "max", day(10), Instant.MAX));
+        timeline.apply(TemporalityActionType.CREATE, createRecord(2L, VALUE + "open", null, day(0)));
+        timeline.apply(TemporalityActionType.CREATE, createRecord(3L, VALUE + "min", Instant.MIN, day(0)));
+        timeline.apply(TemporalityActionType.CREATE, createRecord(4L, VALUE, day(0), day(10)));
+
+        // the open start is before the min instant
+        assertEquals(List.of(VALUE + "open", VALUE + "min", VALUE, VALUE + "max"), toValueList(timeline.toList()));
+        assertEquals(VALUE + "min", timeline.findValidAt(Instant.MIN).getValue());
+        assertEquals(VALUE + "max", timeline.findValidAt(Instant.MAX.minusNanos(1)).getValue());
+        assertNull(timeline.findValidAt(Instant.MAX));
+        assertEquals(List.of(VALUE + "max"), toValueList(timeline.findOverlapping(Instant.MAX, Instant.MAX)));
+
+        // the open end is after the max instant
+        timeline.apply(TemporalityActionType.CREATE, createRecord(5L, VALUE + "end", Instant.MAX, null));
+        assertEquals(VALUE + "end", timeline.findValidAt(Instant.MAX).getValue());
+        assertTrue(timeline.delete(createRecord(2L, null, null, null)));
+        assertTrue(timeline.delete(timeline.get(5L)));
+        assertEquals(List.of(VALUE + "min", VALUE, VALUE + "max"), toValueList(timeline.toList()));
+        timeline.clear();
+        assertTrue(timeline.isEmpty());
+        assertNull(timeline.get(1L));
+    }
+
+
+    /**
+     * Random operations have the same result as with the {@link TemporalTimeline}
+     */
+    @Test
+    public void applyRandomOperationsCompareWithTemporalTimeline() {
+        Random random = new Random(31415);
+        PrimitiveTemporalTimeline<MyRecord, Long, String> timeline = new PrimitiveTemporalTimeline<MyRecord, Long, String>(1);
+        TemporalTimeline<MyRecord, Long, String> referenceTimeline = new TemporalTimeline<MyRecord, Long, String>();
+
+        for (int i = 0; i < 2000; i++) {
+            // the records have the same validity to keep the valid till not decreasing
+            long primaryKey = 1 + random.nextInt(50);
+            int from = (int) primaryKey;
+            MyRecord record = createRecord(primaryKey, VALUE + i, day(from).plusNanos(random.nextInt(3)), day(from + 1));
+            if (random.nextInt(4) == 0) {
+                assertEquals(referenceTimeline.delete(record), timeline.delete(record));
+            } else {
+                referenceTimeline.apply(TemporalityActionType.UPDATE, record);
+                timeline.apply(TemporalityActionType.UPDATE, record);
+            }
+
+            assertEquals(referenceTimeline.size(), timeline.size());
+            assertEquals(referenceTimeline.toList(), timeline.toList());
+            Instant validAt = day(random.nextInt(55)).plusNanos(random.nextInt(3));
+            assertEquals(referenceTimeline.findValidAt(validAt), timeline.findValidAt(validAt));
+            assertEquals(referenceTimeline.findOverlapping(validAt, validAt.plus(2, ChronoUnit.DAYS)), timeline.findOverlapping(validAt, validAt.plus(2, ChronoUnit.DAYS)));
+            assertEquals(referenceTimeline.get(primaryKey), timeline.get(primaryKey));
+        }
+    }
+
+
+    /**
+     * Random writes into an {@link InMemoryDAOService} and a {@link CachingDAOService} with the primitive timeline have the same
+     * result as with the default timeline
+     */
+    @Test
+    public void writeRandomRecordsCompareWithTemporalTimeline() {
+        Random random = new Random(2024);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet, PrimitiveTemporalTimeline::new);
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        CachingDAOService<MyRecord, Long, String> cachingDAOService = new CachingDAOService<MyRecord, Long, String>(
+                new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet), 10, null, PrimitiveTemporalTimeline::new);
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(60);
+            MyRecord record = new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(10)));
+            int result = h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            assertEquals(result, h.writeTemporlityRecord(record.clone(), daoService));
+            assertEquals(result, h.writeTemporlityRecord(record, cachingDAOService));
+            assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+            assertEquals(toString(referenceDAOService.search(filter)), toString(cachingDAOService.search(filter)));
+
+            Instant validAt = day(random.nextInt(72));
+            assertEquals(toString(referenceDAOService.searchValidAt(filter, validAt)), toString(daoService.searchValidAt(filter, validAt)));
+        }
+
+        assertFalse(daoService.search(filter).isEmpty());
+    }
+
+
+    /**
+     * Create a record with a primary key
+     *
+     * @param primaryKey the primary key
+     * @param value the value
+     * @param validFrom the valid from
+     * @param validTill the valid till
+     * @return the record
+     */
+    private MyRecord createRecord(Long primaryKey, String value, Instant validFrom, Instant validTill) {
+        MyRecord record = new MyRecord(KEY, value, validFrom, validTill);
+        record.setPrimaryKey(primaryKey);
+        return record;
+    }
+
+
+    /**
+     * Create contiguous records of one day
+     *
+     * @param size the number of records
+     * @return the records
+     */
+    private List<MyRecord> createRecordList(int size) {
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < size; i++) {
+            recordList.add(createRecord(Long.valueOf(i + 1), VALUE + i, day(i), day(i + 1)));
+        }
+
+        return recordList;
+    }
+
+
+    /**
+     * Get the instant of a day
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+
+
+    /**
+     * Get the values of the records
+     *
+     * @param recordList the record list
+     * @return the values
+     */
+    private List<String> toValueList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        for (MyRecord record : recordList) {
+            result.add(record.getValue());
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * TemporalTimelineTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.timeline.TemporalTimeline;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link TemporalTimeline}.
+ */
+public class TemporalTimelineTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalTimelineTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Find overlapping records
+     */
+    @Test
+    public void findOverlapping() {
+        TemporalTimeline<MyRecord, Long, String> timeline = createTimeline(10);
+        assertEquals(10, timeline.size());
+
+        assertEquals(List.of(VALUE + 2, VALUE + 3, VALUE + 4), toValueList(timeline.findOverlapping(day(2).plusSeconds(1), day(4).plusSeconds(1))));
+
+        // touching records are part of the result
+        assertEquals(List.of(VALUE + 1, VALUE + 2, VALUE + 3), toValueList(timeline.findOverlapping(day(2), day(3))));
+        assertEquals(List.of(VALUE + 0), toValueList(timeline.findOverlapping(day(-5), day(0))));
+        assertEquals(List.of(VALUE + 9), toValueList(timeline.findOverlapping(day(10), day(20))));
+        assertTrue(timeline.findOverlapping(day(11), day(20)).isEmpty());
+    }
+
+
+    /**
+     * Find the valid record at an instant
+     */
+    @Test
+    public void findValidAt() {
+        TemporalTimeline<MyRecord, Long, String> timeline = createTimeline(10);
+        assertEquals(VALUE + 0, timeline.findValidAt(day(0)).getValue());
+        assertEquals(VALUE + 4, timeline.findValidAt(day(4).plusSeconds(1)).getValue());
+        assertEquals(VALUE + 5, timeline.findValidAt(day(5)).getValue());
+        assertNull(timeline.findValidAt(day(-1)));
+        assertNull(timeline.findValidAt(day(10)));
+    }
+
+
+    /**
+     * Apply operations
+     */
+    @Test
+    public void apply() {
+        TemporalTimeline<MyRecord, Long, String> timeline = createTimeline(3);
+
+        // terminate
+        MyRecord record = timeline.get(1L).clone();
+        record.setValidTill(day(0).plus(12, ChronoUnit.HOURS));
+        timeline.apply(TemporalityActionType.TERMINATE, record);
+        assertEquals(3, timeline.size());
+        assertNull(timeline.findValidAt(day(0).plus(13, ChronoUnit.HOURS)));
+
+        // create
+        MyRecord newRecord = new MyRecord(KEY, VALUE + "new", day(0).plus(12, ChronoUnit.HOURS), day(1));
+        newRecord.setPrimaryKey(100L);
+        timeline.apply(TemporalityActionType.CREATE, newRecord);
+        assertEquals(4, timeline.size());
+        assertEquals(List.of(VALUE + 0, VALUE + "new", VALUE + 1, VALUE + 2), toValueList(timeline.toList()));
+
+        // delete
+        assertTrue(timeline.delete(timeline.get(2L).clone()));
+        assertTrue(timeline.delete(timeline.get(100L).clone()));
+        assertFalse(timeline.delete(newRecord));
+        assertEquals(List.of(VALUE + 0, VALUE + 2), toValueList(timeline.toList()));
+        assertNull(timeline.get(2L));
+    }
+
+
+    /**
+     * Create a timeline
+     *
+     * @param size the size
+     * @return the timeline
+     */
+    private TemporalTimeline<MyRecord, Long, String> createTimeline(int size) {
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < size; i++) {
+            MyRecord record = new MyRecord(KEY, VALUE + i, day(i), day(i + 1));
+            record.setPrimaryKey(Long.valueOf(i + 1));
+            recordList.add(record);
+        }
+
+        return new TemporalTimeline<MyRecord, Long, String>(recordList);
+    }
+
+
+    /**
+     * Get the instant of a day
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+
+
+    /**
+     * Get the values of the records
+     *
+     * @param recordList the record list
+     * @return the values
+     */
+    private List<String> toValueList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        for (MyRecord record : recordList) {
+            result.add(record.getValue());
+        }
+
+        return result;
+    }
+}
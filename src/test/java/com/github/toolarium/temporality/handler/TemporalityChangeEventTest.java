@@ -0,0 +1,326 @@
+/*
+ * TemporalityChangeEventTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService;
+import com.github.toolarium.temporality.handler.event.TemporalityChangePublisher;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the change events of the temporality handler and the {@link TemporalityChangePublisher}.
+ */
+public class TemporalityChangeEventTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityChangeEventTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Each accepted change is passed with the record before and after the change
+     */
+    @Test
+    public void changeEvents() {
+        List<TemporalityChangeEvent<?>> eventList = Collections.synchronizedList(new ArrayList<TemporalityChangeEvent<?>>());
+        for (boolean batchWrite : new boolean[] {true, false}) {
+            eventList.clear();
+            ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(eventList::add).batchWrite(batchWrite).build();
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            MyRecord record = new MyRecord(KEY, VALUE, referenceTimestamp, day(10));
+            assertEquals(1, h.writeTemporlityRecord(record, daoService));
+            assertEquals(1, eventList.size());
+            assertEquals(record, eventList.get(0).getAfter());
+            assertNotSame(record, eventList.get(0).getAfter());
+            assertNull(eventList.get(0).getBefore());
+            assertEquals(KEY, eventList.get(0).getDataKey());
+            assertNotNull(((MyRecord) eventList.get(0).getAfter()).getPrimaryKey());
+
+            // Case F
+            eventList.clear();
+            assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+            assertEquals(3, eventList.size());
+            for (TemporalityChangeEvent<?> event : eventList) {
+                assertNotNull(((MyRecord) event.getAfter()).getPrimaryKey());
+                if (event.getBefore() != null) {
+                    assertEquals(day(10), ((MyRecord) event.getBefore()).getValidTill());
+                    assertEquals(TemporalityCase.F, event.getTemporalityCase());
+                }
+            }
+
+            // Case G
+            eventList.clear();
+            int result = h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "all", referenceTimestamp, day(10)), daoService);
+            assertEquals(result, eventList.size());
+            assertTrue(eventList.stream().anyMatch(e -> e.isDelete() && e.getAfter() == null && e.getBefore() != null));
+        }
+    }
+
+
+    /**
+     * A failed write is not passed
+     */
+    @Test
+    public void failedWrite() {
+        List<TemporalityChangeEvent<?>> eventList = new ArrayList<TemporalityChangeEvent<?>>();
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#write(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.ITemporalityRecord)
+             */
+            @Override
+            public void write(TemporalityActionType temporalityActionType, MyRecord record) {
+                throw new IllegalStateException("Not available!");
+            }
+
+
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#writeAll(java.util.List)
+             */
+            @Override
+            public void writeAll(List<TemporalityOperation<MyRecord>> operationList) {
+                throw new IllegalStateException("Not available!");
+            }
+        };
+
+        for (boolean batchWrite : new boolean[] {true, false}) {
+            ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(eventList::add).batchWrite(batchWrite).build();
+            assertEquals(0, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, day(10)), daoService));
+            assertEquals(0, (int) h.writeTemporalityRecords(List.of(new MyRecord(KEY, VALUE, referenceTimestamp, day(10))), daoService).get(KEY));
+            assertTrue(eventList.isEmpty());
+        }
+    }
+
+
+    /**
+     * A bulk write, a versioned dao service, a compaction and a reconciliation pass each accepted change
+     */
+    @Test
+    public void changeEventsOfAllWrites() {
+        List<TemporalityChangeEvent<?>> eventList = new ArrayList<TemporalityChangeEvent<?>>();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(eventList::add).build();
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < 10; i++) {
+            if (i % 3 == 0) {
+                recordList.add(new MyRecord(KEY, VALUE + 0, day(i), day(i + 2)));
+            } else {
+                recordList.add(new MyRecord(KEY, VALUE + 1, day(i), day(i + 2)));
+            }
+        }
+
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        assertEquals((int) h.writeTemporalityRecords(recordList, daoService).get(KEY), eventList.size());
+
+        eventList.clear();
+        InMemoryVersionedDAOService<MyRecord, Long, String> versionedDAOService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        assertEquals((int) h.writeTemporalityRecords(recordList, versionedDAOService).get(KEY), eventList.size());
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        eventList.clear();
+        assertEquals(h.compactTemporalityRecords(filter, daoService), eventList.size());
+        assertTrue(eventList.stream().allMatch(e -> e.getTemporalityCase() == TemporalityCase.COMPACT));
+
+        eventList.clear();
+        assertEquals(h.reconcileTemporalityRecords(filter, List.of(new MyRecord(KEY, VALUE, day(0), day(20))), daoService), eventList.size());
+        assertTrue(eventList.stream().allMatch(e -> e.getTemporalityCase() == TemporalityCase.RECONCILE));
+    }
+
+
+    /**
+     * The events are published in micro batches in the order of the changes
+     */
+    @Test
+    public void publishBatches() throws Exception {
+        List<List<TemporalityChangeEvent<?>>> batchList = Collections.synchronizedList(new ArrayList<List<TemporalityChangeEvent<?>>>());
+        CountDownLatch completed = new CountDownLatch(1);
+        try (TemporalityChangePublisher publisher = new TemporalityChangePublisher(Executors.newSingleThreadExecutor(), 16, 2, Duration.ofHours(1))) {
+            publisher.subscribe(new Flow.Subscriber<List<TemporalityChangeEvent<?>>>() {
+                private Flow.Subscription subscription;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(List<TemporalityChangeEvent<?>> item) {
+                    batchList.add(item);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.countDown();
+                }
+            });
+
+            ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(publisher).build();
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            for (int i = 0; i < 5; i++) {
+                h.writeTemporlityRecord(new MyRecord(KEY + i, VALUE, day(i), day(i + 1)), daoService);
+            }
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(3, batchList.size());
+        assertEquals(2, batchList.get(0).size());
+        assertEquals(1, batchList.get(2).size());
+        assertEquals(KEY + 0, batchList.get(0).get(0).getDataKey());
+        assertEquals(KEY + 4, batchList.get(2).get(0).getDataKey());
+    }
+
+
+    /**
+     * A batch is published after the max batch delay and a slow subscriber slows down the writer
+     */
+    @Test
+    public void backpressure() throws Exception {
+        AtomicReference<Flow.Subscription> subscriptionReference = new AtomicReference<Flow.Subscription>();
+        CountDownLatch completed = new CountDownLatch(1);
+        List<List<TemporalityChangeEvent<?>>> batchList = Collections.synchronizedList(new ArrayList<List<TemporalityChangeEvent<?>>>());
+        try (TemporalityChangePublisher publisher = new TemporalityChangePublisher(Executors.newSingleThreadExecutor(), 1, 1, Duration.ofMillis(5))) {
+            publisher.subscribe(new Flow.Subscriber<List<TemporalityChangeEvent<?>>>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscriptionReference.set(subscription);
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(List<TemporalityChangeEvent<?>> item) {
+                    batchList.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    completed.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    completed.countDown();
+                }
+            });
+
+            ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(publisher).build();
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            Thread writer = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    h.writeTemporlityRecord(new MyRecord(KEY + i, VALUE, day(i), day(i + 1)), daoService);
+                }
+            });
+            writer.start();
+
+            // the subscriber requested one batch, the writer waits
+            writer.join(300);
+            assertTrue(writer.isAlive());
+            assertEquals(1, batchList.size());
+
+            subscriptionReference.get().request(Long.MAX_VALUE);
+            writer.join(10000);
+            assertFalse(writer.isAlive());
+        }
+
+        assertTrue(completed.await(10, TimeUnit.SECONDS));
+        assertEquals(10, batchList.size());
+    }
+
+
+    /**
+     * A batch is dropped for a subscriber which buffer is still full after the max subscriber wait
+     */
+    @Test
+    public void dropBatchesOfSlowSubscriber() {
+        List<List<TemporalityChangeEvent<?>>> batchList = Collections.synchronizedList(new ArrayList<List<TemporalityChangeEvent<?>>>());
+        try (TemporalityChangePublisher publisher = new TemporalityChangePublisher(Executors.newSingleThreadExecutor(), 1, 1, Duration.ofHours(1), Duration.ofMillis(20))) {
+            publisher.subscribe(new Flow.Subscriber<List<TemporalityChangeEvent<?>>>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(List<TemporalityChangeEvent<?>> item) {
+                    batchList.add(item);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    // NOP
+                }
+
+                @Override
+                public void onComplete() {
+                    // NOP
+                }
+            });
+
+            ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(publisher).build();
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            for (int i = 0; i < 5; i++) {
+                h.writeTemporlityRecord(new MyRecord(KEY + i, VALUE, day(i), day(i + 1)), daoService);
+            }
+
+            // one batch is delivered, one is buffered and the others are dropped
+            assertTrue(publisher.getNumberOfDroppedBatches() >= 3);
+            assertTrue(batchList.size() <= 1);
+        }
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * TemporalityHandlerBatchDAOTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the temporality handler with a {@link IBatchDAOService}.
+ */
+public class TemporalityHandlerBatchDAOTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerBatchDAOTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Insert a record (Case F) with one write call
+     */
+    @Test
+    public void writeRecordInsertBetween() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        daoService.resetCounter();
+
+        int result = h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService);
+        assertEquals(3, result);
+        assertEquals(1, daoService.getSearchCounter());
+        assertEquals(1, daoService.getWriteAllCounter());
+        assertEquals(0, daoService.getDeleteAllCounter());
+        assertEquals(3, daoService.getWriteCounter());
+
+        List<MyRecord> recordList = daoService.getData().get(KEY);
+        assertEquals(3, recordList.size());
+        assertEquals("key / value / 2014-05-26T13:11:10Z - 2014-05-29T13:11:10Z", recordList.get(0).toString());
+        assertEquals("key / value / 2014-05-31T13:11:10Z - +1000000000-12-31T23:59:59.999999999Z", recordList.get(1).toString());
+        assertEquals("key / valuenew / 2014-05-29T13:11:10Z - 2014-05-31T13:11:10Z", recordList.get(2).toString());
+    }
+
+
+    /**
+     * Combine records (Case G) with one apply call of the delete and the write
+     */
+    @Test
+    public void combineRecord() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "1", referenceTimestamp, referenceTimestamp.plus(1, ChronoUnit.DAYS)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "2", referenceTimestamp.plus(2, ChronoUnit.DAYS), referenceTimestamp.plus(3, ChronoUnit.DAYS)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "3", referenceTimestamp.plus(4, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService);
+        daoService.resetCounter();
+
+        int result = h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp, referenceTimestamp.plus(6, ChronoUnit.DAYS)), daoService);
+        assertEquals(4, result);
+        assertEquals(1, daoService.getApplyCounter());
+        assertEquals(1, daoService.getDeleteAllCounter());
+        assertEquals(1, daoService.getWriteAllCounter());
+
+        List<MyRecord> recordList = daoService.getData().get(KEY);
+        assertEquals(1, recordList.size());
+        assertEquals("key / valuenew / 2014-05-26T13:11:10Z - 2014-06-01T13:11:10Z", recordList.get(0).toString());
+    }
+
+
+    /**
+     * A failed apply call changes no record and is not counted
+     */
+    @Test
+    public void combineRecordWithFailure() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO() {
+            /**
+             * @see com.github.toolarium.temporality.handler.MyBatchRecordDAO#apply(java.util.List, java.util.List)
+             */
+            @Override
+            public synchronized void apply(List<MyRecord> deleteRecordList, List<TemporalityOperation<MyRecord>> operationList) {
+                throw new IllegalStateException("Transaction rolled back!");
+            }
+        };
+
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "1", referenceTimestamp, referenceTimestamp.plus(1, ChronoUnit.DAYS)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "2", referenceTimestamp.plus(2, ChronoUnit.DAYS), referenceTimestamp.plus(3, ChronoUnit.DAYS)), daoService);
+
+        assertEquals(0, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp, referenceTimestamp.plus(6, ChronoUnit.DAYS)), daoService));
+        List<MyRecord> recordList = daoService.getData().get(KEY);
+        assertEquals(2, recordList.size());
+        assertEquals(VALUE + "1", recordList.get(0).getValue());
+        assertEquals(VALUE + "2", recordList.get(1).getValue());
+    }
+
+
+    /**
+     * Write a batch of records with one write call
+     */
+    @Test
+    public void writeRecords() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        recordList.add(new MyRecord(KEY + "1", VALUE, referenceTimestamp, Instant.MAX));
+        recordList.add(new MyRecord(KEY + "2", VALUE, referenceTimestamp, Instant.MAX));
+        recordList.add(new MyRecord(KEY + "1", VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)));
+        recordList.add(new MyRecord(KEY + "3", VALUE, referenceTimestamp, Instant.MAX));
+
+        Map<String, Integer> result = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(recordList, daoService);
+        assertEquals(Arrays.asList(KEY + "1", KEY + "2", KEY + "3"), new ArrayList<String>(result.keySet()));
+        assertEquals(Integer.valueOf(4), result.get(KEY + "1"));
+        assertEquals(Integer.valueOf(1), result.get(KEY + "2"));
+        assertEquals(Integer.valueOf(1), result.get(KEY + "3"));
+
+        // the pending insert of key1 is changed in the batch, each data key is read once and the batch is written once
+        assertEquals(3, daoService.getSearchCounter());
+        assertEquals(1, daoService.getWriteAllCounter());
+        assertEquals(0, daoService.getDeleteAllCounter());
+        assertEquals(3, daoService.getData().get(KEY + "1").size());
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * TemporalityHandlerBatchTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the batch write of the temporality handler.
+ */
+public class TemporalityHandlerBatchTest {
+    private static final String KEY1 = "key1";
+    private static final String KEY2 = "key2";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerBatchTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records of different data keys in one batch
+     */
+    @Test
+    public void writeRecords() {
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+        Map<String, Integer> result = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(createRecordList(), daoService);
+
+        assertEquals(2, result.size());
+        assertEquals(Integer.valueOf(7), result.get(KEY1));
+        assertEquals(Integer.valueOf(1), result.get(KEY2));
+        assertEquals(2, daoService.getSearchCounter());
+
+        assertEquals(Arrays.asList("key1 / value1 / 2014-05-26T13:11:10Z - 2014-05-27T13:11:10Z",
+                                   "key1 / value1 / 2014-05-28T13:11:10Z - 2014-05-29T13:11:10Z",
+                                   "key1 / value1 / 2014-05-31T13:11:10Z - +1000000000-12-31T23:59:59.999999999Z",
+                                   "key1 / value2 / 2014-05-29T13:11:10Z - 2014-05-31T13:11:10Z",
+                                   "key1 / value3 / 2014-05-27T13:11:10Z - 2014-05-28T13:11:10Z"),
+                     toSortedList(daoService.getData().get(KEY1)));
+        assertEquals(Arrays.asList("key2 / value1 / 2014-05-26T13:11:10Z - +1000000000-12-31T23:59:59.999999999Z"), toSortedList(daoService.getData().get(KEY2)));
+    }
+
+
+    /**
+     * The batch write has the same result as the single writes
+     */
+    @Test
+    public void writeRecordsCompareWithSingleWrite() {
+        MyRecordDAO singleDAOService = new MyRecordDAO();
+        for (MyRecord record : createRecordList()) {
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record, singleDAOService);
+        }
+
+        // the dao service assigns the primary key to a copy, the timeline has to be read again
+        MyRecordDAO batchDAOService = new MyRecordDAO();
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(createRecordList(), batchDAOService);
+        assertEquals(toSortedList(singleDAOService.getData().get(KEY1)), toSortedList(batchDAOService.getData().get(KEY1)));
+        assertEquals(toSortedList(singleDAOService.getData().get(KEY2)), toSortedList(batchDAOService.getData().get(KEY2)));
+
+        MyCountingRecordDAO countingDAOService = new MyCountingRecordDAO();
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(createRecordList(), countingDAOService);
+        assertEquals(toSortedList(singleDAOService.getData().get(KEY1)), toSortedList(countingDAOService.getData().get(KEY1)));
+        assertEquals(toSortedList(singleDAOService.getData().get(KEY2)), toSortedList(countingDAOService.getData().get(KEY2)));
+    }
+
+
+    /**
+     * The dao service assigns the primary key to a copy, only the stored copies of the written records are read again
+     */
+    @Test
+    public void writeRecordsWithoutPrimaryKey() {
+        List<Instant[]> periodList = new ArrayList<Instant[]>();
+        MyRecordDAO daoService = new MyRecordDAO() {
+            /**
+             * @see com.github.toolarium.temporality.handler.IDAOService#searchOverlapping(java.lang.Object, java.time.Instant, java.time.Instant)
+             */
+            @Override
+            public synchronized List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                periodList.add(new Instant[] {validFrom, validTill});
+                return search(recordFilter);
+            }
+        };
+
+        MyRecordDAO singleDAOService = new MyRecordDAO();
+        for (MyRecord record : createRecordList()) {
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), singleDAOService);
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), daoService);
+        }
+
+        List<MyRecord> recordList = Arrays.asList(new MyRecord(KEY1, "value4", referenceTimestamp.plus(6, ChronoUnit.DAYS), referenceTimestamp.plus(8, ChronoUnit.DAYS)),
+                                                  new MyRecord(KEY1, "value5", referenceTimestamp.plus(7, ChronoUnit.DAYS), referenceTimestamp.plus(9, ChronoUnit.DAYS)),
+                                                  new MyRecord(KEY1, "value6", referenceTimestamp.plus(10, ChronoUnit.DAYS), referenceTimestamp.plus(11, ChronoUnit.DAYS)));
+        for (MyRecord record : recordList) {
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(record.clone(), singleDAOService);
+        }
+
+        periodList.clear();
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(recordList, daoService);
+        assertEquals(toSortedList(singleDAOService.getData().get(KEY1)), toSortedList(daoService.getData().get(KEY1)));
+
+        // the timeline is read once for the period of the batch, then only the periods of the records written without primary key
+        assertEquals(3, periodList.size());
+        assertEquals(Arrays.asList(referenceTimestamp.plus(6, ChronoUnit.DAYS), referenceTimestamp.plus(11, ChronoUnit.DAYS)), Arrays.asList(periodList.get(0)));
+        assertEquals(Arrays.asList(referenceTimestamp.plus(6, ChronoUnit.DAYS), Instant.MAX), Arrays.asList(periodList.get(1)));
+        assertEquals(Arrays.asList(referenceTimestamp.plus(7, ChronoUnit.DAYS), referenceTimestamp.plus(9, ChronoUnit.DAYS)), Arrays.asList(periodList.get(2)));
+    }
+
+
+    /**
+     * Write an empty batch
+     */
+    @Test
+    public void writeEmptyRecords() {
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+        assertEquals(0, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(new ArrayList<MyRecord>(), daoService).size());
+        assertEquals(0, daoService.getSearchCounter());
+    }
+
+
+    /**
+     * Create the record list
+     *
+     * @return the record list
+     */
+    private List<MyRecord> createRecordList() {
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        recordList.add(new MyRecord(KEY1, "value1", referenceTimestamp, Instant.MAX));
+        recordList.add(new MyRecord(KEY2, "value1", referenceTimestamp, Instant.MAX));
+        recordList.add(new MyRecord(KEY1, "value2", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)));
+        recordList.add(new MyRecord(KEY1, "value3", referenceTimestamp.plus(1, ChronoUnit.DAYS), referenceTimestamp.plus(2, ChronoUnit.DAYS)));
+        return recordList;
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        for (MyRecord record : recordList) {
+            result.add(record.toString());
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * TemporalityHandlerBuilderTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link TemporalityHandlerBuilder} and the shared temporality handler of the {@link TemporalityHandlerFactory}.
+ */
+public class TemporalityHandlerBuilderTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerBuilderTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * The temporality handler of the factory is shared by all threads
+     */
+    @Test
+    public void sharedHandler() throws Exception {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<ITemporalityHandler>> futureList = new ArrayList<CompletableFuture<ITemporalityHandler>>();
+            for (int i = 0; i < 8; i++) {
+                futureList.add(CompletableFuture.supplyAsync(() -> TemporalityHandlerFactory.getInstance().getTemporalityHandler(), executorService));
+            }
+
+            for (CompletableFuture<ITemporalityHandler> future : futureList) {
+                assertSame(h, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        ITemporalityHandler builtHandler = TemporalityHandlerFactory.getInstance().builder().batchWrite(false).build();
+        assertFalse(((TemporalityHandlerImpl) builtHandler).isBatchWrite());
+        assertNotSame(builtHandler, TemporalityHandlerFactory.getInstance().getTemporalityHandler());
+        assertTrue(((TemporalityHandlerImpl) TemporalityHandlerFactory.getInstance().getTemporalityHandler()).isBatchWrite());
+        assertThrows(IllegalArgumentException.class, () -> new TemporalityHandlerBuilder().sortContract(null));
+        assertThrows(IllegalArgumentException.class, () -> new TemporalityHandlerBuilder().maxInstant(null));
+    }
+
+
+    /**
+     * Without batch write an {@link IBatchDAOService} is called record by record
+     */
+    @Test
+    public void batchWrite() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().batchWrite(false).build();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        daoService.resetCounter();
+
+        // Case F
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+        assertEquals(0, daoService.getWriteAllCounter());
+        assertEquals(3, daoService.getWriteCounter());
+        assertEquals(3, daoService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * Without timeline cache a bulk write reads the timeline for each record
+     */
+    @Test
+    public void timelineCache() {
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < 5; i++) {
+            recordList.add(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)));
+        }
+
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+        new TemporalityHandlerBuilder().timelineCache(false).build().writeTemporalityRecords(recordList, daoService);
+        assertEquals(5, daoService.getSearchCounter());
+        assertEquals(5, daoService.getData().get(KEY).size());
+
+        MyCountingRecordDAO cachedDAOService = new MyCountingRecordDAO();
+        new TemporalityHandlerBuilder().build().writeTemporalityRecords(recordList, cachedDAOService);
+        assertEquals(1, cachedDAOService.getSearchCounter());
+        assertEquals(5, cachedDAOService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * The unsorted contract checks all records of an ordered timeline, the result is the same
+     */
+    @Test
+    public void sortContract() {
+        ITemporalityHandler unsortedHandler = new TemporalityHandlerBuilder().sortContract(TemporalitySortContract.UNSORTED).build();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().build();
+        MySortedRecordDAO unsortedDAOService = new MySortedRecordDAO();
+        MySortedRecordDAO daoService = new MySortedRecordDAO();
+        for (int i = 0; i < 100; i++) {
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)), unsortedDAOService);
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)), daoService);
+        }
+
+        unsortedDAOService.resetCounter();
+        daoService.resetCounter();
+        assertEquals(3, unsortedHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(50).plusSeconds(1), day(50).plusSeconds(2)), unsortedDAOService));
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(50).plusSeconds(1), day(50).plusSeconds(2)), daoService));
+        assertTrue(unsortedDAOService.getAccessCounter() >= 100);
+        assertTrue(daoService.getAccessCounter() < 20);
+        assertEquals(VALUE + "new", unsortedHandler.findValidAt(new MyRecord(KEY, null, null, null), day(50).plusSeconds(1), unsortedDAOService).getValue());
+        assertEquals(unsortedDAOService.getData().get(KEY).toString(), daoService.getData().get(KEY).toString());
+    }
+
+
+    /**
+     * The sorted contract with a dao service which returns ordered results but does not declare it: the in-memory timeline
+     * of a bulk write is kept in order after the writes
+     */
+    @Test
+    public void sortContractWithTimelineCache() {
+        for (boolean batchWrite : new boolean[] {false, true}) {
+            InMemoryDAOService<MyRecord, Long, String> unsortedDAOService = createUndeclaredSortedDAOService();
+            new TemporalityHandlerBuilder().sortContract(TemporalitySortContract.UNSORTED).batchWrite(batchWrite).build().writeTemporalityRecords(createOverlappingRecords(), unsortedDAOService);
+            InMemoryDAOService<MyRecord, Long, String> daoService = createUndeclaredSortedDAOService();
+            new TemporalityHandlerBuilder().sortContract(TemporalitySortContract.SORTED).batchWrite(batchWrite).build().writeTemporalityRecords(createOverlappingRecords(), daoService);
+
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+            assertEquals(5, unsortedDAOService.getNumberOfRecords(KEY));
+            assertEquals(toString(unsortedDAOService.search(filter)), toString(daoService.search(filter)));
+            assertEquals(VALUE + 2, daoService.findValidAt(KEY, day(59)).getValue());
+            assertEquals(VALUE + 1, daoService.findValidAt(KEY, day(60)).getValue());
+        }
+    }
+
+
+    /**
+     * A record which is valid till the sentinel keeps a later record which is valid till the sentinel as well (Case E)
+     */
+    @Test
+    public void maxInstant() {
+        Instant endOfTime = DateTimeFormatter.ISO_DATE_TIME.parse("9999-12-31T23:59:59Z", Instant::from);
+        ITemporalityHandler h = new TemporalityHandlerBuilder().maxInstant(endOfTime).build();
+        MyRecordDAO daoService = new MyRecordDAO();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), endOfTime), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp, endOfTime), daoService);
+        assertEquals(2, daoService.getData().get(KEY).size());
+
+        // with the default sentinel the existing record is replaced (Case E1)
+        MyRecordDAO defaultDAOService = new MyRecordDAO();
+        ITemporalityHandler defaultHandler = new TemporalityHandlerBuilder().build();
+        defaultHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), endOfTime), defaultDAOService);
+        defaultHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp, endOfTime), defaultDAOService);
+        assertEquals(1, defaultDAOService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * Create records which overlap each other
+     *
+     * @return the records
+     */
+    private List<MyRecord> createOverlappingRecords() {
+        return List.of(new MyRecord(KEY, VALUE + 1, day(0), day(100)), new MyRecord(KEY, VALUE + 2, day(50), day(60)), new MyRecord(KEY, VALUE + 3, day(55), day(58)));
+    }
+
+
+    /**
+     * Create a dao service which returns ordered results but does not declare it
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createUndeclaredSortedDAOService() {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#isSortedByValidFrom()
+             */
+            @Override
+            public boolean isSortedByValidFrom() {
+                return false;
+            }
+        };
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        for (MyRecord record : recordList) {
+            result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * TemporalityHandlerCompactionTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the compaction of the temporality handler.
+ */
+public class TemporalityHandlerCompactionTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerCompactionTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Compact an existing timeline
+     */
+    @Test
+    public void compactTemporalityRecords() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), day(5)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), day(10)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "other", day(10), day(15)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(15), day(20)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(20), day(25)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(30), day(35)), daoService);
+        assertEquals(6, daoService.getNumberOfRecords(KEY));
+        MyRecord first = daoService.findValidAt(KEY, day(0));
+
+        // two runs: update the first record of a run and delete the other
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(4, h.compactTemporalityRecords(filter, daoService));
+        assertEquals(4, daoService.getNumberOfRecords(KEY));
+        assertEquals(first.getPrimaryKey(), daoService.findValidAt(KEY, day(7)).getPrimaryKey());
+        assertEquals(day(10), daoService.findValidAt(KEY, day(0)).getValidTill());
+        assertEquals(VALUE + "other", daoService.findValidAt(KEY, day(10)).getValue());
+        assertEquals(day(15), daoService.findValidAt(KEY, day(24)).getValidFrom());
+        assertEquals(day(25), daoService.findValidAt(KEY, day(24)).getValidTill());
+        assertEquals(day(30), daoService.findValidAt(KEY, day(30)).getValidFrom());
+
+        // nothing left to compact
+        assertEquals(0, h.compactTemporalityRecords(filter, daoService));
+        assertEquals(0, h.compactTemporalityRecords(new MyRecord(KEY + "unknown", null, null, null), daoService));
+    }
+
+
+    /**
+     * Plan the compaction without a dao service
+     */
+    @Test
+    public void planTemporalityCompaction() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord record1 = createRecord(1L, VALUE, day(0), day(5));
+        MyRecord record2 = createRecord(2L, VALUE, day(5), day(10));
+        MyRecord record3 = createRecord(3L, VALUE, day(10), day(15));
+
+        // the order of the existing records is not relevant
+        TemporalityPlan<MyRecord> plan = h.planTemporalityCompaction(Arrays.asList(record3, record1, record2));
+        assertEquals(3, plan.size());
+        for (TemporalityOperation<MyRecord> operation : plan.getOperationList()) {
+            assertEquals(TemporalityCase.COMPACT, operation.getTemporalityCase());
+        }
+
+        TemporalityOperation<MyRecord> update = plan.getOperationList().get(2);
+        assertEquals(TemporalityActionType.UPDATE, update.getTemporalityActionType());
+        assertEquals(createRecord(1L, VALUE, day(0), day(15)), update.getRecord());
+        assertEquals(record1, update.getExistingRecord());
+        assertTrue(plan.getOperationList().get(0).isDelete());
+        assertTrue(plan.getOperationList().get(1).isDelete());
+
+        // the existing records are not modified
+        assertEquals(day(5), record1.getValidTill());
+
+        // not contiguous or different payload
+        assertTrue(h.planTemporalityCompaction(Arrays.asList(record1, record3)).isEmpty());
+        assertTrue(h.planTemporalityCompaction(Arrays.asList(record1, createRecord(2L, VALUE + "other", day(5), day(10)))).isEmpty());
+        assertTrue(h.planTemporalityCompaction(Arrays.asList(record1)).isEmpty());
+        assertTrue(h.planTemporalityCompaction(null).isEmpty());
+    }
+
+
+    /**
+     * An identical record with a new validity is merged on write
+     */
+    @Test
+    public void compactOnWrite() {
+        ITemporalityHandler h = new TemporalityHandlerBuilder().compactOnWrite(true).build();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), Instant.MAX), daoService);
+        MyRecord first = daoService.findValidAt(KEY, day(0));
+
+        // the re-sent record would terminate the existing record (Case D)
+        assertEquals(0, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), Instant.MAX), daoService));
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertEquals(first, daoService.findValidAt(KEY, day(5)));
+
+        // without compaction
+        InMemoryDAOService<MyRecord, Long, String> uncompactedDAOService = createDAOService();
+        ITemporalityHandler uncompactedHandler = new TemporalityHandlerImpl();
+        uncompactedHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), Instant.MAX), uncompactedDAOService);
+        assertEquals(2, uncompactedHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), Instant.MAX), uncompactedDAOService));
+        assertEquals(2, uncompactedDAOService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * The written record is merged with the touching records
+     */
+    @Test
+    public void compactOnWriteTouching() {
+        ITemporalityHandler h = new TemporalityHandlerBuilder().compactOnWrite(true).build();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), day(10)), daoService);
+        MyRecord first = daoService.findValidAt(KEY, day(0));
+
+        // appended record extends the existing record
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(10), day(20)), daoService));
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertEquals(first.getPrimaryKey(), daoService.findValidAt(KEY, day(15)).getPrimaryKey());
+        assertEquals(day(0), daoService.findValidAt(KEY, day(15)).getValidFrom());
+        assertEquals(day(20), daoService.findValidAt(KEY, day(15)).getValidTill());
+
+        // split (Case F) and restore the original payload: the three records are merged again
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "other", day(5), day(15)), daoService));
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(5), day(15)), daoService));
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertEquals(first.getPrimaryKey(), daoService.findValidAt(KEY, day(19)).getPrimaryKey());
+        assertEquals(day(0), daoService.findValidAt(KEY, day(19)).getValidFrom());
+        assertEquals(day(20), daoService.findValidAt(KEY, day(19)).getValidTill());
+    }
+
+
+    /**
+     * The compaction on write of random records has the same result as the compaction after each write and
+     * no contiguous records with the same payload remain
+     */
+    @Test
+    public void compactOnWriteRandomRecords() {
+        Random random = new Random(4711);
+        ITemporalityHandler h = new TemporalityHandlerBuilder().compactOnWrite(true).build();
+        ITemporalityHandler uncompactedHandler = new TemporalityHandlerImpl();
+        InMemoryDAOService<MyRecord, Long, String> sortedDAOService = createDAOService();
+        InMemoryDAOService<MyRecord, Long, String> unsortedDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            @Override
+            public List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                return search(recordFilter);
+            }
+
+            @Override
+            public boolean isSortedByValidFrom() {
+                return false;
+            }
+        };
+        InMemoryDAOService<MyRecord, Long, String> compactedDAOService = createDAOService();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        int numberOfUncompactedRecords = 0;
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(60);
+            String value = VALUE + random.nextInt(2);
+            MyRecord record = new MyRecord(KEY, value, day(from), day(from + 1 + random.nextInt(10)));
+            h.writeTemporlityRecord(record.clone(), sortedDAOService);
+            h.writeTemporlityRecord(record.clone(), unsortedDAOService);
+            uncompactedHandler.writeTemporlityRecord(record, compactedDAOService);
+            numberOfUncompactedRecords = Math.max(numberOfUncompactedRecords, compactedDAOService.getNumberOfRecords(KEY));
+            uncompactedHandler.compactTemporalityRecords(filter, compactedDAOService);
+
+            assertEquals(toString(compactedDAOService.search(filter)), toString(sortedDAOService.search(filter)));
+            assertEquals(toString(compactedDAOService.search(filter)), toString(unsortedDAOService.search(filter)));
+            assertCompacted(sortedDAOService.search(filter));
+        }
+
+        assertTrue(numberOfUncompactedRecords > sortedDAOService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        for (MyRecord record : recordList) {
+            result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Assert that no contiguous records with the same payload exist
+     *
+     * @param recordList the records ordered by valid from
+     */
+    private void assertCompacted(List<MyRecord> recordList) {
+        for (int i = 1; i < recordList.size(); i++) {
+            MyRecord previous = recordList.get(i - 1);
+            MyRecord record = recordList.get(i);
+            assertFalse(previous.getValidTill().equals(record.getValidFrom()) && previous.getValue().equals(record.getValue()), "Not compacted: " + previous + ", " + record);
+        }
+    }
+
+
+    /**
+     * Create a record with a primary key
+     *
+     * @param primaryKey the primary key
+     * @param value the value
+     * @param validFrom the valid from
+     * @param validTill the valid till
+     * @return the record
+     */
+    private MyRecord createRecord(Long primaryKey, String value, Instant validFrom, Instant validTill) {
+        MyRecord record = new MyRecord(KEY, value, validFrom, validTill);
+        record.setPrimaryKey(primaryKey);
+        return record;
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        AtomicLong sequence = new AtomicLong();
+        return new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * TemporalityHandlerDefaultMethodTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the default methods of the {@link ITemporalityHandler} with a handler which only implements the write of a record.
+ */
+public class TemporalityHandlerDefaultMethodTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+    private ITemporalityHandler temporalityHandler;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerDefaultMethodTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+
+        ITemporalityHandler delegate = new TemporalityHandlerImpl();
+        temporalityHandler = new ITemporalityHandler() {
+            /**
+             * @see com.github.toolarium.temporality.handler.ITemporalityHandler#writeTemporlityRecord(com.github.toolarium.temporality.handler.ITemporalityRecord,
+             *      com.github.toolarium.temporality.handler.IDAOService)
+             */
+            @Override
+            public <R extends ITemporalityRecord<R, K, D>, K, D> int writeTemporlityRecord(R record, IDAOService<R> daoService) {
+                return delegate.writeTemporlityRecord(record, daoService);
+            }
+        };
+    }
+
+
+    /**
+     * Write, import and find records with the default methods
+     */
+    @Test
+    public void writeAndFindRecords() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        Map<String, Integer> result = temporalityHandler.writeTemporalityRecords(Arrays.asList(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX),
+                                                                                                new MyRecord(KEY + "other", VALUE, referenceTimestamp, Instant.MAX),
+                                                                                                new MyRecord(KEY, VALUE + "new", day(3), day(5))), daoService);
+        assertEquals(Integer.valueOf(4), result.get(KEY));
+        assertEquals(Integer.valueOf(1), result.get(KEY + "other"));
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+
+        assertEquals(VALUE, temporalityHandler.findValidAt(filter, day(2), daoService).getValue());
+        assertEquals(VALUE + "new", temporalityHandler.findValidAt(filter, day(3), daoService).getValue());
+        assertEquals(VALUE, temporalityHandler.findValidAt(filter, day(5), daoService).getValue());
+        assertNull(temporalityHandler.findValidAt(filter, referenceTimestamp.minusNanos(1), daoService));
+
+        List<MyRecord> recordList = temporalityHandler.findOverlapping(filter, day(4), day(6), true, daoService);
+        assertEquals(2, recordList.size());
+        assertEquals(day(4), recordList.get(0).getValidFrom());
+        assertEquals(day(5), recordList.get(0).getValidTill());
+        assertEquals(day(5), recordList.get(1).getValidFrom());
+        assertEquals(day(6), recordList.get(1).getValidTill());
+        assertEquals(1, temporalityHandler.findOverlapping(filter, day(5), day(6), false, daoService).size());
+
+        assertEquals(3, temporalityHandler.importTemporalityRecords(Arrays.asList(new MyRecord(KEY, VALUE + "import", day(10), day(11))).iterator(), daoService));
+        assertEquals(VALUE + "import", temporalityHandler.findValidAt(filter, day(10), daoService).getValue());
+    }
+
+
+    /**
+     * Execute the plans of the default temporality handler with the default methods, the default planning methods can not plan
+     */
+    @Test
+    public void planRecords() {
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler defaultTemporalityHandler = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        MyRecord record = new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX);
+        assertThrows(UnsupportedOperationException.class, () -> temporalityHandler.planTemporalityRecord(record, Arrays.asList()));
+        assertEquals(1, temporalityHandler.executeTemporalityPlan(defaultTemporalityHandler.planTemporalityRecord(record, Arrays.asList()), daoService));
+        assertEquals(0, temporalityHandler.executeTemporalityPlan(new TemporalityPlan<MyRecord>(Arrays.asList()), daoService));
+
+        // split the record, the compaction and the reconciliation need the planning
+        temporalityHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService);
+        temporalityHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(3), day(5)), daoService);
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+        List<MyRecord> existingRecordList = daoService.search(filter);
+        assertThrows(UnsupportedOperationException.class, () -> temporalityHandler.planTemporalityCompaction(existingRecordList));
+        assertThrows(UnsupportedOperationException.class, () -> temporalityHandler.compactTemporalityRecords(filter, daoService));
+        assertEquals(3, temporalityHandler.executeTemporalityPlan(defaultTemporalityHandler.planTemporalityCompaction(existingRecordList), daoService));
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+
+        MyRecord targetRecord = new MyRecord(KEY, VALUE + "target", day(1), day(2));
+        assertThrows(UnsupportedOperationException.class, () -> temporalityHandler.planTemporalityReconciliation(Arrays.asList(targetRecord), daoService.search(filter)));
+        assertThrows(UnsupportedOperationException.class, () -> temporalityHandler.reconcileTemporalityRecords(filter, Arrays.asList(targetRecord), daoService));
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
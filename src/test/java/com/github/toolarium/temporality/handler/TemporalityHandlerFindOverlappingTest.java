@@ -0,0 +1,137 @@
+/*
+ * TemporalityHandlerFindOverlappingTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the timeline slice query of the temporality handler.
+ */
+public class TemporalityHandlerFindOverlappingTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerFindOverlappingTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Find the records of a period
+     */
+    @Test
+    public void findOverlapping() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecordDAO daoService = new MyRecordDAO();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService);
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        List<MyRecord> result = h.findOverlapping(filter, day(1), day(4), false, daoService);
+        assertEquals(2, result.size());
+        assertEquals(VALUE, result.get(0).getValue());
+        assertEquals(referenceTimestamp, result.get(0).getValidFrom());
+        assertEquals(VALUE + "new", result.get(1).getValue());
+        assertEquals(day(5), result.get(1).getValidTill());
+
+        // the records are clipped to the period, the stored records are not modified
+        result = h.findOverlapping(filter, day(1), day(4), true, daoService);
+        assertEquals(2, result.size());
+        assertEquals(day(1), result.get(0).getValidFrom());
+        assertEquals(day(3), result.get(0).getValidTill());
+        assertEquals(day(3), result.get(1).getValidFrom());
+        assertEquals(day(4), result.get(1).getValidTill());
+        assertEquals(result.get(1).getPrimaryKey(), h.findValidAt(filter, day(3), daoService).getPrimaryKey());
+        assertEquals(day(5), h.findValidAt(filter, day(3), daoService).getValidTill());
+
+        // records which only touch the period are not part of the result
+        result = h.findOverlapping(filter, day(3), day(5), true, daoService);
+        assertEquals(1, result.size());
+        assertEquals(VALUE + "new", result.get(0).getValue());
+
+        assertEquals(0, h.findOverlapping(filter, referenceTimestamp.minusSeconds(10), referenceTimestamp, false, daoService).size());
+        assertEquals(0, h.findOverlapping(new MyRecord(KEY + "unknown", null, null, null), day(1), day(4), false, daoService).size());
+        assertThrows(IllegalArgumentException.class, () -> h.findOverlapping(filter, day(4), day(4), false, daoService));
+        assertThrows(IllegalArgumentException.class, () -> h.findOverlapping(filter, null, day(4), false, daoService));
+    }
+
+
+    /**
+     * The query with an ordered and a range aware dao service have the same result as with an unordered dao service
+     */
+    @Test
+    public void findOverlappingCompareWithUnsorted() {
+        Random random = new Random(7531);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+        MySortedRecordDAO sortedDAOService = new MySortedRecordDAO();
+        AtomicLong sequence = new AtomicLong();
+        InMemoryDAOService<MyRecord, Long, String> inMemoryDAOService = new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(60);
+            MyRecord record = new MyRecord(KEY, VALUE + i, day(from), day(from + 1 + random.nextInt(10)));
+            h.writeTemporlityRecord(record.clone(), myRecordDAO);
+            h.writeTemporlityRecord(record.clone(), sortedDAOService);
+            h.writeTemporlityRecord(record, inMemoryDAOService);
+        }
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        for (int i = 0; i < 200; i++) {
+            Instant validFrom = referenceTimestamp.minus(5, ChronoUnit.DAYS).plus(random.nextInt(24 * 70), ChronoUnit.HOURS);
+            Instant validTill = validFrom.plus(1 + random.nextInt(24 * 10), ChronoUnit.HOURS);
+            boolean clip = random.nextBoolean();
+
+            List<String> expected = toList(h.findOverlapping(filter, validFrom, validTill, clip, myRecordDAO));
+            assertEquals(expected, toList(h.findOverlapping(filter, validFrom, validTill, clip, sortedDAOService)));
+            assertEquals(expected, toList(h.findOverlapping(filter, validFrom, validTill, clip, inMemoryDAOService)));
+        }
+    }
+
+
+    /**
+     * Get the instant of a day
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+
+
+    /**
+     * Convert the records into a list of value and validity
+     *
+     * @param recordList the record list
+     * @return the list
+     */
+    private List<String> toList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        for (MyRecord record : recordList) {
+            result.add(record.getValue() + " " + record.getValidFrom() + " - " + record.getValidTill());
+        }
+
+        return result;
+    }
+}
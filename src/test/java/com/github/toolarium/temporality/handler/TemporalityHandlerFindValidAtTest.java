@@ -0,0 +1,124 @@
+/*
+ * TemporalityHandlerFindValidAtTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.toolarium.temporality.handler.dao.CachingDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the point in time lookup of the temporality handler.
+ */
+public class TemporalityHandlerFindValidAtTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerFindValidAtTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Find the valid record with an unordered dao service
+     */
+    @Test
+    public void findValidAt() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecordDAO daoService = new MyRecordDAO();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService);
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertNull(h.findValidAt(filter, referenceTimestamp.minusSeconds(1), daoService));
+        assertEquals(VALUE, h.findValidAt(filter, referenceTimestamp, daoService).getValue());
+        assertEquals(VALUE, h.findValidAt(filter, referenceTimestamp.plus(3, ChronoUnit.DAYS).minusNanos(1), daoService).getValue());
+        assertEquals(VALUE + "new", h.findValidAt(filter, referenceTimestamp.plus(3, ChronoUnit.DAYS), daoService).getValue());
+        assertEquals(VALUE, h.findValidAt(filter, referenceTimestamp.plus(5, ChronoUnit.DAYS), daoService).getValue());
+        assertNull(h.findValidAt(new MyRecord(KEY + "unknown", null, null, null), referenceTimestamp, daoService));
+        assertThrows(IllegalArgumentException.class, () -> h.findValidAt(filter, null, daoService));
+    }
+
+
+    /**
+     * The lookup with an ordered and a range aware dao service have the same result as with an unordered dao service
+     */
+    @Test
+    public void findValidAtCompareWithUnsorted() {
+        Random random = new Random(8642);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecordDAO myRecordDAO = new MyRecordDAO();
+        MySortedRecordDAO sortedDAOService = new MySortedRecordDAO();
+        AtomicLong sequence = new AtomicLong();
+        InMemoryDAOService<MyRecord, Long, String> inMemoryDAOService = new InMemoryDAOService<MyRecord, Long, String>(sequence::incrementAndGet);
+
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(60);
+            MyRecord record = new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS));
+            h.writeTemporlityRecord(record.clone(), myRecordDAO);
+            h.writeTemporlityRecord(record.clone(), sortedDAOService);
+            h.writeTemporlityRecord(record, inMemoryDAOService);
+        }
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        for (int i = 0; i < 24 * 80; i++) {
+            Instant validAt = referenceTimestamp.minus(5, ChronoUnit.DAYS).plus(i, ChronoUnit.HOURS);
+            MyRecord expected = h.findValidAt(filter, validAt, myRecordDAO);
+            assertEquals(toValue(expected), toValue(h.findValidAt(filter, validAt, sortedDAOService)), "Instant " + validAt);
+            assertEquals(toValue(expected), toValue(h.findValidAt(filter, validAt, inMemoryDAOService)), "Instant " + validAt);
+        }
+    }
+
+
+    /**
+     * The lookup is answered from the cache
+     */
+    @Test
+    public void findValidAtCached() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyCountingRecordDAO myRecordDAO = new MyCountingRecordDAO();
+        CachingDAOService<MyRecord, Long, String> daoService = new CachingDAOService<MyRecord, Long, String>(myRecordDAO, 10);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService);
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VALUE + "new", h.findValidAt(filter, referenceTimestamp.plus(4, ChronoUnit.DAYS), daoService).getValue());
+        }
+
+        assertEquals(1, myRecordDAO.getSearchCounter());
+        assertEquals(101, daoService.getHitCount());
+    }
+
+
+    /**
+     * Get the value of a record
+     *
+     * @param record the record or null
+     * @return the value or null
+     */
+    private String toValue(MyRecord record) {
+        if (record == null) {
+            return null;
+        }
+
+        return record.getValue();
+    }
+}
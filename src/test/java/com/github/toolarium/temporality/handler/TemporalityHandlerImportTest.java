@@ -0,0 +1,180 @@
+/*
+ * TemporalityHandlerImportTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the streaming import {@link ITemporalityHandler#importTemporalityRecords(java.util.Iterator, IDAOService)}.
+ */
+public class TemporalityHandlerImportTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerImportTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * The timeline of each data key is read once
+     */
+    @Test
+    public void importRecords() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        h.writeTemporlityRecord(new MyRecord(KEY + 1, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY + 1, VALUE, referenceTimestamp, Instant.MAX), referenceDAOService);
+        daoService.resetCounter();
+
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        long result = 0;
+        for (int k = 0; k < 3; k++) {
+            for (int i = 0; i < 10; i++) {
+                MyRecord record = new MyRecord(KEY + k, VALUE + i, day(i), day(i + 1));
+                recordList.add(record);
+                result += h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            }
+        }
+
+        assertEquals(result, h.importTemporalityRecords(recordList.stream(), daoService));
+        assertEquals(3, daoService.getSearchCounter());
+        assertEquals(10, daoService.getData().get(KEY + 0).size());
+        assertEquals(referenceDAOService.getNumberOfRecords(KEY + 1), daoService.getData().get(KEY + 1).size());
+    }
+
+
+    /**
+     * A record without validity or a record which starts before the previous record of the data key is rejected
+     */
+    @Test
+    public void invalidRecords() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        recordList.add(new MyRecord(KEY, VALUE, day(5), day(6)));
+        recordList.add(new MyRecord(KEY, VALUE, day(4), day(6)));
+        assertThrows(IllegalArgumentException.class, () -> h.importTemporalityRecords(recordList.iterator(), daoService));
+
+        // the records before are imported
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertThrows(IllegalArgumentException.class, () -> h.importTemporalityRecords(List.of(new MyRecord(KEY, VALUE, null, day(6))).iterator(), daoService));
+        assertEquals(0, h.importTemporalityRecords(new ArrayList<MyRecord>().iterator(), daoService));
+    }
+
+
+    /**
+     * Random ordered records have the same result as written one after the other
+     */
+    @Test
+    public void importRandomRecordsCompareWithWrite() {
+        Random random = new Random(8080);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        for (int n = 0; n < 20; n++) {
+            InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+            InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+
+            // existing timelines
+            for (int i = 0; i < 30; i++) {
+                int from = random.nextInt(60);
+                MyRecord record = new MyRecord(KEY + random.nextInt(3), VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(10)));
+                h.writeTemporlityRecord(record.clone(), daoService);
+                h.writeTemporlityRecord(record, referenceDAOService);
+            }
+
+            List<MyRecord> recordList = new ArrayList<MyRecord>();
+            for (int i = 0; i < 60; i++) {
+                int from = random.nextInt(70);
+                recordList.add(new MyRecord(KEY + random.nextInt(4), VALUE + random.nextInt(3), day(from).plusSeconds(random.nextInt(2)), day(from + 1 + random.nextInt(10))));
+            }
+
+            recordList.sort(Comparator.comparing(MyRecord::getDataKey).thenComparing(MyRecord::getValidFrom));
+            long result = 0;
+            for (MyRecord record : recordList) {
+                result += h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            }
+
+            assertEquals(result, h.importTemporalityRecords(recordList.iterator(), daoService));
+            for (int k = 0; k < 4; k++) {
+                MyRecord filter = new MyRecord(KEY + k, null, null, null);
+                assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+            }
+        }
+    }
+
+
+    /**
+     * A generated stream is imported without collecting it
+     */
+    @Test
+    public void importGeneratedStream() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), referenceDAOService);
+        long result = 0;
+        for (int i = 0; i < 20000; i++) {
+            result += h.writeTemporlityRecord(new MyRecord(KEY, VALUE + (i % 2), day(i), day(i + 1)), referenceDAOService);
+        }
+
+        assertEquals(result, h.importTemporalityRecords(IntStream.range(0, 20000).mapToObj(i -> new MyRecord(KEY, VALUE + (i % 2), day(i), day(i + 1))), daoService));
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(20000, daoService.getNumberOfRecords(KEY));
+        assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
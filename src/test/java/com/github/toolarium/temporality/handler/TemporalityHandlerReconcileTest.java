@@ -0,0 +1,240 @@
+/*
+ * TemporalityHandlerReconcileTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the reconciliation of the temporality handler.
+ */
+public class TemporalityHandlerReconcileTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerReconcileTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * An unchanged timeline is read once and nothing is written
+     */
+    @Test
+    public void reconcileUnchanged() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        for (int i = 0; i < 5; i++) {
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)), daoService);
+        }
+
+        List<MyRecord> targetRecordList = new ArrayList<MyRecord>();
+        for (int i = 4; i >= 0; i--) {
+            targetRecordList.add(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)));
+        }
+
+        metrics.reset();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(0, h.reconcileTemporalityRecords(filter, targetRecordList, daoService));
+        assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+        for (TemporalityDAOOperation operation : TemporalityDAOOperation.values()) {
+            if (operation != TemporalityDAOOperation.SEARCH) {
+                assertEquals(0, metrics.getDAOCallCount(operation), operation.name());
+            }
+        }
+
+        // the target records are not changed
+        assertEquals(null, targetRecordList.get(0).getPrimaryKey());
+
+        InMemoryVersionedDAOService<MyRecord, Long, String> versionedDAOService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        assertEquals(5, h.reconcileTemporalityRecords(filter, targetRecordList, versionedDAOService));
+        assertEquals(1L, versionedDAOService.getVersion(KEY));
+        assertEquals(0, h.reconcileTemporalityRecords(filter, targetRecordList, versionedDAOService));
+        assertEquals(1L, versionedDAOService.getVersion(KEY));
+        assertEquals(toString(targetRecordList.subList(0, 5)), toString(reverse(versionedDAOService.search(filter))));
+    }
+
+
+    /**
+     * Only the difference is written, a changed record is updated in place
+     */
+    @Test
+    public void reconcileChanges() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "A", day(0), day(5)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "B", day(5), day(10)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "C", day(10), day(15)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "D", day(15), day(20)), daoService);
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        List<MyRecord> existingRecordList = daoService.search(filter);
+
+        List<MyRecord> targetRecordList = Arrays.asList(new MyRecord(KEY, VALUE + "A", day(0), day(5)),
+                                                        new MyRecord(KEY, VALUE + "B", day(5), day(8)),
+                                                        new MyRecord(KEY, VALUE + "X", day(8), day(10)),
+                                                        new MyRecord(KEY, VALUE + "C'", day(10), day(15)),
+                                                        new MyRecord(KEY, VALUE + "E", day(20), day(25)));
+
+        TemporalityPlan<MyRecord> plan = h.planTemporalityReconciliation(targetRecordList, existingRecordList);
+        assertEquals(4, plan.size());
+        assertEquals(TemporalityActionType.TERMINATE, plan.getOperationList().get(0).getTemporalityActionType());
+        assertEquals(existingRecordList.get(1).getPrimaryKey(), plan.getOperationList().get(0).getRecord().getPrimaryKey());
+        assertEquals(TemporalityActionType.UPDATE, plan.getOperationList().get(1).getTemporalityActionType());
+        assertEquals(existingRecordList.get(3).getPrimaryKey(), plan.getOperationList().get(1).getRecord().getPrimaryKey());
+        assertEquals(TemporalityActionType.UPDATE, plan.getOperationList().get(2).getTemporalityActionType());
+        assertEquals(existingRecordList.get(2).getPrimaryKey(), plan.getOperationList().get(2).getRecord().getPrimaryKey());
+        assertEquals(TemporalityActionType.CREATE, plan.getOperationList().get(3).getTemporalityActionType());
+        for (TemporalityOperation<MyRecord> operation : plan.getOperationList()) {
+            assertEquals(TemporalityCase.RECONCILE, operation.getTemporalityCase());
+        }
+
+        assertEquals(4, h.reconcileTemporalityRecords(filter, targetRecordList, daoService));
+        assertEquals(toString(targetRecordList), toString(daoService.search(filter)));
+        assertEquals(existingRecordList.get(0).getPrimaryKey(), daoService.findValidAt(KEY, day(0)).getPrimaryKey());
+        assertEquals(existingRecordList.get(2).getPrimaryKey(), daoService.findValidAt(KEY, day(10)).getPrimaryKey());
+
+        // an empty target timeline deletes all records
+        assertEquals(5, h.reconcileTemporalityRecords(filter, new ArrayList<MyRecord>(), daoService));
+        assertEquals(0, daoService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * An invalid target timeline is rejected before the dao service is accessed
+     */
+    @Test
+    public void invalidTargetTimeline() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        assertThrows(IllegalArgumentException.class, () -> h.reconcileTemporalityRecords(filter, Arrays.asList(new MyRecord(KEY, VALUE, day(0), day(5)), new MyRecord(KEY, VALUE, day(4), day(6))), daoService));
+        assertThrows(IllegalArgumentException.class, () -> h.reconcileTemporalityRecords(filter, Arrays.asList(new MyRecord(KEY + 1, VALUE, day(0), day(5))), daoService));
+        assertThrows(IllegalArgumentException.class, () -> h.reconcileTemporalityRecords(filter, Arrays.asList(new MyRecord(KEY, VALUE, null, day(5))), daoService));
+        assertThrows(IllegalArgumentException.class, () -> h.reconcileTemporalityRecords(filter, Arrays.asList(new MyRecord(KEY, VALUE, day(5), day(5))), daoService));
+        assertEquals(0, daoService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * Random timelines are reconciled with random target timelines
+     */
+    @Test
+    public void reconcileRandomTimelines() {
+        Random random = new Random(2511);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        for (int n = 0; n < 50; n++) {
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            for (int i = 0; i < 20; i++) {
+                int from = random.nextInt(40);
+                h.writeTemporlityRecord(new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(5))), daoService);
+            }
+
+            List<MyRecord> existingRecordList = daoService.search(filter);
+            List<MyRecord> targetRecordList = new ArrayList<MyRecord>();
+            for (MyRecord existingRecord : existingRecordList) {
+                if (random.nextInt(3) > 0) {
+                    // keep, change or split the record
+                    String value = existingRecord.getValue();
+                    if (random.nextInt(4) == 0) {
+                        value = VALUE + "changed";
+                    }
+
+                    Instant split = existingRecord.getValidFrom().plus(1, ChronoUnit.DAYS);
+                    if (random.nextBoolean() && split.isBefore(existingRecord.getValidTill())) {
+                        // split the record
+                        targetRecordList.add(new MyRecord(KEY, value, existingRecord.getValidFrom(), split));
+                        targetRecordList.add(new MyRecord(KEY, VALUE + "split", split, existingRecord.getValidTill()));
+                    } else {
+                        targetRecordList.add(new MyRecord(KEY, value, existingRecord.getValidFrom(), existingRecord.getValidTill()));
+                    }
+                }
+            }
+
+            for (int day = 45; day < 45 + random.nextInt(4); day++) {
+                targetRecordList.add(new MyRecord(KEY, VALUE, day(day), day(day + 1)));
+            }
+
+            int result = h.reconcileTemporalityRecords(filter, targetRecordList, daoService);
+            assertTrue(result <= Math.max(existingRecordList.size(), targetRecordList.size()));
+            assertEquals(toString(targetRecordList), toString(daoService.search(filter)));
+            assertEquals(0, h.reconcileTemporalityRecords(filter, targetRecordList, daoService));
+        }
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+    }
+
+
+    /**
+     * Reverse the records
+     *
+     * @param recordList the records
+     * @return the reversed records
+     */
+    private List<MyRecord> reverse(List<MyRecord> recordList) {
+        List<MyRecord> result = new ArrayList<MyRecord>(recordList);
+        Collections.reverse(result);
+        return result;
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        for (MyRecord record : recordList) {
+            result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
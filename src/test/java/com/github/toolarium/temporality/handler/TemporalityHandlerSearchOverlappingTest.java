@@ -0,0 +1,103 @@
+/*
+ * TemporalityHandlerSearchOverlappingTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the temporality handler with a dao service which supports to search overlapping records.
+ */
+public class TemporalityHandlerSearchOverlappingTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerSearchOverlappingTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write a long timeline, only the overlapping records are read
+     */
+    @Test
+    public void writeLongTimeline() {
+        int size = 50;
+        MyRangeRecordDAO rangeDAOService = new MyRangeRecordDAO();
+        MyRecordDAO daoService = new MyRecordDAO();
+        for (int i = 0; i < size; i++) {
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), Instant.MAX), rangeDAOService);
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), Instant.MAX), daoService);
+        }
+
+        assertEquals(size, rangeDAOService.getSearchOverlappingCounter());
+        assertEquals(0, rangeDAOService.getSearchCounter());
+        assertEquals(size - 1, rangeDAOService.getSearchOverlappingRecordCounter());
+        assertEquals(toSortedList(daoService.getData().get(KEY)), toSortedList(rangeDAOService.getData().get(KEY)));
+        rangeDAOService.resetCounter();
+
+        // Case F
+        Instant validFrom = referenceTimestamp.plus(10, ChronoUnit.DAYS).plus(12, ChronoUnit.HOURS);
+        Instant validTill = referenceTimestamp.plus(10, ChronoUnit.DAYS).plus(18, ChronoUnit.HOURS);
+        assertEquals(3, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", validFrom, validTill), rangeDAOService));
+        assertEquals(3, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", validFrom, validTill), daoService));
+        assertEquals(1, rangeDAOService.getSearchOverlappingRecordCounter());
+        assertEquals(size + 2, rangeDAOService.getData().get(KEY).size());
+        assertEquals(toSortedList(daoService.getData().get(KEY)), toSortedList(rangeDAOService.getData().get(KEY)));
+    }
+
+
+    /**
+     * Write a batch, the timeline is read once for the period of all records
+     */
+    @Test
+    public void writeRecords() {
+        MyRangeRecordDAO rangeDAOService = new MyRangeRecordDAO();
+        for (int i = 0; i < 10; i++) {
+            TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), Instant.MAX), rangeDAOService);
+        }
+        rangeDAOService.resetCounter();
+
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        recordList.add(new MyRecord(KEY, VALUE + "new1", referenceTimestamp.plus(2, ChronoUnit.DAYS).plus(1, ChronoUnit.HOURS), referenceTimestamp.plus(2, ChronoUnit.DAYS).plus(2, ChronoUnit.HOURS)));
+        recordList.add(new MyRecord(KEY, VALUE + "new2", referenceTimestamp.plus(4, ChronoUnit.DAYS).plus(1, ChronoUnit.HOURS), referenceTimestamp.plus(4, ChronoUnit.DAYS).plus(2, ChronoUnit.HOURS)));
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(recordList, rangeDAOService);
+
+        assertEquals(0, rangeDAOService.getSearchCounter());
+        assertEquals(3, rangeDAOService.getSearchOverlappingRecordCounter());
+        assertEquals(14, rangeDAOService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        for (MyRecord record : recordList) {
+            result.add(record.toString());
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
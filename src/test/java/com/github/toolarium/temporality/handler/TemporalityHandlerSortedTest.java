@@ -0,0 +1,131 @@
+/*
+ * TemporalityHandlerSortedTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the temporality handler with a dao service which returns ordered timelines.
+ */
+public class TemporalityHandlerSortedTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerSortedTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write into a long timeline, only the overlapping records are accessed
+     */
+    @Test
+    public void writeLongTimeline() {
+        int size = 1000;
+        MySortedRecordDAO daoService = new MySortedRecordDAO();
+        for (int i = 0; i < size; i++) {
+            daoService.write(TemporalityActionType.CREATE, new MyRecord(KEY, VALUE + i, referenceTimestamp.plus(i, ChronoUnit.DAYS), referenceTimestamp.plus(i + 1, ChronoUnit.DAYS)));
+        }
+        daoService.resetCounter();
+
+        // Case F
+        Instant validFrom = referenceTimestamp.plus(500, ChronoUnit.DAYS).plus(12, ChronoUnit.HOURS);
+        Instant validTill = referenceTimestamp.plus(500, ChronoUnit.DAYS).plus(18, ChronoUnit.HOURS);
+        assertEquals(3, TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", validFrom, validTill), daoService));
+        assertEquals(size + 2, daoService.getData().get(KEY).size());
+        assertTrue(daoService.getAccessCounter() < 30, "Too many accessed records: " + daoService.getAccessCounter());
+    }
+
+
+    /**
+     * Random writes with an ordered timeline have the same result as with an unordered timeline
+     */
+    @Test
+    public void writeRandomRecordsCompareWithUnsorted() {
+        Random random = new Random(4711);
+        for (int run = 0; run < 20; run++) {
+            MySortedRecordDAO sortedDAOService = new MySortedRecordDAO();
+            MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+
+            for (int i = 0; i < 50; i++) {
+                int from = random.nextInt(40);
+                int duration = 1 + random.nextInt(10);
+                String value = VALUE + random.nextInt(3);
+                Instant validFrom = referenceTimestamp.plus(from, ChronoUnit.DAYS);
+                Instant validTill = referenceTimestamp.plus(from + duration, ChronoUnit.DAYS);
+
+                int sortedResult = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, value, validFrom, validTill), sortedDAOService);
+                int result = TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporlityRecord(new MyRecord(KEY, value, validFrom, validTill), daoService);
+                assertEquals(result, sortedResult);
+                assertEquals(toSortedList(daoService.getData().get(KEY)), toSortedList(sortedDAOService.getData().get(KEY)));
+            }
+
+            assertEquals(daoService.getWriteCounter(), sortedDAOService.getWriteCounter());
+            assertEquals(daoService.getDeleteCounter(), sortedDAOService.getDeleteCounter());
+        }
+    }
+
+
+    /**
+     * A batch with an ordered timeline has the same result as with an unordered timeline
+     */
+    @Test
+    public void writeRecordsCompareWithUnsorted() {
+        Random random = new Random(42);
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < 100; i++) {
+            int from = random.nextInt(40);
+            recordList.add(new MyRecord(KEY, VALUE + random.nextInt(3), referenceTimestamp.plus(from, ChronoUnit.DAYS), referenceTimestamp.plus(from + 1 + random.nextInt(10), ChronoUnit.DAYS)));
+        }
+
+        MySortedRecordDAO sortedDAOService = new MySortedRecordDAO();
+        List<MyRecord> sortedRecordList = new ArrayList<MyRecord>();
+        for (MyRecord record : recordList) {
+            sortedRecordList.add(record.clone());
+        }
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(sortedRecordList, sortedDAOService);
+
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+        TemporalityHandlerFactory.getInstance().getTemporalityHandler().writeTemporalityRecords(recordList, daoService);
+        assertEquals(toSortedList(daoService.getData().get(KEY)), toSortedList(sortedDAOService.getData().get(KEY)));
+        assertEquals(1, sortedDAOService.getSearchCounter());
+    }
+
+
+    /**
+     * Convert the records into a sorted string list
+     *
+     * @param recordList the record list
+     * @return the sorted list
+     */
+    private List<String> toSortedList(List<MyRecord> recordList) {
+        List<String> result = new ArrayList<String>();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.add(record.toString());
+            }
+        }
+
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * TemporalityHandlerVersionedTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the temporality handler with a {@link IVersionedDAOService}.
+ */
+public class TemporalityHandlerVersionedTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityHandlerVersionedTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Write records: the operations of a record are written at once and change the version
+     */
+    @Test
+    public void writeRecords() {
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(0L, daoService.getVersion(KEY));
+        assertTrue(daoService.searchSnapshot(filter, null, null).getRecordList().isEmpty());
+
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(1L, daoService.getVersion(KEY));
+
+        // Case F
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+        assertEquals(2L, daoService.getVersion(KEY));
+        TemporalitySnapshot<MyRecord> snapshot = daoService.searchSnapshot(filter, day(3), day(5));
+        assertEquals(Long.valueOf(2L), snapshot.getVersion());
+        assertEquals(VALUE + "new", snapshot.getRecordList().get(1).getValue());
+        assertEquals(3, snapshot.getRecordList().size());
+
+        // a stale version is rejected and nothing is changed
+        List<TemporalityOperation<MyRecord>> operationList = new ArrayList<TemporalityOperation<MyRecord>>();
+        operationList.add(new TemporalityOperation<MyRecord>(TemporalityActionType.CREATE, new MyRecord(KEY, VALUE, day(10), day(11))));
+        TemporalityConflictException e = assertThrows(TemporalityConflictException.class, () -> daoService.writeAll(operationList, 1L));
+        assertEquals(Long.valueOf(2L), e.getCurrentVersion());
+        assertEquals(3, daoService.getNumberOfRecords(KEY));
+    }
+
+
+    /**
+     * A conflicting write of another writer between the search and the write: the record is planned again on the current timeline
+     */
+    @Test
+    public void retryOnConflict() {
+        AtomicInteger numberOfSearches = new AtomicInteger();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService#searchSnapshot(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant, java.time.Instant)
+             */
+            @Override
+            public TemporalitySnapshot<MyRecord> searchSnapshot(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                TemporalitySnapshot<MyRecord> result = super.searchSnapshot(recordFilter, validFrom, validTill);
+                if (numberOfSearches.incrementAndGet() == 2) {
+                    // the other writer
+                    new TemporalityHandlerBuilder().build().writeTemporlityRecord(new MyRecord(KEY, VALUE + "other", day(4), day(8)), this);
+                }
+
+                return result;
+            }
+        };
+
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).conflictBackoff(Duration.ZERO).build();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, day(10)), daoService);
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), daoService));
+        // the first write, the conflicting write, the write of the other writer and the retry
+        assertEquals(4, numberOfSearches.get());
+        assertEquals(1, metrics.getDAOExceptionCount(TemporalityDAOOperation.WRITE_VERSIONED));
+
+        // only the cases of the written plans are counted, the plan of the conflicting write inserted the record (Case F)
+        assertEquals(2, metrics.getCaseCount(TemporalityCase.NEW));
+        assertEquals(0, metrics.getCaseCount(TemporalityCase.F));
+
+        // the same timeline as with sequential writes
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler referenceHandler = new TemporalityHandlerBuilder().build();
+        referenceHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, day(10)), referenceDAOService);
+        referenceHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE + "other", day(4), day(8)), referenceDAOService);
+        referenceHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", day(3), day(5)), referenceDAOService);
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+    }
+
+
+    /**
+     * The conflict is thrown if the retries are exhausted
+     */
+    @Test
+    public void retriesExhausted() {
+        AtomicInteger numberOfWrites = new AtomicInteger();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService#writeAll(java.util.List, java.lang.Object)
+             */
+            @Override
+            public void writeAll(List<TemporalityOperation<MyRecord>> operationList, Object expectedVersion) {
+                numberOfWrites.incrementAndGet();
+                throw new TemporalityConflictException(KEY, expectedVersion, null);
+            }
+        };
+
+        ITemporalityHandler h = new TemporalityHandlerBuilder().conflictRetries(2).conflictBackoff(Duration.ofMillis(1)).build();
+        assertThrows(TemporalityConflictException.class, () -> h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, day(10)), daoService));
+        assertEquals(3, numberOfWrites.get());
+        assertEquals(0, daoService.getNumberOfRecords(KEY));
+        assertThrows(IllegalArgumentException.class, () -> new TemporalityHandlerBuilder().conflictRetries(-1));
+    }
+
+
+    /**
+     * Concurrent writers of the same data key without lock: the timeline has no overlapping records
+     */
+    @Test
+    public void concurrentWriters() throws Exception {
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler h = new TemporalityHandlerBuilder().conflictRetries(1000).conflictBackoff(Duration.ZERO).build();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<Void>> futureList = new ArrayList<CompletableFuture<Void>>();
+            for (int t = 0; t < 4; t++) {
+                final Random random = new Random(t);
+                futureList.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        int from = random.nextInt(30);
+                        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(5))), daoService);
+                    }
+                }, executorService));
+            }
+
+            for (CompletableFuture<Void> future : futureList) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        List<MyRecord> recordList = daoService.search(new MyRecord(KEY, null, null, null));
+        assertFalse(recordList.isEmpty());
+        for (int i = 1; i < recordList.size(); i++) {
+            assertFalse(recordList.get(i).getValidFrom().isBefore(recordList.get(i - 1).getValidTill()), toString(recordList));
+        }
+    }
+
+
+    /**
+     * A bulk write writes each record conditionally and has the same result as with the {@link InMemoryDAOService}
+     */
+    @Test
+    public void writeRandomRecordsCompareWithInMemoryDAOService() {
+        Random random = new Random(4711);
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+
+        for (int i = 0; i < 50; i++) {
+            List<MyRecord> recordList = new ArrayList<MyRecord>();
+            List<MyRecord> copyList = new ArrayList<MyRecord>();
+            for (int j = 0; j < 4; j++) {
+                int from = random.nextInt(60);
+                MyRecord record = new MyRecord(KEY, VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(10)));
+                recordList.add(record);
+                copyList.add(record.clone());
+            }
+
+            assertEquals(h.writeTemporalityRecords(copyList, referenceDAOService), h.writeTemporalityRecords(recordList, daoService));
+            assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+        }
+
+        assertEquals(0, h.compactTemporalityRecords(filter, daoService) - h.compactTemporalityRecords(filter, referenceDAOService));
+        assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records ordered by valid from
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        for (MyRecord record : recordList) {
+            result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
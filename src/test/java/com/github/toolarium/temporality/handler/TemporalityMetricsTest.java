@@ -0,0 +1,182 @@
+/*
+ * TemporalityMetricsTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.impl.TemporalityHandlerImpl;
+import com.github.toolarium.temporality.handler.metrics.Histogram;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link TemporalityMetrics}.
+ */
+public class TemporalityMetricsTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityMetricsTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Count the cases and the dao calls
+     */
+    @Test
+    public void writeRecords() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        MyCountingRecordDAO daoService = new MyCountingRecordDAO();
+
+        assertEquals(1, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(3, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService));
+        assertEquals(2, h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS)), daoService));
+
+        assertEquals(3, metrics.getRecordCount());
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.F));
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.A));
+        assertEquals(2, metrics.getCaseCount(TemporalityCase.NEW));
+        assertEquals(daoService.getSearchCounter(), metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+        assertEquals(daoService.getWriteCounter(), metrics.getDAOCallCount(TemporalityDAOOperation.WRITE));
+        assertEquals(0, metrics.getDAOCallCount(TemporalityDAOOperation.DELETE));
+        assertEquals(3, metrics.getDAOCallsPerRecordHistogram().getCount());
+        assertEquals(4, metrics.getDAOCallsPerRecordHistogram().getMax());
+        assertEquals(3, metrics.getLatencyHistogram(TemporalityDAOOperation.SEARCH).getCount());
+        assertTrue(metrics.toString().contains("F=1"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getCaseCount(TemporalityCase.F));
+        assertEquals(0, metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+    }
+
+
+    /**
+     * Count the failed dao calls
+     */
+    @Test
+    public void writeRecordsWithException() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        MyRecordDAO daoService = new MyRecordDAO() {
+            /**
+             * @see com.github.toolarium.temporality.handler.MyRecordDAO#write(com.github.toolarium.temporality.handler.TemporalityActionType, com.github.toolarium.temporality.handler.MyRecord)
+             */
+            @Override
+            public synchronized void write(TemporalityActionType temporalityActionType, MyRecord inputRecord) {
+                throw new IllegalStateException("Write failed!");
+            }
+        };
+
+        assertEquals(0, h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService));
+        assertEquals(1, metrics.getDAOExceptionCount(TemporalityDAOOperation.WRITE));
+        assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE));
+    }
+
+
+    /**
+     * Count the calls of a batch dao service
+     */
+    @Test
+    public void writeRecordsWithBatch() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+
+        List<MyRecord> recordList = new ArrayList<MyRecord>();
+        for (int i = 0; i < 10; i++) {
+            recordList.add(new MyRecord(KEY + i, VALUE, referenceTimestamp, Instant.MAX));
+        }
+
+        h.writeTemporalityRecords(recordList, daoService);
+        assertEquals(10, metrics.getRecordCount());
+        assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE_ALL));
+        assertEquals(0, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE));
+        assertEquals(10, metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+        assertEquals(10, metrics.getCaseCount(TemporalityCase.NEW));
+    }
+
+
+    /**
+     * The cases of a plan are counted when the plan is executed
+     */
+    @Test
+    public void planRecords() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        MyRecordDAO daoService = new MyRecordDAO();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.NEW));
+
+        MyRecord record = new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS));
+        TemporalityPlan<MyRecord> plan = h.planTemporalityRecord(record, daoService.search(record));
+        assertEquals(Arrays.asList(TemporalityCase.F, TemporalityCase.NEW), plan.getCaseList());
+        assertEquals(0, metrics.getCaseCount(TemporalityCase.F));
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.NEW));
+
+        assertEquals(3, h.executeTemporalityPlan(plan, daoService));
+        assertEquals(1, metrics.getCaseCount(TemporalityCase.F));
+        assertEquals(2, metrics.getCaseCount(TemporalityCase.NEW));
+    }
+
+
+    /**
+     * The metrics listener of a built temporality handler, the shared temporality handler of the factory has no metrics
+     */
+    @Test
+    public void builtHandlerMetricsListener() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        TemporalityHandlerImpl h = (TemporalityHandlerImpl) new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        assertSame(metrics, h.getMetricsListener());
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), new MyRecordDAO());
+        assertEquals(1, metrics.getRecordCount());
+
+        TemporalityHandlerImpl sharedHandler = (TemporalityHandlerImpl) TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        assertSame(ITemporalityMetricsListener.NO_OP, sharedHandler.getMetricsListener());
+        sharedHandler.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), new MyRecordDAO());
+        assertEquals(1, metrics.getRecordCount());
+    }
+
+
+    /**
+     * The percentiles of the histogram
+     */
+    @Test
+    public void histogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500.5, histogram.getMean());
+        assertTrue(Math.abs(histogram.getPercentile(50) - 500) <= 500 / 8, "p50=" + histogram.getPercentile(50));
+        assertTrue(Math.abs(histogram.getPercentile(99) - 990) <= 990 / 8, "p99=" + histogram.getPercentile(99));
+        assertEquals(1, histogram.getPercentile(0));
+        assertEquals(1000, histogram.getPercentile(100));
+
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+}
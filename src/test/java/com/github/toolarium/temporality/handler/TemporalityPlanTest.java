@@ -0,0 +1,149 @@
+/*
+ * TemporalityPlanTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the planner and executor of the temporality handler.
+ */
+public class TemporalityPlanTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityPlanTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Plan a new record
+     */
+    @Test
+    public void planNewRecord() {
+        MyRecord record = new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX);
+        TemporalityPlan<MyRecord> plan = TemporalityHandlerFactory.getInstance().getTemporalityHandler().planTemporalityRecord(record, null);
+        assertEquals(1, plan.size());
+        assertEquals(TemporalityCase.NEW, plan.getOperationList().get(0).getTemporalityCase());
+        assertEquals(TemporalityActionType.CREATE, plan.getOperationList().get(0).getTemporalityActionType());
+        assertSame(record, plan.getOperationList().get(0).getRecord());
+    }
+
+
+    /**
+     * Plan and execute an insert (Case F)
+     */
+    @Test
+    public void planInsertBetween() {
+        MyRecordDAO daoService = new MyRecordDAO();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        MyRecord existingRecord = daoService.getData().get(KEY).get(0);
+
+        MyRecord record = new MyRecord(KEY, VALUE + "new", referenceTimestamp.plus(3, ChronoUnit.DAYS), referenceTimestamp.plus(5, ChronoUnit.DAYS));
+        TemporalityPlan<MyRecord> plan = h.planTemporalityRecord(record, new ArrayList<MyRecord>(daoService.getData().get(KEY)));
+        assertEquals(1, daoService.getData().get(KEY).size());
+        assertEquals(3, plan.size());
+
+        TemporalityOperation<MyRecord> operation = plan.getOperationList().get(0);
+        assertEquals(TemporalityCase.F, operation.getTemporalityCase());
+        assertEquals(TemporalityActionType.TERMINATE, operation.getTemporalityActionType());
+        assertSame(existingRecord, operation.getExistingRecord());
+        assertEquals(existingRecord.getPrimaryKey(), operation.getRecord().getPrimaryKey());
+        assertEquals("key / value / 2014-05-26T13:11:10Z - 2014-05-29T13:11:10Z", operation.getRecord().toString());
+
+        operation = plan.getOperationList().get(1);
+        assertEquals(TemporalityCase.F, operation.getTemporalityCase());
+        assertEquals(TemporalityActionType.CREATE, operation.getTemporalityActionType());
+        assertNull(operation.getExistingRecord());
+        assertNull(operation.getRecord().getPrimaryKey());
+        assertEquals("key / value / 2014-05-31T13:11:10Z - +1000000000-12-31T23:59:59.999999999Z", operation.getRecord().toString());
+
+        operation = plan.getOperationList().get(2);
+        assertEquals(TemporalityCase.NEW, operation.getTemporalityCase());
+        assertEquals(TemporalityActionType.UPDATE, operation.getTemporalityActionType());
+        assertSame(record, operation.getRecord());
+
+        assertEquals(3, h.executeTemporalityPlan(plan, daoService));
+        assertEquals(3, daoService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * Plan a combine (Case G) and an identical record (Case A)
+     */
+    @Test
+    public void planCombineAndIdentical() {
+        MyRecordDAO daoService = new MyRecordDAO();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 1, referenceTimestamp, referenceTimestamp.plus(1, ChronoUnit.DAYS)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 2, referenceTimestamp.plus(2, ChronoUnit.DAYS), referenceTimestamp.plus(3, ChronoUnit.DAYS)), daoService);
+
+        TemporalityPlan<MyRecord> plan = h.planTemporalityRecord(new MyRecord(KEY, VALUE + 2, referenceTimestamp.plus(2, ChronoUnit.DAYS), referenceTimestamp.plus(3, ChronoUnit.DAYS)),
+                                                                 daoService.getData().get(KEY));
+        assertTrue(plan.isEmpty());
+
+        plan = h.planTemporalityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, referenceTimestamp.plus(4, ChronoUnit.DAYS)), daoService.getData().get(KEY));
+        assertEquals(3, plan.size());
+        assertEquals(Arrays.asList(TemporalityActionType.DELETE, TemporalityActionType.DELETE, TemporalityActionType.UPDATE), toActionTypeList(plan));
+        assertEquals(3, h.executeTemporalityPlan(plan, daoService));
+        assertEquals(1, daoService.getData().get(KEY).size());
+    }
+
+
+    /**
+     * Merge the plans of several data keys and execute them at once
+     */
+    @Test
+    public void mergePlans() {
+        MyBatchRecordDAO daoService = new MyBatchRecordDAO();
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+
+        List<TemporalityPlan<MyRecord>> planList = new ArrayList<TemporalityPlan<MyRecord>>();
+        for (int i = 0; i < 10; i++) {
+            planList.add(h.planTemporalityRecord(new MyRecord(KEY + i, VALUE, referenceTimestamp, Instant.MAX), null));
+        }
+
+        TemporalityPlan<MyRecord> plan = TemporalityPlan.merge(planList);
+        assertEquals(10, plan.size());
+        assertEquals(10, h.executeTemporalityPlan(plan, daoService));
+        assertEquals(1, daoService.getWriteAllCounter());
+        assertEquals(10, daoService.getData().size());
+    }
+
+
+    /**
+     * Get the action types of a plan
+     *
+     * @param plan the plan
+     * @return the action types
+     */
+    private List<TemporalityActionType> toActionTypeList(TemporalityPlan<MyRecord> plan) {
+        List<TemporalityActionType> result = new ArrayList<TemporalityActionType>();
+        for (TemporalityOperation<MyRecord> operation : plan.getOperationList()) {
+            result.add(operation.getTemporalityActionType());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * TemporalityUnitOfWorkTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link TemporalityUnitOfWork}.
+ */
+public class TemporalityUnitOfWorkTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public TemporalityUnitOfWorkTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * Several writes of a data key are read once and written as net operations on commit
+     */
+    @Test
+    public void commitNetOperations() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        AtomicInteger numberOfReads = new AtomicInteger();
+        AtomicInteger numberOfWrites = new AtomicInteger();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createCountingDAOService(numberOfReads, numberOfWrites);
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), day(20)), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), day(20)), referenceDAOService);
+        numberOfReads.set(0);
+        numberOfWrites.set(0);
+
+        TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+        int directResult = 0;
+        for (int i = 0; i < 10; i++) {
+            MyRecord record = new MyRecord(KEY, VALUE + i, day(5), day(10 + i % 3));
+            assertTrue(h.writeTemporlityRecord(record, unitOfWork) > 0);
+            directResult += h.writeTemporlityRecord(record.clone(), referenceDAOService);
+        }
+
+        // the pending state is visible in the unit of work only
+        assertEquals(VALUE + 9, h.findValidAt(new MyRecord(KEY, null, null, null), day(6), unitOfWork).getValue());
+        assertEquals(VALUE, h.findValidAt(new MyRecord(KEY, null, null, null), day(6), daoService).getValue());
+        assertEquals(directResult, unitOfWork.getNumberOfPendingOperations());
+        assertEquals(1, numberOfReads.get());
+        assertEquals(0, numberOfWrites.get());
+
+        int result = unitOfWork.commit();
+        assertEquals(3, result);
+        assertTrue(result < directResult);
+        assertEquals(0, unitOfWork.getNumberOfPendingOperations());
+        assertEquals(result, numberOfWrites.get());
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+        assertEquals(0, unitOfWork.commit());
+    }
+
+
+    /**
+     * A record which is created and deleted in the same unit of work is not written, a rollback discards the operations
+     */
+    @Test
+    public void cancelOperations() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        AtomicInteger numberOfReads = new AtomicInteger();
+        AtomicInteger numberOfWrites = new AtomicInteger();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createCountingDAOService(numberOfReads, numberOfWrites);
+        TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+
+        // Case G deletes the created record
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 1, day(1), day(2)), unitOfWork);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 2, day(0), day(5)), unitOfWork);
+        assertEquals(3, unitOfWork.getNumberOfPendingOperations());
+        assertEquals(1, unitOfWork.commit());
+        assertEquals(1, numberOfWrites.get());
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertEquals(VALUE + 2, daoService.findValidAt(KEY, day(1)).getValue());
+
+        // the same record again
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 2, day(0), day(5)), unitOfWork);
+        assertEquals(0, unitOfWork.commit());
+
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 3, day(0), day(5)), unitOfWork);
+        unitOfWork.rollback();
+        assertEquals(0, unitOfWork.commit());
+        assertEquals(VALUE + 2, daoService.findValidAt(KEY, day(1)).getValue());
+        assertNull(daoService.findValidAt(KEY, day(6)));
+
+        assertThrows(IllegalArgumentException.class, () -> new TemporalityUnitOfWork<MyRecord, Long, String>(h, null));
+    }
+
+
+    /**
+     * Random writes of several data keys have the same result as the sequential writes
+     */
+    @Test
+    public void commitRandomRecordsCompareWithSequential() {
+        Random random = new Random(4711);
+        for (boolean compactOnWrite : new boolean[] {false, true}) {
+            ITemporalityHandler h = new TemporalityHandlerBuilder().compactOnWrite(compactOnWrite).build();
+            for (int n = 0; n < 20; n++) {
+                AtomicInteger numberOfReads = new AtomicInteger();
+                AtomicInteger numberOfWrites = new AtomicInteger();
+                InMemoryDAOService<MyRecord, Long, String> daoService = createCountingDAOService(numberOfReads, numberOfWrites);
+                InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+                for (int i = 0; i < 20; i++) {
+                    MyRecord record = createRandomRecord(random);
+                    h.writeTemporlityRecord(record.clone(), daoService);
+                    h.writeTemporlityRecord(record, referenceDAOService);
+                }
+
+                numberOfReads.set(0);
+                TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+                for (int i = 0; i < 40; i++) {
+                    MyRecord record = createRandomRecord(random);
+                    if (i % 2 == 0) {
+                        h.writeTemporlityRecord(record.clone(), unitOfWork);
+                    } else {
+                        h.writeTemporalityRecords(List.of(record.clone()), unitOfWork);
+                    }
+
+                    h.writeTemporlityRecord(record, referenceDAOService);
+                }
+
+                assertTrue(numberOfReads.get() <= 3);
+                int numberOfPendingOperations = unitOfWork.getNumberOfPendingOperations();
+                assertTrue(unitOfWork.commit() <= numberOfPendingOperations);
+                for (int k = 0; k < 3; k++) {
+                    MyRecord filter = new MyRecord(KEY + k, null, null, null);
+                    assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A record till the max instant does not terminate a later record till the max instant, the view with overlapping
+     * records is committed with the same result as the sequential writes
+     */
+    @Test
+    public void commitMaxInstantRecordsCompareWithSequential() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        List<IDAOService<MyRecord>> daoServiceList = List.of(createDAOService(), new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet));
+        for (IDAOService<MyRecord> daoService : daoServiceList) {
+            InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+            MyRecord existingRecord = new MyRecord(KEY, VALUE + 0, referenceTimestamp.plusSeconds(500), Instant.MAX);
+            h.writeTemporlityRecord(existingRecord.clone(), daoService);
+            h.writeTemporlityRecord(existingRecord, referenceDAOService);
+
+            TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+            MyRecord record = new MyRecord(KEY, VALUE + 1, referenceTimestamp.plusSeconds(100), Instant.MAX);
+            h.writeTemporlityRecord(record.clone(), unitOfWork);
+            h.writeTemporlityRecord(record, referenceDAOService);
+
+            // the later record is changed in the same unit of work
+            record = new MyRecord(KEY, VALUE + 2, day(1), day(2));
+            h.writeTemporlityRecord(record.clone(), unitOfWork);
+            h.writeTemporlityRecord(record, referenceDAOService);
+
+            unitOfWork.commit();
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+            assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+            assertEquals(toString(referenceDAOService.search(filter)), toString(unitOfWork.search(filter)));
+        }
+    }
+
+
+    /**
+     * The net operations of a versioned dao service are written conditionally on the version of the read timeline
+     */
+    @Test
+    public void commitVersioned() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+        for (int i = 0; i < 5; i++) {
+            h.writeTemporlityRecord(new MyRecord(KEY, VALUE + i, day(0), day(10)), unitOfWork);
+        }
+
+        assertEquals(1, unitOfWork.commit());
+        assertEquals(1L, daoService.getVersion(KEY));
+        assertEquals(VALUE + 4, daoService.findValidAt(KEY, day(1)).getValue());
+
+        // a concurrent write after the read
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "A", day(2), day(3)), unitOfWork);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + "B", day(4), day(5)), daoService);
+        assertThrows(TemporalityConflictException.class, () -> unitOfWork.commit());
+        assertEquals(0, unitOfWork.getNumberOfPendingOperations());
+        assertEquals(VALUE + 4, daoService.findValidAt(KEY, day(2)).getValue());
+    }
+
+
+    /**
+     * The net operations of a versioned dao service are passed to the change listener and the metrics listener
+     */
+    @Test
+    public void commitVersionedWithListeners() {
+        List<TemporalityChangeEvent<?>> eventList = new ArrayList<TemporalityChangeEvent<?>>();
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().changeListener(eventList::add).metricsListener(metrics).build();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, day(0), day(10)), unitOfWork);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE + 1, day(5), day(10)), unitOfWork);
+        assertTrue(eventList.isEmpty());
+
+        int result = unitOfWork.commit();
+        assertEquals(2, result);
+        assertEquals(result, eventList.size());
+        assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE_VERSIONED));
+    }
+
+
+    /**
+     * The versions of all data keys are checked before the first data key is written
+     */
+    @Test
+    public void commitVersionedCheckAllDataKeys() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        TemporalityUnitOfWork<MyRecord, Long, String> unitOfWork = new TemporalityUnitOfWork<MyRecord, Long, String>(h, daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY + 1, VALUE, day(0), day(10)), unitOfWork);
+        h.writeTemporlityRecord(new MyRecord(KEY + 2, VALUE, day(0), day(10)), unitOfWork);
+
+        // a concurrent write of the second data key after the read
+        h.writeTemporlityRecord(new MyRecord(KEY + 2, VALUE + "B", day(4), day(5)), daoService);
+        TemporalityConflictException e = assertThrows(TemporalityConflictException.class, () -> unitOfWork.commit());
+        assertEquals(KEY + 2, e.getDataKey());
+        assertNull(daoService.findValidAt(KEY + 1, day(1)));
+        assertEquals(0, unitOfWork.getNumberOfPendingOperations());
+    }
+
+
+    /**
+     * Create a random record
+     *
+     * @param random the random
+     * @return the record
+     */
+    private MyRecord createRandomRecord(Random random) {
+        int from = random.nextInt(40);
+        return new MyRecord(KEY + random.nextInt(3), VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(8)));
+    }
+
+
+    /**
+     * Create a dao service which counts the reads and the written and deleted records
+     *
+     * @param numberOfReads the number of reads
+     * @param numberOfWrites the number of written and deleted records
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createCountingDAOService(AtomicInteger numberOfReads, AtomicInteger numberOfWrites) {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#search(com.github.toolarium.temporality.handler.ITemporalityRecord)
+             */
+            @Override
+            public List<MyRecord> search(MyRecord recordFilter) {
+                numberOfReads.incrementAndGet();
+                return super.search(recordFilter);
+            }
+
+
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#searchOverlapping(com.github.toolarium.temporality.handler.ITemporalityRecord, java.time.Instant, java.time.Instant)
+             */
+            @Override
+            public List<MyRecord> searchOverlapping(MyRecord recordFilter, Instant validFrom, Instant validTill) {
+                numberOfReads.incrementAndGet();
+                return super.searchOverlapping(recordFilter, validFrom, validTill);
+            }
+
+
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#writeAll(java.util.List)
+             */
+            @Override
+            public void writeAll(List<TemporalityOperation<MyRecord>> operationList) {
+                numberOfWrites.addAndGet(operationList.size());
+                super.writeAll(operationList);
+            }
+
+
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#deleteAll(java.util.List)
+             */
+            @Override
+            public void deleteAll(List<MyRecord> recordList) {
+                numberOfWrites.addAndGet(recordList.size());
+                super.deleteAll(recordList);
+            }
+        };
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}
@@ -0,0 +1,413 @@
+/*
+ * WriteBehindTemporalityWriterTest.java
+ *
+ * Copyright by toolarium, all rights reserved.
+ */
+package com.github.toolarium.temporality.handler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.github.toolarium.temporality.handler.dao.InMemoryDAOService;
+import com.github.toolarium.temporality.handler.dao.InMemoryVersionedDAOService;
+import com.github.toolarium.temporality.handler.impl.WriteBehindTemporalityWriterImpl;
+import com.github.toolarium.temporality.handler.metrics.TemporalityMetrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Test the {@link IWriteBehindTemporalityWriter}.
+ */
+public class WriteBehindTemporalityWriterTest {
+    private static final String KEY = "key";
+    private static final String VALUE = "value";
+    private Instant referenceTimestamp;
+
+
+    /**
+     * Constructor
+     */
+    public WriteBehindTemporalityWriterTest() {
+        referenceTimestamp = DateTimeFormatter.ISO_DATE_TIME.parse("2014-05-26T13:11:10Z", Instant::from);
+    }
+
+
+    /**
+     * A burst of writes of a data key is folded: the timeline is read once and the superseded versions are not written
+     */
+    @Test
+    public void coalesceBurst() {
+        TemporalityMetrics metrics = new TemporalityMetrics();
+        ITemporalityHandler h = new TemporalityHandlerBuilder().metricsListener(metrics).build();
+        InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+        InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), daoService);
+        h.writeTemporlityRecord(new MyRecord(KEY, VALUE, referenceTimestamp, Instant.MAX), referenceDAOService);
+
+        try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000)) {
+            for (int i = 0; i < 50; i++) {
+                MyRecord record = new MyRecord(KEY, VALUE + i, day(3), day(5));
+                writer.writeTemporalityRecord(record);
+                h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            }
+
+            assertEquals(50, writer.getNumberOfPendingRecords());
+            assertEquals(1, daoService.getNumberOfRecords(KEY));
+
+            metrics.reset();
+            assertEquals(3, writer.flush());
+            assertEquals(0, writer.getNumberOfPendingRecords());
+            assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.SEARCH));
+            assertEquals(1, metrics.getDAOCallCount(TemporalityDAOOperation.WRITE_ALL));
+            assertEquals(0, writer.flush());
+        }
+
+        MyRecord filter = new MyRecord(KEY, null, null, null);
+        assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 0));
+    }
+
+
+    /**
+     * Random writes of several data keys have the same result as the sequential writes
+     */
+    @Test
+    public void writeRandomRecordsCompareWithSequential() {
+        Random random = new Random(1357);
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        for (int n = 0; n < 20; n++) {
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+            for (int i = 0; i < 20; i++) {
+                MyRecord record = createRandomRecord(random);
+                h.writeTemporlityRecord(record.clone(), daoService);
+                h.writeTemporlityRecord(record, referenceDAOService);
+            }
+
+            try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 7)) {
+                for (int i = 0; i < 40; i++) {
+                    MyRecord record = createRandomRecord(random);
+                    writer.writeTemporalityRecord(record);
+                    h.writeTemporlityRecord(record.clone(), referenceDAOService);
+                }
+            }
+
+            for (int k = 0; k < 3; k++) {
+                MyRecord filter = new MyRecord(KEY + k, null, null, null);
+                assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+            }
+        }
+    }
+
+
+    /**
+     * A record till the max instant does not terminate a later record till the max instant, the resulting timeline has
+     * overlapping records and the records are written one after the other with the same result as the sequential writes
+     */
+    @Test
+    public void writeMaxInstantRecordsCompareWithSequential() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        List<IDAOService<MyRecord>> daoServiceList = List.of(createDAOService(), new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet));
+        for (IDAOService<MyRecord> daoService : daoServiceList) {
+            InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+            MyRecord existingRecord = new MyRecord(KEY, VALUE + 0, referenceTimestamp.plusSeconds(500), Instant.MAX);
+            h.writeTemporlityRecord(existingRecord.clone(), daoService);
+            h.writeTemporlityRecord(existingRecord, referenceDAOService);
+
+            try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000)) {
+                MyRecord record = new MyRecord(KEY, VALUE + 1, referenceTimestamp.plusSeconds(100), Instant.MAX);
+                writer.writeTemporalityRecord(record);
+                h.writeTemporlityRecord(record.clone(), referenceDAOService);
+
+                assertEquals(1, writer.flush());
+                assertEquals(0, writer.getNumberOfPendingRecords());
+            }
+
+            MyRecord filter = new MyRecord(KEY, null, null, null);
+            assertEquals(2, referenceDAOService.getNumberOfRecords(KEY));
+            assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+        }
+    }
+
+
+    /**
+     * The records of a data key which can not be written after the max number of flush retries are passed to the dead
+     * letter handler, the later records of the data key are written
+     */
+    @Test
+    public void passFailedRecordsToDeadLetterHandler() {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        AtomicReference<String> failingDataKey = new AtomicReference<String>(KEY);
+        InMemoryDAOService<MyRecord, Long, String> daoService = createFailingDAOService(failingDataKey);
+        List<MyRecord> deadLetterList = Collections.synchronizedList(new ArrayList<MyRecord>());
+        try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000, null, null, 2,
+                                                                                                                           (recordList, e) -> deadLetterList.addAll(recordList))) {
+            writer.writeTemporalityRecord(new MyRecord(KEY, VALUE + 0, day(0), day(1)));
+            writer.writeTemporalityRecord(new MyRecord(KEY, VALUE + 1, day(1), day(2)));
+            for (int i = 0; i < 3; i++) {
+                assertEquals(2, writer.getNumberOfPendingRecords());
+                assertThrows(IllegalStateException.class, () -> writer.flush());
+            }
+
+            assertEquals(0, writer.getNumberOfPendingRecords());
+            assertEquals(2, deadLetterList.size());
+            assertEquals(VALUE + 0, deadLetterList.get(0).getValue());
+
+            failingDataKey.set(null);
+            writer.writeTemporalityRecord(new MyRecord(KEY, VALUE + 2, day(2), day(3)));
+            assertEquals(1, writer.flush());
+        }
+
+        assertEquals(1, daoService.getNumberOfRecords(KEY));
+        assertThrows(IllegalArgumentException.class, () -> new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000, null, null, -1, null));
+    }
+
+
+    /**
+     * The buffer is flushed after the flush window or if it is full, also with a versioned dao service
+     *
+     * @throws InterruptedException in case of an interrupt
+     */
+    @Test
+    public void flushAsynchronously() throws InterruptedException {
+        ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+        InMemoryVersionedDAOService<MyRecord, Long, String> daoService = new InMemoryVersionedDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+        try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 5)) {
+            for (int i = 0; i < 5; i++) {
+                writer.writeTemporalityRecord(new MyRecord(KEY, VALUE + i, day(i), day(i + 1)));
+            }
+
+            waitForFlush(writer);
+            assertEquals(5, daoService.getNumberOfRecords(KEY));
+            assertEquals(1L, daoService.getVersion(KEY));
+        }
+
+        IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofMillis(10), 1000);
+        try {
+            writer.writeTemporalityRecord(new MyRecord(KEY + 1, VALUE, day(0), day(1)));
+            waitForFlush(writer);
+            assertEquals(1, daoService.getNumberOfRecords(KEY + 1));
+
+            assertThrows(IllegalArgumentException.class, () -> writer.writeTemporalityRecord(new MyRecord(KEY, VALUE, null, day(1))));
+            assertThrows(IllegalArgumentException.class, () -> writer.writeTemporalityRecord(new MyRecord(KEY, VALUE, day(1), day(1))));
+        } finally {
+            writer.close();
+        }
+
+        assertThrows(IllegalStateException.class, () -> writer.writeTemporalityRecord(new MyRecord(KEY, VALUE, day(0), day(1))));
+    }
+
+
+    /**
+     * The buffered records of a crashed writer are recovered from the write-ahead log
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void recoverWriteAheadLog() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        Path writeAheadLogFile = directory.resolve("write-behind.log");
+        Path crashedWriteAheadLogFile = directory.resolve("crashed.log");
+        try {
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            InMemoryDAOService<MyRecord, Long, String> daoService = createDAOService();
+            try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000,
+                                                                                                                               writeAheadLogFile, new MyRecordCodec())) {
+                for (int i = 0; i < 10; i++) {
+                    writer.writeTemporalityRecord(new MyRecord(KEY + (i % 2), VALUE + i, day(i), day(i + 3)));
+                }
+
+                // the state of a crash: the records are logged but not flushed, the last entry is incomplete
+                Files.copy(writeAheadLogFile, crashedWriteAheadLogFile);
+                Files.write(crashedWriteAheadLogFile, new byte[] {0, 0, 1}, StandardOpenOption.APPEND);
+            }
+
+            assertEquals(0, Files.size(writeAheadLogFile));
+
+            InMemoryDAOService<MyRecord, Long, String> recoveredDAOService = createDAOService();
+            try (IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, recoveredDAOService, Duration.ofHours(1), 1000,
+                                                                                                                               crashedWriteAheadLogFile, new MyRecordCodec())) {
+                assertEquals(10, writer.getNumberOfPendingRecords());
+                writer.writeTemporalityRecord(new MyRecord(KEY + 2, VALUE, day(0), day(1)));
+                writer.flush();
+                assertEquals(0, writer.getNumberOfPendingRecords());
+            }
+
+            for (int k = 0; k < 2; k++) {
+                MyRecord filter = new MyRecord(KEY + k, null, null, null);
+                assertEquals(toString(daoService.search(filter)), toString(recoveredDAOService.search(filter)));
+            }
+
+            assertEquals(1, recoveredDAOService.getNumberOfRecords(KEY + 2));
+            assertEquals(0, Files.size(crashedWriteAheadLogFile));
+        } finally {
+            Files.deleteIfExists(writeAheadLogFile);
+            Files.deleteIfExists(crashedWriteAheadLogFile);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    /**
+     * The records of a data key which can not be written stay buffered and in the write-ahead log, the other data keys are written
+     *
+     * @throws IOException in case of an error
+     */
+    @Test
+    public void keepFailedRecords() throws IOException {
+        Path directory = Files.createTempDirectory("temporality");
+        Path writeAheadLogFile = directory.resolve("write-behind.log");
+        try {
+            ITemporalityHandler h = TemporalityHandlerFactory.getInstance().getTemporalityHandler();
+            AtomicReference<String> failingDataKey = new AtomicReference<String>(KEY + 0);
+            InMemoryDAOService<MyRecord, Long, String> daoService = createFailingDAOService(failingDataKey);
+            InMemoryDAOService<MyRecord, Long, String> referenceDAOService = createDAOService();
+            IWriteBehindTemporalityWriter<MyRecord> writer = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000,
+                                                                                                                          writeAheadLogFile, new MyRecordCodec());
+            for (int i = 0; i < 5; i++) {
+                MyRecord record = new MyRecord(KEY + (i % 2), VALUE + i, day(i), day(i + 1));
+                writer.writeTemporalityRecord(record);
+                h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            }
+
+            long writeAheadLogSize = Files.size(writeAheadLogFile);
+            assertThrows(IllegalStateException.class, () -> writer.flush());
+            assertEquals(3, writer.getNumberOfPendingRecords());
+            assertEquals(0, daoService.getNumberOfRecords(KEY + 0));
+            assertEquals(2, daoService.getNumberOfRecords(KEY + 1));
+            assertTrue(Files.size(writeAheadLogFile) > 0);
+            assertTrue(Files.size(writeAheadLogFile) < writeAheadLogSize);
+
+            // the failed records are written before a later record and are kept on close
+            MyRecord record = new MyRecord(KEY + 0, VALUE + "later", day(4), day(6));
+            writer.writeTemporalityRecord(record);
+            h.writeTemporlityRecord(record.clone(), referenceDAOService);
+            assertThrows(IllegalStateException.class, () -> writer.close());
+            assertEquals(4, writer.getNumberOfPendingRecords());
+
+            failingDataKey.set(null);
+            try (IWriteBehindTemporalityWriter<MyRecord> recoveredWriter = new WriteBehindTemporalityWriterImpl<MyRecord, Long, String>(h, daoService, Duration.ofHours(1), 1000,
+                                                                                                                                        writeAheadLogFile, new MyRecordCodec())) {
+                assertEquals(4, recoveredWriter.getNumberOfPendingRecords());
+                assertEquals(3, recoveredWriter.flush());
+            }
+
+            for (int k = 0; k < 2; k++) {
+                MyRecord filter = new MyRecord(KEY + k, null, null, null);
+                assertEquals(toString(referenceDAOService.search(filter)), toString(daoService.search(filter)));
+            }
+
+            assertEquals(0, Files.size(writeAheadLogFile));
+        } finally {
+            Files.deleteIfExists(writeAheadLogFile);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+
+    /**
+     * Wait until the buffered records are flushed
+     *
+     * @param writer the writer
+     * @throws InterruptedException in case of an interrupt
+     */
+    private void waitForFlush(IWriteBehindTemporalityWriter<MyRecord> writer) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (writer.getNumberOfPendingRecords() > 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, writer.getNumberOfPendingRecords());
+    }
+
+
+    /**
+     * Create a random record
+     *
+     * @param random the random
+     * @return the record
+     */
+    private MyRecord createRandomRecord(Random random) {
+        int from = random.nextInt(40);
+        return new MyRecord(KEY + random.nextInt(3), VALUE + random.nextInt(3), day(from), day(from + 1 + random.nextInt(8)));
+    }
+
+
+    /**
+     * Create the dao service
+     *
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createDAOService() {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet);
+    }
+
+
+    /**
+     * Create a dao service which fails to write the records of a data key
+     *
+     * @param failingDataKey the data key which can not be written or null
+     * @return the dao service
+     */
+    private InMemoryDAOService<MyRecord, Long, String> createFailingDAOService(AtomicReference<String> failingDataKey) {
+        return new InMemoryDAOService<MyRecord, Long, String>(new AtomicLong()::incrementAndGet) {
+            /**
+             * @see com.github.toolarium.temporality.handler.dao.InMemoryDAOService#writeAll(java.util.List)
+             */
+            @Override
+            public void writeAll(List<TemporalityOperation<MyRecord>> operationList) {
+                for (TemporalityOperation<MyRecord> operation : operationList) {
+                    if (operation.getRecord().getDataKey().equals(failingDataKey.get())) {
+                        throw new IllegalStateException("Not available!");
+                    }
+                }
+
+                super.writeAll(operationList);
+            }
+        };
+    }
+
+
+    /**
+     * Convert the validity and the value of the records into a string
+     *
+     * @param recordList the records
+     * @return the string
+     */
+    private String toString(List<MyRecord> recordList) {
+        StringBuilder result = new StringBuilder();
+        if (recordList != null) {
+            for (MyRecord record : recordList) {
+                result.append(record.getValidFrom()).append(" - ").append(record.getValidTill()).append(": ").append(record.getValue()).append('\n');
+            }
+        }
+
+        return result.toString();
+    }
+
+
+    /**
+     * Get the instant of a day after the reference timestamp
+     *
+     * @param day the day
+     * @return the instant
+     */
+    private Instant day(int day) {
+        return referenceTimestamp.plus(day, ChronoUnit.DAYS);
+    }
+}